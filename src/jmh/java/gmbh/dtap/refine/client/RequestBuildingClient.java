@@ -0,0 +1,43 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gmbh.dtap.refine.client;
+
+import org.apache.commons.io.output.NullOutputStream;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.methods.HttpUriRequest;
+
+import java.io.IOException;
+import java.net.URL;
+
+/**
+ * A client that serialises the request entity instead of sending it, to benchmark how commands build requests.
+ */
+public class RequestBuildingClient extends RefineClient {
+
+	public RequestBuildingClient() throws IOException {
+		super(new URL("http://localhost:3333"), null);
+	}
+
+	@Override
+	public <T> T execute(HttpUriRequest request, ResponseHandler<? extends T> responseHandler) throws IOException {
+		if (request instanceof HttpEntityEnclosingRequest) {
+			((HttpEntityEnclosingRequest) request).getEntity().writeTo(NullOutputStream.NULL_OUTPUT_STREAM);
+		}
+		return null;
+	}
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gmbh.dtap.refine.client.command;
+
+import gmbh.dtap.refine.client.RefineClient;
+import gmbh.dtap.refine.client.RefineClients;
+import gmbh.dtap.refine.client.Row;
+import gmbh.dtap.refine.client.testsupport.StubRefineServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ * Benchmarks complete calls over a socket against an in-process {@link StubRefineServer}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Threads(4)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class EndToEndBenchmark {
+
+	private StubRefineServer server;
+	private RefineClient client;
+	private GetVersionCommand getVersion;
+	private ExpressionPreviewCommand expressionPreview;
+	private ExportRowsCommand exportRows;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		server = StubRefineServer.builder().exportRows(10_000).start();
+		client = RefineClients.create(server.getUrl());
+		getVersion = RefineCommands.getVersion().build();
+		expressionPreview = RefineCommands.expressionPreview()
+			.project("1234567890")
+			.rowIndices(LongStream.range(0, 1000).toArray())
+			.grel("value")
+			.build();
+		exportRows = RefineCommands.exportRows().project("1234567890").engine("{}").format("csv").build();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		client.close();
+		server.close();
+	}
+
+	@Benchmark
+	public GetVersionResponse getVersion() throws IOException {
+		return getVersion.execute(client);
+	}
+
+	@Benchmark
+	public ExpressionPreviewResponse expressionPreview() throws IOException {
+		return expressionPreview.execute(client);
+	}
+
+	@Benchmark
+	public long exportRowsStream() throws IOException {
+		try (Stream<Row> rows = exportRows.stream(client)) {
+			return rows.count();
+		}
+	}
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gmbh.dtap.refine.client.command;
+
+import org.apache.commons.io.output.NullOutputStream;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.message.BasicHttpResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+
+/**
+ * Benchmarks how {@link ExportRowsCommand#handleResponse(HttpResponse)} copies an export to a sink,
+ * and how an export is parsed into rows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ExportRowsBenchmark {
+
+	@Param({"1000", "100000"})
+	private int rowCount;
+
+	private byte[] export;
+	private ExportRowsCommand toStream;
+	private ExportRowsCommand toChannel;
+	private ExportRowsCommand toGzipStream;
+
+	@Setup
+	public void setUp() {
+		StringBuilder csv = new StringBuilder("ID,Street,Zip,City,Country\n");
+		for (int row = 0; row < rowCount; row++) {
+			csv.append("ROW-").append(row).append(",7442 At Rd.,7638 BW,\"Cavallino, VE\",Monaco\n");
+		}
+		export = csv.toString().getBytes(StandardCharsets.UTF_8);
+		toStream = builder().outputStream(NullOutputStream.NULL_OUTPUT_STREAM).build();
+		toChannel = builder().channel(Channels.newChannel(NullOutputStream.NULL_OUTPUT_STREAM)).build();
+		toGzipStream = builder().outputStream(NullOutputStream.NULL_OUTPUT_STREAM).gzip(true).build();
+	}
+
+	private static ExportRowsCommand.Builder builder() {
+		return RefineCommands.exportRows().token("benchmark-token").project("1234567890").engine("{}").format("csv");
+	}
+
+	private HttpResponse response() {
+		BasicHttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+		response.setEntity(new ByteArrayEntity(export, ContentType.create("text/csv", StandardCharsets.UTF_8)));
+		return response;
+	}
+
+	@Benchmark
+	public ExportRowsResponse copyToStream() throws IOException {
+		return toStream.handleResponse(response());
+	}
+
+	@Benchmark
+	public ExportRowsResponse copyToChannel() throws IOException {
+		return toChannel.handleResponse(response());
+	}
+
+	@Benchmark
+	public ExportRowsResponse copyToGzipStream() throws IOException {
+		return toGzipStream.handleResponse(response());
+	}
+
+	@Benchmark
+	public void iterateRows(Blackhole blackhole) throws IOException {
+		try (ExportRowsIterator rows = new ExportRowsIterator(response(), ',', 64 * 1024)) {
+			for (Iterator<?> iterator = rows; iterator.hasNext(); ) {
+				blackhole.consume(iterator.next());
+			}
+		}
+	}
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gmbh.dtap.refine.client.command;
+
+import gmbh.dtap.refine.client.JsonOperation;
+import gmbh.dtap.refine.client.Operation;
+import gmbh.dtap.refine.client.RefineClient;
+import gmbh.dtap.refine.client.RequestBuildingClient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.stream.LongStream;
+
+/**
+ * Benchmarks how commands build and serialise their form requests. Each benchmark has its own state, so that it
+ * only runs with the parameters it uses.
+ */
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class RequestBuildingBenchmark {
+
+	@State(Scope.Benchmark)
+	public static class ApplyOperationsState {
+
+		@Param({"10", "1000"})
+		private int operationCount;
+
+		private RefineClient client;
+		private ApplyOperationsCommand command;
+
+		@Setup
+		public void setUp() throws IOException {
+			client = new RequestBuildingClient();
+			Operation[] operations = new Operation[operationCount];
+			for (int i = 0; i < operationCount; i++) {
+				operations[i] = JsonOperation.from("{\"op\":\"core/column-rename\",\"description\":\"Rename column " + i
+					+ "\",\"oldColumnName\":\"column " + i + "\",\"newColumnName\":\"renamed " + i + "\"}");
+			}
+			command = RefineCommands.applyOperations()
+				.token("benchmark-token")
+				.project("1234567890")
+				.operations(operations)
+				.build();
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class ExpressionPreviewState {
+
+		@Param({"1000", "100000"})
+		private int rowCount;
+
+		private RefineClient client;
+		private ExpressionPreviewCommand command;
+
+		@Setup
+		public void setUp() throws IOException {
+			client = new RequestBuildingClient();
+			command = RefineCommands.expressionPreview()
+				.token("benchmark-token")
+				.project("1234567890")
+				.rowIndices(LongStream.range(0, rowCount).toArray())
+				.grel("value.toUppercase()")
+				.build();
+		}
+	}
+
+	@Benchmark
+	public Object applyOperationsForm(ApplyOperationsState state) throws IOException {
+		return state.command.execute(state.client);
+	}
+
+	@Benchmark
+	public Object expressionPreviewRowIndices(ExpressionPreviewState state) throws IOException {
+		return state.command.execute(state.client);
+	}
+}
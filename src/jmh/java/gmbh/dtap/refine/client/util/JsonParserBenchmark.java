@@ -0,0 +1,74 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gmbh.dtap.refine.client.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static gmbh.dtap.refine.client.util.JsonParser.JSON_PARSER;
+
+/**
+ * Benchmarks parsing an expression preview response into a tree and streaming it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class JsonParserBenchmark {
+
+	@Param({"100", "100000"})
+	private int resultCount;
+
+	private byte[] body;
+
+	@Setup
+	public void setUp() {
+		StringBuilder json = new StringBuilder("{\"code\":\"ok\",\"results\":[");
+		for (int i = 0; i < resultCount; i++) {
+			json.append(i > 0 ? "," : "").append("\"value-").append(i).append('"');
+		}
+		body = json.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	@Benchmark
+	public List<String> parseJsonToResults() throws IOException {
+		String json = new String(body, StandardCharsets.UTF_8);
+		return JSON_PARSER.toResults(JSON_PARSER.parseJson(json).path("results"));
+	}
+
+	@Benchmark
+	public List<String> parseObjectReadStrings() throws IOException {
+		List<String> results = new ArrayList<>();
+		JSON_PARSER.parseObject(new ByteArrayInputStream(body), (name, parser) -> JSON_PARSER.readStrings(parser, results));
+		return results;
+	}
+}
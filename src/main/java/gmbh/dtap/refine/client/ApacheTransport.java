@@ -0,0 +1,89 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gmbh.dtap.refine.client;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Sends blocking calls with the Apache {@link HttpClient}, asynchronous calls are delegated to another transport.
+ */
+public final class ApacheTransport implements RefineTransport {
+
+	private final HttpClient httpClient;
+	private final PoolingHttpClientConnectionManager connectionManager;
+	private final RefineTransport asyncTransport;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param httpClient        the client for blocking calls
+	 * @param connectionManager the connection manager of the client, or {@code null} if it is not pooling
+	 * @param asyncTransport    the transport for asynchronous calls
+	 */
+	ApacheTransport(HttpClient httpClient, PoolingHttpClientConnectionManager connectionManager, RefineTransport asyncTransport) {
+		this.httpClient = httpClient;
+		this.connectionManager = connectionManager;
+		this.asyncTransport = asyncTransport;
+	}
+
+	@Override
+	public <T> T execute(HttpUriRequest request, ResponseHandler<? extends T> responseHandler) throws IOException {
+		return httpClient.execute(request, responseHandler);
+	}
+
+	@Override
+	public HttpResponse open(HttpUriRequest request) throws IOException {
+		return httpClient.execute(request);
+	}
+
+	@Override
+	public <T> CompletableFuture<T> executeAsync(HttpUriRequest request, ResponseHandler<? extends T> responseHandler) {
+		return asyncTransport.executeAsync(request, responseHandler);
+	}
+
+	@Override
+	public ConnectionPoolStats getConnectionPoolStats() {
+		if (connectionManager == null) {
+			return null;
+		}
+		return new ConnectionPoolStats(connectionManager.getTotalStats());
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			if (httpClient instanceof Closeable) {
+				((Closeable) httpClient).close();
+			}
+		} finally {
+			asyncTransport.close();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "ApacheTransport{" + "connectionPoolStats=" + getConnectionPoolStats() + '}';
+	}
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gmbh.dtap.refine.client;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the executors of {@link RefineBulk}. This is the variant for Java 11 to 20, which uses a bounded pool of
+ * platform threads. The multi-release jar contains a variant for Java 21 and later in
+ * <code>META-INF/versions/21</code>, which uses virtual threads.
+ */
+final class BulkExecutors {
+
+	/**
+	 * Prevents instantiation.
+	 */
+	private BulkExecutors() {
+	}
+
+	/**
+	 * Returns whether the executors run each task on a virtual thread.
+	 *
+	 * @return {@code false} for this variant
+	 */
+	static boolean isVirtual() {
+		return false;
+	}
+
+	/**
+	 * Creates an executor that runs up to the given number of tasks at the same time.
+	 *
+	 * @param maxConcurrency the maximum number of concurrent tasks
+	 * @return the executor, which has to be shut down
+	 */
+	static ExecutorService newExecutor(int maxConcurrency) {
+		AtomicInteger count = new AtomicInteger();
+		return Executors.newFixedThreadPool(maxConcurrency, runnable -> {
+			Thread thread = new Thread(runnable, "refine-bulk-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+}
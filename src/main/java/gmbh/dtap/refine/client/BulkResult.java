@@ -0,0 +1,153 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gmbh.dtap.refine.client;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The aggregated results and failures of {@link RefineBulk#forEach(java.util.Collection, RefineBulk.Task)}.
+ *
+ * @param <T> the type of the items
+ * @param <R> the type of the results
+ */
+public class BulkResult<T, R> {
+
+	private final List<R> results;
+	private final List<Failure<T>> failures;
+	private final Duration duration;
+
+	BulkResult(List<R> results, List<Failure<T>> failures, Duration duration) {
+		this.results = Collections.unmodifiableList(results);
+		this.failures = Collections.unmodifiableList(failures);
+		this.duration = duration;
+	}
+
+	/**
+	 * Returns the results in the order of the items.
+	 *
+	 * @return the results, {@code null} for failed items
+	 */
+	public List<R> getResults() {
+		return results;
+	}
+
+	/**
+	 * Returns the failures in the order of the items.
+	 *
+	 * @return the failures, empty if all tasks succeeded
+	 */
+	public List<Failure<T>> getFailures() {
+		return failures;
+	}
+
+	/**
+	 * Returns whether all tasks succeeded.
+	 *
+	 * @return {@code true} if there are no failures
+	 */
+	public boolean isSuccessful() {
+		return failures.isEmpty();
+	}
+
+	/**
+	 * Returns the number of succeeded tasks.
+	 *
+	 * @return the number of succeeded tasks
+	 */
+	public int getSuccessCount() {
+		return results.size() - failures.size();
+	}
+
+	/**
+	 * Returns the number of failed tasks.
+	 *
+	 * @return the number of failed tasks
+	 */
+	public int getFailureCount() {
+		return failures.size();
+	}
+
+	/**
+	 * Returns the time it took to run all tasks.
+	 *
+	 * @return the duration
+	 */
+	public Duration getDuration() {
+		return duration;
+	}
+
+	@Override
+	public String toString() {
+		return "BulkResult{" +
+			"successCount=" + getSuccessCount() +
+			", failureCount=" + getFailureCount() +
+			", duration=" + duration +
+			'}';
+	}
+
+	/**
+	 * A failed task.
+	 *
+	 * @param <T> the type of the item
+	 */
+	public static class Failure<T> {
+
+		private final int index;
+		private final T item;
+		private final Throwable cause;
+
+		Failure(int index, T item, Throwable cause) {
+			this.index = index;
+			this.item = item;
+			this.cause = cause;
+		}
+
+		/**
+		 * Returns the index of the item in the collection.
+		 *
+		 * @return the index
+		 */
+		public int getIndex() {
+			return index;
+		}
+
+		/**
+		 * Returns the item.
+		 *
+		 * @return the item
+		 */
+		public T getItem() {
+			return item;
+		}
+
+		/**
+		 * Returns the exception thrown by the task.
+		 *
+		 * @return the cause
+		 */
+		public Throwable getCause() {
+			return cause;
+		}
+
+		@Override
+		public String toString() {
+			return "Failure{" + "index=" + index + ", item=" + item + ", cause=" + cause + '}';
+		}
+	}
+}
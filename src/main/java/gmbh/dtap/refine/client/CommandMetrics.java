@@ -0,0 +1,132 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gmbh.dtap.refine.client;
+
+import org.apache.http.client.methods.HttpUriRequest;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The live metrics of a single command, which are updated by the {@link RefineEvent} of each request.
+ */
+final class CommandMetrics {
+
+	private final String command;
+	private final LongAdder requests = new LongAdder();
+	private final LongAdder errors = new LongAdder();
+	private final LongAdder retries = new LongAdder();
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final LongAdder requestBytes = new LongAdder();
+	private final LongAdder responseBytes = new LongAdder();
+	private final LatencyHistogram latency = new LatencyHistogram();
+	private final LatencyHistogram parseTime = new LatencyHistogram();
+
+	CommandMetrics(String command) {
+		this.command = command;
+	}
+
+	String getCommand() {
+		return command;
+	}
+
+	int getInFlight() {
+		return inFlight.get();
+	}
+
+	/**
+	 * Starts a request.
+	 *
+	 * @param request   the request
+	 * @param listeners the listeners to notify
+	 * @param async     whether the request is executed asynchronously
+	 * @return the event to complete when the request is done
+	 */
+	RefineEvent start(HttpUriRequest request, RefineEventListener[] listeners, boolean async) {
+		requests.increment();
+		inFlight.incrementAndGet();
+		return new RefineEvent(this, request, listeners, async);
+	}
+
+	void recordRequestBytes(long bytes) {
+		requestBytes.add(bytes);
+	}
+
+	void recordResponseBytes(long bytes) {
+		responseBytes.add(bytes);
+	}
+
+	void recordParseTime(long nanos) {
+		parseTime.record(nanos);
+	}
+
+	void recordRetry() {
+		retries.increment();
+	}
+
+	void recordCompletion(long latencyNanos, boolean error) {
+		latency.record(latencyNanos);
+		inFlight.decrementAndGet();
+		if (error) {
+			errors.increment();
+		}
+	}
+
+	CommandMetricsSnapshot snapshot() {
+		long[] percentiles = latency.getPercentilesNanos(0.5, 0.99);
+		return new CommandMetricsSnapshot(command, requests.sum(), errors.sum(), retries.sum(), inFlight.get(),
+			requestBytes.sum(), responseBytes.sum(), latency.getCount(), latency.getTotalNanos(),
+			percentiles[0], percentiles[1], latency.getMaxNanos(), parseTime.getCount(), parseTime.getTotalNanos());
+	}
+
+	/**
+	 * Reads a single value, only the percentiles scan the histogram.
+	 *
+	 * @param statistic the value to read
+	 * @return the value
+	 */
+	long get(CommandStatistic statistic) {
+		switch (statistic) {
+			case REQUEST_COUNT:
+				return requests.sum();
+			case ERROR_COUNT:
+				return errors.sum();
+			case RETRY_COUNT:
+				return retries.sum();
+			case IN_FLIGHT:
+				return inFlight.get();
+			case REQUEST_BYTES:
+				return requestBytes.sum();
+			case RESPONSE_BYTES:
+				return responseBytes.sum();
+			case LATENCY_COUNT:
+				return latency.getCount();
+			case LATENCY_TOTAL_NANOS:
+				return latency.getTotalNanos();
+			case LATENCY_P50_NANOS:
+				return latency.getPercentileNanos(0.5);
+			case LATENCY_P99_NANOS:
+				return latency.getPercentileNanos(0.99);
+			case LATENCY_MAX_NANOS:
+				return latency.getMaxNanos();
+			case PARSE_COUNT:
+				return parseTime.getCount();
+			default:
+				return parseTime.getTotalNanos();
+		}
+	}
+}
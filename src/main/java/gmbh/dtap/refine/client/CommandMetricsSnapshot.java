@@ -0,0 +1,206 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gmbh.dtap.refine.client;
+
+import java.time.Duration;
+
+/**
+ * A snapshot of the metrics of a command since the client was created. Latencies are measured from sending the
+ * request until the response is parsed, the parse time is the time spent in the response handler, which includes
+ * reading the response body. The latency percentiles and the maximum cover the last minute, all other values
+ * are counted since the client was created.
+ */
+public class CommandMetricsSnapshot {
+
+	private final String command;
+	private final long requestCount;
+	private final long errorCount;
+	private final long retryCount;
+	private final int inFlight;
+	private final long requestBytes;
+	private final long responseBytes;
+	private final long latencyCount;
+	private final long latencyTotalNanos;
+	private final long latencyP50Nanos;
+	private final long latencyP99Nanos;
+	private final long latencyMaxNanos;
+	private final long parseCount;
+	private final long parseTotalNanos;
+
+	CommandMetricsSnapshot(String command, long requestCount, long errorCount, long retryCount, int inFlight,
+						   long requestBytes, long responseBytes, long latencyCount, long latencyTotalNanos,
+						   long latencyP50Nanos, long latencyP99Nanos, long latencyMaxNanos, long parseCount,
+						   long parseTotalNanos) {
+		this.command = command;
+		this.requestCount = requestCount;
+		this.errorCount = errorCount;
+		this.retryCount = retryCount;
+		this.inFlight = inFlight;
+		this.requestBytes = requestBytes;
+		this.responseBytes = responseBytes;
+		this.latencyCount = latencyCount;
+		this.latencyTotalNanos = latencyTotalNanos;
+		this.latencyP50Nanos = latencyP50Nanos;
+		this.latencyP99Nanos = latencyP99Nanos;
+		this.latencyMaxNanos = latencyMaxNanos;
+		this.parseCount = parseCount;
+		this.parseTotalNanos = parseTotalNanos;
+	}
+
+	/**
+	 * Returns the command name, which is the last segment of the request path.
+	 *
+	 * @return the command name, e.g. <code>apply-operations</code>
+	 */
+	public String getCommand() {
+		return command;
+	}
+
+	/**
+	 * Returns the number of started requests.
+	 *
+	 * @return the number of requests
+	 */
+	public long getRequestCount() {
+		return requestCount;
+	}
+
+	/**
+	 * Returns the number of requests that failed or that OpenRefine answered with an error.
+	 *
+	 * @return the number of errors
+	 */
+	public long getErrorCount() {
+		return errorCount;
+	}
+
+	/**
+	 * Returns the number of failed requests that were repeated, each repetition is also counted as request.
+	 *
+	 * @return the number of retries
+	 */
+	public long getRetryCount() {
+		return retryCount;
+	}
+
+	/**
+	 * Returns the number of requests that are not completed yet.
+	 *
+	 * @return the number of requests in flight
+	 */
+	public int getInFlight() {
+		return inFlight;
+	}
+
+	/**
+	 * Returns the number of bytes of the request entities.
+	 *
+	 * @return the number of bytes sent
+	 */
+	public long getRequestBytes() {
+		return requestBytes;
+	}
+
+	/**
+	 * Returns the number of bytes of the response entities that were read.
+	 *
+	 * @return the number of bytes received
+	 */
+	public long getResponseBytes() {
+		return responseBytes;
+	}
+
+	/**
+	 * Returns the number of completed requests.
+	 *
+	 * @return the number of latency samples
+	 */
+	public long getLatencyCount() {
+		return latencyCount;
+	}
+
+	/**
+	 * Returns the sum of the latencies of all completed requests.
+	 *
+	 * @return the total latency
+	 */
+	public Duration getLatencyTotal() {
+		return Duration.ofNanos(latencyTotalNanos);
+	}
+
+	/**
+	 * Returns the median latency within the last minute.
+	 *
+	 * @return the 50th percentile of the latency
+	 */
+	public Duration getLatencyP50() {
+		return Duration.ofNanos(latencyP50Nanos);
+	}
+
+	/**
+	 * Returns the 99th percentile of the latency within the last minute.
+	 *
+	 * @return the 99th percentile of the latency
+	 */
+	public Duration getLatencyP99() {
+		return Duration.ofNanos(latencyP99Nanos);
+	}
+
+	/**
+	 * Returns the maximum latency within the last minute.
+	 *
+	 * @return the maximum latency
+	 */
+	public Duration getLatencyMax() {
+		return Duration.ofNanos(latencyMaxNanos);
+	}
+
+	/**
+	 * Returns the number of parsed responses.
+	 *
+	 * @return the number of parse time samples
+	 */
+	public long getParseCount() {
+		return parseCount;
+	}
+
+	/**
+	 * Returns the sum of the time spent in response handlers.
+	 *
+	 * @return the total parse time
+	 */
+	public Duration getParseTimeTotal() {
+		return Duration.ofNanos(parseTotalNanos);
+	}
+
+	@Override
+	public String toString() {
+		return "CommandMetricsSnapshot{" +
+			"command='" + command + '\'' +
+			", requestCount=" + requestCount +
+			", errorCount=" + errorCount +
+			", retryCount=" + retryCount +
+			", inFlight=" + inFlight +
+			", requestBytes=" + requestBytes +
+			", responseBytes=" + responseBytes +
+			", latencyP50=" + getLatencyP50() +
+			", latencyP99=" + getLatencyP99() +
+			", latencyMax=" + getLatencyMax() +
+			", parseTimeTotal=" + getParseTimeTotal() +
+			'}';
+	}
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gmbh.dtap.refine.client;
+
+/**
+ * A single value of the metrics of a command, which can be read with {@link RefineMetrics#get(String, CommandStatistic)}
+ * without taking a complete {@link CommandMetricsSnapshot}.
+ */
+public enum CommandStatistic {
+
+	/**
+	 * The number of started requests.
+	 */
+	REQUEST_COUNT,
+
+	/**
+	 * The number of failed requests, including error responses of OpenRefine.
+	 */
+	ERROR_COUNT,
+
+	/**
+	 * The number of repeated requests.
+	 */
+	RETRY_COUNT,
+
+	/**
+	 * The number of requests that are not completed yet.
+	 */
+	IN_FLIGHT,
+
+	/**
+	 * The number of bytes sent in request entities.
+	 */
+	REQUEST_BYTES,
+
+	/**
+	 * The number of bytes received in response entities.
+	 */
+	RESPONSE_BYTES,
+
+	/**
+	 * The number of completed requests.
+	 */
+	LATENCY_COUNT,
+
+	/**
+	 * The sum of the latencies of all completed requests in nanoseconds.
+	 */
+	LATENCY_TOTAL_NANOS,
+
+	/**
+	 * The median latency within the last minute in nanoseconds.
+	 */
+	LATENCY_P50_NANOS,
+
+	/**
+	 * The 99th percentile of the latency within the last minute in nanoseconds.
+	 */
+	LATENCY_P99_NANOS,
+
+	/**
+	 * The maximum latency within the last minute in nanoseconds.
+	 */
+	LATENCY_MAX_NANOS,
+
+	/**
+	 * The number of parsed responses.
+	 */
+	PARSE_COUNT,
+
+	/**
+	 * The sum of the time spent in response handlers in nanoseconds.
+	 */
+	PARSE_TOTAL_NANOS
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gmbh.dtap.refine.client;
+
+/**
+ * This enum is used to specify how the upload file is compressed while creating a {@link RefineProject}.
+ * OpenRefine detects the compression by the file extension and decompresses the file before importing it.
+ */
+public enum Compression {
+
+	/**
+	 * uncompressed
+	 */
+	NONE(null, ""),
+
+	/**
+	 * gzip compressed
+	 */
+	GZIP("application/x-gzip", ".gz");
+
+	private final String mimeType;
+	private final String extension;
+
+	Compression(String mimeType, String extension) {
+		this.mimeType = mimeType;
+		this.extension = extension;
+	}
+
+	/**
+	 * Returns the MIME type of the compressed file.
+	 *
+	 * @return the MIME type, or {@code null} if the file is not compressed
+	 */
+	public String getMimeType() {
+		return mimeType;
+	}
+
+	/**
+	 * Returns the extension OpenRefine recognizes the compression by.
+	 *
+	 * @return the file extension including the dot, empty if the file is not compressed
+	 */
+	public String getExtension() {
+		return extension;
+	}
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package gmbh.dtap.refine.client;
+
+/**
+ * This exception is thrown when a {@link ConcurrencyLimiter} rejects a request, because the node already runs
+ * as many requests as it currently allows and the queue is full, or the request waited too long in the queue.
+ * The request was not sent.
+ */
+public class ConcurrencyLimitExceededException extends RefineException {
+
+	private static final long serialVersionUID = 8127753360982047725L;
+
+	public ConcurrencyLimitExceededException(String message) {
+		super(message);
+	}
+}
@@ -0,0 +1,444 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package gmbh.dtap.refine.client;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * Limits the number of requests a {@link RefineClient} sends to its OpenRefine node at the same time, and adapts
+ * the limit to the latency and errors of the node.
+ * <p>
+ * The limit follows an additive increase, multiplicative decrease (AIMD) scheme: it grows by one with every
+ * successful request while at least half of it is used, and shrinks by the backoff ratio when a request fails
+ * with 5xx, 429 or a connection failure, or when the latency exceeds the baseline latency of its command by the
+ * tolerance. Each command has its own baseline, so that slow commands like exports do not count as overload
+ * next to fast ones. The baseline follows the lowest observed latencies and slowly drifts upwards, so that it
+ * recovers after the workload changed. The latency ends when the response is read, the time spent parsing it
+ * is not part of it.
+ * <p>
+ * Requests beyond the limit wait in a queue of {@link Builder#maxQueued(int)} requests for at most
+ * {@link Builder#maxWait(Duration)}, otherwise they are rejected with a {@link ConcurrencyLimitExceededException}.
+ * A limiter belongs to a single node and must not be shared between clients.
+ */
+public class ConcurrencyLimiter {
+
+	/**
+	 * The weight of a new sample in the baseline latency, if it is above the baseline.
+	 */
+	private static final double BASELINE_DRIFT = 0.01;
+
+	private final int minLimit;
+	private final int maxLimit;
+	private final double backoffRatio;
+	private final double latencyTolerance;
+	private final int maxQueued;
+	private final long maxWaitNanos;
+
+	private final Deque<CompletableFuture<Void>> waiters = new ArrayDeque<>();
+	private final LongAdder rejected = new LongAdder();
+	private final Map<String, Baseline> baselines = new HashMap<>();
+	private double limit;
+	private int inFlight;
+
+	private ConcurrencyLimiter(Builder builder) {
+		this.minLimit = builder.minLimit;
+		this.maxLimit = builder.maxLimit;
+		this.backoffRatio = builder.backoffRatio;
+		this.latencyTolerance = builder.latencyTolerance;
+		this.maxQueued = builder.maxQueued;
+		this.maxWaitNanos = builder.maxWait.toNanos();
+		this.limit = builder.initialLimit;
+	}
+
+	/**
+	 * Returns a new builder.
+	 *
+	 * @return the builder
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * Returns the number of requests the node is currently allowed to run at the same time.
+	 *
+	 * @return the current limit
+	 */
+	public synchronized int getLimit() {
+		return (int) limit;
+	}
+
+	/**
+	 * Returns the number of requests that are running.
+	 *
+	 * @return the number of requests in flight
+	 */
+	public synchronized int getInFlight() {
+		return inFlight;
+	}
+
+	/**
+	 * Returns the number of requests waiting for the limit.
+	 *
+	 * @return the number of queued requests
+	 */
+	public synchronized int getQueued() {
+		return waiters.size();
+	}
+
+	/**
+	 * Returns the number of requests rejected since the limiter was created.
+	 *
+	 * @return the number of rejected requests
+	 */
+	public long getRejectedCount() {
+		return rejected.sum();
+	}
+
+	/**
+	 * Returns the baseline latency the latency of requests of a command is compared with.
+	 *
+	 * @param command the command name, e.g. <code>get-version</code>
+	 * @return the baseline latency, zero before the first sample
+	 */
+	public synchronized Duration getBaselineLatency(String command) {
+		Baseline baseline = baselines.get(command);
+		return Duration.ofNanos(baseline != null ? (long) baseline.nanos : 0);
+	}
+
+	/**
+	 * Waits until a request may be sent.
+	 *
+	 * @throws ConcurrencyLimitExceededException in case the queue is full or the wait timed out
+	 * @throws InterruptedIOException            in case the thread is interrupted while waiting
+	 */
+	void acquire() throws IOException {
+		CompletableFuture<Void> waiter = enqueue();
+		if (waiter == null) {
+			return;
+		}
+		try {
+			waiter.get(maxWaitNanos, TimeUnit.NANOSECONDS);
+		} catch (TimeoutException e) {
+			ConcurrencyLimitExceededException timeout = timeout();
+			if (!waiter.completeExceptionally(timeout)) {
+				// granted while timing out
+				return;
+			}
+			dequeue(waiter);
+			throw timeout;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			if (!waiter.cancel(false)) {
+				release();
+			}
+			dequeue(waiter);
+			throw new InterruptedIOException("Interrupted while waiting for the concurrency limit");
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	/**
+	 * Returns a future that completes when a request may be sent, or fails with a
+	 * {@link ConcurrencyLimitExceededException}. The calling thread does not wait.
+	 *
+	 * @return the future
+	 */
+	CompletableFuture<Void> acquireAsync() {
+		CompletableFuture<Void> waiter;
+		try {
+			waiter = enqueue();
+		} catch (ConcurrencyLimitExceededException e) {
+			CompletableFuture<Void> rejection = new CompletableFuture<>();
+			rejection.completeExceptionally(e);
+			return rejection;
+		}
+		if (waiter == null) {
+			return CompletableFuture.completedFuture(null);
+		}
+		CompletableFuture.delayedExecutor(maxWaitNanos, TimeUnit.NANOSECONDS).execute(() -> {
+			if (!waiter.isDone() && waiter.completeExceptionally(timeout())) {
+				dequeue(waiter);
+			}
+		});
+		return waiter;
+	}
+
+	/**
+	 * Takes a permit or, if there is none, puts the caller into the queue.
+	 *
+	 * @return the waiter to be completed with a permit, or {@code null} if the permit was taken
+	 */
+	private synchronized CompletableFuture<Void> enqueue() throws ConcurrencyLimitExceededException {
+		if (inFlight < (int) limit && waiters.isEmpty()) {
+			inFlight++;
+			return null;
+		}
+		if (waiters.size() >= maxQueued) {
+			rejected.increment();
+			throw new ConcurrencyLimitExceededException("Concurrency limit of " + (int) limit + " reached with "
+				+ waiters.size() + " requests queued");
+		}
+		CompletableFuture<Void> waiter = new CompletableFuture<>();
+		waiters.addLast(waiter);
+		return waiter;
+	}
+
+	private synchronized void dequeue(CompletableFuture<Void> waiter) {
+		waiters.remove(waiter);
+	}
+
+	private ConcurrencyLimitExceededException timeout() {
+		rejected.increment();
+		return new ConcurrencyLimitExceededException("Waited " + TimeUnit.NANOSECONDS.toMillis(maxWaitNanos)
+			+ " ms for the concurrency limit");
+	}
+
+	/**
+	 * Returns the permit of a request without a sample, e.g. when it failed before it was sent.
+	 */
+	void release() {
+		grant(releasePermit(null, 0, false, false));
+	}
+
+	/**
+	 * Returns the permit of a completed request and adapts the limit.
+	 *
+	 * @param event   the event of the request
+	 * @param failure the failure of the request, or {@code null}
+	 */
+	void release(RefineEvent event, Throwable failure) {
+		boolean sampled;
+		boolean dropped;
+		if (failure == null) {
+			sampled = true;
+			dropped = isOverloaded(event.getStatusCode());
+		} else if (failure instanceof IOException) {
+			sampled = true;
+			dropped = RetryPolicy.isTransient((IOException) failure, event);
+		} else {
+			sampled = false;
+			dropped = false;
+		}
+		grant(releasePermit(event.getCommand(), event.getLatencyNanos(), sampled, dropped));
+	}
+
+	/**
+	 * Returns the permit of a completed request and adapts the limit.
+	 *
+	 * @param command      the command of the request
+	 * @param latencyNanos the latency of the request without parsing the response
+	 * @param dropped      whether the node failed the request because it is overloaded
+	 */
+	void release(String command, long latencyNanos, boolean dropped) {
+		grant(releasePermit(command, latencyNanos, true, dropped));
+	}
+
+	private synchronized Deque<CompletableFuture<Void>> releasePermit(String command, long latencyNanos,
+																	  boolean sampled, boolean dropped) {
+		if (sampled) {
+			sample(command, latencyNanos, dropped);
+		}
+		inFlight--;
+		Deque<CompletableFuture<Void>> granted = null;
+		while (inFlight < (int) limit && !waiters.isEmpty()) {
+			if (granted == null) {
+				granted = new ArrayDeque<>();
+			}
+			granted.add(waiters.pollFirst());
+			inFlight++;
+		}
+		return granted;
+	}
+
+	/**
+	 * Completes the waiters outside of the lock, a waiter that timed out meanwhile returns its permit.
+	 */
+	private void grant(Deque<CompletableFuture<Void>> granted) {
+		if (granted != null) {
+			for (CompletableFuture<Void> waiter : granted) {
+				if (!waiter.complete(null)) {
+					release();
+				}
+			}
+		}
+	}
+
+	private void sample(String command, long latencyNanos, boolean dropped) {
+		boolean slow = false;
+		if (latencyNanos > 0) {
+			Baseline baseline = baselines.computeIfAbsent(command, c -> new Baseline());
+			if (baseline.nanos == 0 || latencyNanos < baseline.nanos) {
+				baseline.nanos = latencyNanos;
+			} else {
+				slow = latencyNanos > baseline.nanos * latencyTolerance;
+				baseline.nanos += (latencyNanos - baseline.nanos) * BASELINE_DRIFT;
+			}
+		}
+		if (dropped || slow) {
+			limit = Math.max(minLimit, limit * backoffRatio);
+		} else if (inFlight * 2 >= limit) {
+			limit = Math.min(maxLimit, limit + 1);
+		}
+	}
+
+	private static boolean isOverloaded(int statusCode) {
+		return statusCode >= 500 || statusCode == 429;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "ConcurrencyLimiter{" +
+			"limit=" + (int) limit +
+			", inFlight=" + inFlight +
+			", queued=" + waiters.size() +
+			", commands=" + baselines.size() +
+			'}';
+	}
+
+	/**
+	 * The baseline latency of a command.
+	 */
+	private static class Baseline {
+
+		private double nanos;
+	}
+
+	/**
+	 * The builder for {@link ConcurrencyLimiter}.
+	 */
+	public static class Builder {
+
+		private int initialLimit = 20;
+		private int minLimit = 1;
+		private int maxLimit = 200;
+		private double backoffRatio = 0.9;
+		private double latencyTolerance = 2;
+		private int maxQueued = 1000;
+		private Duration maxWait = Duration.ofSeconds(30);
+
+		/**
+		 * Sets the limit to start with.
+		 *
+		 * @param initialLimit the initial limit, defaults to 20
+		 * @return the builder for fluent usage
+		 */
+		public Builder initialLimit(int initialLimit) {
+			this.initialLimit = initialLimit;
+			return this;
+		}
+
+		/**
+		 * Sets the lowest limit.
+		 *
+		 * @param minLimit the minimum limit, defaults to 1
+		 * @return the builder for fluent usage
+		 */
+		public Builder minLimit(int minLimit) {
+			this.minLimit = minLimit;
+			return this;
+		}
+
+		/**
+		 * Sets the highest limit, it should not exceed the connections per route.
+		 *
+		 * @param maxLimit the maximum limit, defaults to 200
+		 * @return the builder for fluent usage
+		 */
+		public Builder maxLimit(int maxLimit) {
+			this.maxLimit = maxLimit;
+			return this;
+		}
+
+		/**
+		 * Sets the factor the limit is multiplied with when the node is overloaded.
+		 *
+		 * @param backoffRatio the ratio between <code>0.5</code> and <code>1.0</code>, defaults to <code>0.9</code>
+		 * @return the builder for fluent usage
+		 */
+		public Builder backoffRatio(double backoffRatio) {
+			this.backoffRatio = backoffRatio;
+			return this;
+		}
+
+		/**
+		 * Sets the factor by which the latency may exceed the baseline latency before the limit shrinks.
+		 *
+		 * @param latencyTolerance the tolerance, defaults to <code>2.0</code>
+		 * @return the builder for fluent usage
+		 */
+		public Builder latencyTolerance(double latencyTolerance) {
+			this.latencyTolerance = latencyTolerance;
+			return this;
+		}
+
+		/**
+		 * Sets the number of requests that may wait for the limit, further requests are rejected.
+		 *
+		 * @param maxQueued the queue length, <code>0</code> rejects immediately, defaults to 1000
+		 * @return the builder for fluent usage
+		 */
+		public Builder maxQueued(int maxQueued) {
+			this.maxQueued = maxQueued;
+			return this;
+		}
+
+		/**
+		 * Sets the time a request waits in the queue before it is rejected.
+		 *
+		 * @param maxWait the maximum wait, defaults to 30 seconds
+		 * @return the builder for fluent usage
+		 */
+		public Builder maxWait(Duration maxWait) {
+			this.maxWait = maxWait;
+			return this;
+		}
+
+		/**
+		 * Builds the limiter after validation.
+		 *
+		 * @return the limiter
+		 */
+		public ConcurrencyLimiter build() {
+			isTrue(minLimit > 0, "minLimit must be positive");
+			isTrue(maxLimit >= minLimit, "maxLimit must not be less than minLimit");
+			isTrue(initialLimit >= minLimit && initialLimit <= maxLimit, "initialLimit must be between minLimit and maxLimit");
+			isTrue(backoffRatio >= 0.5 && backoffRatio < 1, "backoffRatio must be between 0.5 and 1");
+			isTrue(latencyTolerance > 1, "latencyTolerance must be greater than 1");
+			isTrue(maxQueued >= 0, "maxQueued must not be negative");
+			notNull(maxWait, "maxWait");
+			isTrue(!maxWait.isNegative(), "maxWait must not be negative");
+			return new ConcurrencyLimiter(this);
+		}
+	}
+}
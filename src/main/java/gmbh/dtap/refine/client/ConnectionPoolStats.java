@@ -0,0 +1,88 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gmbh.dtap.refine.client;
+
+import org.apache.http.pool.PoolStats;
+
+/**
+ * A snapshot of the connection pool of a {@link RefineClient}.
+ */
+public class ConnectionPoolStats {
+
+	private final int leased;
+	private final int pending;
+	private final int available;
+	private final int max;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param poolStats the statistics from the connection manager
+	 */
+	ConnectionPoolStats(PoolStats poolStats) {
+		this.leased = poolStats.getLeased();
+		this.pending = poolStats.getPending();
+		this.available = poolStats.getAvailable();
+		this.max = poolStats.getMax();
+	}
+
+	/**
+	 * Returns the number of connections currently in use.
+	 *
+	 * @return the number of leased connections
+	 */
+	public int getLeased() {
+		return leased;
+	}
+
+	/**
+	 * Returns the number of requests waiting for a connection.
+	 *
+	 * @return the number of pending connection requests
+	 */
+	public int getPending() {
+		return pending;
+	}
+
+	/**
+	 * Returns the number of idle connections ready to be leased.
+	 *
+	 * @return the number of available connections
+	 */
+	public int getAvailable() {
+		return available;
+	}
+
+	/**
+	 * Returns the maximum number of connections.
+	 *
+	 * @return the maximum number of connections
+	 */
+	public int getMax() {
+		return max;
+	}
+
+	@Override
+	public String toString() {
+		return "ConnectionPoolStats{" +
+			"leased=" + leased +
+			", pending=" + pending +
+			", available=" + available +
+			", max=" + max +
+			'}';
+	}
+}
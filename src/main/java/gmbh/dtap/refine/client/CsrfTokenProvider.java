@@ -0,0 +1,242 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gmbh.dtap.refine.client;
+
+import gmbh.dtap.refine.client.command.GetCsrfTokenResponse;
+import gmbh.dtap.refine.client.command.RefineCommands;
+
+import java.io.IOException;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+/**
+ * Provides the csrf token of a {@link RefineClient}. The token is fetched once and cached
+ * until the server rejects it, so that commands do not need a separate round trip for the token.
+ */
+public class CsrfTokenProvider {
+
+	/**
+	 * The message OpenRefine responds with when the token is missing, invalid or expired.
+	 */
+	static final String INVALID_TOKEN_MESSAGE = "Missing or invalid csrf_token parameter";
+
+	private final RefineClient client;
+	private volatile String token;
+	private CompletableFuture<String> pendingToken;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param client the client to fetch the token with
+	 */
+	CsrfTokenProvider(RefineClient client) {
+		this.client = client;
+	}
+
+	/**
+	 * Returns the cached token or fetches a new one.
+	 *
+	 * @return the csrf token
+	 * @throws IOException     in case of a connection problem
+	 * @throws RefineException in case the server responses with an error or is not understood
+	 */
+	public String getToken() throws IOException {
+		String current = token;
+		if (current != null) {
+			return current;
+		}
+		synchronized (this) {
+			if (token == null) {
+				token = RefineCommands.getCsrfToken().build().execute(client).getToken();
+			}
+			return token;
+		}
+	}
+
+	/**
+	 * Returns the cached token or fetches a new one without blocking. Concurrent callers share a single fetch.
+	 *
+	 * @return the future csrf token
+	 */
+	public CompletableFuture<String> getTokenAsync() {
+		String current = token;
+		if (current != null) {
+			return CompletableFuture.completedFuture(current);
+		}
+		synchronized (this) {
+			if (token != null) {
+				return CompletableFuture.completedFuture(token);
+			}
+			if (pendingToken == null) {
+				CompletableFuture<String> fetch = RefineCommands.getCsrfToken().build().executeAsync(client)
+					.thenApply(GetCsrfTokenResponse::getToken);
+				pendingToken = fetch;
+				// registered after the assignment, the fetch may already be complete and run this immediately
+				fetch.whenComplete((fetched, failure) -> {
+					synchronized (this) {
+						if (fetched != null) {
+							token = fetched;
+						}
+						if (pendingToken == fetch) {
+							pendingToken = null;
+						}
+					}
+				});
+				return fetch;
+			}
+			return pendingToken;
+		}
+	}
+
+	/**
+	 * Discards the cached token if it is the rejected one, so that the next call fetches a new token.
+	 * A token that has already been replaced by another thread is kept.
+	 *
+	 * @param rejectedToken the token the server rejected
+	 */
+	public synchronized void invalidate(String rejectedToken) {
+		if (Objects.equals(token, rejectedToken)) {
+			token = null;
+		}
+	}
+
+	/**
+	 * Executes the call with the cached token and repeats it once with a new token if the server rejects the token.
+	 *
+	 * @param call the call to execute
+	 * @param <T>  the result type of the call
+	 * @return the result of the call
+	 * @throws IOException     in case of a connection problem
+	 * @throws RefineException in case the server responses with an error or is not understood
+	 */
+	public <T> T execute(TokenCall<T> call) throws IOException {
+		String usedToken = getToken();
+		try {
+			T result = call.execute(usedToken);
+			if (!isRejected(result)) {
+				return result;
+			}
+		} catch (InvalidCsrfTokenException e) {
+			// refresh and repeat below
+		}
+		invalidate(usedToken);
+		return call.execute(getToken());
+	}
+
+	/**
+	 * Executes the call asynchronously with the cached token and repeats it once with a new token
+	 * if the server rejects the token.
+	 *
+	 * @param call the call to execute
+	 * @param <T>  the result type of the call
+	 * @return the future result of the call
+	 */
+	public <T> CompletableFuture<T> executeAsync(Function<String, CompletableFuture<T>> call) {
+		return getTokenAsync().thenCompose(usedToken -> call.apply(usedToken)
+			.handle((result, failure) -> {
+				Throwable cause = failure instanceof CompletionException ? failure.getCause() : failure;
+				if (cause instanceof InvalidCsrfTokenException || (cause == null && isRejected(result))) {
+					invalidate(usedToken);
+					return getTokenAsync().thenCompose(call);
+				}
+				return cause == null ? CompletableFuture.completedFuture(result) : CompletableFuture.<T>failedFuture(cause);
+			})
+			.thenCompose(Function.identity()));
+	}
+
+	/**
+	 * Executes a call that must not be repeated, e.g. an upload from a source that can be read only once.
+	 * The call gets a freshly fetched token, so that a cached token that has expired meanwhile is not used.
+	 * If the server rejects the token anyway, the token is discarded and the call fails instead of being repeated.
+	 *
+	 * @param call the call to execute
+	 * @param <T>  the result type of the call
+	 * @return the result of the call
+	 * @throws IOException     in case of a connection problem
+	 * @throws RefineException in case the server responses with an error or is not understood
+	 */
+	public <T> T executeOnce(TokenCall<T> call) throws IOException {
+		invalidate(token);
+		String usedToken = getToken();
+		try {
+			T result = call.execute(usedToken);
+			if (isRejected(result)) {
+				invalidate(usedToken);
+			}
+			return result;
+		} catch (InvalidCsrfTokenException e) {
+			invalidate(usedToken);
+			throw e;
+		}
+	}
+
+	/**
+	 * Executes a call that must not be repeated asynchronously, see {@link #executeOnce(TokenCall)}.
+	 *
+	 * @param call the call to execute
+	 * @param <T>  the result type of the call
+	 * @return the future result of the call
+	 */
+	public <T> CompletableFuture<T> executeOnceAsync(Function<String, CompletableFuture<T>> call) {
+		invalidate(token);
+		return getTokenAsync().thenCompose(usedToken -> call.apply(usedToken)
+			.whenComplete((result, failure) -> {
+				Throwable cause = failure instanceof CompletionException ? failure.getCause() : failure;
+				if (cause instanceof InvalidCsrfTokenException || (cause == null && isRejected(result))) {
+					invalidate(usedToken);
+				}
+			}));
+	}
+
+	/**
+	 * Returns whether the message is the response of the server to a missing, invalid or expired token.
+	 *
+	 * @param message the error message from a response document
+	 * @return {@code true} if the token was rejected
+	 */
+	public static boolean isInvalidTokenMessage(String message) {
+		return INVALID_TOKEN_MESSAGE.equals(message);
+	}
+
+	private static boolean isRejected(Object result) {
+		if (result instanceof RefineResponse) {
+			RefineResponse response = (RefineResponse) result;
+			return response.getCode() == ResponseCode.ERROR && isInvalidTokenMessage(response.getMessage());
+		}
+		return false;
+	}
+
+	/**
+	 * A call that requires a csrf token.
+	 *
+	 * @param <T> the result type of the call
+	 */
+	@FunctionalInterface
+	public interface TokenCall<T> {
+
+		/**
+		 * Executes the call.
+		 *
+		 * @param token the csrf token
+		 * @return the result of the call
+		 * @throws IOException in case the call fails
+		 */
+		T execute(String token) throws IOException;
+	}
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gmbh.dtap.refine.client;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * The <code>handleResponse</code> method of a command in a Java Flight Recorder recording.
+ */
+@Name("gmbh.dtap.refine.ResponseHandler")
+@Label("OpenRefine Response Handler")
+@Category({ "OpenRefine", "Client" })
+@Description("Reading and parsing the response of an OpenRefine command")
+@StackTrace(false)
+final class FlightRecorderHandlerEvent extends jdk.jfr.Event {
+
+	@Label("Command")
+	String command;
+
+	@Label("Status Code")
+	int statusCode;
+
+	@Label("Response Bytes")
+	@DataAmount
+	long responseBytes;
+
+	@Label("Body Read")
+	@Timespan
+	long bodyRead;
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gmbh.dtap.refine.client;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * A request of a {@link RefineClient} in a Java Flight Recorder recording, from sending the request until the
+ * response is parsed. Phases that were not reported are recorded as <code>-1</code>.
+ */
+@Name("gmbh.dtap.refine.Request")
+@Label("OpenRefine Request")
+@Category({ "OpenRefine", "Client" })
+@Description("A request to OpenRefine including the parsing of the response")
+@StackTrace(false)
+final class FlightRecorderRequestEvent extends jdk.jfr.Event {
+
+	@Label("Command")
+	String command;
+
+	@Label("Project ID")
+	String projectId;
+
+	@Label("Asynchronous")
+	boolean async;
+
+	@Label("Status Code")
+	int statusCode;
+
+	@Label("Request Bytes")
+	@DataAmount
+	long requestBytes;
+
+	@Label("Response Bytes")
+	@DataAmount
+	long responseBytes;
+
+	@Label("Lease")
+	@Timespan
+	long lease;
+
+	@Label("Connect")
+	@Timespan
+	long connect;
+
+	@Label("Request Write")
+	@Timespan
+	long requestWrite;
+
+	@Label("Time to First Byte")
+	@Timespan
+	long timeToFirstByte;
+
+	@Label("Body Read")
+	@Timespan
+	long bodyRead;
+
+	@Label("Parse")
+	@Timespan
+	long parse;
+
+	@Label("Failure")
+	String failure;
+}
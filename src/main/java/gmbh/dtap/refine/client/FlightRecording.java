@@ -0,0 +1,120 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gmbh.dtap.refine.client;
+
+import jdk.jfr.EventType;
+
+/**
+ * Emits the Java Flight Recorder events of a {@link RefineEvent}. An event object is only created while a recording
+ * has the event type enabled, otherwise the cost is a single check. Thresholds are applied by the recording
+ * settings, e.g. <code>gmbh.dtap.refine.Request#threshold=20 ms</code>.
+ */
+final class FlightRecording {
+
+	private static final EventType REQUEST = eventType(FlightRecorderRequestEvent.class);
+	private static final EventType HANDLER = eventType(FlightRecorderHandlerEvent.class);
+
+	/**
+	 * Prevents instantiation.
+	 */
+	private FlightRecording() {
+	}
+
+	/**
+	 * Registers the event type, the flight recorder may be missing from a minimal runtime.
+	 */
+	private static EventType eventType(Class<? extends jdk.jfr.Event> eventClass) {
+		try {
+			return EventType.getEventType(eventClass);
+		} catch (LinkageError | RuntimeException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Begins a request event.
+	 *
+	 * @return the event, or {@code null} if the event type is not enabled
+	 */
+	static FlightRecorderRequestEvent beginRequest() {
+		if (REQUEST == null || !REQUEST.isEnabled()) {
+			return null;
+		}
+		FlightRecorderRequestEvent event = new FlightRecorderRequestEvent();
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * Commits the request event, if its duration exceeds the threshold.
+	 *
+	 * @param event   the event begun by {@link #beginRequest()}
+	 * @param request the completed request
+	 * @param failure the failure or {@code null}
+	 */
+	static void commitRequest(FlightRecorderRequestEvent event, RefineEvent request, Throwable failure) {
+		event.end();
+		if (event.shouldCommit()) {
+			event.command = request.getCommand();
+			event.projectId = request.getProjectId();
+			event.async = request.isAsync();
+			event.statusCode = request.getStatusCode();
+			event.requestBytes = request.getRequestBytes();
+			event.responseBytes = request.getResponseBytes();
+			event.lease = request.getPhaseNanos(RefinePhase.LEASE);
+			event.connect = request.getPhaseNanos(RefinePhase.CONNECT);
+			event.requestWrite = request.getPhaseNanos(RefinePhase.REQUEST_WRITE);
+			event.timeToFirstByte = request.getPhaseNanos(RefinePhase.TIME_TO_FIRST_BYTE);
+			event.bodyRead = request.getPhaseNanos(RefinePhase.BODY_READ);
+			event.parse = request.getPhaseNanos(RefinePhase.PARSE);
+			event.failure = failure != null ? failure.toString() : null;
+			event.commit();
+		}
+	}
+
+	/**
+	 * Begins a response handler event.
+	 *
+	 * @return the event, or {@code null} if the event type is not enabled
+	 */
+	static FlightRecorderHandlerEvent beginHandler() {
+		if (HANDLER == null || !HANDLER.isEnabled()) {
+			return null;
+		}
+		FlightRecorderHandlerEvent event = new FlightRecorderHandlerEvent();
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * Commits the response handler event, if its duration exceeds the threshold.
+	 *
+	 * @param event         the event begun by {@link #beginHandler()}
+	 * @param request       the request
+	 * @param bodyReadNanos the time spent reading the body
+	 */
+	static void commitHandler(FlightRecorderHandlerEvent event, RefineEvent request, long bodyReadNanos) {
+		event.end();
+		if (event.shouldCommit()) {
+			event.command = request.getCommand();
+			event.statusCode = request.getStatusCode();
+			event.responseBytes = request.getResponseBytes();
+			event.bodyRead = bodyReadNanos;
+			event.commit();
+		}
+	}
+}
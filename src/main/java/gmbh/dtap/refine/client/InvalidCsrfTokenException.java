@@ -0,0 +1,30 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gmbh.dtap.refine.client;
+
+/**
+ * This exception is thrown when the server rejects the csrf token of a request
+ * and the command has no response document to report the error with.
+ */
+public class InvalidCsrfTokenException extends RefineException {
+
+	private static final long serialVersionUID = -3046185236470219157L;
+
+	public InvalidCsrfTokenException(String message) {
+		super(message);
+	}
+}
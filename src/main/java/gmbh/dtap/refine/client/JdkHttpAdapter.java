@@ -0,0 +1,285 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gmbh.dtap.refine.client;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpVersion;
+import org.apache.http.StatusLine;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.impl.EnglishReasonPhraseCatalog;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.message.BasicStatusLine;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.UncheckedIOException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublisher;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+import static org.apache.http.HttpHeaders.CONTENT_LENGTH;
+import static org.apache.http.HttpHeaders.CONTENT_TYPE;
+
+/**
+ * Converts between the Apache HTTP model, which the commands use to describe their requests and parse their responses,
+ * and the {@link java.net.http.HttpClient}.
+ */
+final class JdkHttpAdapter {
+
+	/**
+	 * Entities up to this size are serialised into memory, larger or streaming entities are piped.
+	 */
+	private static final long BUFFER_LIMIT = 1024 * 1024;
+
+	/**
+	 * Headers the JDK client sets itself and rejects when set by the caller.
+	 */
+	private static final Set<String> RESTRICTED_HEADERS = Set.of("connection", "content-length", "expect", "host", "upgrade");
+
+	/**
+	 * Prevents instantiation.
+	 */
+	private JdkHttpAdapter() {
+	}
+
+	/**
+	 * Converts the request including headers and entity.
+	 *
+	 * @param request the request as built by a command
+	 * @param timeout      the timeout to wait for the response
+	 * @param entityPipes  the pipes for streaming entities, to be closed when the exchange completes
+	 * @return the converted request
+	 * @throws IOException in case the entity can not be serialised
+	 */
+	static HttpRequest toJdkRequest(HttpUriRequest request, Duration timeout, EntityPipes entityPipes) throws IOException {
+		HttpRequest.Builder builder = HttpRequest.newBuilder(request.getURI()).timeout(timeout);
+		for (Header header : request.getAllHeaders()) {
+			if (!RESTRICTED_HEADERS.contains(header.getName().toLowerCase(Locale.ROOT))) {
+				builder.header(header.getName(), header.getValue());
+			}
+		}
+		HttpEntity entity = request instanceof HttpEntityEnclosingRequest ? ((HttpEntityEnclosingRequest) request).getEntity() : null;
+		if (entity == null) {
+			return builder.method(request.getMethod(), BodyPublishers.noBody()).build();
+		}
+		if (entity.getContentType() != null && request.getFirstHeader(CONTENT_TYPE) == null) {
+			builder.header(CONTENT_TYPE, entity.getContentType().getValue());
+		}
+		return builder.method(request.getMethod(), toBodyPublisher(entity, entityPipes)).build();
+	}
+
+	private static BodyPublisher toBodyPublisher(HttpEntity entity, EntityPipes entityPipes) throws IOException {
+		long contentLength = entity.getContentLength();
+		if (!entity.isStreaming() && contentLength >= 0 && contentLength <= BUFFER_LIMIT) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream((int) contentLength);
+			entity.writeTo(out);
+			return BodyPublishers.ofByteArray(out.toByteArray());
+		}
+		BodyPublisher publisher = BodyPublishers.ofInputStream(() -> entityPipes.open(entity));
+		return contentLength >= 0 ? BodyPublishers.fromPublisher(publisher, contentLength) : publisher;
+	}
+
+	/**
+	 * The pipes of the streaming entities of a request. The JDK client closes the stream of an entity only when it
+	 * reached the end, so a failed or abandoned upload would leave the writer blocked on a full pipe for good. The
+	 * pipes are therefore closed when the exchange completes, a writer that is still writing then fails and releases
+	 * its thread.
+	 */
+	static final class EntityPipes implements Closeable {
+
+		private final Executor entityWriter;
+		private final List<EntityPipe> pipes = new ArrayList<>(1);
+		private boolean closed;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param entityWriter writes streaming entities into pipes, the JDK client reads the other end with blocking
+		 *                     reads on the threads of its own executor
+		 */
+		EntityPipes(Executor entityWriter) {
+			this.entityWriter = entityWriter;
+		}
+
+		private InputStream open(HttpEntity entity) {
+			try {
+				EntityPipe in = new EntityPipe();
+				PipedOutputStream out = new PipedOutputStream(in);
+				synchronized (this) {
+					if (closed) {
+						in.close();
+						return in;
+					}
+					pipes.add(in);
+				}
+				write(entity, in, out);
+				return in;
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		private void write(HttpEntity entity, EntityPipe in, PipedOutputStream out) {
+			entityWriter.execute(() -> {
+				try {
+					entity.writeTo(out);
+				} catch (Throwable e) {
+					// must be visible before the reader sees the end of the pipe
+					in.failure = e;
+				} finally {
+					try {
+						out.close();
+					} catch (IOException e) {
+						// the reader is gone, it fails on its own
+					}
+				}
+			});
+		}
+
+		/**
+		 * Closes the reading side of all pipes, so that writers blocked on a pipe nobody reads any more fail.
+		 */
+		@Override
+		public void close() {
+			List<EntityPipe> open;
+			synchronized (this) {
+				closed = true;
+				open = new ArrayList<>(pipes);
+				pipes.clear();
+			}
+			for (EntityPipe pipe : open) {
+				try {
+					pipe.close();
+				} catch (IOException e) {
+					// closing a pipe does not fail
+				}
+			}
+		}
+	}
+
+	/**
+	 * A pipe that reports a failure of the writing side to the reader instead of a premature end of stream,
+	 * so that a broken entity does not result in a truncated upload. The failure is thrown unchecked, the
+	 * publisher of the JDK client treats an {@link IOException} of the stream as its end.
+	 */
+	private static class EntityPipe extends PipedInputStream {
+
+		private volatile Throwable failure;
+
+		EntityPipe() {
+			super(64 * 1024);
+		}
+
+		@Override
+		public synchronized int read() throws IOException {
+			int read = super.read();
+			if (read < 0 && failure != null) {
+				throw new UncheckedIOException(new IOException("Writing the request entity failed", failure));
+			}
+			return read;
+		}
+
+		@Override
+		public synchronized int read(byte[] bytes, int offset, int length) throws IOException {
+			int read = super.read(bytes, offset, length);
+			if (read < 0 && failure != null) {
+				throw new UncheckedIOException(new IOException("Writing the request entity failed", failure));
+			}
+			return read;
+		}
+	}
+
+	/**
+	 * Converts the buffered response including status, headers and entity.
+	 *
+	 * @param response the response from the JDK client
+	 * @return the converted response
+	 */
+	static org.apache.http.HttpResponse toApacheResponse(HttpResponse<byte[]> response) {
+		BasicHttpResponse apacheResponse = new BasicHttpResponse(toStatusLine(response));
+		copyHeaders(response, apacheResponse);
+		apacheResponse.setEntity(new ByteArrayEntity(response.body(), toContentType(response)));
+		return apacheResponse;
+	}
+
+	/**
+	 * Converts the response including status and headers, the entity streams the unread body.
+	 *
+	 * @param response the response from the JDK client
+	 * @return the converted response, closing it discards the rest of the body
+	 */
+	static StreamingResponse toStreamingApacheResponse(HttpResponse<InputStream> response) {
+		StreamingResponse apacheResponse = new StreamingResponse(toStatusLine(response), response.body());
+		copyHeaders(response, apacheResponse);
+		long contentLength = response.headers().firstValueAsLong(CONTENT_LENGTH).orElse(-1);
+		apacheResponse.setEntity(new InputStreamEntity(response.body(), contentLength, toContentType(response)));
+		return apacheResponse;
+	}
+
+	private static StatusLine toStatusLine(HttpResponse<?> response) {
+		int statusCode = response.statusCode();
+		String reasonPhrase = EnglishReasonPhraseCatalog.INSTANCE.getReason(statusCode, Locale.ENGLISH);
+		return new BasicStatusLine(HttpVersion.HTTP_1_1, statusCode, reasonPhrase);
+	}
+
+	private static void copyHeaders(HttpResponse<?> response, BasicHttpResponse apacheResponse) {
+		for (Map.Entry<String, List<String>> header : response.headers().map().entrySet()) {
+			for (String value : header.getValue()) {
+				apacheResponse.addHeader(header.getKey(), value);
+			}
+		}
+	}
+
+	private static ContentType toContentType(HttpResponse<?> response) {
+		return response.headers().firstValue(CONTENT_TYPE).map(ContentType::parse).orElse(null);
+	}
+
+	/**
+	 * A response with a streaming entity, closing it releases the stream, or the connection respectively.
+	 */
+	static class StreamingResponse extends BasicHttpResponse implements Closeable {
+
+		private final InputStream body;
+
+		StreamingResponse(StatusLine statusLine, InputStream body) {
+			super(statusLine);
+			this.body = body;
+		}
+
+		@Override
+		public void close() throws IOException {
+			body.close();
+		}
+	}
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gmbh.dtap.refine.client;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.methods.HttpUriRequest;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends all calls with the {@link HttpClient} of the JDK. With {@link HttpClient.Version#HTTP_2}, concurrent
+ * requests share a single connection per server.
+ */
+public final class JdkTransport implements RefineTransport {
+
+	private final HttpClient httpClient;
+	private final Duration requestTimeout;
+	private final ThreadPoolExecutor entityWriter;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param httpClient     the client, which must not follow redirects
+	 * @param requestTimeout the timeout to wait for the response headers
+	 */
+	JdkTransport(HttpClient httpClient, Duration requestTimeout) {
+		this(httpClient, requestTimeout, Math.max(4, Runtime.getRuntime().availableProcessors()));
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param httpClient     the client, which must not follow redirects
+	 * @param requestTimeout the timeout to wait for the response headers
+	 * @param threads        the number of threads writing streaming entities
+	 */
+	JdkTransport(HttpClient httpClient, Duration requestTimeout, int threads) {
+		this.httpClient = httpClient;
+		this.requestTimeout = requestTimeout;
+		this.entityWriter = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+			Thread thread = new Thread(runnable, "refine-entity-writer");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.entityWriter.allowCoreThreadTimeOut(true);
+	}
+
+	@Override
+	public <T> T execute(HttpUriRequest request, ResponseHandler<? extends T> responseHandler) throws IOException {
+		try (JdkHttpAdapter.StreamingResponse response = send(request)) {
+			return responseHandler.handleResponse(response);
+		}
+	}
+
+	@Override
+	public HttpResponse open(HttpUriRequest request) throws IOException {
+		return send(request);
+	}
+
+	private JdkHttpAdapter.StreamingResponse send(HttpUriRequest request) throws IOException {
+		JdkHttpAdapter.EntityPipes entityPipes = new JdkHttpAdapter.EntityPipes(entityWriter);
+		try {
+			HttpRequest jdkRequest = JdkHttpAdapter.toJdkRequest(request, requestTimeout, entityPipes);
+			return JdkHttpAdapter.toStreamingApacheResponse(httpClient.send(jdkRequest, BodyHandlers.ofInputStream()));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for " + request.getURI());
+		} finally {
+			entityPipes.close();
+		}
+	}
+
+	/**
+	 * Executes the request without blocking the calling thread. The response body is received completely
+	 * before it is passed to the response handler, so that parsing never blocks on the network.
+	 */
+	@Override
+	public <T> CompletableFuture<T> executeAsync(HttpUriRequest request, ResponseHandler<? extends T> responseHandler) {
+		JdkHttpAdapter.EntityPipes entityPipes = new JdkHttpAdapter.EntityPipes(entityWriter);
+		final HttpRequest jdkRequest;
+		try {
+			jdkRequest = JdkHttpAdapter.toJdkRequest(request, requestTimeout, entityPipes);
+		} catch (IOException e) {
+			return CompletableFuture.failedFuture(e);
+		}
+		return httpClient.sendAsync(jdkRequest, BodyHandlers.ofByteArray())
+			.whenComplete((response, failure) -> entityPipes.close())
+			.thenApply(response -> {
+				try {
+					return responseHandler.handleResponse(JdkHttpAdapter.toApacheResponse(response));
+				} catch (IOException e) {
+					throw new CompletionException(e);
+				}
+			});
+	}
+
+	/**
+	 * Returns the preferred HTTP version of this transport.
+	 *
+	 * @return the HTTP version
+	 */
+	public HttpClient.Version getVersion() {
+		return httpClient.version();
+	}
+
+	/**
+	 * Stops the threads writing streaming entities, the connections of the JDK client are closed when it is no
+	 * longer referenced.
+	 */
+	@Override
+	public void close() {
+		entityWriter.shutdown();
+	}
+
+	@Override
+	public String toString() {
+		return "JdkTransport{" + "version=" + getVersion() + '}';
+	}
+}
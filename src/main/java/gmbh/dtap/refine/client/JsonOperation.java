@@ -22,6 +22,7 @@ package gmbh.dtap.refine.client;
 public class JsonOperation implements Operation {
 
 	private final String json;
+	private volatile byte[] encodedJson;
 
 	private JsonOperation(String json) {
 		this.json = json;
@@ -43,6 +44,21 @@ public class JsonOperation implements Operation {
 		return json;
 	}
 
+	/**
+	 * Returns the encoded JSON, which is encoded on the first call.
+	 *
+	 * @return the encoded JSON
+	 */
+	@Override
+	public byte[] asEncodedJson() {
+		byte[] encoded = encodedJson;
+		if (encoded == null) {
+			encoded = Operation.super.asEncodedJson();
+			encodedJson = encoded;
+		}
+		return encoded;
+	}
+
 	@Override
 	public String toString() {
 		return asJson();
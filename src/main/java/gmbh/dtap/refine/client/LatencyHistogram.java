@@ -0,0 +1,216 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gmbh.dtap.refine.client;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * A lock-free histogram of durations in nanoseconds. Each power of two is split into eight buckets,
+ * so that percentiles are reported with a relative error below 12.5%.
+ * <p>
+ * The count and the total are cumulative, the percentiles and the maximum cover a sliding window, so that they
+ * follow the current latency instead of the whole lifetime. The window is split into slices, a slice is cleared
+ * when it is reused, so the percentiles cover between two thirds of the window and the whole window.
+ */
+final class LatencyHistogram {
+
+	/**
+	 * The window of the percentiles and the maximum.
+	 */
+	static final long WINDOW_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+	private static final int SLICES = 3;
+	private static final int SUB_BUCKET_BITS = 3;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	private final Slice[] slices = new Slice[SLICES];
+	private final long sliceNanos;
+	private final LongSupplier clock;
+	private final LongAdder count = new LongAdder();
+	private final LongAdder total = new LongAdder();
+
+	LatencyHistogram() {
+		this(WINDOW_NANOS, System::nanoTime);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param windowNanos the window of the percentiles and the maximum
+	 * @param clock       the time source in nanoseconds
+	 */
+	LatencyHistogram(long windowNanos, LongSupplier clock) {
+		this.sliceNanos = Math.max(1, windowNanos / SLICES);
+		this.clock = clock;
+		for (int i = 0; i < SLICES; i++) {
+			slices[i] = new Slice();
+		}
+	}
+
+	/**
+	 * Records a duration.
+	 *
+	 * @param nanos the duration in nanoseconds, negative values are recorded as zero
+	 */
+	void record(long nanos) {
+		long value = Math.max(nanos, 0);
+		current().record(value);
+		count.increment();
+		total.add(value);
+	}
+
+	long getCount() {
+		return count.sum();
+	}
+
+	long getTotalNanos() {
+		return total.sum();
+	}
+
+	/**
+	 * Returns the maximum within the window.
+	 *
+	 * @return the maximum in nanoseconds, <code>0</code> if nothing was recorded within the window
+	 */
+	long getMaxNanos() {
+		long epoch = epoch();
+		long max = 0;
+		for (Slice slice : slices) {
+			if (slice.isLive(epoch)) {
+				max = Math.max(max, slice.max.get());
+			}
+		}
+		return max;
+	}
+
+	/**
+	 * Returns the upper bound of the bucket that contains the percentile within the window.
+	 *
+	 * @param percentile the percentile between <code>0.0</code> and <code>1.0</code>
+	 * @return the percentile in nanoseconds, <code>0</code> if nothing was recorded within the window
+	 */
+	long getPercentileNanos(double percentile) {
+		return getPercentilesNanos(percentile)[0];
+	}
+
+	/**
+	 * Returns several percentiles within the window with a single pass over the buckets.
+	 *
+	 * @param percentiles the percentiles between <code>0.0</code> and <code>1.0</code>, in ascending order
+	 * @return the percentiles in nanoseconds, <code>0</code> if nothing was recorded within the window
+	 */
+	long[] getPercentilesNanos(double... percentiles) {
+		long epoch = epoch();
+		long[] counts = new long[BUCKETS];
+		long recorded = 0;
+		long max = 0;
+		for (Slice slice : slices) {
+			if (slice.isLive(epoch)) {
+				for (int i = 0; i < BUCKETS; i++) {
+					long bucketCount = slice.buckets.get(i);
+					counts[i] += bucketCount;
+					recorded += bucketCount;
+				}
+				max = Math.max(max, slice.max.get());
+			}
+		}
+		long[] values = new long[percentiles.length];
+		if (recorded == 0) {
+			return values;
+		}
+		int bucket = 0;
+		long seen = counts[0];
+		for (int p = 0; p < percentiles.length; p++) {
+			long rank = Math.max(1, (long) Math.ceil(percentiles[p] * recorded));
+			while (seen < rank && bucket < BUCKETS - 1) {
+				seen += counts[++bucket];
+			}
+			values[p] = seen >= rank ? Math.min(upperBoundOf(bucket), max) : max;
+		}
+		return values;
+	}
+
+	private long epoch() {
+		return Math.floorDiv(clock.getAsLong(), sliceNanos);
+	}
+
+	private Slice current() {
+		long epoch = epoch();
+		Slice slice = slices[(int) Math.floorMod(epoch, (long) SLICES)];
+		if (slice.epoch != epoch) {
+			slice.reset(epoch);
+		}
+		return slice;
+	}
+
+	/**
+	 * The buckets and the maximum of one slice of the window.
+	 */
+	private static final class Slice {
+
+		private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+		private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+		private volatile long epoch = Long.MIN_VALUE;
+
+		void record(long value) {
+			buckets.incrementAndGet(bucketOf(value));
+			max.accumulate(value);
+		}
+
+		boolean isLive(long currentEpoch) {
+			long sliceEpoch = epoch;
+			return sliceEpoch <= currentEpoch && sliceEpoch > currentEpoch - SLICES;
+		}
+
+		/**
+		 * Clears the slice for a new epoch, a value recorded concurrently by a late thread may be lost.
+		 */
+		synchronized void reset(long newEpoch) {
+			if (epoch != newEpoch) {
+				for (int i = 0; i < BUCKETS; i++) {
+					buckets.set(i, 0);
+				}
+				max.reset();
+				epoch = newEpoch;
+			}
+		}
+	}
+
+	static int bucketOf(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+	}
+
+	static long upperBoundOf(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+		long width = 1L << (exponent - SUB_BUCKET_BITS);
+		long lowerBound = (SUB_BUCKETS + bucket % SUB_BUCKETS) * width;
+		return lowerBound + width - 1;
+	}
+}
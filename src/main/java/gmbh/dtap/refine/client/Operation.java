@@ -18,6 +18,11 @@ package gmbh.dtap.refine.client;
 
 import gmbh.dtap.refine.client.command.ApplyOperationsCommand;
 
+import java.net.URLEncoder;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
 /**
  * Operations can be applied to a refine project with {@link ApplyOperationsCommand}.
  */
@@ -29,4 +34,14 @@ public interface Operation {
 	 * @return the operation as JSON_PARSER
 	 */
 	String asJson();
+
+	/**
+	 * Returns the JSON of the operation form-encoded in UTF-8, as it is sent by {@link ApplyOperationsCommand}.
+	 * Operations that are applied repeatedly should return cached bytes, which must not be modified.
+	 *
+	 * @return the encoded JSON
+	 */
+	default byte[] asEncodedJson() {
+		return URLEncoder.encode(asJson(), UTF_8).getBytes(US_ASCII);
+	}
 }
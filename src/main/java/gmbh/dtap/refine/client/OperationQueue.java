@@ -0,0 +1,365 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package gmbh.dtap.refine.client;
+
+import gmbh.dtap.refine.client.command.ApplyOperationsResponse;
+import gmbh.dtap.refine.client.command.RefineCommands;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.notEmpty;
+import static org.apache.commons.lang3.Validate.notNull;
+import static org.apache.commons.lang3.Validate.validState;
+
+/**
+ * Collects operations per project and applies them in batches, so that many small operations cost one
+ * <code>apply-operations</code> request instead of one request each.
+ * <p>
+ * The operations of a project are sent when {@link Builder#maxBatchSize(int)} operations are pending, when the
+ * oldest pending operation waited {@link Builder#maxDelay(Duration)}, or when the project is flushed. The batches of
+ * a project are applied one after the other in the order the operations were enqueued, while different projects are
+ * applied in parallel. The future of each operation completes with the response of its batch.
+ */
+public class OperationQueue implements AutoCloseable {
+
+	private final RefineClient client;
+	private final int maxBatchSize;
+	private final long maxDelayNanos;
+	private final ScheduledExecutorService scheduler;
+	private final Map<String, ProjectQueue> queues = new ConcurrentHashMap<>();
+	private volatile boolean closed;
+
+	private OperationQueue(Builder builder) {
+		this.client = builder.client;
+		this.maxBatchSize = builder.maxBatchSize;
+		this.maxDelayNanos = builder.maxDelay.toNanos();
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "refine-operation-queue");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Returns a new builder.
+	 *
+	 * @return the builder
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * Enqueues an operation.
+	 *
+	 * @param projectId the project ID
+	 * @param operation the operation
+	 * @return the future response of the batch the operation is applied with, completed exceptionally in case the
+	 * batch failed
+	 * @throws IllegalStateException in case the queue is closed
+	 */
+	public CompletableFuture<ApplyOperationsResponse> enqueue(String projectId, Operation operation) {
+		notEmpty(projectId, "projectId");
+		notNull(operation, "operation");
+		Pending pending = new Pending(operation, System.nanoTime());
+		while (true) {
+			ProjectQueue queue = queues.computeIfAbsent(projectId, ProjectQueue::new);
+			List<Pending> batch;
+			synchronized (queue) {
+				if (queue.removed) {
+					// emptied concurrently, the next iteration gets a new queue
+					continue;
+				}
+				// checked under the lock, so that close either flushes the operation or it is rejected
+				validState(!closed, "The queue is closed");
+				queue.pending.add(pending);
+				batch = queue.pending.size() >= maxBatchSize ? queue.takeBatch() : queue.scheduleIfIdle();
+			}
+			send(queue, batch);
+			return pending.future;
+		}
+	}
+
+	/**
+	 * Sends the pending operations of a project without waiting for the batch window.
+	 *
+	 * @param projectId the project ID
+	 * @return the future that completes when the operations enqueued so far are applied, completed exceptionally in
+	 * case a batch failed
+	 */
+	public CompletableFuture<Void> flush(String projectId) {
+		notEmpty(projectId, "projectId");
+		ProjectQueue queue = queues.get(projectId);
+		return queue != null ? flush(queue) : CompletableFuture.completedFuture(null);
+	}
+
+	/**
+	 * Sends the pending operations of all projects without waiting for the batch window.
+	 *
+	 * @return the future that completes when the operations enqueued so far are applied, completed exceptionally in
+	 * case a batch failed
+	 */
+	public CompletableFuture<Void> flush() {
+		List<CompletableFuture<Void>> futures = new ArrayList<>();
+		queues.values().forEach(queue -> futures.add(flush(queue)));
+		return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
+	}
+
+	private CompletableFuture<Void> flush(ProjectQueue queue) {
+		List<CompletableFuture<ApplyOperationsResponse>> futures = new ArrayList<>();
+		List<Pending> batch;
+		synchronized (queue) {
+			queue.inFlight.forEach(pending -> futures.add(pending.future));
+			queue.pending.forEach(pending -> futures.add(pending.future));
+			queue.flushRequested = !queue.pending.isEmpty();
+			batch = queue.takeBatch();
+		}
+		send(queue, batch);
+		return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
+	}
+
+	/**
+	 * Returns the number of operations waiting to be sent.
+	 *
+	 * @return the number of pending operations, excluding those in flight
+	 */
+	public int getPendingCount() {
+		int count = 0;
+		for (ProjectQueue queue : queues.values()) {
+			synchronized (queue) {
+				count += queue.pending.size();
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the number of projects with pending or in flight operations.
+	 *
+	 * @return the number of projects
+	 */
+	public int getProjectCount() {
+		return queues.size();
+	}
+
+	private void send(ProjectQueue queue, List<Pending> batch) {
+		if (batch == null) {
+			return;
+		}
+		Operation[] operations = new Operation[batch.size()];
+		for (int i = 0; i < operations.length; i++) {
+			operations[i] = batch.get(i).operation;
+		}
+		CompletableFuture<ApplyOperationsResponse> future;
+		try {
+			future = RefineCommands.applyOperations().project(queue.projectId).operations(operations).build().executeAsync(client);
+		} catch (RuntimeException e) {
+			future = CompletableFuture.failedFuture(e);
+		}
+		future.whenComplete((response, failure) -> {
+			Throwable cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+			// the queue is updated first, so that callers waiting for the futures see it without the batch
+			List<Pending> next;
+			synchronized (queue) {
+				queue.inFlight = List.of();
+				next = queue.flushRequested || queue.pending.size() >= maxBatchSize ? queue.takeBatch() : null;
+				if (next == null) {
+					if (queue.pending.isEmpty()) {
+						queue.removed = true;
+						queues.remove(queue.projectId, queue);
+					} else {
+						next = queue.scheduleIfIdle();
+					}
+				}
+			}
+			for (Pending pending : batch) {
+				if (cause != null) {
+					pending.future.completeExceptionally(cause);
+				} else {
+					pending.future.complete(response);
+				}
+			}
+			send(queue, next);
+		});
+	}
+
+	/**
+	 * Applies the pending operations and waits for them. Operations can not be enqueued anymore.
+	 * The client is not closed.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		try {
+			flush().join();
+		} catch (CompletionException e) {
+			// reported to the callers by the futures of their operations
+		} finally {
+			scheduler.shutdownNow();
+		}
+	}
+
+	/**
+	 * An enqueued operation.
+	 */
+	private static final class Pending {
+
+		private final Operation operation;
+		private final long enqueuedAt;
+		private final CompletableFuture<ApplyOperationsResponse> future = new CompletableFuture<>();
+
+		Pending(Operation operation, long enqueuedAt) {
+			this.operation = operation;
+			this.enqueuedAt = enqueuedAt;
+		}
+	}
+
+	/**
+	 * The operations of a project, guarded by the instance lock.
+	 */
+	private final class ProjectQueue {
+
+		private final String projectId;
+		private final List<Pending> pending = new ArrayList<>();
+		private List<Pending> inFlight = List.of();
+		private ScheduledFuture<?> timer;
+		private boolean flushRequested;
+		private boolean removed;
+
+		ProjectQueue(String projectId) {
+			this.projectId = projectId;
+		}
+
+		/**
+		 * Takes the next batch, unless a batch is in flight or nothing is pending.
+		 */
+		List<Pending> takeBatch() {
+			if (!inFlight.isEmpty() || pending.isEmpty()) {
+				return null;
+			}
+			if (timer != null) {
+				timer.cancel(false);
+				timer = null;
+			}
+			List<Pending> head = pending.subList(0, Math.min(pending.size(), maxBatchSize));
+			inFlight = new ArrayList<>(head);
+			head.clear();
+			if (pending.isEmpty()) {
+				flushRequested = false;
+			}
+			return inFlight;
+		}
+
+		/**
+		 * Schedules the batch window of the oldest pending operation, unless a batch is in flight, which schedules
+		 * it on completion.
+		 *
+		 * @return the batch to send right away in case the queue is closed and the window can not be scheduled
+		 */
+		List<Pending> scheduleIfIdle() {
+			if (!inFlight.isEmpty() || timer != null || pending.isEmpty()) {
+				return null;
+			}
+			long delay = Math.max(0, pending.get(0).enqueuedAt + maxDelayNanos - System.nanoTime());
+			try {
+				timer = scheduler.schedule(this::windowElapsed, delay, NANOSECONDS);
+				return null;
+			} catch (RejectedExecutionException e) {
+				return takeBatch();
+			}
+		}
+
+		private void windowElapsed() {
+			List<Pending> batch;
+			synchronized (this) {
+				timer = null;
+				batch = takeBatch();
+			}
+			send(this, batch);
+		}
+	}
+
+	/**
+	 * The builder for {@link OperationQueue}.
+	 */
+	public static class Builder {
+
+		private RefineClient client;
+		private int maxBatchSize = 100;
+		private Duration maxDelay = Duration.ofMillis(50);
+
+		/**
+		 * Sets the client the operations are applied with.
+		 *
+		 * @param client the client
+		 * @return the builder for fluent usage
+		 */
+		public Builder client(RefineClient client) {
+			this.client = client;
+			return this;
+		}
+
+		/**
+		 * Sets the number of pending operations of a project that are sent without waiting for the batch window.
+		 * Larger batches are split.
+		 *
+		 * @param maxBatchSize the maximum number of operations per request, defaults to 100
+		 * @return the builder for fluent usage
+		 */
+		public Builder maxBatchSize(int maxBatchSize) {
+			this.maxBatchSize = maxBatchSize;
+			return this;
+		}
+
+		/**
+		 * Sets the batch window, how long an operation waits for others of the same project.
+		 *
+		 * @param maxDelay the maximum delay, defaults to 50 milliseconds
+		 * @return the builder for fluent usage
+		 */
+		public Builder maxDelay(Duration maxDelay) {
+			this.maxDelay = maxDelay;
+			return this;
+		}
+
+		/**
+		 * Builds the queue after validation.
+		 *
+		 * @return the queue
+		 */
+		public OperationQueue build() {
+			notNull(client, "client");
+			isTrue(maxBatchSize > 0, "maxBatchSize must be positive");
+			notNull(maxDelay, "maxDelay");
+			isTrue(!maxDelay.isNegative(), "maxDelay must not be negative");
+			return new OperationQueue(this);
+		}
+	}
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package gmbh.dtap.refine.client;
+
+import gmbh.dtap.refine.client.command.GetProcessesResponse;
+import gmbh.dtap.refine.client.command.RefineCommands;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Polls <code>get-processes</code> for the projects callers are waiting for, see
+ * {@link RefineClient#awaitCompletion(String)}. There is at most one poll per project at a time, however many
+ * callers wait for it. The interval starts at {@link #MIN_INTERVAL} and doubles while processes are running,
+ * up to {@link #MAX_INTERVAL}.
+ */
+final class ProcessPoller {
+
+	static final Duration MIN_INTERVAL = Duration.ofMillis(50);
+	static final Duration MAX_INTERVAL = Duration.ofSeconds(2);
+
+	/**
+	 * Only schedules the polls, which are sent asynchronously, so one thread serves all clients.
+	 */
+	private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "refine-process-poller");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private final RefineClient client;
+	private final Map<String, Project> projects = new HashMap<>();
+	private boolean closed;
+
+	ProcessPoller(RefineClient client) {
+		this.client = client;
+	}
+
+	/**
+	 * Returns a future that completes when the process queue of the project is drained.
+	 *
+	 * @param projectId the project ID
+	 * @return the future, completed exceptionally with a {@link RefineException} in case a process failed or the
+	 * client was closed, or with an {@link java.io.IOException} in case of a connection problem
+	 */
+	CompletableFuture<Void> awaitCompletion(String projectId) {
+		CompletableFuture<Void> future = new CompletableFuture<>();
+		synchronized (this) {
+			if (closed) {
+				future.completeExceptionally(new RefineException("The client is closed"));
+				return future;
+			}
+			Project project = projects.get(projectId);
+			if (project == null) {
+				project = new Project(projectId);
+				projects.put(projectId, project);
+				schedule(project, 0);
+			}
+			// a poll in flight may have been answered before the caller's operations were queued
+			project.waiters.add(new Waiter(future, project.polls + 1));
+		}
+		return future;
+	}
+
+	/**
+	 * Returns the number of projects that are polled.
+	 *
+	 * @return the number of projects with waiting callers
+	 */
+	synchronized int getProjectCount() {
+		return projects.size();
+	}
+
+	private void schedule(Project project, long delayNanos) {
+		SCHEDULER.schedule(() -> poll(project), delayNanos, NANOSECONDS);
+	}
+
+	private void poll(Project project) {
+		int poll;
+		synchronized (this) {
+			project.waiters.removeIf(waiter -> waiter.future.isDone());
+			if (closed || project.waiters.isEmpty()) {
+				projects.remove(project.projectId, project);
+				return;
+			}
+			poll = ++project.polls;
+		}
+		CompletableFuture<GetProcessesResponse> response;
+		try {
+			response = RefineCommands.getProcesses().project(project.projectId).build().executeAsync(client);
+		} catch (RuntimeException e) {
+			response = CompletableFuture.failedFuture(e);
+		}
+		response.whenComplete((processes, failure) -> polled(project, poll, processes, failure));
+	}
+
+	private void polled(Project project, int poll, GetProcessesResponse processes, Throwable failure) {
+		Throwable cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+		if (cause == null && !processes.getExceptions().isEmpty()) {
+			cause = new RefineException("Processes of project " + project.projectId + " failed: "
+				+ String.join(", ", processes.getExceptions()));
+		}
+		if (cause == null && !processes.isDrained()) {
+			synchronized (this) {
+				project.intervalNanos = Math.min(project.intervalNanos * 2, MAX_INTERVAL.toNanos());
+				schedule(project, project.intervalNanos);
+			}
+			return;
+		}
+		List<Waiter> done = new ArrayList<>();
+		synchronized (this) {
+			project.waiters.removeIf(waiter -> waiter.firstPoll <= poll && done.add(waiter));
+			if (project.waiters.isEmpty()) {
+				projects.remove(project.projectId, project);
+			} else {
+				project.intervalNanos = MIN_INTERVAL.toNanos();
+				schedule(project, 0);
+			}
+		}
+		for (Waiter waiter : done) {
+			if (cause != null) {
+				waiter.future.completeExceptionally(cause);
+			} else {
+				waiter.future.complete(null);
+			}
+		}
+	}
+
+	/**
+	 * Fails the waiting callers.
+	 */
+	void close() {
+		List<Waiter> waiters = new ArrayList<>();
+		synchronized (this) {
+			closed = true;
+			projects.values().forEach(project -> waiters.addAll(project.waiters));
+			projects.clear();
+		}
+		waiters.forEach(waiter -> waiter.future.completeExceptionally(new RefineException("The client is closed")));
+	}
+
+	/**
+	 * A project with waiting callers, guarded by the lock of the poller.
+	 */
+	private static final class Project {
+
+		private final String projectId;
+		private final List<Waiter> waiters = new ArrayList<>();
+		private long intervalNanos = MIN_INTERVAL.toNanos();
+		private int polls;
+
+		Project(String projectId) {
+			this.projectId = projectId;
+		}
+	}
+
+	/**
+	 * A waiting caller, which is completed by the result of a poll that started after it began to wait.
+	 */
+	private static final class Waiter {
+
+		private final CompletableFuture<Void> future;
+		private final int firstPoll;
+
+		Waiter(CompletableFuture<Void> future, int firstPoll) {
+			this.future = future;
+			this.firstPoll = firstPoll;
+		}
+	}
+}
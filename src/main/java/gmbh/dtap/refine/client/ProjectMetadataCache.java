@@ -0,0 +1,354 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package gmbh.dtap.refine.client;
+
+import gmbh.dtap.refine.client.command.GetProjectMetadataResponse;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * Caches the responses of {@code GetProjectMetadataCommand} by project ID, so that repeated checks of a project,
+ * e.g. of its row count, do not need a round trip each.
+ * <p>
+ * The cache holds at most {@link Builder#maxSize(int)} projects and evicts the least recently used. An entry
+ * expires after {@link Builder#ttl(Duration)}. When the client the cache is set on runs a command that changes a
+ * project, like <code>apply-operations</code> or <code>delete-project</code>, the entry of the project is invalidated
+ * when the command starts and again when it completes, and responses loaded meanwhile are not cached. Changes by
+ * other clients are only seen after the TTL.
+ * <p>
+ * The cached responses are shared and must not be modified.
+ */
+public class ProjectMetadataCache {
+
+	/**
+	 * The commands that change the metadata of a project.
+	 */
+	public static final Set<String> MODIFYING_COMMANDS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+		"apply-operations", "delete-project")));
+
+	private final long ttlNanos;
+	private final Map<String, Entry> entries;
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private final Map<String, Load> loads = new HashMap<>();
+	private long invalidations;
+	private long invalidatedAllAt;
+
+	private ProjectMetadataCache(Builder builder) {
+		this.ttlNanos = builder.ttl.toNanos();
+		int maxSize = builder.maxSize;
+		this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+				if (size() > maxSize) {
+					evictions.increment();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Returns a new builder.
+	 *
+	 * @return the builder
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * Returns the cached response of the project, or loads and caches it.
+	 *
+	 * @param projectId the project ID
+	 * @param loader    loads the response on a miss
+	 * @return the response
+	 * @throws IOException in case the loader fails, the failure is not cached
+	 */
+	public GetProjectMetadataResponse get(String projectId, Loader loader) throws IOException {
+		GetProjectMetadataResponse cached = getIfPresent(projectId);
+		if (cached != null) {
+			return cached;
+		}
+		long started = startLoad(projectId);
+		GetProjectMetadataResponse loaded = null;
+		try {
+			loaded = loader.load();
+			return loaded;
+		} finally {
+			finishLoad(projectId, loaded, started);
+		}
+	}
+
+	/**
+	 * Returns the cached response of the project, or loads and caches it without blocking the calling thread.
+	 *
+	 * @param projectId the project ID
+	 * @param loader    starts loading the response on a miss
+	 * @return the future response
+	 */
+	public CompletableFuture<GetProjectMetadataResponse> getAsync(String projectId,
+																  Supplier<CompletableFuture<GetProjectMetadataResponse>> loader) {
+		GetProjectMetadataResponse cached = getIfPresent(projectId);
+		if (cached != null) {
+			return CompletableFuture.completedFuture(cached);
+		}
+		long started = startLoad(projectId);
+		CompletableFuture<GetProjectMetadataResponse> loading;
+		try {
+			loading = loader.get();
+		} catch (RuntimeException e) {
+			finishLoad(projectId, null, started);
+			throw e;
+		}
+		return loading.whenComplete((loaded, failure) -> finishLoad(projectId, loaded, started));
+	}
+
+	/**
+	 * Returns the cached response of the project and records a hit or miss.
+	 *
+	 * @param projectId the project ID
+	 * @return the response, or {@code null} if it is not cached or expired
+	 */
+	public synchronized GetProjectMetadataResponse getIfPresent(String projectId) {
+		Entry entry = entries.get(projectId);
+		if (entry != null && System.nanoTime() - entry.loadedAt < ttlNanos) {
+			hits.increment();
+			return entry.response;
+		}
+		if (entry != null) {
+			entries.remove(projectId);
+		}
+		misses.increment();
+		return null;
+	}
+
+	private synchronized long startLoad(String projectId) {
+		loads.computeIfAbsent(projectId, key -> new Load()).count++;
+		return invalidations;
+	}
+
+	private synchronized void finishLoad(String projectId, GetProjectMetadataResponse response, long started) {
+		Load load = loads.get(projectId);
+		// an invalidation of the project or of all projects while loading may have made the response stale
+		boolean stale = load.invalidatedAt > started || invalidatedAllAt > started;
+		if (--load.count == 0) {
+			loads.remove(projectId);
+		}
+		if (response != null && !stale) {
+			entries.put(projectId, new Entry(response, System.nanoTime()));
+		}
+	}
+
+	/**
+	 * Removes the response of a project, responses of the project that are loaded meanwhile are not cached.
+	 *
+	 * @param projectId the project ID
+	 */
+	public synchronized void invalidate(String projectId) {
+		Load load = loads.get(projectId);
+		if (load != null) {
+			load.invalidatedAt = ++invalidations;
+		}
+		entries.remove(projectId);
+	}
+
+	/**
+	 * Removes all responses, responses that are loaded meanwhile are not cached.
+	 */
+	public synchronized void invalidateAll() {
+		invalidatedAllAt = ++invalidations;
+		entries.clear();
+	}
+
+	/**
+	 * Returns the number of cached projects, including expired ones not removed yet.
+	 *
+	 * @return the number of entries
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Returns the number of lookups answered from the cache.
+	 *
+	 * @return the number of hits
+	 */
+	public long getHitCount() {
+		return hits.sum();
+	}
+
+	/**
+	 * Returns the number of lookups that needed a request.
+	 *
+	 * @return the number of misses
+	 */
+	public long getMissCount() {
+		return misses.sum();
+	}
+
+	/**
+	 * Returns the number of entries evicted because the cache was full.
+	 *
+	 * @return the number of evictions
+	 */
+	public long getEvictionCount() {
+		return evictions.sum();
+	}
+
+	/**
+	 * Returns the share of lookups answered from the cache.
+	 *
+	 * @return the hit ratio between <code>0.0</code> and <code>1.0</code>, <code>0.0</code> without lookups
+	 */
+	public double getHitRatio() {
+		long hitCount = hits.sum();
+		long total = hitCount + misses.sum();
+		return total > 0 ? (double) hitCount / total : 0;
+	}
+
+	/**
+	 * Returns a listener that invalidates a project when a command changes it.
+	 *
+	 * @return the listener
+	 */
+	RefineEventListener invalidationListener() {
+		return new RefineEventListener() {
+			@Override
+			public void requestStarted(RefineEvent event) {
+				invalidate(event);
+			}
+
+			@Override
+			public void requestCompleted(RefineEvent event, Throwable failure) {
+				invalidate(event);
+			}
+
+			private void invalidate(RefineEvent event) {
+				if (MODIFYING_COMMANDS.contains(event.getCommand()) && event.getProjectId() != null) {
+					ProjectMetadataCache.this.invalidate(event.getProjectId());
+				}
+			}
+		};
+	}
+
+	@Override
+	public String toString() {
+		return "ProjectMetadataCache{" +
+			"size=" + size() +
+			", hits=" + getHitCount() +
+			", misses=" + getMissCount() +
+			", evictions=" + getEvictionCount() +
+			'}';
+	}
+
+	/**
+	 * Loads the response of a project on a miss.
+	 */
+	@FunctionalInterface
+	public interface Loader {
+
+		/**
+		 * Loads the response.
+		 *
+		 * @return the response
+		 * @throws IOException in case the response can not be loaded
+		 */
+		GetProjectMetadataResponse load() throws IOException;
+	}
+
+	private static final class Entry {
+
+		private final GetProjectMetadataResponse response;
+		private final long loadedAt;
+
+		Entry(GetProjectMetadataResponse response, long loadedAt) {
+			this.response = response;
+			this.loadedAt = loadedAt;
+		}
+	}
+
+	/**
+	 * The loads of a project in flight and when the project was last invalidated while loading.
+	 */
+	private static final class Load {
+
+		private int count;
+		private long invalidatedAt;
+	}
+
+	/**
+	 * The builder for {@link ProjectMetadataCache}.
+	 */
+	public static class Builder {
+
+		private int maxSize = 1000;
+		private Duration ttl = Duration.ofSeconds(30);
+
+		/**
+		 * Sets the maximum number of cached projects.
+		 *
+		 * @param maxSize the maximum size, defaults to 1000
+		 * @return the builder for fluent usage
+		 */
+		public Builder maxSize(int maxSize) {
+			this.maxSize = maxSize;
+			return this;
+		}
+
+		/**
+		 * Sets how long a response is used after it was loaded.
+		 *
+		 * @param ttl the time to live, defaults to 30 seconds
+		 * @return the builder for fluent usage
+		 */
+		public Builder ttl(Duration ttl) {
+			this.ttl = ttl;
+			return this;
+		}
+
+		/**
+		 * Builds the cache after validation.
+		 *
+		 * @return the cache
+		 */
+		public ProjectMetadataCache build() {
+			isTrue(maxSize > 0, "maxSize must be positive");
+			notNull(ttl, "ttl");
+			isTrue(!ttl.isNegative() && !ttl.isZero(), "ttl must be positive");
+			return new ProjectMetadataCache(this);
+		}
+	}
+}
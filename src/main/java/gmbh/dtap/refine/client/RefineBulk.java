@@ -0,0 +1,272 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gmbh.dtap.refine.client;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * Runs a task, e.g. a create, apply-operations, export and delete pipeline, for each item of a collection.
+ * <p>
+ * On Java 21 and later each task runs on its own virtual thread, so that the fan-out is only limited by
+ * {@link Builder#maxConcurrency(int)} and {@link Builder#maxConcurrencyPerNode(int)}. On older versions the tasks
+ * run on a pool of {@link Builder#maxConcurrency(int)} platform threads.
+ * <p>
+ * The items wait in a queue per node and are handed to a thread only when their node is below its limit, so that
+ * a saturated node neither occupies threads nor holds back the items of other nodes.
+ */
+public class RefineBulk {
+
+	private final int maxConcurrency;
+	private final int maxConcurrencyPerNode;
+
+	private RefineBulk(int maxConcurrency, int maxConcurrencyPerNode) {
+		this.maxConcurrency = maxConcurrency;
+		this.maxConcurrencyPerNode = maxConcurrencyPerNode;
+	}
+
+	/**
+	 * Returns a new builder.
+	 *
+	 * @return the builder
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * Returns whether tasks run on virtual threads, which depends on the Java version.
+	 *
+	 * @return {@code true} if tasks run on virtual threads
+	 */
+	public static boolean isVirtualThreads() {
+		return BulkExecutors.isVirtual();
+	}
+
+	/**
+	 * Runs the task for each item, all items belong to the same node.
+	 *
+	 * @param items the items
+	 * @param task  the task to run for each item
+	 * @param <T>   the type of the items
+	 * @param <R>   the type of the results
+	 * @return the results and failures in the order of the items
+	 * @throws InterruptedException in case the calling thread is interrupted, running tasks are interrupted as well
+	 */
+	public <T, R> BulkResult<T, R> forEach(Collection<T> items, Task<? super T, ? extends R> task) throws InterruptedException {
+		return forEach(items, item -> "", task);
+	}
+
+	/**
+	 * Runs the task for each item, at most {@link Builder#maxConcurrencyPerNode(int)} tasks of the same node
+	 * run at the same time.
+	 *
+	 * @param items  the items
+	 * @param nodeOf returns the node of an item, e.g. the {@link RefineClient} it is sent to
+	 * @param task   the task to run for each item
+	 * @param <T>    the type of the items
+	 * @param <R>    the type of the results
+	 * @return the results and failures in the order of the items
+	 * @throws InterruptedException in case the calling thread is interrupted, running tasks are interrupted as well
+	 */
+	public <T, R> BulkResult<T, R> forEach(Collection<T> items, Function<? super T, ?> nodeOf, Task<? super T, ? extends R> task)
+		throws InterruptedException {
+		notNull(items, "items");
+		notNull(nodeOf, "nodeOf");
+		notNull(task, "task");
+		long start = System.nanoTime();
+		List<T> itemList = new ArrayList<>(items);
+		ExecutorService executor = BulkExecutors.newExecutor(maxConcurrency);
+		try {
+			Dispatcher<T, R> dispatcher = new Dispatcher<>(itemList, nodeOf, task, executor);
+			dispatcher.dispatch();
+			List<R> results = new ArrayList<>(itemList.size());
+			List<BulkResult.Failure<T>> failures = new ArrayList<>();
+			for (int i = 0; i < itemList.size(); i++) {
+				try {
+					results.add(dispatcher.futures.get(i).get());
+				} catch (ExecutionException e) {
+					results.add(null);
+					failures.add(new BulkResult.Failure<>(i, itemList.get(i), e.getCause()));
+				}
+			}
+			return new BulkResult<>(results, failures, Duration.ofNanos(System.nanoTime() - start));
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Hands the items of one {@link #forEach(Collection, Function, Task)} call to the executor, taking turns between
+	 * the nodes. The items of a node start in their order.
+	 */
+	private class Dispatcher<T, R> {
+
+		private final List<T> items;
+		private final Task<? super T, ? extends R> task;
+		private final ExecutorService executor;
+		private final List<CompletableFuture<R>> futures;
+		private final Map<Object, Node> nodes = new LinkedHashMap<>();
+		private int running;
+
+		Dispatcher(List<T> items, Function<? super T, ?> nodeOf, Task<? super T, ? extends R> task, ExecutorService executor) {
+			this.items = items;
+			this.task = task;
+			this.executor = executor;
+			this.futures = new ArrayList<>(items.size());
+			for (int i = 0; i < items.size(); i++) {
+				futures.add(new CompletableFuture<>());
+				nodes.computeIfAbsent(nodeOf.apply(items.get(i)), node -> new Node()).pending.add(i);
+			}
+		}
+
+		/**
+		 * Starts waiting items as long as the total limit and the limits of their nodes allow.
+		 */
+		synchronized void dispatch() {
+			boolean started = true;
+			while (started && running < maxConcurrency) {
+				started = false;
+				for (Iterator<Node> iterator = nodes.values().iterator(); iterator.hasNext() && running < maxConcurrency; ) {
+					Node node = iterator.next();
+					if (node.running < maxConcurrencyPerNode) {
+						start(node, node.pending.poll());
+						started = true;
+					}
+					if (node.pending.isEmpty()) {
+						iterator.remove();
+					}
+				}
+			}
+		}
+
+		private void start(Node node, int index) {
+			node.running++;
+			running++;
+			try {
+				executor.execute(() -> run(node, index));
+			} catch (RejectedExecutionException e) {
+				// shut down after the caller was interrupted
+				node.running--;
+				running--;
+				futures.get(index).completeExceptionally(e);
+			}
+		}
+
+		private void run(Node node, int index) {
+			try {
+				futures.get(index).complete(task.apply(items.get(index)));
+			} catch (Throwable e) {
+				futures.get(index).completeExceptionally(e);
+			} finally {
+				synchronized (this) {
+					node.running--;
+					running--;
+				}
+				dispatch();
+			}
+		}
+	}
+
+	/**
+	 * The waiting items and the number of running tasks of a node.
+	 */
+	private static class Node {
+
+		private final Queue<Integer> pending = new ArrayDeque<>();
+		private int running;
+	}
+
+	@Override
+	public String toString() {
+		return "RefineBulk{" +
+			"maxConcurrency=" + maxConcurrency +
+			", maxConcurrencyPerNode=" + maxConcurrencyPerNode +
+			", virtualThreads=" + isVirtualThreads() +
+			'}';
+	}
+
+	/**
+	 * A task for a single item.
+	 *
+	 * @param <T> the type of the item
+	 * @param <R> the type of the result
+	 */
+	@FunctionalInterface
+	public interface Task<T, R> {
+
+		R apply(T item) throws Exception;
+	}
+
+	/**
+	 * The builder for {@link RefineBulk}.
+	 */
+	public static class Builder {
+
+		private int maxConcurrency = 64;
+		private int maxConcurrencyPerNode = Integer.MAX_VALUE;
+
+		/**
+		 * Sets the maximum number of tasks that run at the same time. On Java versions before 21 this is the number
+		 * of platform threads, virtual threads allow a much larger value.
+		 *
+		 * @param maxConcurrency the maximum number of concurrent tasks, defaults to 64
+		 * @return the builder for fluent usage
+		 */
+		public Builder maxConcurrency(int maxConcurrency) {
+			this.maxConcurrency = maxConcurrency;
+			return this;
+		}
+
+		/**
+		 * Sets the maximum number of tasks of the same node that run at the same time.
+		 *
+		 * @param maxConcurrencyPerNode the maximum number of concurrent tasks per node, defaults to no limit
+		 * @return the builder for fluent usage
+		 */
+		public Builder maxConcurrencyPerNode(int maxConcurrencyPerNode) {
+			this.maxConcurrencyPerNode = maxConcurrencyPerNode;
+			return this;
+		}
+
+		/**
+		 * Builds the bulk executor after validation.
+		 *
+		 * @return the bulk executor
+		 */
+		public RefineBulk build() {
+			isTrue(maxConcurrency > 0, "maxConcurrency must be positive");
+			isTrue(maxConcurrencyPerNode > 0, "maxConcurrencyPerNode must be positive");
+			return new RefineBulk(maxConcurrency, maxConcurrencyPerNode);
+		}
+	}
+}
@@ -16,23 +16,71 @@
 
 package gmbh.dtap.refine.client;
 
+import org.apache.http.HeaderElement;
+import org.apache.http.HeaderElementIterator;
+import org.apache.http.HttpResponse;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.message.BasicHeaderElementIterator;
+import org.apache.http.protocol.HTTP;
+import org.apache.http.util.EntityUtils;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.net.http.HttpClient.Redirect;
+import java.net.http.HttpClient.Version;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.notEmpty;
+import static org.apache.commons.lang3.Validate.notNull;
 
 public class RefineClient implements AutoCloseable {
 
 	private final URL url;
-	private final HttpClient httpClient;
+	private final RefineTransport transport;
+	private final CsrfTokenProvider csrfTokenProvider;
+	private final RefineMetrics metrics = new RefineMetrics();
+	private final RetryPolicy retryPolicy;
+	private final RetryPolicy.Budget retryBudget;
+	private final ConcurrencyLimiter concurrencyLimiter;
+	private final ProjectMetadataCache projectMetadataCache;
+	private final ProcessPoller processPoller;
+	private volatile RefineEventListener[] listeners = new RefineEventListener[0];
+
+	RefineClient(URL url, RefineTransport transport) {
+		this(url, transport, RetryPolicy.none(), null, null);
+	}
 
-	RefineClient(URL url, HttpClient httpClient) {
+	RefineClient(URL url, RefineTransport transport, RetryPolicy retryPolicy, ConcurrencyLimiter concurrencyLimiter,
+				 ProjectMetadataCache projectMetadataCache) {
 		this.url = url;
-		this.httpClient = httpClient;
+		this.transport = transport;
+		this.retryPolicy = retryPolicy;
+		this.retryBudget = retryPolicy.newBudget();
+		this.concurrencyLimiter = concurrencyLimiter;
+		this.projectMetadataCache = projectMetadataCache;
+		if (projectMetadataCache != null) {
+			addEventListener(projectMetadataCache.invalidationListener());
+		}
+		this.csrfTokenProvider = new CsrfTokenProvider(this);
+		this.processPoller = new ProcessPoller(this);
 	}
 
 	public URL createUrl(String path) {
@@ -44,18 +92,617 @@ public class RefineClient implements AutoCloseable {
 	}
 
 	public <T> T execute(HttpUriRequest request, ResponseHandler<? extends T> responseHandler) throws IOException {
-		return httpClient.execute(request, responseHandler);
+		return execute(request, responseHandler, retryPolicy.isRetryable(request));
+	}
+
+	/**
+	 * Executes the request in a single attempt, a transient failure is not retried and not charged to the retry
+	 * budget.
+	 *
+	 * @param request         the request to execute
+	 * @param responseHandler the handler to validate and parse the response
+	 * @param <T>             the type of the parsed response
+	 * @return the result of the response handler
+	 * @throws IOException in case of a connection problem
+	 */
+	<T> T executeOnce(HttpUriRequest request, ResponseHandler<? extends T> responseHandler) throws IOException {
+		return execute(request, responseHandler, false);
+	}
+
+	/**
+	 * Executes the request in a single attempt past the concurrency limiter and the retry budget, e.g. for a health
+	 * check that must neither wait in the queue of a saturated node nor change its limit.
+	 *
+	 * @param request         the request to execute
+	 * @param responseHandler the handler to validate and parse the response
+	 * @param <T>             the type of the parsed response
+	 * @return the result of the response handler
+	 * @throws IOException in case of a connection problem
+	 */
+	<T> T executeUnlimited(HttpUriRequest request, ResponseHandler<? extends T> responseHandler) throws IOException {
+		RefineEvent event = metrics.start(request, listeners, false);
+		event.attach();
+		try {
+			return event.succeeded(transport.execute(request, event.instrument(responseHandler)));
+		} catch (IOException | RuntimeException e) {
+			event.failed(e);
+			throw e;
+		} finally {
+			event.detach();
+		}
+	}
+
+	private <T> T execute(HttpUriRequest request, ResponseHandler<? extends T> responseHandler, boolean retryable)
+		throws IOException {
+		for (int attempt = 1; ; attempt++) {
+			acquire();
+			RefineEvent event = metrics.start(request, listeners, false);
+			event.attach();
+			Throwable failure = null;
+			try {
+				T result = event.succeeded(transport.execute(request, event.instrument(responseHandler)));
+				retryBudget.onSuccess();
+				return result;
+			} catch (IOException e) {
+				failure = event.failed(e);
+				if (!retry(retryable, attempt, e, event)) {
+					throw e;
+				}
+			} catch (RuntimeException e) {
+				failure = event.failed(e);
+				throw e;
+			} finally {
+				event.detach();
+				release(event, failure);
+			}
+			backoff(attempt + 1);
+		}
+	}
+
+	/**
+	 * Executes the request and returns the response with its entity unread, so that large responses can be processed
+	 * while they are received. The caller has to close the content stream of the entity, or the response itself if
+	 * it is {@link java.io.Closeable}, to release the connection. The latency in the metrics ends when the headers
+	 * are received, the response bytes are counted while the entity is read. The concurrency limit, if any, is
+	 * released when the headers are received as well.
+	 *
+	 * @param request the request to execute
+	 * @return the response with the unread entity
+	 * @throws IOException in case of a connection problem
+	 */
+	public HttpResponse open(HttpUriRequest request) throws IOException {
+		boolean retryable = retryPolicy.isRetryable(request);
+		for (int attempt = 1; ; attempt++) {
+			acquire();
+			RefineEvent event = metrics.start(request, listeners, false);
+			event.attach();
+			Throwable failure = null;
+			try {
+				HttpResponse response = event.succeeded(event.instrument(transport.open(request)));
+				if (!isServerError(response)) {
+					retryBudget.onSuccess();
+					return response;
+				}
+				if (!retry(retryable, attempt, null, event)) {
+					return response;
+				}
+				closeQuietly(response);
+			} catch (IOException e) {
+				failure = event.failed(e);
+				if (!retry(retryable, attempt, e, event)) {
+					throw e;
+				}
+			} catch (RuntimeException e) {
+				failure = event.failed(e);
+				throw e;
+			} finally {
+				event.detach();
+				release(event, failure);
+			}
+			backoff(attempt + 1);
+		}
+	}
+
+	/**
+	 * Executes the request without blocking the calling thread. The response body is received completely
+	 * before it is passed to the response handler, so that parsing never blocks on the network.
+	 *
+	 * @param request         the request to execute
+	 * @param responseHandler the handler to validate and parse the response
+	 * @param <T>             the type of the parsed response
+	 * @return the future result of the response handler, completed exceptionally in case of a connection problem
+	 * or an exception thrown by the response handler
+	 */
+	public <T> CompletableFuture<T> executeAsync(HttpUriRequest request, ResponseHandler<? extends T> responseHandler) {
+		return executeAsync(request, responseHandler, retryPolicy.isRetryable(request), 1);
+	}
+
+	private <T> CompletableFuture<T> executeAsync(HttpUriRequest request, ResponseHandler<? extends T> responseHandler,
+												  boolean retryable, int attempt) {
+		if (concurrencyLimiter == null) {
+			return send(request, responseHandler, retryable, attempt);
+		}
+		return concurrencyLimiter.acquireAsync().thenCompose(permit -> send(request, responseHandler, retryable, attempt));
+	}
+
+	private <T> CompletableFuture<T> send(HttpUriRequest request, ResponseHandler<? extends T> responseHandler,
+										  boolean retryable, int attempt) {
+		RefineEvent event = metrics.start(request, listeners, true);
+		CompletableFuture<T> future = transport.executeAsync(request, event.<T> instrument(responseHandler));
+		return future.whenComplete(event::completed)
+			.<CompletableFuture<T>> handle((result, failure) -> {
+				Throwable cause = failure instanceof CompletionException ? failure.getCause() : failure;
+				release(event, cause);
+				if (failure == null) {
+					retryBudget.onSuccess();
+					return CompletableFuture.completedFuture(result);
+				}
+				if (cause instanceof IOException && retry(retryable, attempt, (IOException) cause, event)) {
+					Executor delay = CompletableFuture.delayedExecutor(retryPolicy.backoffNanos(attempt + 1), TimeUnit.NANOSECONDS);
+					return CompletableFuture.supplyAsync(() -> attempt + 1, delay)
+						.thenCompose(next -> executeAsync(request, responseHandler, retryable, next));
+				}
+				return CompletableFuture.<T> failedFuture(cause);
+			})
+			.thenCompose(Function.identity());
+	}
+
+	/**
+	 * Decides whether a failed attempt is repeated, a transient failure of a retryable request is charged to the
+	 * retry budget.
+	 */
+	private boolean retry(boolean retryable, int attempt, IOException failure, RefineEvent event) {
+		if (!retryable || !RetryPolicy.isTransient(failure, event)) {
+			return false;
+		}
+		if (!retryBudget.onFailure() || attempt >= retryPolicy.getMaxAttempts()) {
+			return false;
+		}
+		event.retrying();
+		return true;
+	}
+
+	private void acquire() throws IOException {
+		if (concurrencyLimiter != null) {
+			concurrencyLimiter.acquire();
+		}
+	}
+
+	private void release(RefineEvent event, Throwable failure) {
+		if (concurrencyLimiter != null) {
+			concurrencyLimiter.release(event, failure);
+		}
+	}
+
+	private void backoff(int attempt) throws InterruptedIOException {
+		try {
+			TimeUnit.NANOSECONDS.sleep(retryPolicy.backoffNanos(attempt));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted before attempt " + attempt);
+		}
+	}
+
+	private static boolean isServerError(HttpResponse response) {
+		int statusCode = response.getStatusLine().getStatusCode();
+		return statusCode >= 500 || statusCode == 429;
+	}
+
+	private static void closeQuietly(HttpResponse response) {
+		try {
+			if (response instanceof Closeable) {
+				((Closeable) response).close();
+			} else {
+				EntityUtils.consume(response.getEntity());
+			}
+		} catch (IOException e) {
+			// the response is discarded
+		}
+	}
+
+	/**
+	 * Returns the provider of the csrf token, which is used by commands that are built without a token.
+	 *
+	 * @return the csrf token provider
+	 */
+	public CsrfTokenProvider getCsrfTokenProvider() {
+		return csrfTokenProvider;
+	}
+
+	/**
+	 * Returns the metrics of the requests per command.
+	 *
+	 * @return the metrics
+	 */
+	public RefineMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Adds a listener, which is notified of the lifecycle of every following request.
+	 *
+	 * @param listener the listener
+	 */
+	public synchronized void addEventListener(RefineEventListener listener) {
+		notNull(listener, "listener");
+		RefineEventListener[] updated = Arrays.copyOf(listeners, listeners.length + 1);
+		updated[listeners.length] = listener;
+		listeners = updated;
+	}
+
+	/**
+	 * Removes a listener.
+	 *
+	 * @param listener the listener
+	 */
+	public synchronized void removeEventListener(RefineEventListener listener) {
+		listeners = Arrays.stream(listeners).filter(registered -> registered != listener).toArray(RefineEventListener[]::new);
+	}
+
+	/**
+	 * Returns the policy to repeat failed requests.
+	 *
+	 * @return the retry policy
+	 */
+	public RetryPolicy getRetryPolicy() {
+		return retryPolicy;
+	}
+
+	/**
+	 * Returns the limiter of concurrent requests to the node.
+	 *
+	 * @return the concurrency limiter, or {@code null} if the requests are not limited
+	 */
+	public ConcurrencyLimiter getConcurrencyLimiter() {
+		return concurrencyLimiter;
+	}
+
+	/**
+	 * Returns the cache of project metadata.
+	 *
+	 * @return the cache, or {@code null} if project metadata is not cached
+	 */
+	public ProjectMetadataCache getProjectMetadataCache() {
+		return projectMetadataCache;
+	}
+
+	/**
+	 * Waits until the long-running processes of a project are done, e.g. after operations were applied with a
+	 * <code>pending</code> response. All callers waiting for the same project share one poll of
+	 * <code>get-processes</code>, whose interval grows from 50 milliseconds to 2 seconds while processes are running.
+	 *
+	 * @param projectId the project ID
+	 * @return the future that completes when the process queue is drained, completed exceptionally with a
+	 * {@link RefineException} in case a process failed or the client is closed, or with an {@link IOException}
+	 * in case of a connection problem
+	 */
+	public CompletableFuture<Void> awaitCompletion(String projectId) {
+		notEmpty(projectId, "projectId");
+		return processPoller.awaitCompletion(projectId);
+	}
+
+	/**
+	 * Returns the transport, which sends the requests.
+	 *
+	 * @return the transport
+	 */
+	public RefineTransport getTransport() {
+		return transport;
+	}
+
+	/**
+	 * Returns a snapshot of the connection pool statistics.
+	 *
+	 * @return the pool statistics, or {@code null} if the transport does not pool connections
+	 */
+	public ConnectionPoolStats getConnectionPoolStats() {
+		return transport.getConnectionPoolStats();
 	}
 
 	@Override
 	public void close() throws Exception {
-		if (httpClient instanceof Closeable) {
-			((Closeable) httpClient).close();
-		}
+		processPoller.close();
+		transport.close();
 	}
 
 	@Override
 	public String toString() {
-		return "RefineClient{" + "url=" + url + '}';
+		return "RefineClient{" + "url=" + url + ", transport=" + transport + '}';
+	}
+
+	/**
+	 * The builder for {@link RefineClient}.
+	 */
+	public static class Builder {
+
+		private String url;
+		private int maxConnectionsTotal = 20;
+		private int maxConnectionsPerRoute = 20;
+		private Duration keepAlive = Duration.ofSeconds(30);
+		private Duration maxIdleTime = Duration.ofSeconds(60);
+		private Duration validateAfterInactivity = Duration.ofSeconds(2);
+		private Duration connectTimeout = Duration.ofSeconds(10);
+		private Duration connectionRequestTimeout = Duration.ofSeconds(30);
+		private Duration socketTimeout = Duration.ofMinutes(5);
+		private Executor asyncExecutor;
+		private TransportType transportType = TransportType.APACHE;
+		private RefineTransport transport;
+		private final List<RefineEventListener> eventListeners = new ArrayList<>();
+		private RetryPolicy retryPolicy = RetryPolicy.none();
+		private ConcurrencyLimiter concurrencyLimiter;
+		private ProjectMetadataCache projectMetadataCache;
+
+		/**
+		 * Sets the URL of the OpenRefine server.
+		 *
+		 * @param url the server URL, e.g. <code>http://localhost:3333</code>
+		 * @return the builder for fluent usage
+		 */
+		public Builder url(String url) {
+			this.url = url;
+			return this;
+		}
+
+		/**
+		 * Sets the maximum number of pooled connections.
+		 *
+		 * @param maxConnectionsTotal the maximum number of connections, defaults to 20
+		 * @return the builder for fluent usage
+		 */
+		public Builder maxConnectionsTotal(int maxConnectionsTotal) {
+			this.maxConnectionsTotal = maxConnectionsTotal;
+			return this;
+		}
+
+		/**
+		 * Sets the maximum number of pooled connections per route. As a client talks to a single server,
+		 * this is usually the same as {@link #maxConnectionsTotal(int)}.
+		 *
+		 * @param maxConnectionsPerRoute the maximum number of connections per route, defaults to 20
+		 * @return the builder for fluent usage
+		 */
+		public Builder maxConnectionsPerRoute(int maxConnectionsPerRoute) {
+			this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+			return this;
+		}
+
+		/**
+		 * Sets how long a connection is kept alive when the server does not send a <code>Keep-Alive</code> timeout.
+		 *
+		 * @param keepAlive the keep-alive duration, defaults to 30 seconds
+		 * @return the builder for fluent usage
+		 */
+		public Builder keepAlive(Duration keepAlive) {
+			this.keepAlive = keepAlive;
+			return this;
+		}
+
+		/**
+		 * Sets the time after which idle connections are evicted from the pool by a background thread.
+		 *
+		 * @param maxIdleTime the maximum idle time, defaults to 60 seconds
+		 * @return the builder for fluent usage
+		 */
+		public Builder maxIdleTime(Duration maxIdleTime) {
+			this.maxIdleTime = maxIdleTime;
+			return this;
+		}
+
+		/**
+		 * Sets the period of inactivity after which a pooled connection is validated before it is leased again.
+		 *
+		 * @param validateAfterInactivity the period of inactivity, defaults to 2 seconds
+		 * @return the builder for fluent usage
+		 */
+		public Builder validateAfterInactivity(Duration validateAfterInactivity) {
+			this.validateAfterInactivity = validateAfterInactivity;
+			return this;
+		}
+
+		/**
+		 * Sets the timeout to establish a connection.
+		 *
+		 * @param connectTimeout the connect timeout, defaults to 10 seconds
+		 * @return the builder for fluent usage
+		 */
+		public Builder connectTimeout(Duration connectTimeout) {
+			this.connectTimeout = connectTimeout;
+			return this;
+		}
+
+		/**
+		 * Sets the timeout to wait for a connection from the pool.
+		 *
+		 * @param connectionRequestTimeout the pool lease timeout, defaults to 30 seconds
+		 * @return the builder for fluent usage
+		 */
+		public Builder connectionRequestTimeout(Duration connectionRequestTimeout) {
+			this.connectionRequestTimeout = connectionRequestTimeout;
+			return this;
+		}
+
+		/**
+		 * Sets the socket timeout, the maximum period of inactivity while waiting for data.
+		 *
+		 * @param socketTimeout the socket timeout, defaults to 5 minutes
+		 * @return the builder for fluent usage
+		 */
+		public Builder socketTimeout(Duration socketTimeout) {
+			this.socketTimeout = socketTimeout;
+			return this;
+		}
+
+		/**
+		 * Sets the executor to complete asynchronous requests and run their response handlers.
+		 *
+		 * @param asyncExecutor the executor, defaults to the executor of {@link java.net.http.HttpClient}
+		 * @return the builder for fluent usage
+		 */
+		public Builder asyncExecutor(Executor asyncExecutor) {
+			this.asyncExecutor = asyncExecutor;
+			return this;
+		}
+
+		/**
+		 * Selects one of the built-in transports. The connection pool settings only apply to
+		 * {@link TransportType#APACHE}.
+		 *
+		 * @param transportType the transport type, defaults to {@link TransportType#APACHE}
+		 * @return the builder for fluent usage
+		 */
+		public Builder transport(TransportType transportType) {
+			this.transportType = transportType;
+			return this;
+		}
+
+		/**
+		 * Sets a custom transport, which replaces the built-in transports and their settings.
+		 *
+		 * @param transport the transport
+		 * @return the builder for fluent usage
+		 */
+		public Builder transport(RefineTransport transport) {
+			this.transport = transport;
+			return this;
+		}
+
+		/**
+		 * Sets the policy to repeat failed requests of idempotent commands.
+		 *
+		 * @param retryPolicy the retry policy, defaults to {@link RetryPolicy#none()}
+		 * @return the builder for fluent usage
+		 */
+		public Builder retryPolicy(RetryPolicy retryPolicy) {
+			this.retryPolicy = retryPolicy;
+			return this;
+		}
+
+		/**
+		 * Sets the limiter, which adapts the number of concurrent requests to the load of the node. Each client
+		 * needs its own limiter.
+		 *
+		 * @param concurrencyLimiter the limiter, defaults to none
+		 * @return the builder for fluent usage
+		 */
+		public Builder concurrencyLimiter(ConcurrencyLimiter concurrencyLimiter) {
+			this.concurrencyLimiter = concurrencyLimiter;
+			return this;
+		}
+
+		/**
+		 * Sets the cache of project metadata, which is invalidated by the commands of the client that change
+		 * a project. Each client needs its own cache.
+		 *
+		 * @param projectMetadataCache the cache, defaults to none
+		 * @return the builder for fluent usage
+		 */
+		public Builder projectMetadataCache(ProjectMetadataCache projectMetadataCache) {
+			this.projectMetadataCache = projectMetadataCache;
+			return this;
+		}
+
+		/**
+		 * Adds a listener, which is notified of the lifecycle of every request.
+		 *
+		 * @param eventListener the listener
+		 * @return the builder for fluent usage
+		 */
+		public Builder eventListener(RefineEventListener eventListener) {
+			this.eventListeners.add(eventListener);
+			return this;
+		}
+
+		/**
+		 * Builds the client after validation.
+		 *
+		 * @return the client
+		 * @throws MalformedURLException in case the URL is not valid
+		 */
+		public RefineClient build() throws MalformedURLException {
+			notNull(url, "url");
+			isTrue(maxConnectionsTotal > 0, "maxConnectionsTotal must be positive");
+			isTrue(maxConnectionsPerRoute > 0, "maxConnectionsPerRoute must be positive");
+			notNull(keepAlive, "keepAlive");
+			notNull(maxIdleTime, "maxIdleTime");
+			notNull(validateAfterInactivity, "validateAfterInactivity");
+			notNull(connectTimeout, "connectTimeout");
+			notNull(connectionRequestTimeout, "connectionRequestTimeout");
+			notNull(socketTimeout, "socketTimeout");
+
+			notNull(retryPolicy, "retryPolicy");
+
+			URL serverUrl = new URL(url);
+			RefineClient client = new RefineClient(serverUrl, transport != null ? transport : builtInTransport(), retryPolicy,
+				concurrencyLimiter, projectMetadataCache);
+			eventListeners.forEach(client::addEventListener);
+			return client;
+		}
+
+		private RefineTransport builtInTransport() {
+			notNull(transportType, "transportType");
+			switch (transportType) {
+				case JDK_HTTP_1_1:
+					return jdkTransport(Version.HTTP_1_1);
+				case JDK_HTTP_2:
+					return jdkTransport(Version.HTTP_2);
+				default:
+					return apacheTransport();
+			}
+		}
+
+		private ApacheTransport apacheTransport() {
+			PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+			connectionManager.setMaxTotal(maxConnectionsTotal);
+			connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+			connectionManager.setValidateAfterInactivity((int) validateAfterInactivity.toMillis());
+
+			RequestConfig requestConfig = RequestConfig.custom()
+				.setConnectTimeout((int) connectTimeout.toMillis())
+				.setConnectionRequestTimeout((int) connectionRequestTimeout.toMillis())
+				.setSocketTimeout((int) socketTimeout.toMillis())
+				.build();
+
+			HttpClient httpClient = HttpClients.custom()
+				.setConnectionManager(new TimingConnectionManager(connectionManager))
+				.setDefaultRequestConfig(requestConfig)
+				.setKeepAliveStrategy(keepAliveStrategy(keepAlive.toMillis()))
+				.evictExpiredConnections()
+				.evictIdleConnections(maxIdleTime.toMillis(), TimeUnit.MILLISECONDS)
+				.build();
+
+			return new ApacheTransport(httpClient, connectionManager, jdkTransport(Version.HTTP_1_1));
+		}
+
+		private JdkTransport jdkTransport(Version version) {
+			java.net.http.HttpClient.Builder jdkHttpClientBuilder = java.net.http.HttpClient.newBuilder()
+				.version(version)
+				.followRedirects(Redirect.NEVER)
+				.connectTimeout(connectTimeout);
+			if (asyncExecutor != null) {
+				jdkHttpClientBuilder.executor(asyncExecutor);
+			}
+			return new JdkTransport(jdkHttpClientBuilder.build(), socketTimeout);
+		}
+
+		/**
+		 * Honours the <code>timeout</code> parameter of a <code>Keep-Alive</code> response header
+		 * and falls back to the given default otherwise.
+		 */
+		private static ConnectionKeepAliveStrategy keepAliveStrategy(long defaultKeepAliveMillis) {
+			return (response, context) -> {
+				HeaderElementIterator iterator = new BasicHeaderElementIterator(response.headerIterator(HTTP.CONN_KEEP_ALIVE));
+				while (iterator.hasNext()) {
+					HeaderElement element = iterator.nextElement();
+					if ("timeout".equalsIgnoreCase(element.getName()) && element.getValue() != null) {
+						try {
+							return Long.parseLong(element.getValue()) * 1000;
+						} catch (NumberFormatException e) {
+							// ignore and use default
+						}
+					}
+				}
+				return defaultKeepAliveMillis;
+			};
+		}
 	}
 }
@@ -16,14 +16,22 @@
 
 package gmbh.dtap.refine.client;
 
-import org.apache.http.impl.client.HttpClients;
-
 import java.net.MalformedURLException;
-import java.net.URL;
 
 public interface RefineClients {
 
+	/**
+	 * Creates a client with a pooled connection manager using the defaults of {@link RefineClient.Builder}.
+	 *
+	 * @param url the server URL, e.g. <code>http://localhost:3333</code>
+	 * @return the client
+	 * @throws MalformedURLException in case the URL is not valid
+	 */
 	static RefineClient create(String url) throws MalformedURLException {
-		return new RefineClient(new URL(url), HttpClients.createDefault());
+		return builder().url(url).build();
+	}
+
+	static RefineClient.Builder builder() {
+		return new RefineClient.Builder();
 	}
 }
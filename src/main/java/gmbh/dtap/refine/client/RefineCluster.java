@@ -0,0 +1,430 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package gmbh.dtap.refine.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import gmbh.dtap.refine.client.command.CreateProjectCommand;
+import gmbh.dtap.refine.client.command.CreateProjectResponse;
+import gmbh.dtap.refine.client.command.RefineCommands;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.methods.RequestBuilder;
+import org.apache.http.util.EntityUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static gmbh.dtap.refine.client.util.HttpParser.HTTP_PARSER;
+import static gmbh.dtap.refine.client.util.JsonParser.JSON_PARSER;
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.notEmpty;
+import static org.apache.commons.lang3.Validate.notNull;
+import static org.apache.http.HttpHeaders.ACCEPT;
+import static org.apache.http.HttpStatus.SC_INTERNAL_SERVER_ERROR;
+import static org.apache.http.HttpStatus.SC_OK;
+import static org.apache.http.entity.ContentType.APPLICATION_JSON;
+
+/**
+ * Distributes projects over several OpenRefine nodes, each accessed by its own {@link RefineClient}.
+ * <p>
+ * A project lives on the node it was created on. {@link #createProject(CreateProjectCommand)} uploads to the
+ * healthy node with the least requests in flight and pins the new project ID to that node.
+ * {@link #client(String)} returns the client of the node of a project, so that the further commands for the project
+ * are sent to the right node. Projects that were not created through the cluster are located by asking the nodes
+ * for their metadata once, without retries, and a successful <code>delete-project</code> unpins the project.
+ * <p>
+ * The health of a node is probed with <code>get-version</code> and cached for the health check interval.
+ * An unhealthy node gets no new projects, and requests for its projects fail fast until it recovers.
+ */
+public class RefineCluster implements AutoCloseable {
+
+	private final List<Node> nodes;
+	private final Map<String, Node> projects = new ConcurrentHashMap<>();
+	private final AtomicInteger nextNode = new AtomicInteger();
+
+	private RefineCluster(Builder builder) {
+		List<Node> nodes = new ArrayList<>();
+		for (RefineClient client : builder.clients) {
+			Node node = new Node(client, builder.healthCheckInterval.toNanos());
+			client.addEventListener(new RefineEventListener() {
+				@Override
+				public void requestCompleted(RefineEvent event, Throwable failure) {
+					if (failure == null && "delete-project".equals(event.getCommand()) && event.getProjectId() != null) {
+						projects.remove(event.getProjectId(), node);
+					}
+				}
+			});
+			nodes.add(node);
+		}
+		this.nodes = Collections.unmodifiableList(nodes);
+	}
+
+	/**
+	 * Returns a new builder.
+	 *
+	 * @return the builder
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * Creates the project on the healthy node with the least requests in flight and pins it to that node.
+	 *
+	 * @param command the command to create the project
+	 * @return the response of the node
+	 * @throws IOException in case of a connection problem, or if no node is healthy
+	 */
+	public CreateProjectResponse createProject(CreateProjectCommand command) throws IOException {
+		Node node = leastLoaded();
+		CreateProjectResponse response = command.execute(node.client);
+		projects.put(response.getProjectId(), node);
+		return response;
+	}
+
+	/**
+	 * Creates the project like {@link #createProject(CreateProjectCommand)} without waiting for the upload.
+	 * The health of the nodes may be probed before the upload starts.
+	 *
+	 * @param command the command to create the project
+	 * @return the future response of the node
+	 */
+	public CompletableFuture<CreateProjectResponse> createProjectAsync(CreateProjectCommand command) {
+		Node node;
+		try {
+			node = leastLoaded();
+		} catch (RefineException e) {
+			return CompletableFuture.failedFuture(e);
+		}
+		return command.executeAsync(node.client).thenApply(response -> {
+			projects.put(response.getProjectId(), node);
+			return response;
+		});
+	}
+
+	/**
+	 * Returns the client of the healthy node with the least requests in flight, e.g. to create a project with
+	 * another command. The project has to be pinned with {@link #pin(String, RefineClient)} afterwards.
+	 *
+	 * @return the client
+	 * @throws RefineException in case no node is healthy
+	 */
+	public RefineClient clientForNewProject() throws RefineException {
+		return leastLoaded().client;
+	}
+
+	/**
+	 * Returns the client of the node the project lives on.
+	 *
+	 * @param projectId the project ID
+	 * @return the client
+	 * @throws RefineException in case the project is on no node, or its node is unhealthy
+	 * @throws IOException     in case of a connection problem while the project is located
+	 */
+	public RefineClient client(String projectId) throws IOException {
+		notEmpty(projectId, "projectId");
+		Node node = projects.get(projectId);
+		if (node == null) {
+			node = locate(projectId);
+		}
+		if (!node.isHealthy()) {
+			throw new RefineException("Node " + node.url + " of project " + projectId + " is unhealthy");
+		}
+		return node.client;
+	}
+
+	/**
+	 * Pins a project to the node of the client.
+	 *
+	 * @param projectId the project ID
+	 * @param client    the client of the node the project lives on
+	 */
+	public void pin(String projectId, RefineClient client) {
+		notEmpty(projectId, "projectId");
+		notNull(client, "client");
+		for (Node node : nodes) {
+			if (node.client == client) {
+				projects.put(projectId, node);
+				return;
+			}
+		}
+		throw new IllegalArgumentException("client is not a node of the cluster");
+	}
+
+	/**
+	 * Returns the clients of all nodes, healthy or not.
+	 *
+	 * @return the clients in the order they were added
+	 */
+	public List<RefineClient> getClients() {
+		List<RefineClient> clients = new ArrayList<>(nodes.size());
+		nodes.forEach(node -> clients.add(node.client));
+		return clients;
+	}
+
+	/**
+	 * Returns the clients of the healthy nodes, probing nodes whose health check is due.
+	 *
+	 * @return the clients in the order they were added
+	 */
+	public List<RefineClient> getHealthyClients() {
+		List<RefineClient> clients = new ArrayList<>(nodes.size());
+		for (Node node : nodes) {
+			if (node.isHealthy()) {
+				clients.add(node.client);
+			}
+		}
+		return clients;
+	}
+
+	/**
+	 * Returns the number of projects pinned to their nodes.
+	 *
+	 * @return the number of known projects
+	 */
+	public int getProjectCount() {
+		return projects.size();
+	}
+
+	private Node leastLoaded() throws RefineException {
+		// rotate the start, so that equally loaded nodes take turns
+		int start = Math.floorMod(nextNode.getAndIncrement(), nodes.size());
+		Node leastLoaded = null;
+		int leastLoad = Integer.MAX_VALUE;
+		for (int i = 0; i < nodes.size(); i++) {
+			Node node = nodes.get((start + i) % nodes.size());
+			if (node.isHealthy()) {
+				int load = node.getLoad();
+				if (load < leastLoad) {
+					leastLoaded = node;
+					leastLoad = load;
+				}
+			}
+		}
+		if (leastLoaded == null) {
+			throw new RefineException("No healthy node in the cluster");
+		}
+		return leastLoaded;
+	}
+
+	private Node locate(String projectId) throws IOException {
+		IOException failure = null;
+		for (Node node : nodes) {
+			if (node.isHealthy()) {
+				try {
+					if (node.hasProject(projectId)) {
+						Node pinned = projects.putIfAbsent(projectId, node);
+						return pinned != null ? pinned : node;
+					}
+				} catch (IOException e) {
+					// the project may be on this node, the other nodes are asked anyway
+					if (failure == null) {
+						failure = e;
+					} else {
+						failure.addSuppressed(e);
+					}
+				}
+			}
+		}
+		if (failure != null) {
+			throw new RefineException("Project " + projectId + " could not be located, a node failed to answer", failure);
+		}
+		throw new RefineException("Project " + projectId + " is not on any healthy node");
+	}
+
+	/**
+	 * Returns whether the response is the error OpenRefine sends for an unknown project, as opposed to a failure
+	 * of the node.
+	 */
+	private static boolean isProjectNotFound(HttpResponse response) throws IOException {
+		int statusCode = response.getStatusLine().getStatusCode();
+		if ((statusCode != SC_OK && statusCode != SC_INTERNAL_SERVER_ERROR) || response.getEntity() == null) {
+			return false;
+		}
+		JsonNode json;
+		try {
+			json = JSON_PARSER.parseJson(EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8));
+		} catch (RefineException e) {
+			return false;
+		}
+		return json != null && "error".equals(json.path("code").asText())
+			&& json.path("message").asText().toLowerCase(Locale.ROOT).contains("project");
+	}
+
+	/**
+	 * Closes the clients of all nodes.
+	 *
+	 * @throws Exception in case a client can not be closed
+	 */
+	@Override
+	public void close() throws Exception {
+		Exception failure = null;
+		for (Node node : nodes) {
+			try {
+				node.client.close();
+			} catch (Exception e) {
+				if (failure == null) {
+					failure = e;
+				} else {
+					failure.addSuppressed(e);
+				}
+			}
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	/**
+	 * A node with its cached health.
+	 */
+	private static final class Node {
+
+		private final RefineClient client;
+		private final String url;
+		private final long healthCheckIntervalNanos;
+		private final AtomicBoolean probing = new AtomicBoolean();
+		private volatile boolean healthy = true;
+		private volatile long checkedAt;
+		private volatile boolean checked;
+
+		Node(RefineClient client, long healthCheckIntervalNanos) {
+			this.client = client;
+			this.url = client.createUrl("/").toString();
+			this.healthCheckIntervalNanos = healthCheckIntervalNanos;
+		}
+
+		/**
+		 * Returns the cached health, and probes the node if the check is due. While one thread probes,
+		 * the others use the previous result.
+		 */
+		boolean isHealthy() {
+			if (checked && System.nanoTime() - checkedAt < healthCheckIntervalNanos) {
+				return healthy;
+			}
+			if (!probing.compareAndSet(false, true)) {
+				return healthy;
+			}
+			try {
+				healthy = probe();
+				checkedAt = System.nanoTime();
+				checked = true;
+			} finally {
+				probing.set(false);
+			}
+			return healthy;
+		}
+
+		/**
+		 * Asks the node for its version in a single attempt, which neither waits for nor changes the concurrency
+		 * limit of the node, so that a dead or saturated node does not stall the caller.
+		 */
+		private boolean probe() {
+			HttpUriRequest request = RequestBuilder.get(client.createUrl("command/core/get-version").toString())
+				.setHeader(ACCEPT, APPLICATION_JSON.getMimeType())
+				.build();
+			try {
+				client.executeUnlimited(request, RefineCommands.getVersion().build());
+				return true;
+			} catch (IOException | RuntimeException e) {
+				return false;
+			}
+		}
+
+		/**
+		 * Asks the node for the metadata of the project in a single attempt.
+		 *
+		 * @return {@code false} if the node answered that the project does not exist
+		 * @throws IOException in case the node failed to answer
+		 */
+		boolean hasProject(String projectId) throws IOException {
+			HttpUriRequest request = RequestBuilder.get(client.createUrl("command/core/get-project-metadata").toString())
+				.setHeader(ACCEPT, APPLICATION_JSON.getMimeType())
+				.addParameter("project", projectId)
+				.build();
+			return client.executeOnce(request, response -> {
+				if (isProjectNotFound(response)) {
+					return false;
+				}
+				HTTP_PARSER.assureStatusCode(response, SC_OK);
+				return true;
+			});
+		}
+
+		int getLoad() {
+			ConcurrencyLimiter limiter = client.getConcurrencyLimiter();
+			int queued = limiter != null ? limiter.getQueued() : 0;
+			return client.getMetrics().getInFlight() + queued;
+		}
+	}
+
+	/**
+	 * The builder for {@link RefineCluster}.
+	 */
+	public static class Builder {
+
+		private final List<RefineClient> clients = new ArrayList<>();
+		private Duration healthCheckInterval = Duration.ofSeconds(10);
+
+		/**
+		 * Adds a node.
+		 *
+		 * @param client the client of the node
+		 * @return the builder for fluent usage
+		 */
+		public Builder node(RefineClient client) {
+			this.clients.add(client);
+			return this;
+		}
+
+		/**
+		 * Sets how long the result of a health check is used before the node is probed again.
+		 *
+		 * @param healthCheckInterval the interval, defaults to 10 seconds
+		 * @return the builder for fluent usage
+		 */
+		public Builder healthCheckInterval(Duration healthCheckInterval) {
+			this.healthCheckInterval = healthCheckInterval;
+			return this;
+		}
+
+		/**
+		 * Builds the cluster after validation.
+		 *
+		 * @return the cluster
+		 */
+		public RefineCluster build() {
+			notEmpty(clients, "clients");
+			clients.forEach(client -> notNull(client, "client"));
+			isTrue(clients.stream().distinct().count() == clients.size(), "clients must be distinct");
+			notNull(healthCheckInterval, "healthCheckInterval");
+			isTrue(!healthCheckInterval.isNegative(), "healthCheckInterval must not be negative");
+			return new RefineCluster(this);
+		}
+	}
+}
@@ -0,0 +1,521 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gmbh.dtap.refine.client;
+
+import org.apache.commons.io.input.ProxyInputStream;
+import org.apache.commons.io.output.ProxyOutputStream;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.NameValuePair;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.utils.URLEncodedUtils;
+import org.apache.http.entity.HttpEntityWrapper;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A single request of a {@link RefineClient}, as passed to a {@link RefineEventListener}. The event is updated
+ * while the request is executed, so values may still change until {@link #isCompleted()} returns {@code true}.
+ */
+public final class RefineEvent {
+
+	private static final ThreadLocal<RefineEvent> CURRENT = new ThreadLocal<>();
+	private static final String NO_PROJECT = "";
+
+	private final CommandMetrics metrics;
+	private final HttpUriRequest request;
+	private final HttpEntity requestEntity;
+	private final RefineEventListener[] listeners;
+	private final boolean async;
+	private final FlightRecorderRequestEvent flightRecorderEvent;
+	private final long start;
+	private volatile long mark;
+	private volatile long end;
+	private volatile int statusCode;
+	private volatile long requestBytes;
+	private volatile long responseBytes;
+	private volatile long bodyReadNanos;
+	private volatile String projectId;
+	private volatile long leaseNanos = -1;
+	private volatile long connectNanos = -1;
+	private volatile long requestWriteNanos = -1;
+	private volatile long timeToFirstByteNanos = -1;
+	private volatile long parseNanos = -1;
+
+	RefineEvent(CommandMetrics metrics, HttpUriRequest request, RefineEventListener[] listeners, boolean async) {
+		this.metrics = metrics;
+		this.request = request;
+		this.listeners = listeners;
+		this.async = async;
+		HttpEntity entity = request instanceof HttpEntityEnclosingRequest ? ((HttpEntityEnclosingRequest) request).getEntity() : null;
+		if (entity instanceof CountingEntity) {
+			// a repeated request counts for the new event
+			entity = ((CountingEntity) entity).unwrap();
+		}
+		if (entity != null) {
+			((HttpEntityEnclosingRequest) request).setEntity(new CountingEntity(entity, this, true));
+		}
+		this.requestEntity = entity;
+		this.flightRecorderEvent = FlightRecording.beginRequest();
+		this.start = System.nanoTime();
+		this.mark = start;
+		for (RefineEventListener listener : listeners) {
+			try {
+				listener.requestStarted(this);
+			} catch (RuntimeException e) {
+				// listeners must not break requests
+			}
+		}
+	}
+
+	/**
+	 * Returns the event of the blocking request that is executed by the current thread.
+	 *
+	 * @return the event, or {@code null}
+	 */
+	static RefineEvent current() {
+		return CURRENT.get();
+	}
+
+	void attach() {
+		CURRENT.set(this);
+	}
+
+	void detach() {
+		CURRENT.set(null);
+	}
+
+	/**
+	 * Returns the command name, which is the last segment of the request path.
+	 *
+	 * @return the command name, e.g. <code>apply-operations</code>
+	 */
+	public String getCommand() {
+		return metrics.getCommand();
+	}
+
+	/**
+	 * Returns the request.
+	 *
+	 * @return the request
+	 */
+	public HttpUriRequest getRequest() {
+		return request;
+	}
+
+	/**
+	 * Returns the project ID from the <code>project</code> parameter of the query or of a form entity.
+	 * It is determined on the first call.
+	 *
+	 * @return the project ID, or {@code null} if the request does not refer to a project
+	 */
+	public String getProjectId() {
+		String current = projectId;
+		if (current == null) {
+			current = findProjectId();
+			projectId = current;
+		}
+		return current == NO_PROJECT ? null : current;
+	}
+
+	private String findProjectId() {
+		String query = request.getURI().getRawQuery();
+		if (query != null) {
+			for (NameValuePair pair : URLEncodedUtils.parse(query, StandardCharsets.UTF_8)) {
+				if ("project".equals(pair.getName())) {
+					return pair.getValue();
+				}
+			}
+		}
+		if (isForm(requestEntity)) {
+			try (InputStream in = requestEntity.getContent()) {
+				String project = findFormParameter(in, "project");
+				if (project != null) {
+					return project;
+				}
+			} catch (IOException | IllegalArgumentException e) {
+				// the form can not be read, there is no project
+			}
+		}
+		return NO_PROJECT;
+	}
+
+	private static boolean isForm(HttpEntity entity) {
+		if (entity == null || !entity.isRepeatable() || entity.getContentType() == null) {
+			return false;
+		}
+		return entity.getContentType().getValue().startsWith(URLEncodedUtils.CONTENT_TYPE);
+	}
+
+	/**
+	 * Reads the pairs of a form up to the parameter, so that large values after it are not read.
+	 */
+	private static String findFormParameter(InputStream in, String name) throws IOException {
+		InputStream buffered = new BufferedInputStream(in);
+		ByteArrayOutputStream pair = new ByteArrayOutputStream();
+		int read;
+		do {
+			read = buffered.read();
+			if (read == '&' || read < 0) {
+				String[] nameValue = pair.toString(StandardCharsets.US_ASCII.name()).split("=", 2);
+				if (nameValue.length == 2 && name.equals(URLDecoder.decode(nameValue[0], StandardCharsets.UTF_8))) {
+					return URLDecoder.decode(nameValue[1], StandardCharsets.UTF_8);
+				}
+				pair.reset();
+			} else {
+				pair.write(read);
+			}
+		} while (read >= 0);
+		return null;
+	}
+
+	/**
+	 * Returns whether the request is executed asynchronously.
+	 *
+	 * @return {@code true} for asynchronous requests
+	 */
+	public boolean isAsync() {
+		return async;
+	}
+
+	/**
+	 * Returns whether the request is completed.
+	 *
+	 * @return {@code true} if the request is completed
+	 */
+	public boolean isCompleted() {
+		return end != 0;
+	}
+
+	/**
+	 * Returns the start of the request as returned by {@link System#nanoTime()}.
+	 *
+	 * @return the start in nanoseconds
+	 */
+	public long getStartNanos() {
+		return start;
+	}
+
+	/**
+	 * Returns the duration of the completed request.
+	 *
+	 * @return the duration in nanoseconds, or <code>-1</code> if the request is not completed
+	 */
+	public long getDurationNanos() {
+		long completed = end;
+		return completed != 0 ? completed - start : -1;
+	}
+
+	/**
+	 * Returns the duration of the completed request without the time the response handler spent parsing, which
+	 * is the latency of the node and the network.
+	 *
+	 * @return the latency in nanoseconds, or <code>-1</code> if the request is not completed
+	 */
+	long getLatencyNanos() {
+		long duration = getDurationNanos();
+		long parse = parseNanos;
+		return duration >= 0 && parse > 0 ? Math.max(duration - parse, 0) : duration;
+	}
+
+	/**
+	 * Returns the duration of a phase.
+	 *
+	 * @param phase the phase
+	 * @return the duration in nanoseconds, or <code>-1</code> if the phase was not reported
+	 */
+	public long getPhaseNanos(RefinePhase phase) {
+		switch (phase) {
+			case LEASE:
+				return leaseNanos;
+			case CONNECT:
+				return connectNanos;
+			case REQUEST_WRITE:
+				return requestWriteNanos;
+			case TIME_TO_FIRST_BYTE:
+				return timeToFirstByteNanos;
+			case BODY_READ:
+				return parseNanos >= 0 ? bodyReadNanos : -1;
+			default:
+				return parseNanos;
+		}
+	}
+
+	/**
+	 * Returns the HTTP status of the response.
+	 *
+	 * @return the status, or <code>0</code> if no response was received yet
+	 */
+	public int getStatusCode() {
+		return statusCode;
+	}
+
+	/**
+	 * Returns the number of bytes of the request entity written so far.
+	 *
+	 * @return the number of bytes sent
+	 */
+	public long getRequestBytes() {
+		return requestBytes;
+	}
+
+	/**
+	 * Returns the number of bytes of the response entity read so far.
+	 *
+	 * @return the number of bytes received
+	 */
+	public long getResponseBytes() {
+		return responseBytes;
+	}
+
+	/**
+	 * Records a completed phase and notifies the listeners.
+	 *
+	 * @param phase         the phase
+	 * @param durationNanos the duration in nanoseconds
+	 */
+	void phaseCompleted(RefinePhase phase, long durationNanos) {
+		switch (phase) {
+			case LEASE:
+				leaseNanos = durationNanos;
+				break;
+			case CONNECT:
+				connectNanos = durationNanos;
+				break;
+			case REQUEST_WRITE:
+				requestWriteNanos = durationNanos;
+				break;
+			case TIME_TO_FIRST_BYTE:
+				timeToFirstByteNanos = durationNanos;
+				break;
+			case PARSE:
+				parseNanos = durationNanos;
+				break;
+			default:
+				break;
+		}
+		mark = System.nanoTime();
+		for (RefineEventListener listener : listeners) {
+			try {
+				listener.phaseCompleted(this, phase, durationNanos);
+			} catch (RuntimeException e) {
+				// listeners must not break requests
+			}
+		}
+	}
+
+	/**
+	 * Counts the bytes of the response entity, measures the time spent in the handler and reports the phases
+	 * from the first byte on.
+	 *
+	 * @param responseHandler the handler to instrument
+	 * @param <T>             the type of the parsed response
+	 * @return the instrumented handler
+	 */
+	<T> ResponseHandler<T> instrument(ResponseHandler<? extends T> responseHandler) {
+		return response -> {
+			instrument(response);
+			FlightRecorderHandlerEvent handlerEvent = FlightRecording.beginHandler();
+			long handlerStart = System.nanoTime();
+			try {
+				return responseHandler.handleResponse(response);
+			} finally {
+				long handlerNanos = System.nanoTime() - handlerStart;
+				long readNanos = bodyReadNanos;
+				if (handlerEvent != null) {
+					FlightRecording.commitHandler(handlerEvent, this, readNanos);
+				}
+				metrics.recordParseTime(handlerNanos);
+				phaseCompleted(RefinePhase.BODY_READ, readNanos);
+				phaseCompleted(RefinePhase.PARSE, Math.max(handlerNanos - readNanos, 0));
+			}
+		};
+	}
+
+	/**
+	 * Reports the time to the first byte and counts the bytes of the response entity while it is read.
+	 *
+	 * @param response the response
+	 * @return the response for fluent usage
+	 */
+	HttpResponse instrument(HttpResponse response) {
+		if (response != null) {
+			statusCode = response.getStatusLine() != null ? response.getStatusLine().getStatusCode() : 0;
+			phaseCompleted(RefinePhase.TIME_TO_FIRST_BYTE, System.nanoTime() - mark);
+			if (response.getEntity() != null) {
+				response.setEntity(new CountingEntity(response.getEntity(), this, false));
+			}
+		}
+		return response;
+	}
+
+	/**
+	 * Completes the request with a result, an error response of OpenRefine counts as error.
+	 *
+	 * @param result the result
+	 * @param <T>    the type of the result
+	 * @return the result for fluent usage
+	 */
+	<T> T succeeded(T result) {
+		boolean error = result instanceof RefineResponse && ((RefineResponse) result).getCode() == ResponseCode.ERROR;
+		complete(error, null);
+		return result;
+	}
+
+	/**
+	 * Completes the request with a failure.
+	 *
+	 * @param failure the failure
+	 * @param <E>     the type of the failure
+	 * @return the failure for fluent usage
+	 */
+	<E extends Throwable> E failed(E failure) {
+		complete(true, failure);
+		return failure;
+	}
+
+	/**
+	 * Completes the request with the outcome of a future.
+	 *
+	 * @param result  the result, if there is no failure
+	 * @param failure the failure or {@code null}
+	 */
+	void completed(Object result, Throwable failure) {
+		if (failure != null) {
+			failed(failure);
+		} else {
+			succeeded(result);
+		}
+	}
+
+	private void complete(boolean error, Throwable failure) {
+		end = System.nanoTime();
+		metrics.recordCompletion(end - start, error);
+		if (flightRecorderEvent != null) {
+			FlightRecording.commitRequest(flightRecorderEvent, this, failure);
+		}
+		for (RefineEventListener listener : listeners) {
+			try {
+				listener.requestCompleted(this, failure);
+			} catch (RuntimeException e) {
+				// listeners must not break requests
+			}
+		}
+	}
+
+	/**
+	 * Records that the failed request is repeated.
+	 */
+	void retrying() {
+		metrics.recordRetry();
+	}
+
+	private void addRequestBytes(int bytes) {
+		requestBytes += bytes;
+		metrics.recordRequestBytes(bytes);
+	}
+
+	private void addResponseBytes(int bytes, long readNanos) {
+		responseBytes += bytes;
+		bodyReadNanos += readNanos;
+		metrics.recordResponseBytes(bytes);
+	}
+
+	@Override
+	public String toString() {
+		return "RefineEvent{" +
+			"command='" + getCommand() + '\'' +
+			", async=" + async +
+			", statusCode=" + statusCode +
+			", requestBytes=" + requestBytes +
+			", responseBytes=" + responseBytes +
+			", durationNanos=" + getDurationNanos() +
+			'}';
+	}
+
+	/**
+	 * Counts the bytes that are written or read through the entity and the time it takes.
+	 */
+	private static class CountingEntity extends HttpEntityWrapper {
+
+		private final RefineEvent event;
+		private final boolean request;
+
+		CountingEntity(HttpEntity wrappedEntity, RefineEvent event, boolean request) {
+			super(wrappedEntity);
+			this.event = event;
+			this.request = request;
+		}
+
+		HttpEntity unwrap() {
+			return wrappedEntity;
+		}
+
+		@Override
+		public InputStream getContent() throws IOException {
+			return new ProxyInputStream(super.getContent()) {
+
+				private long readStart;
+
+				@Override
+				protected void beforeRead(int n) {
+					readStart = System.nanoTime();
+				}
+
+				@Override
+				protected void afterRead(int n) {
+					count(Math.max(n, 0), System.nanoTime() - readStart);
+				}
+			};
+		}
+
+		@Override
+		public void writeTo(OutputStream out) throws IOException {
+			long writeStart = System.nanoTime();
+			super.writeTo(new ProxyOutputStream(out) {
+
+				@Override
+				protected void beforeWrite(int n) {
+					count(n, 0);
+				}
+			});
+			long writeNanos = System.nanoTime() - writeStart;
+			if (request) {
+				event.phaseCompleted(RefinePhase.REQUEST_WRITE, writeNanos);
+			} else {
+				// the response body is read while it is written
+				event.addResponseBytes(0, writeNanos);
+			}
+		}
+
+		private void count(int bytes, long nanos) {
+			if (request) {
+				event.addRequestBytes(bytes);
+			} else {
+				event.addResponseBytes(bytes, nanos);
+			}
+		}
+	}
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gmbh.dtap.refine.client;
+
+/**
+ * Receives the lifecycle of every request of a {@link RefineClient}. The callbacks run on the thread that executes
+ * the request and should return quickly. The callbacks themselves allocate nothing, the {@link RefineEvent} of a
+ * request is shared with the metrics. Recording a request allocates a few small objects besides the event: the
+ * wrappers counting the request and response entities with their proxy streams, the instrumented response handler
+ * and, for blocking calls on the Apache transport, the timed connection request of the pool. Exceptions thrown by
+ * a listener are ignored.
+ */
+public interface RefineEventListener {
+
+	/**
+	 * Called before the request is sent.
+	 *
+	 * @param event the event of the request
+	 */
+	default void requestStarted(RefineEvent event) {
+	}
+
+	/**
+	 * Called when a phase of the request is completed.
+	 *
+	 * @param event         the event of the request
+	 * @param phase         the completed phase
+	 * @param durationNanos the duration of the phase in nanoseconds
+	 */
+	default void phaseCompleted(RefineEvent event, RefinePhase phase, long durationNanos) {
+	}
+
+	/**
+	 * Called when the request is completed, for {@link RefineClient#open} when the response headers are received.
+	 *
+	 * @param event   the event of the request
+	 * @param failure the exception of a failed request, or {@code null}
+	 */
+	default void requestCompleted(RefineEvent event, Throwable failure) {
+	}
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gmbh.dtap.refine.client;
+
+import org.apache.http.client.methods.HttpUriRequest;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * The metrics of the requests of a {@link RefineClient}, kept per command. The command is the last segment
+ * of the request path, e.g. <code>apply-operations</code> for {@code ApplyOperationsCommand}.
+ */
+public class RefineMetrics {
+
+	private final Map<String, CommandMetrics> commands = new ConcurrentHashMap<>();
+	private final List<Consumer<String>> commandListeners = new CopyOnWriteArrayList<>();
+
+	/**
+	 * Starts a request.
+	 *
+	 * @param request   the request
+	 * @param listeners the listeners to notify
+	 * @param async     whether the request is executed asynchronously
+	 * @return the event to complete when the request is done
+	 */
+	RefineEvent start(HttpUriRequest request, RefineEventListener[] listeners, boolean async) {
+		String command = commandOf(request);
+		CommandMetrics metrics = commands.get(command);
+		if (metrics == null) {
+			CommandMetrics created = new CommandMetrics(command);
+			metrics = commands.putIfAbsent(command, created);
+			if (metrics == null) {
+				metrics = created;
+				commandListeners.forEach(listener -> listener.accept(command));
+			}
+		}
+		return metrics.start(request, listeners, async);
+	}
+
+	static String commandOf(HttpUriRequest request) {
+		String path = request.getURI().getPath();
+		if (path == null) {
+			return "";
+		}
+		int end = path.endsWith("/") ? path.length() - 1 : path.length();
+		return path.substring(path.lastIndexOf('/', end - 1) + 1, end);
+	}
+
+	/**
+	 * Returns a snapshot of the metrics of a command.
+	 *
+	 * @param command the command, e.g. <code>export-rows</code>
+	 * @return the snapshot, or {@code null} if there was no request for the command yet
+	 */
+	public CommandMetricsSnapshot snapshot(String command) {
+		CommandMetrics metrics = commands.get(command);
+		return metrics != null ? metrics.snapshot() : null;
+	}
+
+	/**
+	 * Returns a single value of the metrics of a command without taking a snapshot, e.g. for a meter that is read
+	 * on every scrape.
+	 *
+	 * @param command   the command, e.g. <code>export-rows</code>
+	 * @param statistic the value to read
+	 * @return the value, <code>0</code> if there was no request for the command yet
+	 */
+	public long get(String command, CommandStatistic statistic) {
+		CommandMetrics metrics = commands.get(command);
+		return metrics != null ? metrics.get(statistic) : 0;
+	}
+
+	/**
+	 * Returns snapshots of the metrics of all commands, ordered by command.
+	 *
+	 * @return the snapshots by command
+	 */
+	public Map<String, CommandMetricsSnapshot> snapshot() {
+		Map<String, CommandMetricsSnapshot> snapshots = new TreeMap<>();
+		commands.forEach((command, metrics) -> snapshots.put(command, metrics.snapshot()));
+		return snapshots;
+	}
+
+	/**
+	 * Returns the number of requests of all commands that are not completed yet.
+	 *
+	 * @return the number of requests in flight
+	 */
+	public int getInFlight() {
+		int inFlight = 0;
+		for (CommandMetrics metrics : commands.values()) {
+			inFlight += metrics.getInFlight();
+		}
+		return inFlight;
+	}
+
+	/**
+	 * Calls the listener for each command with requests and for each command that receives its first request
+	 * later, e.g. to register meters for it.
+	 *
+	 * @param listener the listener to call with the command
+	 */
+	public void forEachCommand(Consumer<String> listener) {
+		commandListeners.add(listener);
+		commands.keySet().forEach(listener);
+	}
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gmbh.dtap.refine.client;
+
+/**
+ * The phases of a request that are reported to a {@link RefineEventListener}. Not every phase is reported for
+ * every request, e.g. {@link #CONNECT} only when a new connection is opened.
+ */
+public enum RefinePhase {
+
+	/**
+	 * Waiting for a connection from the pool, reported by {@link TransportType#APACHE} for blocking calls.
+	 */
+	LEASE,
+
+	/**
+	 * Opening a new connection, reported by {@link TransportType#APACHE} for blocking calls.
+	 */
+	CONNECT,
+
+	/**
+	 * Writing the request entity.
+	 */
+	REQUEST_WRITE,
+
+	/**
+	 * From the end of the previous phase until the response headers are received. For asynchronous calls
+	 * the response body is received completely before the headers are passed on, so it is included.
+	 */
+	TIME_TO_FIRST_BYTE,
+
+	/**
+	 * Waiting for the response body while the response handler reads it.
+	 */
+	BODY_READ,
+
+	/**
+	 * Time spent in the response handler without {@link #BODY_READ}.
+	 */
+	PARSE
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gmbh.dtap.refine.client;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.methods.HttpUriRequest;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Sends the requests of a {@link RefineClient}. The commands describe their requests and parse their responses with
+ * the Apache HTTP model, a transport decides how they are sent.
+ *
+ * @see ApacheTransport
+ * @see JdkTransport
+ */
+public interface RefineTransport extends Closeable {
+
+	/**
+	 * Executes the request and passes the response to the handler, the connection is released afterwards.
+	 *
+	 * @param request         the request to execute
+	 * @param responseHandler the handler to validate and parse the response
+	 * @param <T>             the type of the parsed response
+	 * @return the result of the response handler
+	 * @throws IOException in case of a connection problem or an exception thrown by the response handler
+	 */
+	<T> T execute(HttpUriRequest request, ResponseHandler<? extends T> responseHandler) throws IOException;
+
+	/**
+	 * Executes the request and returns the response with its entity unread. The caller has to close the content
+	 * stream of the entity, or the response itself if it is {@link Closeable}, to release the connection.
+	 *
+	 * @param request the request to execute
+	 * @return the response with the unread entity
+	 * @throws IOException in case of a connection problem
+	 */
+	HttpResponse open(HttpUriRequest request) throws IOException;
+
+	/**
+	 * Executes the request without blocking the calling thread.
+	 *
+	 * @param request         the request to execute
+	 * @param responseHandler the handler to validate and parse the response
+	 * @param <T>             the type of the parsed response
+	 * @return the future result of the response handler, completed exceptionally in case of a connection problem
+	 * or an exception thrown by the response handler
+	 */
+	<T> CompletableFuture<T> executeAsync(HttpUriRequest request, ResponseHandler<? extends T> responseHandler);
+
+	/**
+	 * Returns a snapshot of the connection pool statistics.
+	 *
+	 * @return the pool statistics, or {@code null} if the transport does not pool connections
+	 */
+	default ConnectionPoolStats getConnectionPoolStats() {
+		return null;
+	}
+}
@@ -0,0 +1,340 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gmbh.dtap.refine.client;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.client.methods.HttpUriRequest;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * Decides whether a failed request of a {@link RefineClient} is repeated and how long to wait before.
+ * <p>
+ * Only idempotent commands are repeated: reads like <code>get-version</code>, <code>get-project-metadata</code>,
+ * <code>preview-expression</code> and <code>export-rows</code>, and <code>create-project-from-upload</code> if the
+ * uploaded entity is repeatable. Commands that change a project, like <code>apply-operations</code>, are never
+ * repeated. A failure is transient if the server responds with 5xx or 429, or if the connection fails before any
+ * of the response body was passed to the command.
+ * <p>
+ * The delay grows exponentially up to a maximum and is reduced by a random jitter. A retry budget, which is
+ * refilled by successful requests, stops retries when most requests to a node fail, so that retries do not add
+ * load to an overloaded node.
+ */
+public class RetryPolicy {
+
+	/**
+	 * The commands that can be repeated without changing the result.
+	 */
+	public static final Set<String> IDEMPOTENT_COMMANDS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+		"get-csrf-token", "get-version", "get-project-metadata", "get-all-project-metadata", "get-processes", "get-rows",
+		"preview-expression", "export-rows")));
+
+	/**
+	 * The command that is repeated if its entity is repeatable.
+	 */
+	public static final String CREATE_PROJECT_COMMAND = "create-project-from-upload";
+
+	private static final RetryPolicy NONE = new Builder().maxAttempts(1).build();
+
+	private final int maxAttempts;
+	private final Duration initialBackoff;
+	private final Duration maxBackoff;
+	private final double multiplier;
+	private final double jitter;
+	private final int budgetTokens;
+	private final double budgetTokenRatio;
+	private final Set<String> retryableCommands;
+
+	private RetryPolicy(Builder builder) {
+		this.maxAttempts = builder.maxAttempts;
+		this.initialBackoff = builder.initialBackoff;
+		this.maxBackoff = builder.maxBackoff;
+		this.multiplier = builder.multiplier;
+		this.jitter = builder.jitter;
+		this.budgetTokens = builder.budgetTokens;
+		this.budgetTokenRatio = builder.budgetTokenRatio;
+		this.retryableCommands = Collections.unmodifiableSet(new HashSet<>(builder.retryableCommands));
+	}
+
+	/**
+	 * Returns a policy that never repeats a request, which is the default of {@link RefineClient}.
+	 *
+	 * @return the policy
+	 */
+	public static RetryPolicy none() {
+		return NONE;
+	}
+
+	/**
+	 * Returns a new builder.
+	 *
+	 * @return the builder
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * Returns the maximum number of attempts including the first one.
+	 *
+	 * @return the maximum number of attempts
+	 */
+	public int getMaxAttempts() {
+		return maxAttempts;
+	}
+
+	/**
+	 * Returns whether the request may be repeated at all.
+	 *
+	 * @param request the request
+	 * @return {@code true} if the command of the request is idempotent
+	 */
+	boolean isRetryable(HttpUriRequest request) {
+		if (maxAttempts <= 1) {
+			return false;
+		}
+		String command = RefineMetrics.commandOf(request);
+		if (retryableCommands.contains(command)) {
+			return true;
+		}
+		if (CREATE_PROJECT_COMMAND.equals(command) && request instanceof HttpEntityEnclosingRequest) {
+			HttpEntity entity = ((HttpEntityEnclosingRequest) request).getEntity();
+			return entity == null || entity.isRepeatable();
+		}
+		return false;
+	}
+
+	/**
+	 * Returns whether the failure of an attempt is transient.
+	 *
+	 * @param failure the failure, or {@code null} for a response with an error status
+	 * @param event   the event of the failed attempt
+	 * @return {@code true} if the failure may not occur again
+	 */
+	static boolean isTransient(IOException failure, RefineEvent event) {
+		if (failure instanceof InterruptedIOException && !(failure instanceof SocketTimeoutException)) {
+			return false;
+		}
+		int statusCode = event.getStatusCode();
+		if (statusCode >= 500 || statusCode == 429) {
+			return true;
+		}
+		// the command may already have passed on a part of the body, or the response was understood
+		return failure != null && !(failure instanceof RefineException) && event.getResponseBytes() == 0;
+	}
+
+	/**
+	 * Returns the delay before the given attempt.
+	 *
+	 * @param attempt the attempt, starting with <code>2</code> for the first retry
+	 * @return the delay in nanoseconds
+	 */
+	long backoffNanos(int attempt) {
+		double delay = initialBackoff.toNanos() * Math.pow(multiplier, attempt - 2);
+		delay = Math.min(delay, maxBackoff.toNanos());
+		return (long) (delay * (1 - jitter * ThreadLocalRandom.current().nextDouble()));
+	}
+
+	/**
+	 * Creates the retry budget of a client.
+	 *
+	 * @return the budget
+	 */
+	Budget newBudget() {
+		return new Budget(budgetTokens, budgetTokenRatio);
+	}
+
+	@Override
+	public String toString() {
+		return "RetryPolicy{" +
+			"maxAttempts=" + maxAttempts +
+			", initialBackoff=" + initialBackoff +
+			", maxBackoff=" + maxBackoff +
+			", multiplier=" + multiplier +
+			", jitter=" + jitter +
+			", budgetTokens=" + budgetTokens +
+			", budgetTokenRatio=" + budgetTokenRatio +
+			'}';
+	}
+
+	/**
+	 * A token bucket that limits retries. Each transient failure takes a token, each success returns a fraction of
+	 * a token. Retries are allowed while more than half of the tokens are left.
+	 */
+	static final class Budget {
+
+		private final double maxTokens;
+		private final double tokenRatio;
+		private double tokens;
+
+		Budget(int maxTokens, double tokenRatio) {
+			this.maxTokens = maxTokens;
+			this.tokenRatio = tokenRatio;
+			this.tokens = maxTokens;
+		}
+
+		synchronized void onSuccess() {
+			tokens = Math.min(maxTokens, tokens + tokenRatio);
+		}
+
+		/**
+		 * Records a transient failure and returns whether it may be retried.
+		 *
+		 * @return {@code true} if the budget allows a retry
+		 */
+		synchronized boolean onFailure() {
+			tokens = Math.max(0, tokens - 1);
+			return tokens > maxTokens / 2;
+		}
+
+		synchronized double getTokens() {
+			return tokens;
+		}
+	}
+
+	/**
+	 * The builder for {@link RetryPolicy}.
+	 */
+	public static class Builder {
+
+		private int maxAttempts = 3;
+		private Duration initialBackoff = Duration.ofMillis(100);
+		private Duration maxBackoff = Duration.ofSeconds(5);
+		private double multiplier = 2;
+		private double jitter = 0.5;
+		private int budgetTokens = 10;
+		private double budgetTokenRatio = 0.1;
+		private final Set<String> retryableCommands = new HashSet<>(IDEMPOTENT_COMMANDS);
+
+		/**
+		 * Sets the maximum number of attempts including the first one.
+		 *
+		 * @param maxAttempts the maximum number of attempts, defaults to 3
+		 * @return the builder for fluent usage
+		 */
+		public Builder maxAttempts(int maxAttempts) {
+			this.maxAttempts = maxAttempts;
+			return this;
+		}
+
+		/**
+		 * Sets the delay before the first retry.
+		 *
+		 * @param initialBackoff the initial delay, defaults to 100 milliseconds
+		 * @return the builder for fluent usage
+		 */
+		public Builder initialBackoff(Duration initialBackoff) {
+			this.initialBackoff = initialBackoff;
+			return this;
+		}
+
+		/**
+		 * Sets the maximum delay between two attempts.
+		 *
+		 * @param maxBackoff the maximum delay, defaults to 5 seconds
+		 * @return the builder for fluent usage
+		 */
+		public Builder maxBackoff(Duration maxBackoff) {
+			this.maxBackoff = maxBackoff;
+			return this;
+		}
+
+		/**
+		 * Sets the factor the delay grows with each retry.
+		 *
+		 * @param multiplier the multiplier, defaults to 2
+		 * @return the builder for fluent usage
+		 */
+		public Builder multiplier(double multiplier) {
+			this.multiplier = multiplier;
+			return this;
+		}
+
+		/**
+		 * Sets the share of the delay that is randomly dropped, so that clients do not retry at the same time.
+		 *
+		 * @param jitter the jitter between <code>0.0</code> and <code>1.0</code>, defaults to <code>0.5</code>
+		 * @return the builder for fluent usage
+		 */
+		public Builder jitter(double jitter) {
+			this.jitter = jitter;
+			return this;
+		}
+
+		/**
+		 * Sets the size of the retry budget. Retries stop when more than half of the tokens are used up.
+		 *
+		 * @param budgetTokens the number of tokens, defaults to 10
+		 * @return the builder for fluent usage
+		 */
+		public Builder budgetTokens(int budgetTokens) {
+			this.budgetTokens = budgetTokens;
+			return this;
+		}
+
+		/**
+		 * Sets the fraction of a token a successful request returns to the retry budget.
+		 *
+		 * @param budgetTokenRatio the fraction, defaults to <code>0.1</code>
+		 * @return the builder for fluent usage
+		 */
+		public Builder budgetTokenRatio(double budgetTokenRatio) {
+			this.budgetTokenRatio = budgetTokenRatio;
+			return this;
+		}
+
+		/**
+		 * Marks a further command as idempotent, e.g. <code>delete-project</code>.
+		 *
+		 * @param command the command, the last segment of the request path
+		 * @return the builder for fluent usage
+		 */
+		public Builder retryable(String command) {
+			this.retryableCommands.add(command);
+			return this;
+		}
+
+		/**
+		 * Builds the policy after validation.
+		 *
+		 * @return the policy
+		 */
+		public RetryPolicy build() {
+			isTrue(maxAttempts > 0, "maxAttempts must be positive");
+			notNull(initialBackoff, "initialBackoff");
+			notNull(maxBackoff, "maxBackoff");
+			isTrue(multiplier >= 1, "multiplier must not be less than 1");
+			isTrue(jitter >= 0 && jitter <= 1, "jitter must be between 0 and 1");
+			isTrue(budgetTokens > 0, "budgetTokens must be positive");
+			isTrue(budgetTokenRatio >= 0, "budgetTokenRatio must not be negative");
+			isTrue(!retryableCommands.contains("apply-operations"), "apply-operations must not be retried");
+			return new RetryPolicy(this);
+		}
+	}
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gmbh.dtap.refine.client;
+
+import java.util.List;
+
+import static java.util.Collections.unmodifiableList;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * A row of a project as exported or fetched from OpenRefine.
+ */
+public class Row {
+
+	private final long index;
+	private final List<String> cells;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param index the zero-based index of the row
+	 * @param cells the cell values in column order
+	 */
+	public Row(long index, List<String> cells) {
+		notNull(cells, "cells");
+		this.index = index;
+		this.cells = unmodifiableList(cells);
+	}
+
+	/**
+	 * Returns the zero-based index of the row.
+	 *
+	 * @return the row index
+	 */
+	public long getIndex() {
+		return index;
+	}
+
+	/**
+	 * Returns the cell values in column order.
+	 *
+	 * @return the unmodifiable cell values
+	 */
+	public List<String> getCells() {
+		return cells;
+	}
+
+	/**
+	 * Returns the value of a single cell.
+	 *
+	 * @param column the zero-based column index
+	 * @return the cell value, or {@code null} if the row has less cells
+	 */
+	public String getCell(int column) {
+		return column < cells.size() ? cells.get(column) : null;
+	}
+
+	/**
+	 * Returns the number of cells.
+	 *
+	 * @return the number of cells
+	 */
+	public int size() {
+		return cells.size();
+	}
+
+	@Override
+	public String toString() {
+		return "Row{" +
+			"index=" + index +
+			", cells=" + cells +
+			'}';
+	}
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gmbh.dtap.refine.client;
+
+import org.apache.http.HttpClientConnection;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.HttpClientConnectionManager;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.protocol.HttpContext;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reports waiting for a pooled connection and opening a new connection to the {@link RefineEvent} of the
+ * blocking request that is executed by the current thread.
+ */
+final class TimingConnectionManager implements HttpClientConnectionManager {
+
+	private final HttpClientConnectionManager delegate;
+
+	TimingConnectionManager(HttpClientConnectionManager delegate) {
+		this.delegate = delegate;
+	}
+
+	@Override
+	public ConnectionRequest requestConnection(HttpRoute route, Object state) {
+		ConnectionRequest connectionRequest = delegate.requestConnection(route, state);
+		RefineEvent event = RefineEvent.current();
+		if (event == null) {
+			return connectionRequest;
+		}
+		return new ConnectionRequest() {
+
+			@Override
+			public HttpClientConnection get(long timeout, TimeUnit timeUnit)
+				throws InterruptedException, ExecutionException, ConnectionPoolTimeoutException {
+				long start = System.nanoTime();
+				try {
+					return connectionRequest.get(timeout, timeUnit);
+				} finally {
+					event.phaseCompleted(RefinePhase.LEASE, System.nanoTime() - start);
+				}
+			}
+
+			@Override
+			public boolean cancel() {
+				return connectionRequest.cancel();
+			}
+		};
+	}
+
+	@Override
+	public void releaseConnection(HttpClientConnection conn, Object newState, long validDuration, TimeUnit timeUnit) {
+		delegate.releaseConnection(conn, newState, validDuration, timeUnit);
+	}
+
+	@Override
+	public void connect(HttpClientConnection conn, HttpRoute route, int connectTimeout, HttpContext context) throws IOException {
+		long start = System.nanoTime();
+		try {
+			delegate.connect(conn, route, connectTimeout, context);
+		} finally {
+			RefineEvent event = RefineEvent.current();
+			if (event != null) {
+				event.phaseCompleted(RefinePhase.CONNECT, System.nanoTime() - start);
+			}
+		}
+	}
+
+	@Override
+	public void upgrade(HttpClientConnection conn, HttpRoute route, HttpContext context) throws IOException {
+		delegate.upgrade(conn, route, context);
+	}
+
+	@Override
+	public void routeComplete(HttpClientConnection conn, HttpRoute route, HttpContext context) throws IOException {
+		delegate.routeComplete(conn, route, context);
+	}
+
+	@Override
+	public void closeIdleConnections(long idletime, TimeUnit timeUnit) {
+		delegate.closeIdleConnections(idletime, timeUnit);
+	}
+
+	@Override
+	public void closeExpiredConnections() {
+		delegate.closeExpiredConnections();
+	}
+
+	@Override
+	public void shutdown() {
+		delegate.shutdown();
+	}
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gmbh.dtap.refine.client;
+
+/**
+ * The transports a {@link RefineClient.Builder} can create.
+ */
+public enum TransportType {
+
+	/**
+	 * Apache HttpClient with a connection pool for blocking calls, and {@link java.net.http.HttpClient} with HTTP/1.1
+	 * for asynchronous calls.
+	 */
+	APACHE,
+
+	/**
+	 * {@link java.net.http.HttpClient} with HTTP/1.1 for all calls.
+	 */
+	JDK_HTTP_1_1,
+
+	/**
+	 * {@link java.net.http.HttpClient} with HTTP/2 for all calls. Requests to <code>http</code> URLs are upgraded
+	 * to HTTP/2 (h2c) if the server or a proxy in front of it accepts it, and fall back to HTTP/1.1 otherwise.
+	 * Concurrent requests are multiplexed over a single connection.
+	 */
+	JDK_HTTP_2
+}
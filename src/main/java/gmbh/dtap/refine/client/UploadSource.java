@@ -0,0 +1,125 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gmbh.dtap.refine.client;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.function.Supplier;
+
+/**
+ * The content of the file to create a project from. Sources with an unknown length are uploaded with chunked
+ * transfer encoding, so that they are never buffered as a whole.
+ */
+public interface UploadSource {
+
+	/**
+	 * Returns the file name, which OpenRefine uses to guess the format if none is given.
+	 *
+	 * @return the file name
+	 */
+	String getFileName();
+
+	/**
+	 * Returns the MIME type of the content.
+	 *
+	 * @return the MIME type
+	 */
+	default String getMimeType() {
+		return "application/octet-stream";
+	}
+
+	/**
+	 * Returns the length of the content.
+	 *
+	 * @return the length in bytes, or <code>-1</code> if unknown
+	 */
+	long getContentLength();
+
+	/**
+	 * Returns whether the content can be written more than once, e.g. to repeat a failed upload.
+	 *
+	 * @return {@code true} if the source is repeatable
+	 */
+	boolean isRepeatable();
+
+	/**
+	 * Writes the content.
+	 *
+	 * @param out the stream to write to, which must not be closed
+	 * @throws IOException in case the content can not be read or written
+	 */
+	void writeTo(OutputStream out) throws IOException;
+
+	/**
+	 * Creates a source from a file.
+	 *
+	 * @param file the file
+	 * @return the source
+	 */
+	static UploadSource of(File file) {
+		return of(file.toPath());
+	}
+
+	/**
+	 * Creates a source from a file.
+	 *
+	 * @param path the file
+	 * @return the source
+	 */
+	static UploadSource of(Path path) {
+		return new UploadSources.PathSource(path);
+	}
+
+	/**
+	 * Creates a source from a stream, which is read once and not closed.
+	 *
+	 * @param inputStream the stream
+	 * @param fileName    the file name
+	 * @return the source
+	 */
+	static UploadSource of(InputStream inputStream, String fileName) {
+		return new UploadSources.InputStreamSource(inputStream, fileName);
+	}
+
+	/**
+	 * Creates a source from a channel, which is read once and not closed.
+	 *
+	 * @param channel  the channel
+	 * @param fileName the file name
+	 * @return the source
+	 */
+	static UploadSource of(ReadableByteChannel channel, String fileName) {
+		return new UploadSources.ChannelSource(channel, fileName);
+	}
+
+	/**
+	 * Creates a source that writes rows as comma separated values while they are uploaded.
+	 * The supplier is called for each upload, so the source is repeatable if the supplier is.
+	 *
+	 * @param rows     the supplier of the rows, the first row usually contains the column names
+	 * @param fileName the file name, e.g. <code>rows.csv</code>
+	 * @return the source
+	 */
+	static UploadSource ofRows(Supplier<Iterator<String[]>> rows, String fileName) {
+		return new UploadSources.RowsSource(rows, fileName);
+	}
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gmbh.dtap.refine.client;
+
+import gmbh.dtap.refine.client.util.DelimitedWriter;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.CloseShieldOutputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.function.Supplier;
+
+import static org.apache.commons.lang3.Validate.notEmpty;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * The implementations of {@link UploadSource}.
+ */
+final class UploadSources {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * Prevents instantiation.
+	 */
+	private UploadSources() {
+	}
+
+	static class PathSource implements UploadSource {
+
+		private final Path path;
+
+		PathSource(Path path) {
+			notNull(path, "path");
+			this.path = path;
+		}
+
+		@Override
+		public String getFileName() {
+			return path.getFileName().toString();
+		}
+
+		@Override
+		public long getContentLength() {
+			try {
+				return Files.size(path);
+			} catch (IOException e) {
+				// the upload reports the problem
+				return -1;
+			}
+		}
+
+		@Override
+		public boolean isRepeatable() {
+			return true;
+		}
+
+		@Override
+		public void writeTo(OutputStream out) throws IOException {
+			Files.copy(path, out);
+		}
+	}
+
+	static class InputStreamSource implements UploadSource {
+
+		private final InputStream inputStream;
+		private final String fileName;
+
+		InputStreamSource(InputStream inputStream, String fileName) {
+			notNull(inputStream, "inputStream");
+			notEmpty(fileName, "fileName");
+			this.inputStream = inputStream;
+			this.fileName = fileName;
+		}
+
+		@Override
+		public String getFileName() {
+			return fileName;
+		}
+
+		@Override
+		public long getContentLength() {
+			return -1;
+		}
+
+		@Override
+		public boolean isRepeatable() {
+			return false;
+		}
+
+		@Override
+		public void writeTo(OutputStream out) throws IOException {
+			IOUtils.copyLarge(inputStream, out, new byte[BUFFER_SIZE]);
+		}
+	}
+
+	static class ChannelSource extends InputStreamSource {
+
+		ChannelSource(ReadableByteChannel channel, String fileName) {
+			// the stream closes the channel, but is never closed itself
+			super(Channels.newInputStream(notNull(channel, "channel")), fileName);
+		}
+	}
+
+	static class RowsSource implements UploadSource {
+
+		private final Supplier<Iterator<String[]>> rows;
+		private final String fileName;
+
+		RowsSource(Supplier<Iterator<String[]>> rows, String fileName) {
+			notNull(rows, "rows");
+			notEmpty(fileName, "fileName");
+			this.rows = rows;
+			this.fileName = fileName;
+		}
+
+		@Override
+		public String getFileName() {
+			return fileName;
+		}
+
+		@Override
+		public String getMimeType() {
+			return "text/csv";
+		}
+
+		@Override
+		public long getContentLength() {
+			return -1;
+		}
+
+		@Override
+		public boolean isRepeatable() {
+			return true;
+		}
+
+		@Override
+		public void writeTo(OutputStream out) throws IOException {
+			try (DelimitedWriter writer = new DelimitedWriter(
+				new OutputStreamWriter(new CloseShieldOutputStream(out), StandardCharsets.UTF_8), ',', BUFFER_SIZE)) {
+				Iterator<String[]> iterator = rows.get();
+				while (iterator.hasNext()) {
+					writer.writeRecord(iterator.next());
+				}
+			}
+		}
+	}
+}
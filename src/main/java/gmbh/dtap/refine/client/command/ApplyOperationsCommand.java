@@ -16,26 +16,22 @@
 
 package gmbh.dtap.refine.client.command;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import gmbh.dtap.refine.client.*;
-import org.apache.http.Consts;
 import org.apache.http.HttpResponse;
-import org.apache.http.NameValuePair;
 import org.apache.http.client.ResponseHandler;
-import org.apache.http.client.entity.UrlEncodedFormEntity;
 import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.client.methods.RequestBuilder;
-import org.apache.http.message.BasicNameValuePair;
-import org.apache.http.util.EntityUtils;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.StringJoiner;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import static gmbh.dtap.refine.client.util.HttpParser.HTTP_PARSER;
 import static gmbh.dtap.refine.client.util.JsonParser.JSON_PARSER;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.apache.commons.lang3.Validate.*;
 import static org.apache.http.HttpHeaders.ACCEPT;
 import static org.apache.http.HttpStatus.SC_OK;
@@ -73,23 +69,33 @@ public class ApplyOperationsCommand implements ResponseHandler<ApplyOperationsRe
 	 *                         understood
 	 */
 	public ApplyOperationsResponse execute(RefineClient client) throws IOException {
-		URL url = client.createUrl("/command/core/apply-operations?" + CSRF_TOKEN + token);
+		if (token != null) {
+			return client.execute(createRequest(client, token), this);
+		}
+		return client.getCsrfTokenProvider().execute(csrfToken -> client.execute(createRequest(client, csrfToken), this));
+	}
 
-		List<NameValuePair> form = new ArrayList<>();
-		form.add(new BasicNameValuePair("project", projectId));
-		StringJoiner operationsJoiner = new StringJoiner(",");
-		for (Operation operation : operations) {
-			operationsJoiner.add(operation.asJson());
+	/**
+	 * Executes the command without blocking the calling thread.
+	 *
+	 * @param client the client to execute the command with
+	 * @return the future result of the command, completed exceptionally with an {@link IOException} in case of a
+	 * connection problem or a {@link RefineException} in case the server responses with an error or is not understood
+	 */
+	public CompletableFuture<ApplyOperationsResponse> executeAsync(RefineClient client) {
+		if (token != null) {
+			return client.executeAsync(createRequest(client, token), this);
 		}
-		String operationsJsonArray = "[" + operationsJoiner.toString() + "]";
-		form.add(new BasicNameValuePair("operations", operationsJsonArray));
+		return client.getCsrfTokenProvider().executeAsync(csrfToken -> client.executeAsync(createRequest(client, csrfToken), this));
+	}
+
+	private HttpUriRequest createRequest(RefineClient client, String token) {
+		URL url = client.createUrl("/command/core/apply-operations?" + CSRF_TOKEN + token);
 
-		UrlEncodedFormEntity entity = new UrlEncodedFormEntity(form, Consts.UTF_8);
+		OperationsFormEntity entity = new OperationsFormEntity(projectId, operations);
 
-		HttpUriRequest request = RequestBuilder.post(url.toString()).setHeader(ACCEPT, APPLICATION_JSON.getMimeType())
+		return RequestBuilder.post(url.toString()).setHeader(ACCEPT, APPLICATION_JSON.getMimeType())
 				.setEntity(entity).build();
-
-		return client.execute(request, this);
 	}
 
 	/**
@@ -104,19 +110,24 @@ public class ApplyOperationsCommand implements ResponseHandler<ApplyOperationsRe
 	@Override
 	public ApplyOperationsResponse handleResponse(HttpResponse response) throws IOException {
 		HTTP_PARSER.assureStatusCode(response, SC_OK);
-		String responseBody = EntityUtils.toString(response.getEntity());
-		return parseApplyOperationsResponse(responseBody);
+		try (InputStream in = response.getEntity().getContent()) {
+			return parseApplyOperationsResponse(in);
+		}
 	}
 
 	ApplyOperationsResponse parseApplyOperationsResponse(String json) throws IOException {
-		JsonNode node = JSON_PARSER.parseJson(json);
-		String code = JSON_PARSER.findExistingPath(node, "code").asText();
+		return parseApplyOperationsResponse(new ByteArrayInputStream(json.getBytes(UTF_8)));
+	}
+
+	ApplyOperationsResponse parseApplyOperationsResponse(InputStream in) throws IOException {
+		Map<String, String> fields = JSON_PARSER.parseObject(in, null);
+		String code = JSON_PARSER.findExistingField(fields, "code");
 		if ("ok".equals(code)) {
 			return ApplyOperationsResponse.ok();
 		} else if ("pending".equals(code)) {
 			return ApplyOperationsResponse.pending();
 		} else if ("error".equals(code)) {
-			String message = JSON_PARSER.findExistingPath(node, "message").asText();
+			String message = JSON_PARSER.findExistingField(fields, "message");
 			return ApplyOperationsResponse.error(message);
 		} else {
 			throw new RefineException("Unexpected code: " + code);
@@ -146,7 +157,7 @@ public class ApplyOperationsCommand implements ResponseHandler<ApplyOperationsRe
 		/**
 		 * Sets token.
 		 *
-		 * @param token the csrf token
+		 * @param token the csrf token, optional as the client provides a token otherwise
 		 * @return the builder for fluent usage
 		 */
 		public Builder token(String token) {
@@ -199,7 +210,7 @@ public class ApplyOperationsCommand implements ResponseHandler<ApplyOperationsRe
 			notEmpty(projectId, "projectId is empty");
 			notNull(operations, "operations");
 			notEmpty(operations, "operations is empty");
-			notEmpty(token, "token");
+			isTrue(token == null || !token.isEmpty(), "token is empty");
 			noNullElements(operations, "operations contains null");
 			return new ApplyOperationsCommand(projectId, operations, token);
 		}
@@ -16,10 +16,13 @@
 
 package gmbh.dtap.refine.client.command;
 
+import gmbh.dtap.refine.client.Compression;
+import gmbh.dtap.refine.client.InvalidCsrfTokenException;
 import gmbh.dtap.refine.client.RefineClient;
 import gmbh.dtap.refine.client.RefineException;
 import gmbh.dtap.refine.client.UploadFormat;
 import gmbh.dtap.refine.client.UploadOptions;
+import gmbh.dtap.refine.client.UploadSource;
 import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
@@ -27,13 +30,20 @@ import org.apache.http.client.ResponseHandler;
 import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.client.methods.RequestBuilder;
 import org.apache.http.client.utils.URLEncodedUtils;
+import org.apache.http.entity.HttpEntityWrapper;
 import org.apache.http.entity.mime.MultipartEntityBuilder;
 import org.apache.http.message.BasicNameValuePair;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 
 import static gmbh.dtap.refine.client.util.HttpParser.HTTP_PARSER;
 import static java.util.Collections.singletonList;
@@ -52,9 +62,10 @@ public class CreateProjectCommand implements ResponseHandler<CreateProjectRespon
    private static final Charset charset = Charset.forName("UTF-8");
 
    private final String name;
-   private final File file;
+   private final UploadSource source;
    private final UploadFormat format;
    private final UploadOptions options;
+   private final Compression compression;
    private final String token;
    private final String CSRF_TOKEN = "csrf_token=";
 
@@ -62,16 +73,19 @@ public class CreateProjectCommand implements ResponseHandler<CreateProjectRespon
 	* Constructor for {@link Builder}.
 	*
 	* @param name    the project name
-	* @param file    the file containing the data to upload
+	* @param source  the source of the data to upload
 	* @param format  the optional upload format
-	* @param options the optional options
-	* @param token   the csrf token
+	* @param options     the optional options
+	* @param compression the compression to apply while uploading
+	* @param token       the csrf token
 	*/
-   private CreateProjectCommand(String name, File file, UploadFormat format, UploadOptions options, String token) {
+   private CreateProjectCommand(String name, UploadSource source, UploadFormat format, UploadOptions options,
+								Compression compression, String token) {
 	  this.name = name;
-	  this.file = file;
+	  this.source = source;
 	  this.format = format;
 	  this.options = options;
+	  this.compression = compression;
 	  this.token = token;
    }
 
@@ -85,6 +99,45 @@ public class CreateProjectCommand implements ResponseHandler<CreateProjectRespon
 	*                         understood
 	*/
    public CreateProjectResponse execute(RefineClient client) throws IOException {
+	  if (token != null) {
+		 return upload(client, token);
+	  }
+	  if (!source.isRepeatable()) {
+		 // a rejected token must not lead to a second upload from a drained source
+		 return client.getCsrfTokenProvider().executeOnce(csrfToken -> upload(client, csrfToken));
+	  }
+	  return client.getCsrfTokenProvider().execute(csrfToken -> upload(client, csrfToken));
+   }
+
+   /**
+	* Executes the command without blocking the calling thread.
+	*
+	* @param client the client to execute the command with
+	* @return the future result of the command, completed exceptionally with an {@link IOException} in case of a
+	* connection problem or a {@link RefineException} in case the server responses with an error or is not understood
+	*/
+   public CompletableFuture<CreateProjectResponse> executeAsync(RefineClient client) {
+	  if (token != null) {
+		 return uploadAsync(client, token);
+	  }
+	  if (!source.isRepeatable()) {
+		 return client.getCsrfTokenProvider().executeOnceAsync(csrfToken -> uploadAsync(client, csrfToken));
+	  }
+	  return client.getCsrfTokenProvider().executeAsync(csrfToken -> uploadAsync(client, csrfToken));
+   }
+
+   private CreateProjectResponse upload(RefineClient client, String token) throws IOException {
+	  // a body per request, as it records the statistics of its upload
+	  UploadSourceBody body = new UploadSourceBody(source, compression);
+	  return client.execute(createRequest(client, token, body), response -> handleResponse(response, body));
+   }
+
+   private CompletableFuture<CreateProjectResponse> uploadAsync(RefineClient client, String token) {
+	  UploadSourceBody body = new UploadSourceBody(source, compression);
+	  return client.executeAsync(createRequest(client, token, body), response -> handleResponse(response, body));
+   }
+
+   private HttpUriRequest createRequest(RefineClient client, String token, UploadSourceBody body) {
 	  final URL url;
 	  if (options != null) {
 		 // https://github.com/dtap-gmbh/refine-java/issues/14
@@ -105,13 +158,11 @@ public class CreateProjectCommand implements ResponseHandler<CreateProjectRespon
 		 multipartEntityBuilder.addTextBody("options", options.asJson(), APPLICATION_JSON.withCharset(charset));
 	  }
 
-	  HttpEntity entity = multipartEntityBuilder.addBinaryBody("project-file", file)
-			.addTextBody("project-name", name, TEXT_PLAIN.withCharset(charset)).build();
+	  HttpEntity entity = new UploadEntity(multipartEntityBuilder.addPart("project-file", body)
+			.addTextBody("project-name", name, TEXT_PLAIN.withCharset(charset)).build(), body);
 
-	  HttpUriRequest request = RequestBuilder.post(url.toString()).setHeader(ACCEPT, APPLICATION_JSON.getMimeType())
+	  return RequestBuilder.post(url.toString()).setHeader(ACCEPT, APPLICATION_JSON.getMimeType())
 			.setEntity(entity).build();
-
-	  return client.execute(request, this);
    }
 
    private String urlEncodedOptions() {
@@ -126,17 +177,45 @@ public class CreateProjectCommand implements ResponseHandler<CreateProjectRespon
 	* @throws IOException     in case of an connection problem
 	* @throws RefineException in case of an unexpected response or no location
 	*                         header is present
+	* @throws InvalidCsrfTokenException in case the csrf token was rejected
 	*/
    @Override
    public CreateProjectResponse handleResponse(HttpResponse response) throws IOException {
+	  return handleResponse(response, null);
+   }
+
+   private CreateProjectResponse handleResponse(HttpResponse response, UploadSourceBody body) throws IOException {
 	  // TODO: parse errors in refine are returned as HTML
+	  HTTP_PARSER.assureCsrfTokenAccepted(response);
 	  HTTP_PARSER.assureStatusCode(response, SC_MOVED_TEMPORARILY);
 	  Header location = response.getFirstHeader("Location");
 	  if (location == null) {
 		 throw new RefineException("No location header found.");
 	  }
 	  URL url = new URL(location.getValue());
-	  return new CreateProjectResponse(url);
+	  if (body == null) {
+		 return new CreateProjectResponse(url);
+	  }
+	  return new CreateProjectResponse(url, body.getBytesRead(), body.getBytesSent(), body.getDuration());
+   }
+
+   /**
+	* The multipart entity of the upload. The multipart entity considers itself repeatable only if its length is known,
+	* whereas the upload can be repeated exactly if its source can be read again, whatever its length.
+	*/
+   private static class UploadEntity extends HttpEntityWrapper {
+
+	  private final UploadSourceBody body;
+
+	  UploadEntity(HttpEntity entity, UploadSourceBody body) {
+		 super(entity);
+		 this.body = body;
+	  }
+
+	  @Override
+	  public boolean isRepeatable() {
+		 return body.isRepeatable();
+	  }
    }
 
    /**
@@ -145,9 +224,10 @@ public class CreateProjectCommand implements ResponseHandler<CreateProjectRespon
    public static class Builder {
 
 	  private String name;
-	  private File file;
+	  private UploadSource source;
 	  private UploadFormat format;
 	  private UploadOptions options;
+	  private Compression compression = Compression.NONE;
 	  private String token;
 
 	  /**
@@ -164,7 +244,7 @@ public class CreateProjectCommand implements ResponseHandler<CreateProjectRespon
 	  /**
 	   * Sets token.
 	   *
-	   * @param token the csrf token
+	   * @param token the csrf token, optional as the client provides a token otherwise
 	   * @return the builder for fluent usage
 	   */
 	  public Builder token(String token) {
@@ -179,7 +259,68 @@ public class CreateProjectCommand implements ResponseHandler<CreateProjectRespon
 	   * @return the builder for fluent usage
 	   */
 	  public Builder file(File file) {
-		 this.file = file;
+		 this.source = file != null ? UploadSource.of(file) : null;
+		 return this;
+	  }
+
+	  /**
+	   * Sets the file containing the data to upload.
+	   *
+	   * @param path the file containing the data to upload
+	   * @return the builder for fluent usage
+	   */
+	  public Builder path(Path path) {
+		 this.source = path != null ? UploadSource.of(path) : null;
+		 return this;
+	  }
+
+	  /**
+	   * Sets the stream of the data to upload, which is read once and not closed.
+	   *
+	   * @param inputStream the stream of the data to upload
+	   * @param fileName    the file name, which OpenRefine uses to guess the format if none is given
+	   * @return the builder for fluent usage
+	   */
+	  public Builder inputStream(InputStream inputStream, String fileName) {
+		 this.source = UploadSource.of(inputStream, fileName);
+		 return this;
+	  }
+
+	  /**
+	   * Sets the channel of the data to upload, which is read once and not closed.
+	   *
+	   * @param channel  the channel of the data to upload
+	   * @param fileName the file name, which OpenRefine uses to guess the format if none is given
+	   * @return the builder for fluent usage
+	   */
+	  public Builder channel(ReadableByteChannel channel, String fileName) {
+		 this.source = UploadSource.of(channel, fileName);
+		 return this;
+	  }
+
+	  /**
+	   * Sets the rows to upload as comma separated values. The rows are written while they are uploaded,
+	   * the format defaults to {@link UploadFormat#SEPARATOR_BASED}.
+	   *
+	   * @param rows the supplier of the rows, the first row usually contains the column names
+	   * @return the builder for fluent usage
+	   */
+	  public Builder rows(Supplier<Iterator<String[]>> rows) {
+		 this.source = UploadSource.ofRows(rows, "rows.csv");
+		 if (format == null) {
+			format = UploadFormat.SEPARATOR_BASED;
+		 }
+		 return this;
+	  }
+
+	  /**
+	   * Sets the source of the data to upload.
+	   *
+	   * @param source the source of the data to upload
+	   * @return the builder for fluent usage
+	   */
+	  public Builder source(UploadSource source) {
+		 this.source = source;
 		 return this;
 	  }
 
@@ -205,6 +346,18 @@ public class CreateProjectCommand implements ResponseHandler<CreateProjectRespon
 		 return this;
 	  }
 
+	  /**
+	   * Sets the compression to apply while uploading. The file is compressed on the fly,
+	   * and its name gets the extension OpenRefine recognizes the compression by.
+	   *
+	   * @param compression the compression, defaults to {@link Compression#NONE}
+	   * @return the builder for fluent usage
+	   */
+	  public Builder compress(Compression compression) {
+		 this.compression = compression;
+		 return this;
+	  }
+
 	  /**
 	   * Builds the command after validation.
 	   *
@@ -213,9 +366,9 @@ public class CreateProjectCommand implements ResponseHandler<CreateProjectRespon
 	  public CreateProjectCommand build() {
 		 notNull(name, "name");
 		 notEmpty(name, "name");
-		 notNull(file, "file");
-		 notNull(token, "token");
-		 return new CreateProjectCommand(name, file, format, options, token);
+		 notNull(source, "source");
+		 notNull(compression, "compression");
+		 return new CreateProjectCommand(name, source, format, options, compression, token);
 	  }
    }
 }
@@ -17,15 +17,34 @@
 package gmbh.dtap.refine.client.command;
 
 import java.net.URL;
+import java.time.Duration;
 
 import static org.apache.commons.lang.StringUtils.substringAfterLast;
 
 public class CreateProjectResponse {
 
 	private final URL location;
+	private final long uncompressedBytes;
+	private final long uploadedBytes;
+	private final Duration uploadDuration;
 
 	CreateProjectResponse(URL location) {
+		this(location, 0, 0, Duration.ZERO);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param location          the location of the project
+	 * @param uncompressedBytes the number of bytes read from the upload source
+	 * @param uploadedBytes     the number of bytes sent, after compression
+	 * @param uploadDuration    the time it took to send the upload
+	 */
+	CreateProjectResponse(URL location, long uncompressedBytes, long uploadedBytes, Duration uploadDuration) {
 		this.location = location;
+		this.uncompressedBytes = uncompressedBytes;
+		this.uploadedBytes = uploadedBytes;
+		this.uploadDuration = uploadDuration;
 	}
 
 	public URL getLocation() {
@@ -36,9 +55,48 @@ public class CreateProjectResponse {
 		return substringAfterLast(location.getQuery(), "=");
 	}
 
+	/**
+	 * Returns the number of bytes read from the upload source.
+	 *
+	 * @return the uncompressed size
+	 */
+	public long getUncompressedBytes() {
+		return uncompressedBytes;
+	}
+
+	/**
+	 * Returns the number of bytes sent, which is less than {@link #getUncompressedBytes()} with compression.
+	 *
+	 * @return the uploaded size
+	 */
+	public long getUploadedBytes() {
+		return uploadedBytes;
+	}
+
+	/**
+	 * Returns the time it took to send the upload.
+	 *
+	 * @return the upload duration
+	 */
+	public Duration getUploadDuration() {
+		return uploadDuration;
+	}
+
+	/**
+	 * Returns the compression ratio, the uncompressed size divided by the uploaded size.
+	 *
+	 * @return the compression ratio, <code>1.0</code> if nothing was uploaded
+	 */
+	public double getCompressionRatio() {
+		return uploadedBytes > 0 ? (double) uncompressedBytes / uploadedBytes : 1.0;
+	}
+
 	@Override public String toString() {
 		return "CreateProjectResponse{" +
 			"location=" + location +
+			", uncompressedBytes=" + uncompressedBytes +
+			", uploadedBytes=" + uploadedBytes +
+			", uploadDuration=" + uploadDuration +
 			'}';
 	}
 }
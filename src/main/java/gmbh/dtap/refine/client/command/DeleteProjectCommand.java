@@ -16,7 +16,6 @@
 
 package gmbh.dtap.refine.client.command;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import gmbh.dtap.refine.client.ProjectLocation;
 import gmbh.dtap.refine.client.RefineClient;
 import gmbh.dtap.refine.client.RefineException;
@@ -29,15 +28,19 @@ import org.apache.http.client.entity.UrlEncodedFormEntity;
 import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.client.methods.RequestBuilder;
 import org.apache.http.message.BasicNameValuePair;
-import org.apache.http.util.EntityUtils;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import static gmbh.dtap.refine.client.util.HttpParser.HTTP_PARSER;
 import static gmbh.dtap.refine.client.util.JsonParser.JSON_PARSER;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.apache.commons.lang3.Validate.notEmpty;
 import static org.apache.commons.lang3.Validate.notNull;
 import static org.apache.http.HttpHeaders.ACCEPT;
@@ -73,6 +76,27 @@ public class DeleteProjectCommand implements ResponseHandler<DeleteProjectRespon
 	 *                         understood
 	 */
 	public DeleteProjectResponse execute(RefineClient client) throws IOException {
+		if (token != null) {
+			return client.execute(createRequest(client, token), this);
+		}
+		return client.getCsrfTokenProvider().execute(csrfToken -> client.execute(createRequest(client, csrfToken), this));
+	}
+
+	/**
+	 * Executes the command without blocking the calling thread.
+	 *
+	 * @param client the client to execute the command with
+	 * @return the future result of the command, completed exceptionally with an {@link IOException} in case of a
+	 * connection problem or a {@link RefineException} in case the server responses with an error or is not understood
+	 */
+	public CompletableFuture<DeleteProjectResponse> executeAsync(RefineClient client) {
+		if (token != null) {
+			return client.executeAsync(createRequest(client, token), this);
+		}
+		return client.getCsrfTokenProvider().executeAsync(csrfToken -> client.executeAsync(createRequest(client, csrfToken), this));
+	}
+
+	private HttpUriRequest createRequest(RefineClient client, String token) {
 		URL url = client.createUrl("/command/core/delete-project?" + CSRF_TOKEN + token);
 
 		List<NameValuePair> form = new ArrayList<>();
@@ -80,10 +104,8 @@ public class DeleteProjectCommand implements ResponseHandler<DeleteProjectRespon
 
 		UrlEncodedFormEntity entity = new UrlEncodedFormEntity(form, Consts.UTF_8);
 
-		HttpUriRequest request = RequestBuilder.post(url.toString()).setHeader(ACCEPT, APPLICATION_JSON.getMimeType())
+		return RequestBuilder.post(url.toString()).setHeader(ACCEPT, APPLICATION_JSON.getMimeType())
 				.setEntity(entity).build();
-
-		return client.execute(request, this);
 	}
 
 	/**
@@ -98,17 +120,22 @@ public class DeleteProjectCommand implements ResponseHandler<DeleteProjectRespon
 	@Override
 	public DeleteProjectResponse handleResponse(HttpResponse response) throws IOException {
 		HTTP_PARSER.assureStatusCode(response, SC_OK);
-		String responseBody = EntityUtils.toString(response.getEntity());
-		return parseDeleteProjectResponse(responseBody);
+		try (InputStream in = response.getEntity().getContent()) {
+			return parseDeleteProjectResponse(in);
+		}
 	}
 
 	DeleteProjectResponse parseDeleteProjectResponse(String json) throws IOException {
-		JsonNode node = JSON_PARSER.parseJson(json);
-		String code = JSON_PARSER.findExistingPath(node, "code").asText();
+		return parseDeleteProjectResponse(new ByteArrayInputStream(json.getBytes(UTF_8)));
+	}
+
+	DeleteProjectResponse parseDeleteProjectResponse(InputStream in) throws IOException {
+		Map<String, String> fields = JSON_PARSER.parseObject(in, null);
+		String code = JSON_PARSER.findExistingField(fields, "code");
 		if ("ok".equals(code)) {
 			return DeleteProjectResponse.ok();
 		} else if ("error".equals(code)) {
-			String message = JSON_PARSER.findExistingPath(node, "message").asText();
+			String message = JSON_PARSER.findExistingField(fields, "message");
 			return DeleteProjectResponse.error(message);
 		} else {
 			throw new RefineException("Unexpected code: " + code);
@@ -126,7 +153,7 @@ public class DeleteProjectCommand implements ResponseHandler<DeleteProjectRespon
 		/**
 		 * Sets the project ID.
 		 *
-		 * @param token the csrf token
+		 * @param token the csrf token, optional as the client provides a token otherwise
 		 * @return the builder for fluent usage
 		 */
 		public Builder token(String token) {
@@ -177,7 +204,6 @@ public class DeleteProjectCommand implements ResponseHandler<DeleteProjectRespon
 		public DeleteProjectCommand build() {
 			notNull(projectId, "projectId");
 			notEmpty(projectId, "projectId is empty");
-			notNull(token, "token");
 			return new DeleteProjectCommand(projectId, token);
 		}
 	}
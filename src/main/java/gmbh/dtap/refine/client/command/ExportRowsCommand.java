@@ -24,8 +24,14 @@
 
 package gmbh.dtap.refine.client.command;
 
+import gmbh.dtap.refine.client.InvalidCsrfTokenException;
 import gmbh.dtap.refine.client.RefineClient;
 import gmbh.dtap.refine.client.RefineException;
+import gmbh.dtap.refine.client.Row;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CountingInputStream;
+import org.apache.commons.io.output.CloseShieldOutputStream;
+import org.apache.commons.io.output.CountingOutputStream;
 import org.apache.http.Consts;
 import org.apache.http.HttpResponse;
 import org.apache.http.NameValuePair;
@@ -35,17 +41,37 @@ import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.client.methods.RequestBuilder;
 import org.apache.http.message.BasicNameValuePair;
 
-import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.IllegalBlockingModeException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
-import java.util.Date;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
 
+import static gmbh.dtap.refine.client.util.HttpParser.HTTP_PARSER;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.apache.commons.lang3.Validate.isTrue;
 import static org.apache.commons.lang3.Validate.notNull;
 import static org.apache.http.HttpHeaders.ACCEPT;
+import static org.apache.http.HttpStatus.SC_OK;
 import static org.apache.http.entity.ContentType.APPLICATION_JSON;
 
 /**
@@ -57,20 +83,36 @@ public class ExportRowsCommand implements ResponseHandler<ExportRowsResponse> {
    private final String engine;
    private final String format;
    private final String token;
+   private final OutputStream outputStream;
+   private final WritableByteChannel channel;
+   private final Path path;
+   private final boolean gzip;
+   private final int bufferSize;
 
    /**
 	* Constructor for {@link Builder}.
 	*
-	* @param project the project name
-	* @param engine  the engine to use
-	* @param format  the optional upload format
-	* @param token   the csrf token
+	* @param project      the project name
+	* @param engine       the engine to use
+	* @param format       the optional upload format
+	* @param token        the csrf token
+	* @param outputStream the optional stream to write the export to
+	* @param channel      the optional channel to write the export to
+	* @param path         the optional file to write the export to
+	* @param gzip         whether or not to compress the export while writing
+	* @param bufferSize   the size of the copy buffer
 	*/
-   private ExportRowsCommand(String project, String engine, String format, String token) {
+   private ExportRowsCommand(String project, String engine, String format, String token, OutputStream outputStream,
+							 WritableByteChannel channel, Path path, boolean gzip, int bufferSize) {
 	  this.project = project;
 	  this.engine = engine;
 	  this.format = format;
 	  this.token = token;
+	  this.outputStream = outputStream;
+	  this.channel = channel;
+	  this.path = path;
+	  this.gzip = gzip;
+	  this.bufferSize = bufferSize;
    }
 
    /**
@@ -83,6 +125,81 @@ public class ExportRowsCommand implements ResponseHandler<ExportRowsResponse> {
 	*                         understood
 	*/
    public ExportRowsResponse execute(RefineClient client) throws IOException {
+	  if (token != null) {
+		 return client.execute(createRequest(client, token), this);
+	  }
+	  return client.getCsrfTokenProvider().execute(csrfToken -> client.execute(createRequest(client, csrfToken), this));
+   }
+
+   /**
+	* Executes the command without blocking the calling thread.
+	*
+	* @param client the client to execute the command with
+	* @return the future result of the command, completed exceptionally with an {@link IOException} in case of a
+	* connection problem or a {@link RefineException} in case the server responses with an error or is not understood
+	* <p>
+	* The exported rows are received into memory before they are written, use {@link #execute(RefineClient)} for large exports.
+	*/
+   public CompletableFuture<ExportRowsResponse> executeAsync(RefineClient client) {
+	  if (token != null) {
+		 return client.executeAsync(createRequest(client, token), this);
+	  }
+	  return client.getCsrfTokenProvider().executeAsync(csrfToken -> client.executeAsync(createRequest(client, csrfToken), this));
+   }
+
+   /**
+	* Executes the command and returns the exported rows while they are received, instead of writing them to a sink.
+	* The rows are parsed incrementally, so processing can begin before the export is complete. Only the
+	* <code>csv</code> and <code>tsv</code> formats are supported.
+	* <p>
+	* The iterator holds a connection and has to be closed.
+	*
+	* @param client the client to execute the command with
+	* @return the iterator of the exported rows
+	* @throws IOException     in case of a connection problem
+	* @throws RefineException in case the server responses with an error or is not
+	*                         understood
+	*/
+   public ExportRowsIterator iterate(RefineClient client) throws IOException {
+	  char separator = separator();
+	  if (token != null) {
+		 return open(client, token, separator);
+	  }
+	  return client.getCsrfTokenProvider().execute(csrfToken -> open(client, csrfToken, separator));
+   }
+
+   /**
+	* Executes the command and returns the exported rows as a stream while they are received,
+	* see {@link #iterate(RefineClient)}. The stream holds a connection and has to be closed.
+	*
+	* @param client the client to execute the command with
+	* @return the stream of the exported rows
+	* @throws IOException     in case of a connection problem
+	* @throws RefineException in case the server responses with an error or is not
+	*                         understood
+	*/
+   public Stream<Row> stream(RefineClient client) throws IOException {
+	  return iterate(client).stream();
+   }
+
+   private char separator() {
+	  isTrue("csv".equals(format) || "tsv".equals(format), "rows can only be iterated in csv or tsv format");
+	  return "csv".equals(format) ? ',' : '\t';
+   }
+
+   private ExportRowsIterator open(RefineClient client, String token, char separator) throws IOException {
+	  HttpResponse response = client.open(createRequest(client, token));
+	  try {
+		 HTTP_PARSER.assureCsrfTokenAccepted(response);
+		 HTTP_PARSER.assureStatusCode(response, SC_OK);
+		 return new ExportRowsIterator(response, separator, bufferSize);
+	  } catch (IOException | RuntimeException e) {
+		 ExportRowsIterator.close(response);
+		 throw e;
+	  }
+   }
+
+   private HttpUriRequest createRequest(RefineClient client, String token) {
 	  final URL url = client.createUrl("/command/core/export-rows");
 
 	  List<NameValuePair> form = new ArrayList<>();
@@ -92,41 +209,104 @@ public class ExportRowsCommand implements ResponseHandler<ExportRowsResponse> {
 	  form.add(new BasicNameValuePair("csrf_token", token));
 	  UrlEncodedFormEntity entity = new UrlEncodedFormEntity(form, Consts.UTF_8);
 
-	  HttpUriRequest request = RequestBuilder.post(url.toString()).setHeader(ACCEPT, APPLICATION_JSON.getMimeType())
+	  return RequestBuilder.post(url.toString()).setHeader(ACCEPT, APPLICATION_JSON.getMimeType())
 			.setEntity(entity).build();
-
-	  return client.execute(request, this);
    }
 
    /**
-	* Validates the response and extracts necessary data.
+	* Validates the response and writes the exported rows to the sink of the command.
+	* Without a sink, the rows are written to a new temporary file.
 	*
-	* @param response the response to get the location from
+	* @param response the response to get the exported rows from
 	* @return the response
-	* @throws IOException     in case of an connection problem
-	* @throws RefineException in case of an unexpected response or no location
-	*                         header is present
+	* @throws IOException     in case of an connection problem or the sink can not be written
+	* @throws RefineException in case of an unexpected response
+	* @throws InvalidCsrfTokenException in case the csrf token was rejected
 	*/
    @Override
    public ExportRowsResponse handleResponse(HttpResponse response) throws IOException {
 	  // TODO: parse errors in refine are returned as HTML
-	  // HTTP_PARSER.assureStatusCode(response, SC_MOVED_TEMPORARILY);
-	  // Header location = response.getFirstHeader("Location");
-	  // if (location == null) {
-	  // throw new RefineException("No location header found.");
-	  // }
-	  // URL url = new URL(location.getValue());
-	  InputStream is = response.getEntity().getContent();
-	  File file = new File(new Date().getTime() + "." + format);
-	  FileOutputStream fos = new FileOutputStream(file);
-	  int read = 0;
-	  byte[] buffer = new byte[32768];
-	  while ((read = is.read(buffer)) > 0) {
-		 fos.write(buffer, 0, read);
-	  }
-	  fos.close();
-	  is.close();
-	  return new ExportRowsResponse(file);
+	  HTTP_PARSER.assureCsrfTokenAccepted(response);
+	  HTTP_PARSER.assureStatusCode(response, SC_OK);
+	  long start = System.nanoTime();
+	  try (CountingInputStream in = new CountingInputStream(response.getEntity().getContent())) {
+		 if (outputStream != null) {
+			long bytesWritten = write(in, outputStream);
+			return new ExportRowsResponse(null, in.getByteCount(), bytesWritten, Duration.ofNanos(System.nanoTime() - start));
+		 }
+		 if (channel != null) {
+			long bytesWritten = write(in, channel);
+			return new ExportRowsResponse(null, in.getByteCount(), bytesWritten, Duration.ofNanos(System.nanoTime() - start));
+		 }
+		 // the export goes to a file of its own that is moved into place, a failure never touches the path
+		 Path file = path != null ? Files.createTempFile(path.toAbsolutePath().getParent(), "." + path.getFileName(), ".tmp")
+			   : Files.createTempFile("refine-export-", "." + format + (gzip ? ".gz" : ""));
+		 try {
+			long bytesWritten = write(in, file);
+			if (path != null) {
+			   file = move(file, path);
+			}
+			return new ExportRowsResponse(file, in.getByteCount(), bytesWritten, Duration.ofNanos(System.nanoTime() - start));
+		 } catch (IOException e) {
+			Files.deleteIfExists(file);
+			throw e;
+		 }
+	  }
+   }
+
+   private long write(InputStream in, OutputStream out) throws IOException {
+	  // the stream belongs to the caller, it is flushed but not closed
+	  CountingOutputStream counter = new CountingOutputStream(new CloseShieldOutputStream(out));
+	  try (OutputStream sink = gzip ? new GZIPOutputStream(counter, bufferSize) : counter) {
+		 IOUtils.copyLarge(in, sink, new byte[bufferSize]);
+	  }
+	  out.flush();
+	  return counter.getByteCount();
+   }
+
+   private static Path move(Path source, Path target) throws IOException {
+	  try {
+		 return Files.move(source, target, REPLACE_EXISTING, ATOMIC_MOVE);
+	  } catch (AtomicMoveNotSupportedException e) {
+		 return Files.move(source, target, REPLACE_EXISTING);
+	  }
+   }
+
+   private long write(InputStream in, WritableByteChannel out) throws IOException {
+	  if (out instanceof SelectableChannel && !((SelectableChannel) out).isBlocking()) {
+		 // a non-blocking channel may accept no bytes at all, the loop below would spin
+		 throw new IllegalBlockingModeException();
+	  }
+	  if (gzip) {
+		 return write(in, Channels.newOutputStream(out));
+	  }
+	  ReadableByteChannel source = Channels.newChannel(in);
+	  ByteBuffer buffer = ByteBuffer.allocateDirect(bufferSize);
+	  long bytesWritten = 0;
+	  while (source.read(buffer) >= 0 || buffer.position() > 0) {
+		 buffer.flip();
+		 bytesWritten += out.write(buffer);
+		 buffer.compact();
+	  }
+	  return bytesWritten;
+   }
+
+   private long write(InputStream in, Path file) throws IOException {
+	  if (gzip) {
+		 try (OutputStream out = Files.newOutputStream(file)) {
+			return write(in, out);
+		 }
+	  }
+	  // the socket is a stream, so the file channel still copies through the buffer of the channel adapter
+	  try (FileChannel out = FileChannel.open(file, CREATE, WRITE, TRUNCATE_EXISTING)) {
+		 ReadableByteChannel source = Channels.newChannel(in);
+		 long position = 0;
+		 long transferred;
+		 while ((transferred = out.transferFrom(source, position, bufferSize)) > 0) {
+			position += transferred;
+		 }
+		 return position;
+	  }
    }
 
    /**
@@ -138,6 +318,11 @@ public class ExportRowsCommand implements ResponseHandler<ExportRowsResponse> {
 	  private String engine;
 	  private String format;
 	  private String token;
+	  private OutputStream outputStream;
+	  private WritableByteChannel channel;
+	  private Path path;
+	  private boolean gzip;
+	  private int bufferSize = 64 * 1024;
 
 	  /**
 	   * Sets the project name.
@@ -153,7 +338,7 @@ public class ExportRowsCommand implements ResponseHandler<ExportRowsResponse> {
 	  /**
 	   * Sets token.
 	   *
-	   * @param token the csrf token
+	   * @param token the csrf token, optional as the client provides a token otherwise
 	   * @return the builder for fluent usage
 	   */
 	  public Builder token(String token) {
@@ -183,6 +368,62 @@ public class ExportRowsCommand implements ResponseHandler<ExportRowsResponse> {
 		 return this;
 	  }
 
+	  /**
+	   * Sets the stream to write the export to. The stream is not closed.
+	   *
+	   * @param outputStream the stream to write the export to
+	   * @return the builder for fluent usage
+	   */
+	  public Builder outputStream(OutputStream outputStream) {
+		 this.outputStream = outputStream;
+		 return this;
+	  }
+
+	  /**
+	   * Sets the channel to write the export to. The channel is not closed and has to be in blocking mode.
+	   *
+	   * @param channel the channel to write the export to
+	   * @return the builder for fluent usage
+	   */
+	  public Builder channel(WritableByteChannel channel) {
+		 this.channel = channel;
+		 return this;
+	  }
+
+	  /**
+	   * Sets the file to write the export to. The export is written to a temporary file in the same directory,
+	   * which replaces the file once the export is complete.
+	   *
+	   * @param path the file to write the export to
+	   * @return the builder for fluent usage
+	   */
+	  public Builder path(Path path) {
+		 this.path = path;
+		 return this;
+	  }
+
+	  /**
+	   * Sets whether or not to compress the export with gzip while writing it.
+	   *
+	   * @param gzip whether or not to compress the export
+	   * @return the builder for fluent usage
+	   */
+	  public Builder gzip(boolean gzip) {
+		 this.gzip = gzip;
+		 return this;
+	  }
+
+	  /**
+	   * Sets the size of the buffer to copy the export with.
+	   *
+	   * @param bufferSize the buffer size in bytes, defaults to 64 KiB
+	   * @return the builder for fluent usage
+	   */
+	  public Builder bufferSize(int bufferSize) {
+		 this.bufferSize = bufferSize;
+		 return this;
+	  }
+
 	  /**
 	   * Builds the command after validation.
 	   *
@@ -191,9 +432,11 @@ public class ExportRowsCommand implements ResponseHandler<ExportRowsResponse> {
 	  public ExportRowsCommand build() {
 		 notNull(engine, "engine");
 		 notNull(project, "project");
-		 notNull(token, "token");
 		 notNull(format, "format");
-		 return new ExportRowsCommand(project, engine, format, token);
+		 isTrue(bufferSize > 0, "bufferSize must be positive");
+		 isTrue((outputStream != null ? 1 : 0) + (channel != null ? 1 : 0) + (path != null ? 1 : 0) <= 1,
+			   "only one of outputStream, channel and path can be set");
+		 return new ExportRowsCommand(project, engine, format, token, outputStream, channel, path, gzip, bufferSize);
 	  }
    }
 }
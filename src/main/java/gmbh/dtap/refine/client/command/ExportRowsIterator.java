@@ -0,0 +1,162 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gmbh.dtap.refine.client.command;
+
+import gmbh.dtap.refine.client.Row;
+import gmbh.dtap.refine.client.util.DelimitedReader;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.entity.ContentType;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static java.util.Spliterator.NONNULL;
+import static java.util.Spliterator.ORDERED;
+
+/**
+ * Iterates over the rows of an export while they are received. The rows are parsed from the response stream,
+ * so that an export of any size is processed in constant memory.
+ * <p>
+ * The iterator holds a connection until it is closed. Closing it before the last row aborts the connection
+ * instead of downloading the remaining rows.
+ */
+public class ExportRowsIterator implements Iterator<Row>, Closeable {
+
+	private final HttpResponse response;
+	private final DelimitedReader reader;
+	private final List<String> columnNames;
+	private List<String> next;
+	private long index;
+	private boolean exhausted;
+
+	/**
+	 * Constructor, reads the header row.
+	 *
+	 * @param response   the response with the unread export
+	 * @param separator  the field separator of the export format
+	 * @param bufferSize the size of the char buffer
+	 * @throws IOException in case the header row can not be read
+	 */
+	ExportRowsIterator(HttpResponse response, char separator, int bufferSize) throws IOException {
+		this.response = response;
+		HttpEntity entity = response.getEntity();
+		this.reader = new DelimitedReader(new InputStreamReader(entity.getContent(), charset(entity)), separator, bufferSize);
+		List<String> header = reader.readRecord();
+		this.columnNames = header != null ? Collections.unmodifiableList(header) : Collections.emptyList();
+		this.exhausted = header == null;
+	}
+
+	private static Charset charset(HttpEntity entity) {
+		ContentType contentType = ContentType.get(entity);
+		return contentType != null && contentType.getCharset() != null ? contentType.getCharset() : StandardCharsets.UTF_8;
+	}
+
+	/**
+	 * Returns the column names from the header row of the export.
+	 *
+	 * @return the column names, empty if the export is empty
+	 */
+	public List<String> getColumnNames() {
+		return columnNames;
+	}
+
+	/**
+	 * Returns whether there is another row, which may block until it is received.
+	 *
+	 * @return {@code true} if there is another row
+	 * @throws UncheckedIOException in case the row can not be read
+	 */
+	@Override
+	public boolean hasNext() {
+		if (next == null && !exhausted) {
+			try {
+				next = reader.readRecord();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			exhausted = next == null;
+		}
+		return next != null;
+	}
+
+	@Override
+	public Row next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		Row row = new Row(index++, next);
+		next = null;
+		return row;
+	}
+
+	/**
+	 * Returns a sequential stream of the remaining rows, closing the stream closes this iterator.
+	 *
+	 * @return the stream of rows
+	 */
+	public Stream<Row> stream() {
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, ORDERED | NONNULL), false)
+			.onClose(() -> {
+				try {
+					close();
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+	}
+
+	/**
+	 * Releases the connection. A completely read export leaves the connection reusable.
+	 *
+	 * @throws IOException in case the connection can not be released
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			if (!exhausted) {
+				// closing the response first skips reading the rest of the entity
+				close(response);
+			}
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Closes the response if it holds a connection.
+	 *
+	 * @param response the response to close
+	 * @throws IOException in case the connection can not be released
+	 */
+	static void close(HttpResponse response) throws IOException {
+		if (response instanceof Closeable) {
+			((Closeable) response).close();
+		}
+	}
+}
@@ -25,17 +25,96 @@
 package gmbh.dtap.refine.client.command;
 
 import java.io.File;
+import java.nio.file.Path;
+import java.time.Duration;
 
+/**
+ * This class represents the response from the {@link ExportRowsCommand}.
+ */
 public class ExportRowsResponse {
 
-	private File file;
+	private final Path path;
+	private final long bytesReceived;
+	private final long bytesWritten;
+	private final Duration duration;
 
-	ExportRowsResponse(File file) {
-		this.file = file;
+	/**
+	 * Constructor.
+	 *
+	 * @param path          the file the export was written to, {@code null} for streams and channels
+	 * @param bytesReceived the number of bytes received from the server
+	 * @param bytesWritten  the number of bytes written to the sink, differs if compressed
+	 * @param duration      the time to transfer the export
+	 */
+	ExportRowsResponse(Path path, long bytesReceived, long bytesWritten, Duration duration) {
+		this.path = path;
+		this.bytesReceived = bytesReceived;
+		this.bytesWritten = bytesWritten;
+		this.duration = duration;
 	}
 
+	/**
+	 * Returns the file the export was written to.
+	 *
+	 * @return the file, {@code null} if the export was written to a stream or channel
+	 */
 	public File getFile() {
-		return file;
+		return path != null ? path.toFile() : null;
+	}
+
+	/**
+	 * Returns the file the export was written to.
+	 *
+	 * @return the file, {@code null} if the export was written to a stream or channel
+	 */
+	public Path getPath() {
+		return path;
+	}
+
+	/**
+	 * Returns the number of bytes received from the server.
+	 *
+	 * @return the number of bytes received
+	 */
+	public long getBytesReceived() {
+		return bytesReceived;
+	}
+
+	/**
+	 * Returns the number of bytes written to the sink, which is less than the received bytes if compressed.
+	 *
+	 * @return the number of bytes written
+	 */
+	public long getBytesWritten() {
+		return bytesWritten;
+	}
+
+	/**
+	 * Returns the time to transfer the export from the first to the last byte.
+	 *
+	 * @return the transfer duration
+	 */
+	public Duration getDuration() {
+		return duration;
 	}
 
+	/**
+	 * Returns the throughput of the transfer.
+	 *
+	 * @return the received bytes per second
+	 */
+	public double getThroughput() {
+		long nanos = duration.toNanos();
+		return nanos > 0 ? bytesReceived * 1_000_000_000d / nanos : 0;
+	}
+
+	@Override
+	public String toString() {
+		return "ExportRowsResponse{" +
+			"path=" + path +
+			", bytesReceived=" + bytesReceived +
+			", bytesWritten=" + bytesWritten +
+			", duration=" + duration +
+			'}';
+	}
 }
@@ -0,0 +1,428 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gmbh.dtap.refine.client.command;
+
+import gmbh.dtap.refine.client.ProjectLocation;
+import gmbh.dtap.refine.client.RefineClient;
+import gmbh.dtap.refine.client.RefineException;
+import gmbh.dtap.refine.client.RefineProject;
+import gmbh.dtap.refine.client.ResponseCode;
+import gmbh.dtap.refine.client.TransportType;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.Spliterators;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static java.util.Spliterator.NONNULL;
+import static java.util.Spliterator.ORDERED;
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.notEmpty;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * A command to preview an expression on many rows. The rows are split into chunks, which are previewed
+ * by {@link ExpressionPreviewCommand ExpressionPreviewCommands} in parallel. The results are merged in row order.
+ * <p>
+ * Only a limited number of chunks is in flight at any time, so that the previews of a large project
+ * can be streamed without holding them in memory.
+ */
+public class ExpressionPreviewBatchCommand {
+
+	private final String projectId;
+	private final int cellIndex;
+	private final long[] rowIndices;
+	private final long rowsFrom;
+	private final long rowCount;
+	private final String expression;
+	private final boolean repeat;
+	private final int repeatCount;
+	private final String token;
+	private final int chunkSize;
+	private final int parallelism;
+
+	/**
+	 * Constructor for {@link Builder}.
+	 *
+	 * @param projectId   the project ID
+	 * @param cellIndex   the cell/column to execute the expression on
+	 * @param rowIndices  the rows to execute the expression on, or {@code null} for a range of rows
+	 * @param rowsFrom    the first row of the range
+	 * @param rowCount    the number of rows
+	 * @param expression  the expression to execute
+	 * @param repeat      whether or not to repeated the expression multiple times
+	 * @param repeatCount the maximum amount of times a command will be repeated
+	 * @param token       the csrf token
+	 * @param chunkSize   the number of rows per request
+	 * @param parallelism the maximum number of requests in flight
+	 */
+	private ExpressionPreviewBatchCommand(String projectId, int cellIndex, long[] rowIndices, long rowsFrom, long rowCount,
+										  String expression, boolean repeat, int repeatCount, String token,
+										  int chunkSize, int parallelism) {
+		this.projectId = projectId;
+		this.cellIndex = cellIndex;
+		this.rowIndices = rowIndices != null ? rowIndices.clone() : null;
+		this.rowsFrom = rowsFrom;
+		this.rowCount = rowCount;
+		this.expression = expression;
+		this.repeat = repeat;
+		this.repeatCount = repeatCount;
+		this.token = token;
+		this.chunkSize = chunkSize;
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * Executes the command and collects all previews.
+	 *
+	 * @param client the client to execute the command with
+	 * @return the merged previews, or the first error
+	 * @throws IOException     in case of a connection problem
+	 * @throws RefineException in case the server responses with an error or is not
+	 *                         understood
+	 */
+	public ExpressionPreviewBatchResponse execute(RefineClient client) throws IOException {
+		isTrue(rowCount <= Integer.MAX_VALUE, "too many rows to collect, use stream(client) instead");
+		long[] indices = new long[(int) rowCount];
+		String[] previews = new String[(int) rowCount];
+		Chunks chunks = new Chunks(client);
+		int position = 0;
+		while (chunks.hasNext()) {
+			ExpressionPreviewResponse response = chunks.nextResponse();
+			if (response.getCode() == ResponseCode.ERROR) {
+				chunks.cancel();
+				return ExpressionPreviewBatchResponse.error(response.getMessage());
+			}
+			for (String preview : response.getExpressionPreviews()) {
+				indices[position] = rowIndex(position);
+				previews[position++] = preview;
+			}
+		}
+		return ExpressionPreviewBatchResponse.ok(indices, previews);
+	}
+
+	/**
+	 * Executes the command and returns the previews in row order while they are received.
+	 * Closing the stream stops sending further chunks, the requests already sent are completed and their
+	 * responses discarded.
+	 *
+	 * @param client the client to execute the command with
+	 * @return the stream of the previews, which throws an {@link UncheckedIOException} in case of a connection problem
+	 * or an error response
+	 */
+	public Stream<String> stream(RefineClient client) {
+		Chunks chunks = new Chunks(client);
+		Iterator<List<String>> iterator = new Iterator<List<String>>() {
+			@Override
+			public boolean hasNext() {
+				return chunks.hasNext();
+			}
+
+			@Override
+			public List<String> next() {
+				try {
+					ExpressionPreviewResponse response = chunks.nextResponse();
+					if (response.getCode() == ResponseCode.ERROR) {
+						throw new RefineException(response.getMessage());
+					}
+					return response.getExpressionPreviews();
+				} catch (IOException e) {
+					chunks.cancel();
+					throw new UncheckedIOException(e);
+				}
+			}
+		};
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, ORDERED | NONNULL), false)
+			.flatMap(List::stream)
+			.onClose(chunks::cancel);
+	}
+
+	private long chunkCount() {
+		return (rowCount + chunkSize - 1) / chunkSize;
+	}
+
+	private long rowIndex(long position) {
+		return rowIndices != null ? rowIndices[(int) position] : rowsFrom + position;
+	}
+
+	private ExpressionPreviewCommand chunk(long chunk) {
+		long start = chunk * chunkSize;
+		long[] chunkIndices = new long[(int) Math.min(chunkSize, rowCount - start)];
+		for (int i = 0; i < chunkIndices.length; i++) {
+			chunkIndices[i] = rowIndex(start + i);
+		}
+		return new ExpressionPreviewCommand(projectId, cellIndex, chunkIndices, expression, repeat, repeatCount, token);
+	}
+
+	/**
+	 * Keeps up to {@link #parallelism} chunks in flight and hands out their responses in order.
+	 */
+	private class Chunks {
+
+		private final RefineClient client;
+		private final Queue<CompletableFuture<ExpressionPreviewResponse>> inFlight = new ArrayDeque<>();
+		private long nextChunk;
+		private long nextSize;
+
+		Chunks(RefineClient client) {
+			this.client = client;
+			submit();
+		}
+
+		private void submit() {
+			while (inFlight.size() < parallelism && nextChunk < chunkCount()) {
+				inFlight.add(chunk(nextChunk++).executeAsync(client));
+			}
+		}
+
+		boolean hasNext() {
+			return !inFlight.isEmpty();
+		}
+
+		ExpressionPreviewResponse nextResponse() throws IOException {
+			CompletableFuture<ExpressionPreviewResponse> future = inFlight.poll();
+			if (future == null) {
+				throw new NoSuchElementException();
+			}
+			long expected = Math.min(chunkSize, rowCount - nextSize);
+			nextSize += expected;
+			ExpressionPreviewResponse response = join(future);
+			submit();
+			if (response.getCode() == ResponseCode.OK && response.getExpressionPreviews().size() != expected) {
+				throw new RefineException("Expected " + expected + " previews but received " + response.getExpressionPreviews().size());
+			}
+			return response;
+		}
+
+		/**
+		 * Stops submitting chunks and drops the pending responses. Cancelling a future of the client does not
+		 * abort its request, so the chunks in flight still complete on the server.
+		 */
+		void cancel() {
+			nextChunk = chunkCount();
+			inFlight.clear();
+		}
+
+		private ExpressionPreviewResponse join(CompletableFuture<ExpressionPreviewResponse> future) throws IOException {
+			try {
+				return future.join();
+			} catch (CompletionException | CancellationException e) {
+				cancel();
+				Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+				if (cause instanceof IOException) {
+					throw (IOException) cause;
+				}
+				throw new IOException(cause);
+			}
+		}
+	}
+
+	/**
+	 * The builder for {@link ExpressionPreviewBatchCommand}.
+	 */
+	public static class Builder {
+
+		private String projectId;
+		private int cellIndex;
+		private long[] rowIndices;
+		private long rowsFrom;
+		private long rowsTo = -1;
+		private String expression;
+		private boolean repeat;
+		private int repeatCount;
+		private String token;
+		private int chunkSize = 1000;
+		private int parallelism = 4;
+
+		/**
+		 * Sets the project ID.
+		 *
+		 * @param projectId the project ID
+		 * @return the builder for fluent usage
+		 */
+		public Builder project(String projectId) {
+			this.projectId = projectId;
+			return this;
+		}
+
+		/**
+		 * Sets the project ID from the project location.
+		 *
+		 * @param projectLocation the project location
+		 * @return the builder for fluent usage
+		 */
+		public Builder project(ProjectLocation projectLocation) {
+			notNull(projectLocation, "projectLocation");
+			this.projectId = projectLocation.getId();
+			return this;
+		}
+
+		/**
+		 * Sets the project ID from the project.
+		 *
+		 * @param project the project
+		 * @return the builder for fluent usage
+		 */
+		public Builder project(RefineProject project) {
+			notNull(project, "project");
+			this.projectId = project.getId();
+			return this;
+		}
+
+		/**
+		 * Sets token.
+		 *
+		 * @param token the csrf token, optional as the client provides a token otherwise
+		 * @return the builder for fluent usage
+		 */
+		public Builder token(String token) {
+			this.token = token;
+			return this;
+		}
+
+		/**
+		 * Sets the cell/column to execute the expression on.
+		 *
+		 * @param cellIndex the cell/column to execute the expression on
+		 * @return the builder for fluent usage
+		 */
+		public Builder cellIndex(int cellIndex) {
+			this.cellIndex = cellIndex;
+			return this;
+		}
+
+		/**
+		 * Sets the rows to execute the expression on. The indices are copied when the command is built.
+		 *
+		 * @param rowIndices the rows to execute the expression on
+		 * @return the builder for fluent usage
+		 */
+		public Builder rowIndices(long... rowIndices) {
+			this.rowIndices = rowIndices;
+			return this;
+		}
+
+		/**
+		 * Sets a range of rows to execute the expression on, instead of {@link #rowIndices(long...)}.
+		 *
+		 * @param from the first row, inclusive
+		 * @param to   the last row, exclusive
+		 * @return the builder for fluent usage
+		 */
+		public Builder rows(long from, long to) {
+			this.rowsFrom = from;
+			this.rowsTo = to;
+			return this;
+		}
+
+		/**
+		 * Sets the expression to execute.
+		 *
+		 * @param expression the expression to execute, prefix for the language is
+		 *                   expected, e.g.: "grel:toLowercase(value)"
+		 * @return the builder for fluent usage
+		 */
+		public Builder expression(String expression) {
+			this.expression = expression;
+			return this;
+		}
+
+		/**
+		 * Sets the <code>grel</code> expression to execute.
+		 *
+		 * @param expression the expression in <code>grel</code> to execute
+		 * @return the builder for fluent usage
+		 */
+		public Builder grel(String expression) {
+			this.expression = "grel:" + expression;
+			return this;
+		}
+
+		/**
+		 * Sets whether or not to repeated the command multiple times.
+		 *
+		 * @param repeat whether or not to repeated the expression multiple times
+		 * @return the builder for fluent usage
+		 */
+		public Builder repeat(boolean repeat) {
+			this.repeat = repeat;
+			return this;
+		}
+
+		/**
+		 * Sets the maximum amount of times a command will be repeated.
+		 *
+		 * @param repeatCount the maximum amount of times a command will be repeated
+		 * @return the builder for fluent usage
+		 */
+		public Builder repeatCount(int repeatCount) {
+			this.repeatCount = repeatCount;
+			return this;
+		}
+
+		/**
+		 * Sets the number of rows previewed per request.
+		 *
+		 * @param chunkSize the number of rows per request, defaults to 1000
+		 * @return the builder for fluent usage
+		 */
+		public Builder chunkSize(int chunkSize) {
+			this.chunkSize = chunkSize;
+			return this;
+		}
+
+		/**
+		 * Sets the maximum number of requests in flight. The chunks are sent asynchronously, each request in flight
+		 * takes a connection of the asynchronous transport. With the default {@link TransportType#APACHE} that is the
+		 * HTTP/1.1 client of the JDK, not the Apache connection pool.
+		 *
+		 * @param parallelism the maximum number of requests in flight, defaults to 4
+		 * @return the builder for fluent usage
+		 */
+		public Builder parallelism(int parallelism) {
+			this.parallelism = parallelism;
+			return this;
+		}
+
+		/**
+		 * Builds the command after validation.
+		 *
+		 * @return the command
+		 */
+		public ExpressionPreviewBatchCommand build() {
+			notNull(projectId, "projectId");
+			notEmpty(projectId, "projectId is empty");
+			notNull(expression, "expression");
+			isTrue(rowIndices == null ^ rowsTo < 0, "either rowIndices or rows have to be set");
+			isTrue(rowIndices != null || (rowsFrom >= 0 && rowsFrom <= rowsTo), "invalid range of rows");
+			isTrue(chunkSize > 0, "chunkSize must be positive");
+			isTrue(parallelism > 0, "parallelism must be positive");
+			long rowCount = rowIndices != null ? rowIndices.length : rowsTo - rowsFrom;
+			return new ExpressionPreviewBatchCommand(projectId, cellIndex, rowIndices, rowsFrom, rowCount, expression,
+				repeat, repeatCount, token, chunkSize, parallelism);
+		}
+	}
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gmbh.dtap.refine.client.command;
+
+import gmbh.dtap.refine.client.RefineResponse;
+import gmbh.dtap.refine.client.ResponseCode;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.apache.http.util.Asserts.notEmpty;
+import static org.apache.http.util.Asserts.notNull;
+
+/**
+ * This class represents the merged responses of an {@link ExpressionPreviewBatchCommand}.
+ * The previews are indexed by position, {@link #getRowIndex(int)} returns the row a preview belongs to.
+ */
+public class ExpressionPreviewBatchResponse extends RefineResponse {
+
+	private static final long[] NO_ROWS = new long[0];
+
+	private final long[] rowIndices;
+	private final String[] expressionPreviews;
+
+	/**
+	 * Private constructor to enforce usage of factory methods.
+	 *
+	 * @param code               the code
+	 * @param message            the message, may be {@code null}
+	 * @param rowIndices         the row indices in the order of the previews
+	 * @param expressionPreviews the expression previews
+	 */
+	private ExpressionPreviewBatchResponse(ResponseCode code, String message, long[] rowIndices, String[] expressionPreviews) {
+		super(code, message);
+		this.rowIndices = rowIndices;
+		this.expressionPreviews = expressionPreviews;
+	}
+
+	/**
+	 * Returns an instance to represent a success.
+	 *
+	 * @param rowIndices         the row indices in the order of the previews
+	 * @param expressionPreviews the expression previews
+	 * @return the successful instance
+	 */
+	static ExpressionPreviewBatchResponse ok(long[] rowIndices, String[] expressionPreviews) {
+		notNull(rowIndices, "rowIndices");
+		notNull(expressionPreviews, "expressionPreviews");
+		return new ExpressionPreviewBatchResponse(ResponseCode.OK, null, rowIndices, expressionPreviews);
+	}
+
+	/**
+	 * Returns an instance to represent an error.
+	 *
+	 * @param message the error message
+	 * @return the error instance
+	 */
+	static ExpressionPreviewBatchResponse error(String message) {
+		notEmpty(message, "message");
+		return new ExpressionPreviewBatchResponse(ResponseCode.ERROR, message, NO_ROWS, new String[0]);
+	}
+
+	/**
+	 * Returns the number of previews.
+	 *
+	 * @return the number of previews, <code>0</code> in case of an error
+	 */
+	public int size() {
+		return expressionPreviews.length;
+	}
+
+	/**
+	 * Returns the row index of a preview.
+	 *
+	 * @param position the position of the preview
+	 * @return the row index
+	 */
+	public long getRowIndex(int position) {
+		return rowIndices[position];
+	}
+
+	/**
+	 * Returns a preview.
+	 *
+	 * @param position the position of the preview
+	 * @return the preview of the row at {@link #getRowIndex(int)}
+	 */
+	public String getExpressionPreview(int position) {
+		return expressionPreviews[position];
+	}
+
+	/**
+	 * Returns the previews in the order of the row indices.
+	 *
+	 * @return the unmodifiable list of the previews, may be empty but not {@code null}
+	 */
+	public List<String> getExpressionPreviews() {
+		return Collections.unmodifiableList(Arrays.asList(expressionPreviews));
+	}
+
+	@Override public String toString() {
+		return "ExpressionPreviewBatchResponse{" +
+			"size=" + expressionPreviews.length +
+			'}';
+	}
+}
@@ -16,7 +16,6 @@
 
 package gmbh.dtap.refine.client.command;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import gmbh.dtap.refine.client.ProjectLocation;
 import gmbh.dtap.refine.client.RefineClient;
 import gmbh.dtap.refine.client.RefineException;
@@ -29,17 +28,20 @@ import org.apache.http.client.entity.UrlEncodedFormEntity;
 import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.client.methods.RequestBuilder;
 import org.apache.http.message.BasicNameValuePair;
-import org.apache.http.util.EntityUtils;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.StringJoiner;
+import java.util.concurrent.CompletableFuture;
 
 import static gmbh.dtap.refine.client.util.HttpParser.HTTP_PARSER;
 import static gmbh.dtap.refine.client.util.JsonParser.JSON_PARSER;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.apache.commons.lang3.Validate.notEmpty;
 import static org.apache.commons.lang3.Validate.notNull;
 import static org.apache.http.HttpHeaders.ACCEPT;
@@ -91,6 +93,27 @@ public class ExpressionPreviewCommand implements ResponseHandler<ExpressionPrevi
 	* @throws RefineException in case the request failed
 	*/
    public ExpressionPreviewResponse execute(RefineClient client) throws IOException {
+	  if (token != null) {
+		 return client.execute(createRequest(client, token), this);
+	  }
+	  return client.getCsrfTokenProvider().execute(csrfToken -> client.execute(createRequest(client, csrfToken), this));
+   }
+
+   /**
+	* Executes the command without blocking the calling thread.
+	*
+	* @param client the client to execute the command with
+	* @return the future result of the command, completed exceptionally with an {@link IOException} in case of a
+	* connection problem or a {@link RefineException} in case the server responses with an error or is not understood
+	*/
+   public CompletableFuture<ExpressionPreviewResponse> executeAsync(RefineClient client) {
+	  if (token != null) {
+		 return client.executeAsync(createRequest(client, token), this);
+	  }
+	  return client.getCsrfTokenProvider().executeAsync(csrfToken -> client.executeAsync(createRequest(client, csrfToken), this));
+   }
+
+   private HttpUriRequest createRequest(RefineClient client, String token) {
 	  URL url = client.createUrl("/command/core/preview-expression?" + CSRF_TOKEN + token);
 
 	  StringJoiner joiner = new StringJoiner(",");
@@ -109,10 +132,8 @@ public class ExpressionPreviewCommand implements ResponseHandler<ExpressionPrevi
 
 	  UrlEncodedFormEntity entity = new UrlEncodedFormEntity(form, Consts.UTF_8);
 
-	  HttpUriRequest request = RequestBuilder.post(url.toString()).setHeader(ACCEPT, APPLICATION_JSON.getMimeType())
+	  return RequestBuilder.post(url.toString()).setHeader(ACCEPT, APPLICATION_JSON.getMimeType())
 			.setEntity(entity).build();
-
-	  return client.execute(request, this);
    }
 
    /**
@@ -127,26 +148,31 @@ public class ExpressionPreviewCommand implements ResponseHandler<ExpressionPrevi
    @Override
    public ExpressionPreviewResponse handleResponse(HttpResponse response) throws IOException {
 	  HTTP_PARSER.assureStatusCode(response, SC_OK);
-	  String responseBody = EntityUtils.toString(response.getEntity());
-	  return parseExpressionPreviewResponse(responseBody);
+	  try (InputStream in = response.getEntity().getContent()) {
+		 return parseExpressionPreviewResponse(in);
+	  }
    }
 
    ExpressionPreviewResponse parseExpressionPreviewResponse(String json) throws IOException {
-	  JsonNode node = JSON_PARSER.parseJson(json);
-	  String code = JSON_PARSER.findExistingPath(node, "code").asText();
-	  if ("ok".equals(code)) {
-		 JsonNode resultsNode = JSON_PARSER.findExistingPath(node, "results");
-		 if (resultsNode.isMissingNode()) {
-			return ExpressionPreviewResponse.ok(Collections.emptyList());
+	  return parseExpressionPreviewResponse(new ByteArrayInputStream(json.getBytes(UTF_8)));
+   }
+
+   ExpressionPreviewResponse parseExpressionPreviewResponse(InputStream in) throws IOException {
+	  // the results are read into the list while they are parsed, without a tree of the document
+	  List<String> results = new ArrayList<>();
+	  Map<String, String> fields = JSON_PARSER.parseObject(in, (name, parser) -> {
+		 if ("results".equals(name)) {
+			JSON_PARSER.readStrings(parser, results);
 		 }
-		 if (resultsNode.isArray()) {
-			List<String> results = JSON_PARSER.toResults(resultsNode);
-			return ExpressionPreviewResponse.ok(results);
-		 } else {
-			throw new RefineException("Node with path 'results' is not any array: " + resultsNode);
+	  });
+	  String code = JSON_PARSER.findExistingField(fields, "code");
+	  if ("ok".equals(code)) {
+		 if (fields.containsKey("results")) {
+			throw new RefineException("Node with path 'results' is not any array: " + fields.get("results"));
 		 }
+		 return ExpressionPreviewResponse.ok(results);
 	  } else if ("error".equals(code)) {
-		 String message = JSON_PARSER.findExistingPath(node, "message").asText();
+		 String message = JSON_PARSER.findExistingField(fields, "message");
 		 return ExpressionPreviewResponse.error(message);
 	  } else {
 		 throw new RefineException("Unexpected code: " + code);
@@ -180,7 +206,7 @@ public class ExpressionPreviewCommand implements ResponseHandler<ExpressionPrevi
 	  /**
 	   * Sets the project ID.
 	   *
-	   * @param token the csrf token
+	   * @param token the csrf token, optional as the client provides a token otherwise
 	   * @return the builder for fluent usage
 	   */
 	  public Builder token(String token) {
@@ -311,7 +337,6 @@ public class ExpressionPreviewCommand implements ResponseHandler<ExpressionPrevi
 		 notEmpty(projectId, "projectId is empty");
 		 notNull(rowIndices, "rowIndices");
 		 notNull(expression, "expression");
-		 notNull(token, "token");
 		 return new ExpressionPreviewCommand(projectId, cellIndex, rowIndices, expression, repeat, repeatCount,
 			   token);
 	  }
@@ -0,0 +1,297 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package gmbh.dtap.refine.client.command;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import gmbh.dtap.refine.client.ImportOptionMetadata;
+import gmbh.dtap.refine.client.RefineClient;
+import gmbh.dtap.refine.client.RefineException;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.methods.RequestBuilder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import static gmbh.dtap.refine.client.util.HttpParser.HTTP_PARSER;
+import static gmbh.dtap.refine.client.util.JsonParser.JSON_PARSER;
+import static org.apache.http.HttpHeaders.ACCEPT;
+import static org.apache.http.HttpStatus.SC_OK;
+import static org.apache.http.entity.ContentType.APPLICATION_JSON;
+
+/**
+ * A command to retrieve the metadata of all projects.
+ * <p>
+ * The response is parsed while it is read, without building a tree of the document. With a previous response,
+ * the command runs in delta mode: a project whose modification date did not change is skipped once its
+ * <code>modified</code> field is read, and the instance of the previous response is reused. So a poll of a large
+ * inventory only allocates the projects that changed.
+ */
+public class GetAllProjectMetadataCommand {
+
+	private final GetAllProjectMetadataResponse previous;
+
+	/**
+	 * Constructor for {@link Builder}.
+	 *
+	 * @param previous the previous response to compare with, may be {@code null}
+	 */
+	private GetAllProjectMetadataCommand(GetAllProjectMetadataResponse previous) {
+		this.previous = previous;
+	}
+
+	/**
+	 * Executes the command after validation.
+	 *
+	 * @param client the client to execute the command with
+	 * @return the result of the command
+	 * @throws IOException     in case of a connection problem
+	 * @throws RefineException in case the server responses with an error or is not understood
+	 */
+	public GetAllProjectMetadataResponse execute(RefineClient client) throws IOException {
+		return client.execute(createRequest(client), response -> handleResponse(response, client));
+	}
+
+	/**
+	 * Executes the command without blocking the calling thread.
+	 *
+	 * @param client the client to execute the command with
+	 * @return the future result of the command, completed exceptionally with an {@link IOException} in case of a
+	 * connection problem or a {@link RefineException} in case the server responses with an error or is not understood
+	 */
+	public CompletableFuture<GetAllProjectMetadataResponse> executeAsync(RefineClient client) {
+		return client.executeAsync(createRequest(client), response -> handleResponse(response, client));
+	}
+
+	private HttpUriRequest createRequest(RefineClient client) {
+		URL url = client.createUrl("command/core/get-all-project-metadata");
+
+		return RequestBuilder
+			.get(url.toString())
+			.setHeader(ACCEPT, APPLICATION_JSON.getMimeType())
+			.build();
+	}
+
+	/**
+	 * Validates the response and extracts necessary data.
+	 *
+	 * @param response the response to extract data from
+	 * @param client   the client to create the project URLs with
+	 * @return the response representation
+	 * @throws IOException     in case of a connection problem
+	 * @throws RefineException in case the server responses with an unexpected status or is not understood
+	 */
+	GetAllProjectMetadataResponse handleResponse(HttpResponse response, RefineClient client) throws IOException {
+		HTTP_PARSER.assureStatusCode(response, SC_OK);
+		ProjectsReader reader = new ProjectsReader(client);
+		try (InputStream in = response.getEntity().getContent()) {
+			JSON_PARSER.parseObject(in, (name, parser) -> {
+				if ("projects".equals(name)) {
+					reader.read(parser);
+				}
+			});
+		}
+		return reader.toResponse();
+	}
+
+	/**
+	 * Reads the <code>projects</code> object, which maps the project IDs to their metadata.
+	 */
+	private class ProjectsReader {
+
+		private final RefineClient client;
+		private final Map<String, RefineProjectMetadata> projects;
+		private final List<RefineProjectMetadata> changed = new ArrayList<>();
+
+		ProjectsReader(RefineClient client) {
+			this.client = client;
+			this.projects = new LinkedHashMap<>(previous != null ? previous.size() * 4 / 3 + 1 : 16);
+		}
+
+		void read(JsonParser parser) throws IOException {
+			if (parser.currentToken() != JsonToken.START_OBJECT) {
+				throw new RefineException("Object expected at 'projects'");
+			}
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				String projectId = parser.getCurrentName();
+				if (parser.nextToken() != JsonToken.START_OBJECT) {
+					throw new RefineException("Object expected at project '" + projectId + "'");
+				}
+				RefineProjectMetadata known = previous != null ? previous.get(projectId) : null;
+				RefineProjectMetadata project = readProject(parser, projectId, known);
+				projects.put(projectId, project);
+				if (project != known) {
+					changed.add(project);
+				}
+			}
+		}
+
+		/**
+		 * Reads a project up to its end token, or returns the known project as soon as its modification date is
+		 * found to be unchanged.
+		 */
+		private RefineProjectMetadata readProject(JsonParser parser, String projectId, RefineProjectMetadata known) throws IOException {
+			Map<String, String> fields = new HashMap<>();
+			RefineProjectMetadata.Custom custom = RefineProjectMetadata.Custom.EMPTY;
+			List<ImportOptionMetadata> importOptions = Collections.emptyList();
+			JsonToken token;
+			while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+				String name = parser.getCurrentName();
+				JsonToken value = parser.nextToken();
+				if (known != null && "modified".equals(name) && equalsText(parser, known.getModifiedText())) {
+					skipToEnd(parser);
+					return known;
+				}
+				if (value == JsonToken.START_OBJECT && "customMetadata".equals(name)) {
+					custom = new RefineProjectMetadata.Custom(readScalars(parser));
+				} else if (value == JsonToken.START_ARRAY && "importOptionMetadata".equals(name)) {
+					importOptions = readImportOptions(parser);
+				} else if (value.isStructStart()) {
+					parser.skipChildren();
+				} else {
+					fields.put(name, text(parser));
+				}
+			}
+			if (token != JsonToken.END_OBJECT) {
+				throw new RefineException("Parser error: unexpected end of project '" + projectId + "'");
+			}
+			URL url = client.createUrl("project?project=" + projectId);
+			return new RefineProjectMetadata(projectId, url, fields, custom, importOptions);
+		}
+
+		private List<ImportOptionMetadata> readImportOptions(JsonParser parser) throws IOException {
+			List<ImportOptionMetadata> importOptions = new ArrayList<>(1);
+			JsonToken token;
+			while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+				if (token == JsonToken.START_OBJECT) {
+					importOptions.add(new RefineProjectMetadata.ImportOptions(readScalars(parser)));
+				} else if (token == null) {
+					throw new RefineException("Parser error: unexpected end of array");
+				} else {
+					parser.skipChildren();
+				}
+			}
+			return importOptions;
+		}
+
+		private Map<String, String> readScalars(JsonParser parser) throws IOException {
+			Map<String, String> fields = new HashMap<>();
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				String name = parser.getCurrentName();
+				if (parser.nextToken().isStructStart()) {
+					parser.skipChildren();
+				} else {
+					fields.put(name, text(parser));
+				}
+			}
+			return fields;
+		}
+
+		GetAllProjectMetadataResponse toResponse() {
+			if (previous == null) {
+				return new GetAllProjectMetadataResponse(projects, changed, Collections.emptySet(), false);
+			}
+			Set<String> removed = new HashSet<>();
+			for (String projectId : previous.getProjectIds()) {
+				if (!projects.containsKey(projectId)) {
+					removed.add(projectId);
+				}
+			}
+			return new GetAllProjectMetadataResponse(projects, changed, removed, true);
+		}
+	}
+
+	/**
+	 * Compares the current text token without creating a string.
+	 */
+	private static boolean equalsText(JsonParser parser, String text) throws IOException {
+		if (text == null || parser.currentToken() != JsonToken.VALUE_STRING) {
+			return false;
+		}
+		int length = parser.getTextLength();
+		if (length != text.length()) {
+			return false;
+		}
+		char[] characters = parser.getTextCharacters();
+		int offset = parser.getTextOffset();
+		for (int i = 0; i < length; i++) {
+			if (characters[offset + i] != text.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Skips the rest of the current object up to and including its end token.
+	 */
+	private static void skipToEnd(JsonParser parser) throws IOException {
+		JsonToken token;
+		while ((token = parser.nextToken()) != JsonToken.END_OBJECT) {
+			if (token == null) {
+				throw new RefineException("Parser error: unexpected end of object");
+			}
+			if (token.isStructStart()) {
+				parser.skipChildren();
+			}
+		}
+	}
+
+	private static String text(JsonParser parser) throws IOException {
+		return parser.currentToken() == JsonToken.VALUE_NULL ? null : parser.getText();
+	}
+
+	/**
+	 * The builder for {@link GetAllProjectMetadataCommand}.
+	 */
+	public static class Builder {
+
+		private GetAllProjectMetadataResponse previous;
+
+		/**
+		 * Sets the previous response to compare with, which enables the delta mode.
+		 *
+		 * @param previous the previous response, or {@code null} for a full listing
+		 * @return the builder for fluent usage
+		 */
+		public Builder previous(GetAllProjectMetadataResponse previous) {
+			this.previous = previous;
+			return this;
+		}
+
+		/**
+		 * Builds the command.
+		 *
+		 * @return the command
+		 */
+		public GetAllProjectMetadataCommand build() {
+			return new GetAllProjectMetadataCommand(previous);
+		}
+	}
+}
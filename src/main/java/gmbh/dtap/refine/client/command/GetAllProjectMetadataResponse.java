@@ -0,0 +1,131 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package gmbh.dtap.refine.client.command;
+
+import gmbh.dtap.refine.client.RefineProject;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The metadata of all projects of a server. In delta mode the response also reports which projects were created,
+ * modified or deleted since the previous response, and carries over the unchanged projects from it.
+ */
+public class GetAllProjectMetadataResponse {
+
+	private final Map<String, RefineProjectMetadata> projects;
+	private final List<RefineProjectMetadata> changed;
+	private final Set<String> removed;
+	private final boolean delta;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param projects the projects by ID in the order of the response
+	 * @param changed  the projects that are new or modified, all projects without a previous response
+	 * @param removed  the IDs of the projects of the previous response that are gone
+	 * @param delta    whether the projects were compared to a previous response
+	 */
+	GetAllProjectMetadataResponse(Map<String, RefineProjectMetadata> projects, List<RefineProjectMetadata> changed,
+								  Set<String> removed, boolean delta) {
+		this.projects = Collections.unmodifiableMap(projects);
+		this.changed = Collections.unmodifiableList(changed);
+		this.removed = Collections.unmodifiableSet(removed);
+		this.delta = delta;
+	}
+
+	/**
+	 * Returns all projects.
+	 *
+	 * @return the projects in the order of the response
+	 */
+	public Collection<RefineProject> getProjects() {
+		return Collections.unmodifiableCollection(projects.values());
+	}
+
+	/**
+	 * Returns a project.
+	 *
+	 * @param projectId the project ID
+	 * @return the project, or {@code null} if there is no such project
+	 */
+	public RefineProject getProject(String projectId) {
+		return projects.get(projectId);
+	}
+
+	/**
+	 * Returns the number of projects.
+	 *
+	 * @return the number of projects
+	 */
+	public int size() {
+		return projects.size();
+	}
+
+	/**
+	 * Returns the projects that were created or modified since the previous response.
+	 *
+	 * @return the changed projects, all projects if this is not a delta
+	 */
+	public List<RefineProject> getChanged() {
+		return new ArrayList<>(changed);
+	}
+
+	/**
+	 * Returns the IDs of the projects that were deleted since the previous response.
+	 *
+	 * @return the IDs of the removed projects, empty if this is not a delta
+	 */
+	public Set<String> getRemoved() {
+		return removed;
+	}
+
+	/**
+	 * Returns whether the projects were compared to a previous response.
+	 *
+	 * @return {@code true} in delta mode
+	 */
+	public boolean isDelta() {
+		return delta;
+	}
+
+	/**
+	 * Returns the project parsed from this response or carried over, for the next delta.
+	 */
+	RefineProjectMetadata get(String projectId) {
+		return projects.get(projectId);
+	}
+
+	Set<String> getProjectIds() {
+		return projects.keySet();
+	}
+
+	@Override
+	public String toString() {
+		return "GetAllProjectMetadataResponse{" +
+			"projects=" + projects.size() +
+			", changed=" + changed.size() +
+			", removed=" + removed.size() +
+			", delta=" + delta +
+			'}';
+	}
+}
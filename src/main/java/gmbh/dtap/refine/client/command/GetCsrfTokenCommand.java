@@ -26,20 +26,22 @@ package gmbh.dtap.refine.client.command;
 
 import static gmbh.dtap.refine.client.util.HttpParser.HTTP_PARSER;
 import static gmbh.dtap.refine.client.util.JsonParser.JSON_PARSER;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.apache.http.HttpHeaders.ACCEPT;
 import static org.apache.http.HttpStatus.SC_OK;
 import static org.apache.http.entity.ContentType.APPLICATION_JSON;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import org.apache.http.HttpResponse;
 import org.apache.http.client.ResponseHandler;
 import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.client.methods.RequestBuilder;
-import org.apache.http.util.EntityUtils;
-
-import com.fasterxml.jackson.databind.JsonNode;
 
 import gmbh.dtap.refine.client.RefineClient;
 import gmbh.dtap.refine.client.RefineException;
@@ -66,12 +68,25 @@ public class GetCsrfTokenCommand implements ResponseHandler<GetCsrfTokenResponse
 	 *                         understood
 	 */
 	public GetCsrfTokenResponse execute(RefineClient client) throws IOException {
+		return client.execute(createRequest(client), this);
+	}
+
+	/**
+	 * Executes the command without blocking the calling thread.
+	 *
+	 * @param client the client to execute the command with
+	 * @return the future result of the command, completed exceptionally with an {@link IOException} in case of a
+	 * connection problem or a {@link RefineException} in case the server responses with an error or is not understood
+	 */
+	public CompletableFuture<GetCsrfTokenResponse> executeAsync(RefineClient client) {
+		return client.executeAsync(createRequest(client), this);
+	}
+
+	private HttpUriRequest createRequest(RefineClient client) {
 		URL url = client.createUrl("command/core/get-csrf-token");
 
-		HttpUriRequest request = RequestBuilder.get(url.toString()).setHeader(ACCEPT, APPLICATION_JSON.getMimeType())
+		return RequestBuilder.get(url.toString()).setHeader(ACCEPT, APPLICATION_JSON.getMimeType())
 				.build();
-
-		return client.execute(request, this);
 	}
 
 	/**
@@ -86,14 +101,18 @@ public class GetCsrfTokenCommand implements ResponseHandler<GetCsrfTokenResponse
 	@Override
 	public GetCsrfTokenResponse handleResponse(HttpResponse response) throws IOException {
 		HTTP_PARSER.assureStatusCode(response, SC_OK);
-		String responseBody = EntityUtils.toString(response.getEntity());
-		GetCsrfTokenResponse getVersionResponse = parseGetCsrfTokenResponse(responseBody);
-		return getVersionResponse;
+		try (InputStream in = response.getEntity().getContent()) {
+			return parseGetCsrfTokenResponse(in);
+		}
 	}
 
 	GetCsrfTokenResponse parseGetCsrfTokenResponse(String json) throws IOException {
-		JsonNode node = JSON_PARSER.parseJson(json);
-		return new GetCsrfTokenResponse(JSON_PARSER.findExistingPath(node, "token").asText());
+		return parseGetCsrfTokenResponse(new ByteArrayInputStream(json.getBytes(UTF_8)));
+	}
+
+	GetCsrfTokenResponse parseGetCsrfTokenResponse(InputStream in) throws IOException {
+		Map<String, String> fields = JSON_PARSER.parseObject(in, null);
+		return new GetCsrfTokenResponse(JSON_PARSER.findExistingField(fields, "token"));
 	}
 
 	/**
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package gmbh.dtap.refine.client.command;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import gmbh.dtap.refine.client.*;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.methods.RequestBuilder;
+import org.apache.http.message.BasicNameValuePair;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static gmbh.dtap.refine.client.util.HttpParser.HTTP_PARSER;
+import static gmbh.dtap.refine.client.util.JsonParser.JSON_PARSER;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.apache.commons.lang3.Validate.notEmpty;
+import static org.apache.commons.lang3.Validate.notNull;
+import static org.apache.http.HttpHeaders.ACCEPT;
+import static org.apache.http.HttpStatus.SC_OK;
+import static org.apache.http.entity.ContentType.APPLICATION_JSON;
+
+/**
+ * A command to retrieve the long-running processes of a project, e.g. to find out whether operations that were
+ * applied with a <code>pending</code> response are done. {@link RefineClient#awaitCompletion(String)} polls
+ * this command until the queue is drained.
+ */
+public class GetProcessesCommand implements ResponseHandler<GetProcessesResponse> {
+
+	private final String projectId;
+
+	/**
+	 * Constructor for {@link Builder}.
+	 *
+	 * @param projectId the project ID
+	 */
+	private GetProcessesCommand(String projectId) {
+		this.projectId = projectId;
+	}
+
+	/**
+	 * Executes the command.
+	 *
+	 * @param client the client to execute the command with
+	 * @return the result of the command
+	 * @throws IOException     in case of a connection problem
+	 * @throws RefineException in case the server responses with an error or is not understood
+	 */
+	public GetProcessesResponse execute(RefineClient client) throws IOException {
+		return client.execute(createRequest(client), this);
+	}
+
+	/**
+	 * Executes the command without blocking the calling thread.
+	 *
+	 * @param client the client to execute the command with
+	 * @return the future result of the command, completed exceptionally with an {@link IOException} in case of a
+	 * connection problem or a {@link RefineException} in case the server responses with an error or is not understood
+	 */
+	public CompletableFuture<GetProcessesResponse> executeAsync(RefineClient client) {
+		return client.executeAsync(createRequest(client), this);
+	}
+
+	private HttpUriRequest createRequest(RefineClient client) {
+		URL url = client.createUrl("command/core/get-processes");
+
+		return RequestBuilder
+			.get(url.toString())
+			.setHeader(ACCEPT, APPLICATION_JSON.getMimeType())
+			.addParameter(new BasicNameValuePair("project", projectId))
+			.build();
+	}
+
+	/**
+	 * Validates the response and extracts necessary data.
+	 *
+	 * @param response the response to extract data from
+	 * @return the response representation
+	 * @throws IOException     in case of a connection problem
+	 * @throws RefineException in case the server responses with an unexpected status or is not understood
+	 */
+	@Override
+	public GetProcessesResponse handleResponse(HttpResponse response) throws IOException {
+		HTTP_PARSER.assureStatusCode(response, SC_OK);
+		try (InputStream in = response.getEntity().getContent()) {
+			return parseGetProcessesResponse(in);
+		}
+	}
+
+	GetProcessesResponse parseGetProcessesResponse(String json) throws IOException {
+		return parseGetProcessesResponse(new ByteArrayInputStream(json.getBytes(UTF_8)));
+	}
+
+	GetProcessesResponse parseGetProcessesResponse(InputStream in) throws IOException {
+		JsonNode node = JSON_PARSER.read(in, JsonNode.class);
+		if ("error".equals(node.path("code").asText())) {
+			throw new RefineException(node.path("message").asText());
+		}
+		JsonNode processesNode = JSON_PARSER.findExistingPath(node, "processes");
+		List<RefineProcess> processes = new ArrayList<>(processesNode.size());
+		for (JsonNode process : processesNode) {
+			processes.add(new RefineProcess(process.path("id").asLong(), process.path("description").asText(null),
+				process.path("status").asText(null), process.path("progress").asInt(), process.path("immediate").asBoolean()));
+		}
+		List<String> exceptions = new ArrayList<>();
+		for (JsonNode exception : node.path("exceptions")) {
+			exceptions.add(exception.path("message").asText(exception.asText()));
+		}
+		return new GetProcessesResponse(processes, exceptions);
+	}
+
+	/**
+	 * The builder for {@link GetProcessesCommand}.
+	 */
+	public static class Builder {
+
+		private String projectId;
+
+		/**
+		 * Sets the project ID.
+		 *
+		 * @param projectId the project ID
+		 * @return the builder for fluent usage
+		 */
+		public Builder project(String projectId) {
+			this.projectId = projectId;
+			return this;
+		}
+
+		/**
+		 * Sets the project ID from the project location.
+		 *
+		 * @param projectLocation the project location
+		 * @return the builder for fluent usage
+		 */
+		public Builder project(ProjectLocation projectLocation) {
+			notNull(projectLocation, "projectLocation");
+			this.projectId = projectLocation.getId();
+			return this;
+		}
+
+		/**
+		 * Sets the project ID from the project.
+		 *
+		 * @param project the project
+		 * @return the builder for fluent usage
+		 */
+		public Builder project(RefineProject project) {
+			notNull(project, "project");
+			this.projectId = project.getId();
+			return this;
+		}
+
+		/**
+		 * Builds the command after validation.
+		 *
+		 * @return the command
+		 */
+		public GetProcessesCommand build() {
+			notNull(projectId, "projectId");
+			notEmpty(projectId, "projectId is empty");
+			return new GetProcessesCommand(projectId);
+		}
+	}
+}
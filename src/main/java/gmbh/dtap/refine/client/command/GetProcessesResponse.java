@@ -0,0 +1,80 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package gmbh.dtap.refine.client.command;
+
+import java.util.List;
+
+/**
+ * This class represents the response from the {@link GetProcessesCommand}.
+ */
+public class GetProcessesResponse {
+
+	private final List<RefineProcess> processes;
+	private final List<String> exceptions;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param processes  the processes in the queue
+	 * @param exceptions the messages of the exceptions of failed processes
+	 */
+	GetProcessesResponse(List<RefineProcess> processes, List<String> exceptions) {
+		this.processes = List.copyOf(processes);
+		this.exceptions = List.copyOf(exceptions);
+	}
+
+	/**
+	 * Returns the processes in the queue of the project.
+	 *
+	 * @return the processes, empty if the queue is drained
+	 */
+	public List<RefineProcess> getProcesses() {
+		return processes;
+	}
+
+	/**
+	 * Returns the messages of the exceptions OpenRefine reports for failed processes.
+	 *
+	 * @return the messages, empty if no process failed
+	 */
+	public List<String> getExceptions() {
+		return exceptions;
+	}
+
+	/**
+	 * Returns whether the process queue is drained, i.e. all operations are done.
+	 *
+	 * @return {@code true} if no process is pending or running
+	 */
+	public boolean isDrained() {
+		for (RefineProcess process : processes) {
+			if (!"done".equals(process.getStatus())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return "GetProcessesResponse{" +
+			"processes=" + processes +
+			", exceptions=" + exceptions +
+			'}';
+	}
+}
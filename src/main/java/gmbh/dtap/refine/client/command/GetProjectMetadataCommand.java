@@ -22,10 +22,11 @@ import org.apache.http.client.ResponseHandler;
 import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.client.methods.RequestBuilder;
 import org.apache.http.message.BasicNameValuePair;
-import org.apache.http.util.EntityUtils;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
+import java.util.concurrent.CompletableFuture;
 
 import static gmbh.dtap.refine.client.util.HttpParser.HTTP_PARSER;
 import static gmbh.dtap.refine.client.util.JsonParser.JSON_PARSER;
@@ -52,7 +53,8 @@ public class GetProjectMetadataCommand implements ResponseHandler<GetProjectMeta
 	}
 
 	/**
-	 * Executes the command after validation.
+	 * Executes the command after validation. If the client has a {@link ProjectMetadataCache}, a cached response
+	 * is returned without a request.
 	 *
 	 * @param client the client to execute the command with
 	 * @return the result of the command
@@ -60,15 +62,36 @@ public class GetProjectMetadataCommand implements ResponseHandler<GetProjectMeta
 	 * @throws RefineException in case the server responses with an error or is not understood
 	 */
 	public GetProjectMetadataResponse execute(RefineClient client) throws IOException {
+		ProjectMetadataCache cache = client.getProjectMetadataCache();
+		if (cache != null) {
+			return cache.get(projectId, () -> client.execute(createRequest(client), this));
+		}
+		return client.execute(createRequest(client), this);
+	}
+
+	/**
+	 * Executes the command without blocking the calling thread.
+	 *
+	 * @param client the client to execute the command with
+	 * @return the future result of the command, completed exceptionally with an {@link IOException} in case of a
+	 * connection problem or a {@link RefineException} in case the server responses with an error or is not understood
+	 */
+	public CompletableFuture<GetProjectMetadataResponse> executeAsync(RefineClient client) {
+		ProjectMetadataCache cache = client.getProjectMetadataCache();
+		if (cache != null) {
+			return cache.getAsync(projectId, () -> client.executeAsync(createRequest(client), this));
+		}
+		return client.executeAsync(createRequest(client), this);
+	}
+
+	private HttpUriRequest createRequest(RefineClient client) {
 		URL url = client.createUrl("command/core/get-project-metadata");
 
-		HttpUriRequest request = RequestBuilder
+		return RequestBuilder
 			.get(url.toString())
 			.setHeader(ACCEPT, APPLICATION_JSON.getMimeType())
 			.addParameter(new BasicNameValuePair("project", projectId))
 			.build();
-
-		return client.execute(request, this);
 	}
 
 	/**
@@ -82,8 +105,9 @@ public class GetProjectMetadataCommand implements ResponseHandler<GetProjectMeta
 	@Override
 	public GetProjectMetadataResponse handleResponse(HttpResponse response) throws IOException {
 		HTTP_PARSER.assureStatusCode(response, SC_OK);
-		String responseBody = EntityUtils.toString(response.getEntity());
-		return new GetProjectMetadataResponse(JSON_PARSER.read(responseBody, ProjectMetadata.class));
+		try (InputStream in = response.getEntity().getContent()) {
+			return new GetProjectMetadataResponse(JSON_PARSER.read(in, ProjectMetadata.class));
+		}
 	}
 
 	/**
@@ -0,0 +1,362 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package gmbh.dtap.refine.client.command;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import gmbh.dtap.refine.client.*;
+import gmbh.dtap.refine.client.operation.PreparedOperation;
+import org.apache.http.Consts;
+import org.apache.http.HttpResponse;
+import org.apache.http.NameValuePair;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.entity.UrlEncodedFormEntity;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.methods.RequestBuilder;
+import org.apache.http.message.BasicNameValuePair;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+import static gmbh.dtap.refine.client.util.HttpParser.HTTP_PARSER;
+import static gmbh.dtap.refine.client.util.JsonParser.JSON_PARSER;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.notBlank;
+import static org.apache.commons.lang3.Validate.notEmpty;
+import static org.apache.commons.lang3.Validate.notNull;
+import static org.apache.http.HttpHeaders.ACCEPT;
+import static org.apache.http.HttpStatus.SC_OK;
+import static org.apache.http.entity.ContentType.APPLICATION_JSON;
+
+/**
+ * A command to retrieve a page of the rows of a project, which the engine configuration selects.
+ * The rows are parsed while they are received. {@link #iterate(RefineClient)} pages through all rows and fetches
+ * the next pages while the current one is consumed.
+ */
+public class GetRowsCommand implements ResponseHandler<GetRowsResponse> {
+
+	private final String projectId;
+	private final String engine;
+	private final long start;
+	private final int limit;
+	private final int prefetch;
+
+	/**
+	 * Constructor for {@link Builder}.
+	 *
+	 * @param projectId the project ID
+	 * @param engine    the engine configuration
+	 * @param start     the position of the first row within the filtered rows
+	 * @param limit     the number of rows per page
+	 * @param prefetch  the number of pages the iterator fetches ahead
+	 */
+	private GetRowsCommand(String projectId, String engine, long start, int limit, int prefetch) {
+		this.projectId = projectId;
+		this.engine = engine;
+		this.start = start;
+		this.limit = limit;
+		this.prefetch = prefetch;
+	}
+
+	/**
+	 * Executes the command.
+	 *
+	 * @param client the client to execute the command with
+	 * @return the page of rows
+	 * @throws IOException     in case of a connection problem
+	 * @throws RefineException in case the server responses with an error or is not understood
+	 */
+	public GetRowsResponse execute(RefineClient client) throws IOException {
+		return client.execute(createRequest(client), this);
+	}
+
+	/**
+	 * Executes the command without blocking the calling thread.
+	 *
+	 * @param client the client to execute the command with
+	 * @return the future page of rows, completed exceptionally with an {@link IOException} in case of a
+	 * connection problem or a {@link RefineException} in case the server responses with an error or is not understood
+	 */
+	public CompletableFuture<GetRowsResponse> executeAsync(RefineClient client) {
+		return client.executeAsync(createRequest(client), this);
+	}
+
+	/**
+	 * Returns an iterator over the filtered rows from the start of this command on. The iterator requests the pages
+	 * of {@link Builder#limit(int)} rows one after the other, and keeps {@link Builder#prefetch(int)} further pages
+	 * in flight while the current one is consumed. It should be closed if it is not consumed completely.
+	 *
+	 * @param client the client to execute the page requests with
+	 * @return the iterator of the rows
+	 */
+	public GetRowsIterator iterate(RefineClient client) {
+		return new GetRowsIterator(this, client);
+	}
+
+	/**
+	 * Returns the filtered rows as a stream, see {@link #iterate(RefineClient)}.
+	 * Closing the stream cancels the prefetched pages.
+	 *
+	 * @param client the client to execute the page requests with
+	 * @return the stream of the rows
+	 */
+	public Stream<Row> stream(RefineClient client) {
+		return iterate(client).stream();
+	}
+
+	/**
+	 * Returns the same command for another page.
+	 *
+	 * @param start the position of the first row of the page
+	 * @return the command
+	 */
+	GetRowsCommand page(long start) {
+		return new GetRowsCommand(projectId, engine, start, limit, prefetch);
+	}
+
+	long getStart() {
+		return start;
+	}
+
+	int getLimit() {
+		return limit;
+	}
+
+	int getPrefetch() {
+		return prefetch;
+	}
+
+	private HttpUriRequest createRequest(RefineClient client) {
+		URL url = client.createUrl("command/core/get-rows");
+
+		List<NameValuePair> form = new ArrayList<>();
+		form.add(new BasicNameValuePair("project", projectId));
+		form.add(new BasicNameValuePair("engine", engine));
+		form.add(new BasicNameValuePair("start", String.valueOf(start)));
+		form.add(new BasicNameValuePair("limit", String.valueOf(limit)));
+
+		UrlEncodedFormEntity entity = new UrlEncodedFormEntity(form, Consts.UTF_8);
+
+		return RequestBuilder.post(url.toString()).setHeader(ACCEPT, APPLICATION_JSON.getMimeType())
+			.setEntity(entity).build();
+	}
+
+	/**
+	 * Validates the response and extracts necessary data.
+	 *
+	 * @param response the response to extract data from
+	 * @return the response representation
+	 * @throws IOException     in case of a connection problem
+	 * @throws RefineException in case the server responses with an unexpected status or is not understood
+	 */
+	@Override
+	public GetRowsResponse handleResponse(HttpResponse response) throws IOException {
+		HTTP_PARSER.assureStatusCode(response, SC_OK);
+		try (InputStream in = response.getEntity().getContent()) {
+			return parseGetRowsResponse(in);
+		}
+	}
+
+	GetRowsResponse parseGetRowsResponse(String json) throws IOException {
+		return parseGetRowsResponse(new ByteArrayInputStream(json.getBytes(UTF_8)));
+	}
+
+	GetRowsResponse parseGetRowsResponse(InputStream in) throws IOException {
+		List<Row> rows = new ArrayList<>(limit);
+		Map<String, String> fields = JSON_PARSER.parseObject(in, (name, parser) -> {
+			if ("rows".equals(name)) {
+				readRows(parser, rows);
+			}
+		});
+		if ("error".equals(fields.get("code"))) {
+			throw new RefineException(fields.get("message"));
+		}
+		long filtered = Long.parseLong(JSON_PARSER.findExistingField(fields, "filtered"));
+		String total = fields.containsKey("totalCount") ? fields.get("totalCount") : fields.get("total");
+		return new GetRowsResponse(rows, start, limit, filtered, total != null ? Long.parseLong(total) : filtered);
+	}
+
+	/**
+	 * Reads the rows, each an object with the row index <code>i</code> and the <code>cells</code>, which are
+	 * <code>null</code> or an object with the value <code>v</code>.
+	 */
+	private void readRows(JsonParser parser, List<Row> rows) throws IOException {
+		expect(parser, JsonToken.START_ARRAY, "rows");
+		while (parser.nextToken() == JsonToken.START_OBJECT) {
+			long index = -1;
+			List<String> cells = new ArrayList<>();
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				String field = parser.getCurrentName();
+				parser.nextToken();
+				if ("i".equals(field)) {
+					index = parser.getLongValue();
+				} else if ("cells".equals(field)) {
+					readCells(parser, cells);
+				} else {
+					parser.skipChildren();
+				}
+			}
+			rows.add(new Row(index, cells));
+		}
+		expect(parser, JsonToken.END_ARRAY, "rows");
+	}
+
+	private static void readCells(JsonParser parser, List<String> cells) throws IOException {
+		expect(parser, JsonToken.START_ARRAY, "cells");
+		JsonToken token;
+		while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+			if (token == JsonToken.START_OBJECT) {
+				String value = null;
+				while (parser.nextToken() == JsonToken.FIELD_NAME) {
+					String field = parser.getCurrentName();
+					JsonToken valueToken = parser.nextToken();
+					if ("v".equals(field) && valueToken.isScalarValue() && valueToken != JsonToken.VALUE_NULL) {
+						value = parser.getText();
+					} else {
+						parser.skipChildren();
+					}
+				}
+				cells.add(value);
+			} else if (token == JsonToken.VALUE_NULL) {
+				cells.add(null);
+			} else {
+				throw new RefineException("Cell expected, but got " + token);
+			}
+		}
+	}
+
+	private static void expect(JsonParser parser, JsonToken expected, String name) throws RefineException {
+		if (parser.currentToken() != expected) {
+			throw new RefineException("Parser error: " + expected + " expected at '" + name + "', but got " + parser.currentToken());
+		}
+	}
+
+	/**
+	 * The builder for {@link GetRowsCommand}.
+	 */
+	public static class Builder {
+
+		private String projectId;
+		private String engine = PreparedOperation.ALL_ROWS;
+		private long start;
+		private int limit = 1000;
+		private int prefetch = 2;
+
+		/**
+		 * Sets the project ID.
+		 *
+		 * @param projectId the project ID
+		 * @return the builder for fluent usage
+		 */
+		public Builder project(String projectId) {
+			this.projectId = projectId;
+			return this;
+		}
+
+		/**
+		 * Sets the project ID from the project location.
+		 *
+		 * @param projectLocation the project location
+		 * @return the builder for fluent usage
+		 */
+		public Builder project(ProjectLocation projectLocation) {
+			notNull(projectLocation, "projectLocation");
+			this.projectId = projectLocation.getId();
+			return this;
+		}
+
+		/**
+		 * Sets the project ID from the project.
+		 *
+		 * @param project the project
+		 * @return the builder for fluent usage
+		 */
+		public Builder project(RefineProject project) {
+			notNull(project, "project");
+			this.projectId = project.getId();
+			return this;
+		}
+
+		/**
+		 * Sets the engine configuration, which selects the rows with its facets.
+		 *
+		 * @param engine the engine configuration as JSON, defaults to all rows
+		 * @return the builder for fluent usage
+		 */
+		public Builder engine(String engine) {
+			this.engine = engine;
+			return this;
+		}
+
+		/**
+		 * Sets the position of the first row within the filtered rows.
+		 *
+		 * @param start the start, defaults to <code>0</code>
+		 * @return the builder for fluent usage
+		 */
+		public Builder start(long start) {
+			this.start = start;
+			return this;
+		}
+
+		/**
+		 * Sets the number of rows per page.
+		 *
+		 * @param limit the maximum number of rows, defaults to <code>1000</code>
+		 * @return the builder for fluent usage
+		 */
+		public Builder limit(int limit) {
+			this.limit = limit;
+			return this;
+		}
+
+		/**
+		 * Sets how many pages the iterator requests ahead of the page that is consumed.
+		 *
+		 * @param prefetch the number of pages, <code>0</code> to request one page at a time, defaults to <code>2</code>
+		 * @return the builder for fluent usage
+		 */
+		public Builder prefetch(int prefetch) {
+			this.prefetch = prefetch;
+			return this;
+		}
+
+		/**
+		 * Builds the command after validation.
+		 *
+		 * @return the command
+		 */
+		public GetRowsCommand build() {
+			notNull(projectId, "projectId");
+			notEmpty(projectId, "projectId is empty");
+			notBlank(engine, "engine");
+			isTrue(start >= 0, "start must not be negative");
+			isTrue(limit > 0, "limit must be positive");
+			isTrue(prefetch >= 0, "prefetch must not be negative");
+			return new GetRowsCommand(projectId, engine, start, limit, prefetch);
+		}
+	}
+}
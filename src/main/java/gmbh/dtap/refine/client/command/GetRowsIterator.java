@@ -0,0 +1,168 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package gmbh.dtap.refine.client.command;
+
+import gmbh.dtap.refine.client.RefineClient;
+import gmbh.dtap.refine.client.Row;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static java.util.Spliterator.NONNULL;
+import static java.util.Spliterator.ORDERED;
+
+/**
+ * Iterates over the rows of a project page by page with {@link GetRowsCommand}. While the rows of one page are
+ * consumed, the requests for the configured number of next pages are already in flight, so that the network time overlaps with the
+ * processing of the rows.
+ * <p>
+ * The number of filtered rows is unknown until the first page arrives, so the first requests may ask for pages
+ * behind the last row, which are empty. Once it is known, no pages behind the last row are requested.
+ */
+public class GetRowsIterator implements Iterator<Row>, Closeable {
+
+	private final GetRowsCommand command;
+	private final RefineClient client;
+	private final Deque<CompletableFuture<GetRowsResponse>> pages = new ArrayDeque<>();
+	private Iterator<Row> rows = Collections.emptyIterator();
+	private long nextStart;
+	private long end = Long.MAX_VALUE;
+	private long filtered = -1;
+
+	/**
+	 * Constructor, requests the first pages.
+	 *
+	 * @param command the command of the first page
+	 * @param client  the client to execute the page requests with
+	 */
+	GetRowsIterator(GetRowsCommand command, RefineClient client) {
+		this.command = command;
+		this.client = client;
+		this.nextStart = command.getStart();
+		request(command.getPrefetch() + 1);
+	}
+
+	/**
+	 * Requests pages until the given number is in flight.
+	 */
+	private void request(int pageCount) {
+		while (pages.size() < pageCount && nextStart < end) {
+			pages.add(command.page(nextStart).executeAsync(client));
+			nextStart += command.getLimit();
+		}
+	}
+
+	/**
+	 * Returns the number of rows the engine configuration selects.
+	 *
+	 * @return the number of filtered rows, or <code>-1</code> until the first page arrived
+	 */
+	public long getFiltered() {
+		return filtered;
+	}
+
+	/**
+	 * Returns whether there is another row, which may block until its page is received.
+	 *
+	 * @return {@code true} if there is another row
+	 * @throws UncheckedIOException in case a page can not be received
+	 */
+	@Override
+	public boolean hasNext() {
+		while (!rows.hasNext()) {
+			request(1);
+			CompletableFuture<GetRowsResponse> page = pages.poll();
+			if (page == null) {
+				return false;
+			}
+			GetRowsResponse response = join(page);
+			filtered = response.getFiltered();
+			if (!response.hasMore()) {
+				end = response.getStart() + response.getRows().size();
+				cancelPages();
+			} else {
+				end = Math.min(end, response.getFiltered());
+			}
+			rows = response.getRows().iterator();
+			request(command.getPrefetch());
+		}
+		return true;
+	}
+
+	@Override
+	public Row next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		return rows.next();
+	}
+
+	private GetRowsResponse join(CompletableFuture<GetRowsResponse> page) {
+		try {
+			return page.join();
+		} catch (CompletionException e) {
+			close();
+			Throwable cause = e.getCause() != null ? e.getCause() : e;
+			if (cause instanceof IOException) {
+				throw new UncheckedIOException((IOException) cause);
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Returns a sequential stream of the remaining rows, closing the stream closes this iterator.
+	 *
+	 * @return the stream of rows
+	 */
+	public Stream<Row> stream() {
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, ORDERED | NONNULL), false)
+			.onClose(this::close);
+	}
+
+	/**
+	 * Cancels the requested pages. Requests that were already sent are completed, but their rows are discarded.
+	 */
+	@Override
+	public void close() {
+		end = nextStart;
+		rows = Collections.emptyIterator();
+		cancelPages();
+	}
+
+	private void cancelPages() {
+		CompletableFuture<GetRowsResponse> page;
+		while ((page = pages.poll()) != null) {
+			page.cancel(false);
+		}
+	}
+}
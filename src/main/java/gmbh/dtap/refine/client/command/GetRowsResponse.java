@@ -0,0 +1,118 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package gmbh.dtap.refine.client.command;
+
+import gmbh.dtap.refine.client.Row;
+
+import java.util.List;
+
+/**
+ * This class represents a page of rows from the {@link GetRowsCommand}.
+ * <p>
+ * The cells of a row are ordered by the cell index of their column, which is the column order unless columns
+ * were moved or removed after the project was created.
+ */
+public class GetRowsResponse {
+
+	private final List<Row> rows;
+	private final long start;
+	private final int limit;
+	private final long filtered;
+	private final long total;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param rows     the rows of the page
+	 * @param start    the position of the first row within the filtered rows
+	 * @param limit    the requested number of rows
+	 * @param filtered the number of rows the engine configuration selects
+	 * @param total    the number of rows of the project
+	 */
+	GetRowsResponse(List<Row> rows, long start, int limit, long filtered, long total) {
+		this.rows = List.copyOf(rows);
+		this.start = start;
+		this.limit = limit;
+		this.filtered = filtered;
+		this.total = total;
+	}
+
+	/**
+	 * Returns the rows of the page.
+	 *
+	 * @return the rows, at most as many as the limit
+	 */
+	public List<Row> getRows() {
+		return rows;
+	}
+
+	/**
+	 * Returns the position of the first row of the page within the filtered rows.
+	 *
+	 * @return the start of the page
+	 */
+	public long getStart() {
+		return start;
+	}
+
+	/**
+	 * Returns the requested number of rows.
+	 *
+	 * @return the limit of the page
+	 */
+	public int getLimit() {
+		return limit;
+	}
+
+	/**
+	 * Returns the number of rows the engine configuration selects.
+	 *
+	 * @return the number of filtered rows
+	 */
+	public long getFiltered() {
+		return filtered;
+	}
+
+	/**
+	 * Returns the number of rows of the project.
+	 *
+	 * @return the total number of rows
+	 */
+	public long getTotal() {
+		return total;
+	}
+
+	/**
+	 * Returns whether there are filtered rows after this page.
+	 *
+	 * @return {@code true} if another page has rows
+	 */
+	public boolean hasMore() {
+		return start + rows.size() < filtered && rows.size() == limit;
+	}
+
+	@Override
+	public String toString() {
+		return "GetRowsResponse{" +
+			"start=" + start +
+			", rows=" + rows.size() +
+			", filtered=" + filtered +
+			", total=" + total +
+			'}';
+	}
+}
@@ -16,20 +16,23 @@
 
 package gmbh.dtap.refine.client.command;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import gmbh.dtap.refine.client.RefineClient;
 import gmbh.dtap.refine.client.RefineException;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.ResponseHandler;
 import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.client.methods.RequestBuilder;
-import org.apache.http.util.EntityUtils;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import static gmbh.dtap.refine.client.util.HttpParser.HTTP_PARSER;
 import static gmbh.dtap.refine.client.util.JsonParser.JSON_PARSER;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.apache.http.HttpHeaders.ACCEPT;
 import static org.apache.http.HttpStatus.SC_OK;
 import static org.apache.http.entity.ContentType.APPLICATION_JSON;
@@ -55,14 +58,27 @@ public class GetVersionCommand implements ResponseHandler<GetVersionResponse> {
 	 * @throws RefineException in case the server responses with an error or is not understood
 	 */
 	public GetVersionResponse execute(RefineClient client) throws IOException {
+		return client.execute(createRequest(client), this);
+	}
+
+	/**
+	 * Executes the command without blocking the calling thread.
+	 *
+	 * @param client the client to execute the command with
+	 * @return the future result of the command, completed exceptionally with an {@link IOException} in case of a
+	 * connection problem or a {@link RefineException} in case the server responses with an error or is not understood
+	 */
+	public CompletableFuture<GetVersionResponse> executeAsync(RefineClient client) {
+		return client.executeAsync(createRequest(client), this);
+	}
+
+	private HttpUriRequest createRequest(RefineClient client) {
 		URL url = client.createUrl("/command/core/get-version");
 
-		HttpUriRequest request = RequestBuilder
+		return RequestBuilder
 			.get(url.toString())
 			.setHeader(ACCEPT, APPLICATION_JSON.getMimeType())
 			.build();
-
-		return client.execute(request, this);
 	}
 
 	/**
@@ -76,18 +92,22 @@ public class GetVersionCommand implements ResponseHandler<GetVersionResponse> {
 	@Override
 	public GetVersionResponse handleResponse(HttpResponse response) throws IOException {
 		HTTP_PARSER.assureStatusCode(response, SC_OK);
-		String responseBody = EntityUtils.toString(response.getEntity());
-		GetVersionResponse getVersionResponse = parseGetVersionResponse(responseBody);
-		return getVersionResponse;
+		try (InputStream in = response.getEntity().getContent()) {
+			return parseGetVersionResponse(in);
+		}
 	}
 
 	GetVersionResponse parseGetVersionResponse(String json) throws IOException {
-		JsonNode node = JSON_PARSER.parseJson(json);
+		return parseGetVersionResponse(new ByteArrayInputStream(json.getBytes(UTF_8)));
+	}
+
+	GetVersionResponse parseGetVersionResponse(InputStream in) throws IOException {
+		Map<String, String> fields = JSON_PARSER.parseObject(in, null);
 		return new GetVersionResponse(
-			JSON_PARSER.findExistingPath(node, "full_name").asText(),
-			JSON_PARSER.findExistingPath(node, "full_version").asText(),
-			JSON_PARSER.findExistingPath(node, "version").asText(),
-			JSON_PARSER.findExistingPath(node, "revision").asText());
+			JSON_PARSER.findExistingField(fields, "full_name"),
+			JSON_PARSER.findExistingField(fields, "full_version"),
+			JSON_PARSER.findExistingField(fields, "version"),
+			JSON_PARSER.findExistingField(fields, "revision"));
 	}
 
 	/**
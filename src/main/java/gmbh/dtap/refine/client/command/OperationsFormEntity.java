@@ -0,0 +1,137 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package gmbh.dtap.refine.client.command;
+
+import gmbh.dtap.refine.client.Operation;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ContentType;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.net.URLEncoder;
+import java.util.Enumeration;
+import java.util.NoSuchElementException;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * The form of {@link ApplyOperationsCommand}, written from the encoded JSON of the operations without copying it
+ * into a form string first. The <code>project</code> parameter comes first, so that it can be found without reading
+ * the operations.
+ */
+class OperationsFormEntity extends AbstractHttpEntity {
+
+	private static final byte[] OPERATIONS = "&operations=%5B".getBytes(US_ASCII);
+	private static final byte[] SEPARATOR = "%2C".getBytes(US_ASCII);
+	private static final byte[] END = "%5D".getBytes(US_ASCII);
+	private static final ContentType CONTENT_TYPE = ContentType.create("application/x-www-form-urlencoded", UTF_8);
+
+	private final byte[] project;
+	private final byte[][] operations;
+	private final long contentLength;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param projectId  the project ID
+	 * @param operations the operations
+	 */
+	OperationsFormEntity(String projectId, Operation[] operations) {
+		this.project = ("project=" + URLEncoder.encode(projectId, UTF_8)).getBytes(US_ASCII);
+		this.operations = new byte[operations.length][];
+		long length = project.length + OPERATIONS.length + END.length;
+		for (int i = 0; i < operations.length; i++) {
+			this.operations[i] = operations[i].asEncodedJson();
+			length += this.operations[i].length + (i > 0 ? SEPARATOR.length : 0);
+		}
+		this.contentLength = length;
+		setContentType(CONTENT_TYPE.toString());
+	}
+
+	@Override
+	public boolean isRepeatable() {
+		return true;
+	}
+
+	@Override
+	public long getContentLength() {
+		return contentLength;
+	}
+
+	/**
+	 * Returns the form as a sequence of the encoded parts, which are wrapped one after the other as they are read,
+	 * so that reading the project does not copy the operations.
+	 */
+	@Override
+	public InputStream getContent() {
+		int parts = 3 + Math.max(0, 2 * operations.length - 1);
+		return new SequenceInputStream(new Enumeration<InputStream>() {
+
+			private int part;
+
+			@Override
+			public boolean hasMoreElements() {
+				return part < parts;
+			}
+
+			@Override
+			public InputStream nextElement() {
+				if (part >= parts) {
+					throw new NoSuchElementException();
+				}
+				return new ByteArrayInputStream(part(part++, parts));
+			}
+		});
+	}
+
+	private byte[] part(int part, int parts) {
+		if (part == 0) {
+			return project;
+		}
+		if (part == 1) {
+			return OPERATIONS;
+		}
+		if (part == parts - 1) {
+			return END;
+		}
+		int index = part - 2;
+		return index % 2 == 0 ? operations[index / 2] : SEPARATOR;
+	}
+
+	@Override
+	public void writeTo(OutputStream out) throws IOException {
+		out.write(project);
+		out.write(OPERATIONS);
+		for (int i = 0; i < operations.length; i++) {
+			if (i > 0) {
+				out.write(SEPARATOR);
+			}
+			out.write(operations[i]);
+		}
+		out.write(END);
+	}
+
+	@Override
+	public boolean isStreaming() {
+		return false;
+	}
+}
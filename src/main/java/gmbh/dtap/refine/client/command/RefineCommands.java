@@ -34,6 +34,10 @@ public interface RefineCommands {
 		return new ExpressionPreviewCommand.Builder();
 	}
 
+	static ExpressionPreviewBatchCommand.Builder expressionPreviewBatch() {
+		return new ExpressionPreviewBatchCommand.Builder();
+	}
+
 	static GetVersionCommand.Builder getVersion() {
 		return new GetVersionCommand.Builder();
 	}
@@ -42,6 +46,18 @@ public interface RefineCommands {
 		return new GetProjectMetadataCommand.Builder();
 	}
 
+	static GetAllProjectMetadataCommand.Builder getAllProjectMetadata() {
+		return new GetAllProjectMetadataCommand.Builder();
+	}
+
+	static GetProcessesCommand.Builder getProcesses() {
+		return new GetProcessesCommand.Builder();
+	}
+
+	static GetRowsCommand.Builder getRows() {
+		return new GetRowsCommand.Builder();
+	}
+
 	static GetCsrfTokenCommand.Builder getCsrfToken() {
 		return new GetCsrfTokenCommand.Builder();
 	}
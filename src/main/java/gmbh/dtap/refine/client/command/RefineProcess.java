@@ -0,0 +1,102 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package gmbh.dtap.refine.client.command;
+
+/**
+ * A long-running process in the process queue of a project, as returned by {@link GetProcessesCommand}.
+ */
+public class RefineProcess {
+
+	private final long id;
+	private final String description;
+	private final String status;
+	private final int progress;
+	private final boolean immediate;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param id          the process ID
+	 * @param description the description
+	 * @param status      the status, e.g. <code>pending</code> or <code>running</code>
+	 * @param progress    the progress in percent
+	 * @param immediate   whether the process runs immediately
+	 */
+	RefineProcess(long id, String description, String status, int progress, boolean immediate) {
+		this.id = id;
+		this.description = description;
+		this.status = status;
+		this.progress = progress;
+		this.immediate = immediate;
+	}
+
+	/**
+	 * Returns the process ID.
+	 *
+	 * @return the process ID
+	 */
+	public long getId() {
+		return id;
+	}
+
+	/**
+	 * Returns the description.
+	 *
+	 * @return the description, e.g. the description of the operation
+	 */
+	public String getDescription() {
+		return description;
+	}
+
+	/**
+	 * Returns the status.
+	 *
+	 * @return the status, e.g. <code>pending</code>, <code>running</code> or <code>done</code>
+	 */
+	public String getStatus() {
+		return status;
+	}
+
+	/**
+	 * Returns the progress.
+	 *
+	 * @return the progress in percent
+	 */
+	public int getProgress() {
+		return progress;
+	}
+
+	/**
+	 * Returns whether the process runs immediately instead of in the background.
+	 *
+	 * @return {@code true} if the process is immediate
+	 */
+	public boolean isImmediate() {
+		return immediate;
+	}
+
+	@Override
+	public String toString() {
+		return "RefineProcess{" +
+			"id=" + id +
+			", description='" + description + '\'' +
+			", status='" + status + '\'' +
+			", progress=" + progress +
+			'}';
+	}
+}
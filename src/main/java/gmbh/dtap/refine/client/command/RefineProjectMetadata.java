@@ -0,0 +1,307 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package gmbh.dtap.refine.client.command;
+
+import gmbh.dtap.refine.client.CustomMetadata;
+import gmbh.dtap.refine.client.ImportOptionMetadata;
+import gmbh.dtap.refine.client.ProjectLocation;
+import gmbh.dtap.refine.client.RefineProject;
+
+import java.net.URL;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The metadata of a project as listed by {@link GetAllProjectMetadataCommand}. Instances are immutable, so that
+ * unchanged projects can be carried over from one listing to the next.
+ */
+public final class RefineProjectMetadata implements RefineProject, ProjectLocation {
+
+	private final String id;
+	private final URL url;
+	private final String name;
+	private final String created;
+	private final String modified;
+	private final String creator;
+	private final String contributors;
+	private final String subject;
+	private final String description;
+	private final long rowCount;
+	private final Custom customMetadata;
+	private final List<ImportOptionMetadata> importOptionMetadata;
+
+	/**
+	 * Constructor for the parser of {@link GetAllProjectMetadataCommand}.
+	 *
+	 * @param id                   the project ID
+	 * @param url                  the project URL
+	 * @param fields               the scalar fields of the metadata as text
+	 * @param customMetadata       the custom metadata
+	 * @param importOptionMetadata the import options
+	 */
+	RefineProjectMetadata(String id, URL url, Map<String, String> fields, Custom customMetadata,
+						  List<ImportOptionMetadata> importOptionMetadata) {
+		this.id = id;
+		this.url = url;
+		this.name = fields.get("name");
+		this.created = fields.get("created");
+		this.modified = fields.get("modified");
+		this.creator = fields.get("creator");
+		this.contributors = fields.get("contributors");
+		this.subject = fields.get("subject");
+		this.description = fields.get("description");
+		this.rowCount = toLong(fields.get("rowCount"));
+		this.customMetadata = customMetadata;
+		this.importOptionMetadata = Collections.unmodifiableList(importOptionMetadata);
+	}
+
+	@Override
+	public String getId() {
+		return id;
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public URL getUrl() {
+		return url;
+	}
+
+	@Override
+	public ProjectLocation getLocation() {
+		return this;
+	}
+
+	@Override
+	public OffsetDateTime getCreated() {
+		return toDateTime(created);
+	}
+
+	@Override
+	public OffsetDateTime getModified() {
+		return toDateTime(modified);
+	}
+
+	/**
+	 * Returns the last modification date as sent by the server, which is compared to detect changes.
+	 *
+	 * @return the last modification date, or {@code null} if unknown
+	 */
+	String getModifiedText() {
+		return modified;
+	}
+
+	@Override
+	public String getCreator() {
+		return creator;
+	}
+
+	@Override
+	public String getContributors() {
+		return contributors;
+	}
+
+	@Override
+	public String getSubject() {
+		return subject;
+	}
+
+	@Override
+	public String getDescription() {
+		return description;
+	}
+
+	@Override
+	public long getRowCount() {
+		return rowCount;
+	}
+
+	@Override
+	public Custom getCustomMetadata() {
+		return customMetadata;
+	}
+
+	@Override
+	public List<ImportOptionMetadata> getImportOptionMetadata() {
+		return importOptionMetadata;
+	}
+
+	private static OffsetDateTime toDateTime(String text) {
+		if (text == null || text.isEmpty()) {
+			return null;
+		}
+		try {
+			return OffsetDateTime.parse(text);
+		} catch (DateTimeParseException e) {
+			return null;
+		}
+	}
+
+	private static long toLong(String text) {
+		try {
+			return text != null ? Long.parseLong(text) : 0;
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+
+	private static int toInt(String text) {
+		return (int) toLong(text);
+	}
+
+	@Override
+	public String toString() {
+		return "RefineProjectMetadata{" +
+			"id='" + id + '\'' +
+			", name='" + name + '\'' +
+			", modified='" + modified + '\'' +
+			", rowCount=" + rowCount +
+			'}';
+	}
+
+	/**
+	 * The custom metadata of a project, its scalar fields as text.
+	 */
+	public static final class Custom implements CustomMetadata {
+
+		static final Custom EMPTY = new Custom(Collections.emptyMap());
+
+		private final Map<String, String> values;
+
+		Custom(Map<String, String> values) {
+			this.values = Collections.unmodifiableMap(values);
+		}
+
+		/**
+		 * Returns the value of a custom field.
+		 *
+		 * @param name the name of the field
+		 * @return the value, or {@code null} if the field is missing
+		 */
+		public String getValue(String name) {
+			return values.get(name);
+		}
+
+		/**
+		 * Returns all custom fields.
+		 *
+		 * @return the values by name
+		 */
+		public Map<String, String> getValues() {
+			return values;
+		}
+
+		@Override
+		public String toString() {
+			return "Custom" + values;
+		}
+	}
+
+	/**
+	 * The import options a project was created with.
+	 */
+	static final class ImportOptions implements ImportOptionMetadata {
+
+		private final boolean storeBlankRows;
+		private final boolean includeFileSources;
+		private final int skipDataLines;
+		private final boolean guessCellValueTypes;
+		private final int headerLines;
+		private final int ignoreLines;
+		private final boolean processQuotes;
+		private final String fileSource;
+		private final String projectName;
+		private final String separator;
+		private final boolean storeBlankCellsAsNulls;
+
+		ImportOptions(Map<String, String> fields) {
+			this.storeBlankRows = Boolean.parseBoolean(fields.get("storeBlankRows"));
+			this.includeFileSources = Boolean.parseBoolean(fields.get("includeFileSources"));
+			this.skipDataLines = toInt(fields.get("skipDataLines"));
+			this.guessCellValueTypes = Boolean.parseBoolean(fields.get("guessCellValueTypes"));
+			this.headerLines = toInt(fields.get("headerLines"));
+			this.ignoreLines = toInt(fields.get("ignoreLines"));
+			this.processQuotes = Boolean.parseBoolean(fields.get("processQuotes"));
+			this.fileSource = fields.get("fileSource");
+			this.projectName = fields.get("projectName");
+			this.separator = fields.get("separator");
+			this.storeBlankCellsAsNulls = Boolean.parseBoolean(fields.get("storeBlankCellsAsNulls"));
+		}
+
+		@Override
+		public boolean isStoreBlankRows() {
+			return storeBlankRows;
+		}
+
+		@Override
+		public boolean isIncludeFileSources() {
+			return includeFileSources;
+		}
+
+		@Override
+		public int getSkipDataLines() {
+			return skipDataLines;
+		}
+
+		@Override
+		public boolean isGuessCellValueTypes() {
+			return guessCellValueTypes;
+		}
+
+		@Override
+		public int getHeaderLines() {
+			return headerLines;
+		}
+
+		@Override
+		public int getIgnoreLines() {
+			return ignoreLines;
+		}
+
+		@Override
+		public boolean isProcessQuotes() {
+			return processQuotes;
+		}
+
+		@Override
+		public String getFileSource() {
+			return fileSource;
+		}
+
+		@Override
+		public String getProjectName() {
+			return projectName;
+		}
+
+		@Override
+		public String getSeparator() {
+			return separator;
+		}
+
+		@Override
+		public boolean isStoreBlankCellsAsNulls() {
+			return storeBlankCellsAsNulls;
+		}
+	}
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gmbh.dtap.refine.client.command;
+
+import gmbh.dtap.refine.client.Compression;
+import gmbh.dtap.refine.client.UploadSource;
+import org.apache.commons.io.output.CloseShieldOutputStream;
+import org.apache.commons.io.output.CountingOutputStream;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.mime.MIME;
+import org.apache.http.entity.mime.content.AbstractContentBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes an {@link UploadSource} as a part of a multipart entity, optionally compressing it on the fly.
+ * A part of unknown length makes the length of the whole entity unknown, so that it is sent with chunked
+ * transfer encoding.
+ * <p>
+ * The body records the number of bytes read from the source and sent, as well as the time it took.
+ */
+class UploadSourceBody extends AbstractContentBody {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final UploadSource source;
+	private final Compression compression;
+	private volatile long bytesRead;
+	private volatile long bytesSent;
+	private volatile Duration duration = Duration.ZERO;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param source      the source to upload
+	 * @param compression the compression to apply while uploading
+	 */
+	UploadSourceBody(UploadSource source, Compression compression) {
+		super(ContentType.create(compression == Compression.NONE ? source.getMimeType() : compression.getMimeType()));
+		this.source = source;
+		this.compression = compression;
+	}
+
+	@Override
+	public String getFilename() {
+		String fileName = source.getFileName();
+		return fileName.endsWith(compression.getExtension()) ? fileName : fileName + compression.getExtension();
+	}
+
+	@Override
+	public void writeTo(OutputStream out) throws IOException {
+		long start = System.nanoTime();
+		CountingOutputStream sent = new CountingOutputStream(new CloseShieldOutputStream(out));
+		if (compression == Compression.GZIP) {
+			CountingOutputStream read;
+			// closing the gzip stream writes the trailer, the shield keeps the entity stream open
+			try (GZIPOutputStream gzip = new GZIPOutputStream(sent, BUFFER_SIZE)) {
+				read = new CountingOutputStream(gzip);
+				source.writeTo(read);
+			}
+			bytesRead = read.getByteCount();
+		} else {
+			source.writeTo(sent);
+			bytesRead = sent.getByteCount();
+		}
+		out.flush();
+		bytesSent = sent.getByteCount();
+		duration = Duration.ofNanos(System.nanoTime() - start);
+	}
+
+	@Override
+	public String getTransferEncoding() {
+		return MIME.ENC_BINARY;
+	}
+
+	@Override
+	public long getContentLength() {
+		return compression == Compression.NONE ? source.getContentLength() : -1;
+	}
+
+	/**
+	 * Returns whether the body can be written again, which is the case if the source can be read again.
+	 *
+	 * @return {@code true} if the upload can be repeated
+	 */
+	boolean isRepeatable() {
+		return source.isRepeatable();
+	}
+
+	/**
+	 * Returns the number of bytes read from the source during the last upload.
+	 *
+	 * @return the uncompressed size
+	 */
+	long getBytesRead() {
+		return bytesRead;
+	}
+
+	/**
+	 * Returns the number of bytes sent during the last upload.
+	 *
+	 * @return the compressed size
+	 */
+	long getBytesSent() {
+		return bytesSent;
+	}
+
+	/**
+	 * Returns the time it took to write the body during the last upload.
+	 *
+	 * @return the upload duration
+	 */
+	Duration getDuration() {
+		return duration;
+	}
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gmbh.dtap.refine.client.micrometer;
+
+import gmbh.dtap.refine.client.CommandStatistic;
+import gmbh.dtap.refine.client.ConcurrencyLimiter;
+import gmbh.dtap.refine.client.ProjectMetadataCache;
+import gmbh.dtap.refine.client.RefineClient;
+import gmbh.dtap.refine.client.RefineMetrics;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.concurrent.TimeUnit;
+
+import static gmbh.dtap.refine.client.CommandStatistic.*;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * Binds the metrics of a {@link RefineClient} to a Micrometer {@link MeterRegistry}. The meters are tagged with
+ * <code>command</code> and registered when a command receives its first request. Micrometer is an optional
+ * dependency and only required for this class.
+ * <p>
+ * If the client has a {@link ConcurrencyLimiter}, its current limit, in-flight and queued requests and rejections
+ * are registered as <code>refine.client.concurrency.*</code>. If it has a {@link ProjectMetadataCache}, its size,
+ * hits, misses and evictions are registered as <code>refine.client.metadata.cache.*</code>.
+ */
+public class RefineClientMetrics implements MeterBinder {
+
+	private final RefineMetrics metrics;
+	private final ConcurrencyLimiter concurrencyLimiter;
+	private final ProjectMetadataCache projectMetadataCache;
+	private final Iterable<Tag> tags;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param client the client to bind
+	 * @param tags   additional tags of all meters, e.g. the OpenRefine node
+	 */
+	public RefineClientMetrics(RefineClient client, Iterable<Tag> tags) {
+		notNull(client, "client");
+		this.metrics = client.getMetrics();
+		this.concurrencyLimiter = client.getConcurrencyLimiter();
+		this.projectMetadataCache = client.getProjectMetadataCache();
+		this.tags = tags != null ? tags : Tags.empty();
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param client the client to bind
+	 */
+	public RefineClientMetrics(RefineClient client) {
+		this(client, Tags.empty());
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		metrics.forEachCommand(command -> bindCommand(registry, command));
+		if (concurrencyLimiter != null) {
+			bindConcurrencyLimiter(registry);
+		}
+		if (projectMetadataCache != null) {
+			bindProjectMetadataCache(registry);
+		}
+	}
+
+	private void bindProjectMetadataCache(MeterRegistry registry) {
+		Gauge.builder("refine.client.metadata.cache.size", projectMetadataCache, ProjectMetadataCache::size)
+			.tags(tags)
+			.register(registry);
+		FunctionCounter.builder("refine.client.metadata.cache.hits", projectMetadataCache, ProjectMetadataCache::getHitCount)
+			.tags(tags)
+			.register(registry);
+		FunctionCounter.builder("refine.client.metadata.cache.misses", projectMetadataCache, ProjectMetadataCache::getMissCount)
+			.tags(tags)
+			.register(registry);
+		FunctionCounter.builder("refine.client.metadata.cache.evictions", projectMetadataCache, ProjectMetadataCache::getEvictionCount)
+			.tags(tags)
+			.register(registry);
+	}
+
+	private void bindConcurrencyLimiter(MeterRegistry registry) {
+		Gauge.builder("refine.client.concurrency.limit", concurrencyLimiter, ConcurrencyLimiter::getLimit)
+			.tags(tags)
+			.description("Requests the node is currently allowed to run at the same time")
+			.register(registry);
+		Gauge.builder("refine.client.concurrency.in.flight", concurrencyLimiter, ConcurrencyLimiter::getInFlight)
+			.tags(tags)
+			.register(registry);
+		Gauge.builder("refine.client.concurrency.queued", concurrencyLimiter, ConcurrencyLimiter::getQueued)
+			.tags(tags)
+			.description("Requests waiting for the concurrency limit")
+			.register(registry);
+		FunctionCounter.builder("refine.client.concurrency.rejected", concurrencyLimiter, ConcurrencyLimiter::getRejectedCount)
+			.tags(tags)
+			.register(registry);
+	}
+
+	private void bindCommand(MeterRegistry registry, String command) {
+		Tags commandTags = Tags.concat(tags, "command", command);
+		counter(registry, "refine.client.requests", commandTags, null, command, REQUEST_COUNT);
+		counter(registry, "refine.client.errors", commandTags, null, command, ERROR_COUNT);
+		counter(registry, "refine.client.retries", commandTags, null, command, RETRY_COUNT);
+		counter(registry, "refine.client.request.bytes", commandTags, BaseUnits.BYTES, command, REQUEST_BYTES);
+		counter(registry, "refine.client.response.bytes", commandTags, BaseUnits.BYTES, command, RESPONSE_BYTES);
+		Gauge.builder("refine.client.in.flight", metrics, m -> m.get(command, IN_FLIGHT))
+			.tags(commandTags)
+			.description("Requests that are not completed yet")
+			.register(registry);
+		FunctionTimer.builder("refine.client.latency", metrics,
+			m -> m.get(command, LATENCY_COUNT), m -> m.get(command, LATENCY_TOTAL_NANOS), TimeUnit.NANOSECONDS)
+			.tags(commandTags)
+			.description("Time from sending the request until the response is parsed")
+			.register(registry);
+		FunctionTimer.builder("refine.client.parse", metrics,
+			m -> m.get(command, PARSE_COUNT), m -> m.get(command, PARSE_TOTAL_NANOS), TimeUnit.NANOSECONDS)
+			.tags(commandTags)
+			.description("Time spent in the response handler")
+			.register(registry);
+		timeGauge(registry, "refine.client.latency.p50", commandTags, command, LATENCY_P50_NANOS);
+		timeGauge(registry, "refine.client.latency.p99", commandTags, command, LATENCY_P99_NANOS);
+		timeGauge(registry, "refine.client.latency.max", commandTags, command, LATENCY_MAX_NANOS);
+	}
+
+	private void counter(MeterRegistry registry, String name, Tags commandTags, String baseUnit, String command,
+						 CommandStatistic statistic) {
+		FunctionCounter.builder(name, metrics, m -> m.get(command, statistic))
+			.tags(commandTags)
+			.baseUnit(baseUnit)
+			.register(registry);
+	}
+
+	private void timeGauge(MeterRegistry registry, String name, Tags commandTags, String command,
+						   CommandStatistic statistic) {
+		TimeGauge.builder(name, metrics, TimeUnit.NANOSECONDS, m -> m.get(command, statistic))
+			.tags(commandTags)
+			.description("Within the last minute")
+			.register(registry);
+	}
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package gmbh.dtap.refine.client.operation;
+
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.notBlank;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * Adds a column computed from another column with an expression, <code>core/column-addition</code>.
+ */
+public final class ColumnAdditionOperation extends PreparedOperation {
+
+	private final String baseColumnName;
+	private final String newColumnName;
+
+	private ColumnAdditionOperation(Builder builder, String expression) {
+		super(write("core/column-addition", generator -> {
+			writeEngineConfig(generator, builder.engineConfig);
+			generator.writeStringField("baseColumnName", builder.baseColumnName);
+			generator.writeStringField("expression", expression);
+			generator.writeStringField("onError", builder.onError.getValue());
+			generator.writeStringField("newColumnName", builder.newColumnName);
+			generator.writeNumberField("columnInsertIndex", builder.columnInsertIndex);
+			generator.writeStringField("description", builder.description != null ? builder.description
+				: "Create column " + builder.newColumnName + " at index " + builder.columnInsertIndex
+				+ " based on column " + builder.baseColumnName + " using expression " + expression);
+		}));
+		this.baseColumnName = builder.baseColumnName;
+		this.newColumnName = builder.newColumnName;
+	}
+
+	public String getBaseColumnName() {
+		return baseColumnName;
+	}
+
+	public String getNewColumnName() {
+		return newColumnName;
+	}
+
+	/**
+	 * The builder for {@link ColumnAdditionOperation}.
+	 */
+	public static class Builder {
+
+		private String baseColumnName;
+		private String newColumnName;
+		private int columnInsertIndex = -1;
+		private String expression;
+		private OnError onError = OnError.SET_TO_BLANK;
+		private String engineConfig = ALL_ROWS;
+		private String description;
+
+		/**
+		 * Sets the column the expression is evaluated on.
+		 *
+		 * @param baseColumnName the column name
+		 * @return the builder for fluent usage
+		 */
+		public Builder baseColumnName(String baseColumnName) {
+			this.baseColumnName = baseColumnName;
+			return this;
+		}
+
+		/**
+		 * Sets the name of the new column.
+		 *
+		 * @param newColumnName the column name
+		 * @return the builder for fluent usage
+		 */
+		public Builder newColumnName(String newColumnName) {
+			this.newColumnName = newColumnName;
+			return this;
+		}
+
+		/**
+		 * Sets the index the new column is inserted at.
+		 *
+		 * @param columnInsertIndex the index, mandatory
+		 * @return the builder for fluent usage
+		 */
+		public Builder columnInsertIndex(int columnInsertIndex) {
+			this.columnInsertIndex = columnInsertIndex;
+			return this;
+		}
+
+		/**
+		 * Sets the expression.
+		 *
+		 * @param expression the expression, GREL unless prefixed with a language
+		 * @return the builder for fluent usage
+		 */
+		public Builder expression(String expression) {
+			this.expression = expression;
+			return this;
+		}
+
+		/**
+		 * Sets what is stored when the expression fails.
+		 *
+		 * @param onError the error handling, defaults to {@link OnError#SET_TO_BLANK}
+		 * @return the builder for fluent usage
+		 */
+		public Builder onError(OnError onError) {
+			this.onError = onError;
+			return this;
+		}
+
+		/**
+		 * Sets the engine configuration, which selects the rows.
+		 *
+		 * @param engineConfig the engine configuration as JSON, defaults to {@link PreparedOperation#ALL_ROWS}
+		 * @return the builder for fluent usage
+		 */
+		public Builder engineConfig(String engineConfig) {
+			this.engineConfig = engineConfig;
+			return this;
+		}
+
+		/**
+		 * Sets the description shown in the project history.
+		 *
+		 * @param description the description, defaults to one like OpenRefine's
+		 * @return the builder for fluent usage
+		 */
+		public Builder description(String description) {
+			this.description = description;
+			return this;
+		}
+
+		/**
+		 * Builds the operation after validation.
+		 *
+		 * @return the operation
+		 */
+		public ColumnAdditionOperation build() {
+			notBlank(baseColumnName, "baseColumnName");
+			notBlank(newColumnName, "newColumnName");
+			isTrue(columnInsertIndex >= 0, "columnInsertIndex must not be negative");
+			notNull(onError, "onError");
+			validateEngineConfig(engineConfig);
+			return new ColumnAdditionOperation(this, withLanguage(expression));
+		}
+	}
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package gmbh.dtap.refine.client.operation;
+
+import static org.apache.commons.lang3.Validate.notBlank;
+
+/**
+ * Removes a column, <code>core/column-removal</code>.
+ */
+public final class ColumnRemovalOperation extends PreparedOperation {
+
+	private final String columnName;
+
+	private ColumnRemovalOperation(Builder builder) {
+		super(write("core/column-removal", generator -> {
+			generator.writeStringField("columnName", builder.columnName);
+			generator.writeStringField("description", builder.description != null ? builder.description
+				: "Remove column " + builder.columnName);
+		}));
+		this.columnName = builder.columnName;
+	}
+
+	public String getColumnName() {
+		return columnName;
+	}
+
+	/**
+	 * The builder for {@link ColumnRemovalOperation}.
+	 */
+	public static class Builder {
+
+		private String columnName;
+		private String description;
+
+		/**
+		 * Sets the column to remove.
+		 *
+		 * @param columnName the column name
+		 * @return the builder for fluent usage
+		 */
+		public Builder columnName(String columnName) {
+			this.columnName = columnName;
+			return this;
+		}
+
+		/**
+		 * Sets the description shown in the project history.
+		 *
+		 * @param description the description, defaults to one like OpenRefine's
+		 * @return the builder for fluent usage
+		 */
+		public Builder description(String description) {
+			this.description = description;
+			return this;
+		}
+
+		/**
+		 * Builds the operation after validation.
+		 *
+		 * @return the operation
+		 */
+		public ColumnRemovalOperation build() {
+			notBlank(columnName, "columnName");
+			return new ColumnRemovalOperation(this);
+		}
+	}
+}
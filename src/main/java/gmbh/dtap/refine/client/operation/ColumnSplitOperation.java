@@ -0,0 +1,197 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package gmbh.dtap.refine.client.operation;
+
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.notBlank;
+import static org.apache.commons.lang3.Validate.notEmpty;
+
+/**
+ * Splits a column into several columns, either by a separator or by field lengths,
+ * <code>core/column-split</code>.
+ */
+public final class ColumnSplitOperation extends PreparedOperation {
+
+	private final String columnName;
+
+	private ColumnSplitOperation(Builder builder) {
+		super(write("core/column-split", generator -> {
+			writeEngineConfig(generator, builder.engineConfig);
+			generator.writeStringField("columnName", builder.columnName);
+			generator.writeBooleanField("guessCellType", builder.guessCellType);
+			generator.writeBooleanField("removeOriginalColumn", builder.removeOriginalColumn);
+			if (builder.fieldLengths != null) {
+				generator.writeStringField("mode", "lengths");
+				generator.writeFieldName("fieldLengths");
+				generator.writeArray(builder.fieldLengths, 0, builder.fieldLengths.length);
+			} else {
+				generator.writeStringField("mode", "separator");
+				generator.writeStringField("separator", builder.separator);
+				generator.writeBooleanField("regex", builder.regex);
+				generator.writeNumberField("maxColumns", builder.maxColumns);
+			}
+			generator.writeStringField("description", builder.description != null ? builder.description
+				: "Split column " + builder.columnName + (builder.fieldLengths != null ? " by field lengths" : " by separator"));
+		}));
+		this.columnName = builder.columnName;
+	}
+
+	public String getColumnName() {
+		return columnName;
+	}
+
+	/**
+	 * The builder for {@link ColumnSplitOperation}.
+	 */
+	public static class Builder {
+
+		private String columnName;
+		private String separator;
+		private boolean regex;
+		private int maxColumns;
+		private int[] fieldLengths;
+		private boolean guessCellType = true;
+		private boolean removeOriginalColumn = true;
+		private String engineConfig = ALL_ROWS;
+		private String description;
+
+		/**
+		 * Sets the column to split.
+		 *
+		 * @param columnName the column name
+		 * @return the builder for fluent usage
+		 */
+		public Builder columnName(String columnName) {
+			this.columnName = columnName;
+			return this;
+		}
+
+		/**
+		 * Splits by a plain separator.
+		 *
+		 * @param separator the separator, e.g. <code>,</code>
+		 * @return the builder for fluent usage
+		 */
+		public Builder separator(String separator) {
+			this.separator = separator;
+			this.regex = false;
+			this.fieldLengths = null;
+			return this;
+		}
+
+		/**
+		 * Splits by a regular expression.
+		 *
+		 * @param regex the regular expression, e.g. <code>\s*;\s*</code>
+		 * @return the builder for fluent usage
+		 */
+		public Builder regex(String regex) {
+			this.separator = regex;
+			this.regex = true;
+			this.fieldLengths = null;
+			return this;
+		}
+
+		/**
+		 * Limits the number of columns when splitting by separator.
+		 *
+		 * @param maxColumns the maximum number of columns, <code>0</code> for no limit, defaults to no limit
+		 * @return the builder for fluent usage
+		 */
+		public Builder maxColumns(int maxColumns) {
+			this.maxColumns = maxColumns;
+			return this;
+		}
+
+		/**
+		 * Splits by field lengths instead of a separator.
+		 *
+		 * @param fieldLengths the lengths of the fields
+		 * @return the builder for fluent usage
+		 */
+		public Builder fieldLengths(int... fieldLengths) {
+			this.fieldLengths = fieldLengths != null ? fieldLengths.clone() : null;
+			this.separator = null;
+			return this;
+		}
+
+		/**
+		 * Sets whether the types of the new cells are guessed.
+		 *
+		 * @param guessCellType <code>true</code> to guess, defaults to <code>true</code>
+		 * @return the builder for fluent usage
+		 */
+		public Builder guessCellType(boolean guessCellType) {
+			this.guessCellType = guessCellType;
+			return this;
+		}
+
+		/**
+		 * Sets whether the original column is removed.
+		 *
+		 * @param removeOriginalColumn <code>true</code> to remove, defaults to <code>true</code>
+		 * @return the builder for fluent usage
+		 */
+		public Builder removeOriginalColumn(boolean removeOriginalColumn) {
+			this.removeOriginalColumn = removeOriginalColumn;
+			return this;
+		}
+
+		/**
+		 * Sets the engine configuration, which selects the rows.
+		 *
+		 * @param engineConfig the engine configuration as JSON, defaults to {@link PreparedOperation#ALL_ROWS}
+		 * @return the builder for fluent usage
+		 */
+		public Builder engineConfig(String engineConfig) {
+			this.engineConfig = engineConfig;
+			return this;
+		}
+
+		/**
+		 * Sets the description shown in the project history.
+		 *
+		 * @param description the description, defaults to one like OpenRefine's
+		 * @return the builder for fluent usage
+		 */
+		public Builder description(String description) {
+			this.description = description;
+			return this;
+		}
+
+		/**
+		 * Builds the operation after validation.
+		 *
+		 * @return the operation
+		 */
+		public ColumnSplitOperation build() {
+			notBlank(columnName, "columnName");
+			if (fieldLengths != null) {
+				isTrue(fieldLengths.length > 0, "fieldLengths must not be empty");
+				for (int fieldLength : fieldLengths) {
+					isTrue(fieldLength > 0, "fieldLengths must be positive");
+				}
+			} else {
+				notEmpty(separator, "separator or fieldLengths");
+				isTrue(maxColumns >= 0, "maxColumns must not be negative");
+			}
+			validateEngineConfig(engineConfig);
+			return new ColumnSplitOperation(this);
+		}
+	}
+}
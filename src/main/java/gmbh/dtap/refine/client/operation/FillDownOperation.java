@@ -0,0 +1,96 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package gmbh.dtap.refine.client.operation;
+
+import static org.apache.commons.lang3.Validate.notBlank;
+
+/**
+ * Fills blank cells with the value of the cell above, <code>core/fill-down</code>.
+ */
+public final class FillDownOperation extends PreparedOperation {
+
+	private final String columnName;
+
+	private FillDownOperation(Builder builder) {
+		super(write("core/fill-down", generator -> {
+			writeEngineConfig(generator, builder.engineConfig);
+			generator.writeStringField("columnName", builder.columnName);
+			generator.writeStringField("description", builder.description != null ? builder.description
+				: "Fill down cells in column " + builder.columnName);
+		}));
+		this.columnName = builder.columnName;
+	}
+
+	public String getColumnName() {
+		return columnName;
+	}
+
+	/**
+	 * The builder for {@link FillDownOperation}.
+	 */
+	public static class Builder {
+
+		private String columnName;
+		private String engineConfig = ALL_ROWS;
+		private String description;
+
+		/**
+		 * Sets the column to fill down.
+		 *
+		 * @param columnName the column name
+		 * @return the builder for fluent usage
+		 */
+		public Builder columnName(String columnName) {
+			this.columnName = columnName;
+			return this;
+		}
+
+		/**
+		 * Sets the engine configuration, which selects the rows.
+		 *
+		 * @param engineConfig the engine configuration as JSON, defaults to {@link PreparedOperation#ALL_ROWS}
+		 * @return the builder for fluent usage
+		 */
+		public Builder engineConfig(String engineConfig) {
+			this.engineConfig = engineConfig;
+			return this;
+		}
+
+		/**
+		 * Sets the description shown in the project history.
+		 *
+		 * @param description the description, defaults to one like OpenRefine's
+		 * @return the builder for fluent usage
+		 */
+		public Builder description(String description) {
+			this.description = description;
+			return this;
+		}
+
+		/**
+		 * Builds the operation after validation.
+		 *
+		 * @return the operation
+		 */
+		public FillDownOperation build() {
+			notBlank(columnName, "columnName");
+			validateEngineConfig(engineConfig);
+			return new FillDownOperation(this);
+		}
+	}
+}
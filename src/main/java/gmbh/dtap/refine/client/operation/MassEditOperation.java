@@ -0,0 +1,186 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package gmbh.dtap.refine.client.operation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.apache.commons.lang3.Validate.noNullElements;
+import static org.apache.commons.lang3.Validate.notBlank;
+import static org.apache.commons.lang3.Validate.notEmpty;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * Replaces cell values by other values, as done in the text facet of OpenRefine, <code>core/mass-edit</code>.
+ */
+public final class MassEditOperation extends PreparedOperation {
+
+	private final String columnName;
+
+	private MassEditOperation(Builder builder, String expression) {
+		super(write("core/mass-edit", generator -> {
+			writeEngineConfig(generator, builder.engineConfig);
+			generator.writeStringField("columnName", builder.columnName);
+			generator.writeStringField("expression", expression);
+			generator.writeArrayFieldStart("edits");
+			for (Edit edit : builder.edits) {
+				generator.writeStartObject();
+				generator.writeArrayFieldStart("from");
+				for (String from : edit.from) {
+					generator.writeString(from);
+				}
+				generator.writeEndArray();
+				generator.writeBooleanField("fromBlank", edit.fromBlank);
+				generator.writeBooleanField("fromError", edit.fromError);
+				generator.writeStringField("to", edit.to);
+				generator.writeEndObject();
+			}
+			generator.writeEndArray();
+			generator.writeStringField("description", builder.description != null ? builder.description
+				: "Mass edit cells in column " + builder.columnName);
+		}));
+		this.columnName = builder.columnName;
+	}
+
+	public String getColumnName() {
+		return columnName;
+	}
+
+	/**
+	 * The builder for {@link MassEditOperation}.
+	 */
+	public static class Builder {
+
+		private final List<Edit> edits = new ArrayList<>();
+		private String columnName;
+		private String expression = "value";
+		private String engineConfig = ALL_ROWS;
+		private String description;
+
+		/**
+		 * Sets the column to edit.
+		 *
+		 * @param columnName the column name
+		 * @return the builder for fluent usage
+		 */
+		public Builder columnName(String columnName) {
+			this.columnName = columnName;
+			return this;
+		}
+
+		/**
+		 * Sets the expression whose result is compared with the values to replace.
+		 *
+		 * @param expression the expression, defaults to <code>value</code>
+		 * @return the builder for fluent usage
+		 */
+		public Builder expression(String expression) {
+			this.expression = expression;
+			return this;
+		}
+
+		/**
+		 * Replaces values.
+		 *
+		 * @param to   the new value
+		 * @param from the values to replace
+		 * @return the builder for fluent usage
+		 */
+		public Builder edit(String to, String... from) {
+			notNull(to, "to");
+			notEmpty(from, "from");
+			noNullElements(from, "from");
+			edits.add(new Edit(Arrays.asList(from.clone()), false, false, to));
+			return this;
+		}
+
+		/**
+		 * Replaces blank cells.
+		 *
+		 * @param to the new value
+		 * @return the builder for fluent usage
+		 */
+		public Builder editBlanks(String to) {
+			notNull(to, "to");
+			edits.add(new Edit(List.of(), true, false, to));
+			return this;
+		}
+
+		/**
+		 * Replaces cells with errors.
+		 *
+		 * @param to the new value
+		 * @return the builder for fluent usage
+		 */
+		public Builder editErrors(String to) {
+			notNull(to, "to");
+			edits.add(new Edit(List.of(), false, true, to));
+			return this;
+		}
+
+		/**
+		 * Sets the engine configuration, which selects the rows.
+		 *
+		 * @param engineConfig the engine configuration as JSON, defaults to {@link PreparedOperation#ALL_ROWS}
+		 * @return the builder for fluent usage
+		 */
+		public Builder engineConfig(String engineConfig) {
+			this.engineConfig = engineConfig;
+			return this;
+		}
+
+		/**
+		 * Sets the description shown in the project history.
+		 *
+		 * @param description the description, defaults to one like OpenRefine's
+		 * @return the builder for fluent usage
+		 */
+		public Builder description(String description) {
+			this.description = description;
+			return this;
+		}
+
+		/**
+		 * Builds the operation after validation.
+		 *
+		 * @return the operation
+		 */
+		public MassEditOperation build() {
+			notBlank(columnName, "columnName");
+			notEmpty(edits, "edits");
+			validateEngineConfig(engineConfig);
+			return new MassEditOperation(this, "value".equals(expression) ? expression : withLanguage(expression));
+		}
+	}
+
+	private static class Edit {
+
+		private final List<String> from;
+		private final boolean fromBlank;
+		private final boolean fromError;
+		private final String to;
+
+		Edit(List<String> from, boolean fromBlank, boolean fromError, String to) {
+			this.from = from;
+			this.fromBlank = fromBlank;
+			this.fromError = fromError;
+			this.to = to;
+		}
+	}
+}
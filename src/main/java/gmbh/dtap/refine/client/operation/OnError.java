@@ -0,0 +1,43 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package gmbh.dtap.refine.client.operation;
+
+/**
+ * What an operation stores in a cell when its expression fails.
+ */
+public enum OnError {
+
+	KEEP_ORIGINAL("keep-original"),
+	SET_TO_BLANK("set-to-blank"),
+	STORE_ERROR("store-error");
+
+	private final String value;
+
+	OnError(String value) {
+		this.value = value;
+	}
+
+	/**
+	 * Returns the value as expected by OpenRefine.
+	 *
+	 * @return the value, e.g. <code>keep-original</code>
+	 */
+	public String getValue() {
+		return value;
+	}
+}
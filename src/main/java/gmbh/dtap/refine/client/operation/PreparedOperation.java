@@ -0,0 +1,159 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package gmbh.dtap.refine.client.operation;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import gmbh.dtap.refine.client.Operation;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.net.URLEncoder;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.notBlank;
+
+/**
+ * The base of the typed operations. The JSON of an operation is written and encoded once when it is built,
+ * so that applying the same operation to many projects does no JSON work per request. Operations are immutable
+ * and can be shared between threads.
+ */
+public abstract class PreparedOperation implements Operation {
+
+	/**
+	 * The engine configuration that selects all rows.
+	 */
+	public static final String ALL_ROWS = "{\"facets\":[],\"mode\":\"row-based\"}";
+
+	private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+	private final String json;
+	private final byte[] encodedJson;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param json the JSON of the operation
+	 */
+	PreparedOperation(String json) {
+		this.json = json;
+		this.encodedJson = URLEncoder.encode(json, UTF_8).getBytes(US_ASCII);
+	}
+
+	@Override
+	public String asJson() {
+		return json;
+	}
+
+	/**
+	 * Returns the encoded JSON, which was encoded when the operation was built.
+	 *
+	 * @return the encoded JSON, which must not be modified
+	 */
+	@Override
+	public byte[] asEncodedJson() {
+		return encodedJson;
+	}
+
+	/**
+	 * Writes the JSON object of an operation.
+	 *
+	 * @param op     the name of the operation, e.g. <code>core/fill-down</code>
+	 * @param fields writes the fields of the operation
+	 * @return the JSON
+	 */
+	static String write(String op, Fields fields) {
+		StringWriter json = new StringWriter();
+		try (JsonGenerator generator = JSON_FACTORY.createGenerator(json)) {
+			generator.writeStartObject();
+			generator.writeStringField("op", op);
+			fields.write(generator);
+			generator.writeEndObject();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return json.toString();
+	}
+
+	/**
+	 * Writes the engine configuration, which selects the rows an operation applies to.
+	 */
+	static void writeEngineConfig(JsonGenerator generator, String engineConfig) throws IOException {
+		generator.writeFieldName("engineConfig");
+		generator.writeRawValue(engineConfig);
+	}
+
+	/**
+	 * Validates that the engine configuration is a single JSON object.
+	 *
+	 * @param engineConfig the engine configuration
+	 */
+	static void validateEngineConfig(String engineConfig) {
+		notBlank(engineConfig, "engineConfig");
+		try (JsonParser parser = JSON_FACTORY.createParser(engineConfig)) {
+			isTrue(parser.nextToken() == JsonToken.START_OBJECT, "engineConfig must be a JSON object");
+			parser.skipChildren();
+			isTrue(parser.nextToken() == null, "engineConfig must be a single JSON object");
+		} catch (IOException e) {
+			throw new IllegalArgumentException("engineConfig is not valid JSON: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Prefixes an expression without a language with <code>grel:</code>.
+	 *
+	 * @param expression the expression
+	 * @return the expression with language
+	 */
+	static String withLanguage(String expression) {
+		notBlank(expression, "expression");
+		if (expression.startsWith("grel:") || expression.startsWith("jython:") || expression.startsWith("clojure:")) {
+			return expression;
+		}
+		return "grel:" + expression;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		return other instanceof PreparedOperation && json.equals(((PreparedOperation) other).json);
+	}
+
+	@Override
+	public int hashCode() {
+		return json.hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return json;
+	}
+
+	/**
+	 * Writes the fields of an operation.
+	 */
+	@FunctionalInterface
+	interface Fields {
+
+		void write(JsonGenerator generator) throws IOException;
+	}
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package gmbh.dtap.refine.client.operation;
+
+/**
+ * Creates the builders of the typed operations, which can be applied with
+ * {@link gmbh.dtap.refine.client.command.ApplyOperationsCommand}.
+ */
+public interface RefineOperations {
+
+	static ColumnSplitOperation.Builder columnSplit() {
+		return new ColumnSplitOperation.Builder();
+	}
+
+	static TextTransformOperation.Builder textTransform() {
+		return new TextTransformOperation.Builder();
+	}
+
+	static MassEditOperation.Builder massEdit() {
+		return new MassEditOperation.Builder();
+	}
+
+	static ColumnAdditionOperation.Builder columnAddition() {
+		return new ColumnAdditionOperation.Builder();
+	}
+
+	static ColumnRemovalOperation.Builder columnRemoval() {
+		return new ColumnRemovalOperation.Builder();
+	}
+
+	static RowRemovalOperation.Builder rowRemoval() {
+		return new RowRemovalOperation.Builder();
+	}
+
+	static FillDownOperation.Builder fillDown() {
+		return new FillDownOperation.Builder();
+	}
+}
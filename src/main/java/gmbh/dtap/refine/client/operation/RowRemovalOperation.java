@@ -0,0 +1,72 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package gmbh.dtap.refine.client.operation;
+
+/**
+ * Removes the rows selected by the engine configuration, <code>core/row-removal</code>.
+ */
+public final class RowRemovalOperation extends PreparedOperation {
+
+	private RowRemovalOperation(Builder builder) {
+		super(write("core/row-removal", generator -> {
+			writeEngineConfig(generator, builder.engineConfig);
+			generator.writeStringField("description", builder.description != null ? builder.description : "Remove rows");
+		}));
+	}
+
+	/**
+	 * The builder for {@link RowRemovalOperation}.
+	 */
+	public static class Builder {
+
+		private String engineConfig;
+		private String description;
+
+		/**
+		 * Sets the engine configuration, which selects the rows to remove with its facets.
+		 *
+		 * @param engineConfig the engine configuration as JSON, mandatory as the default would remove all rows
+		 * @return the builder for fluent usage
+		 */
+		public Builder engineConfig(String engineConfig) {
+			this.engineConfig = engineConfig;
+			return this;
+		}
+
+		/**
+		 * Sets the description shown in the project history.
+		 *
+		 * @param description the description, defaults to one like OpenRefine's
+		 * @return the builder for fluent usage
+		 */
+		public Builder description(String description) {
+			this.description = description;
+			return this;
+		}
+
+		/**
+		 * Builds the operation after validation.
+		 *
+		 * @return the operation
+		 */
+		public RowRemovalOperation build() {
+			validateEngineConfig(engineConfig);
+			return new RowRemovalOperation(this);
+		}
+	}
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package gmbh.dtap.refine.client.operation;
+
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.notBlank;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * Transforms the cells of a column with an expression, <code>core/text-transform</code>.
+ */
+public final class TextTransformOperation extends PreparedOperation {
+
+	private final String columnName;
+	private final String expression;
+
+	private TextTransformOperation(Builder builder, String expression) {
+		super(write("core/text-transform", generator -> {
+			writeEngineConfig(generator, builder.engineConfig);
+			generator.writeStringField("columnName", builder.columnName);
+			generator.writeStringField("expression", expression);
+			generator.writeStringField("onError", builder.onError.getValue());
+			generator.writeBooleanField("repeat", builder.repeatCount > 0);
+			generator.writeNumberField("repeatCount", builder.repeatCount > 0 ? builder.repeatCount : 10);
+			generator.writeStringField("description", builder.description != null ? builder.description
+				: "Text transform on cells in column " + builder.columnName + " using expression " + expression);
+		}));
+		this.columnName = builder.columnName;
+		this.expression = expression;
+	}
+
+	public String getColumnName() {
+		return columnName;
+	}
+
+	public String getExpression() {
+		return expression;
+	}
+
+	/**
+	 * The builder for {@link TextTransformOperation}.
+	 */
+	public static class Builder {
+
+		private String columnName;
+		private String expression;
+		private OnError onError = OnError.KEEP_ORIGINAL;
+		private int repeatCount;
+		private String engineConfig = ALL_ROWS;
+		private String description;
+
+		/**
+		 * Sets the column to transform.
+		 *
+		 * @param columnName the column name
+		 * @return the builder for fluent usage
+		 */
+		public Builder columnName(String columnName) {
+			this.columnName = columnName;
+			return this;
+		}
+
+		/**
+		 * Sets the expression.
+		 *
+		 * @param expression the expression, e.g. <code>value.trim()</code>, GREL unless prefixed with a language
+		 * @return the builder for fluent usage
+		 */
+		public Builder expression(String expression) {
+			this.expression = expression;
+			return this;
+		}
+
+		/**
+		 * Sets what is stored when the expression fails.
+		 *
+		 * @param onError the error handling, defaults to {@link OnError#KEEP_ORIGINAL}
+		 * @return the builder for fluent usage
+		 */
+		public Builder onError(OnError onError) {
+			this.onError = onError;
+			return this;
+		}
+
+		/**
+		 * Repeats the transformation until the value does not change anymore.
+		 *
+		 * @param repeatCount the maximum number of repetitions, <code>0</code> for none, defaults to none
+		 * @return the builder for fluent usage
+		 */
+		public Builder repeat(int repeatCount) {
+			this.repeatCount = repeatCount;
+			return this;
+		}
+
+		/**
+		 * Sets the engine configuration, which selects the rows.
+		 *
+		 * @param engineConfig the engine configuration as JSON, defaults to {@link PreparedOperation#ALL_ROWS}
+		 * @return the builder for fluent usage
+		 */
+		public Builder engineConfig(String engineConfig) {
+			this.engineConfig = engineConfig;
+			return this;
+		}
+
+		/**
+		 * Sets the description shown in the project history.
+		 *
+		 * @param description the description, defaults to one like OpenRefine's
+		 * @return the builder for fluent usage
+		 */
+		public Builder description(String description) {
+			this.description = description;
+			return this;
+		}
+
+		/**
+		 * Builds the operation after validation.
+		 *
+		 * @return the operation
+		 */
+		public TextTransformOperation build() {
+			notBlank(columnName, "columnName");
+			notNull(onError, "onError");
+			isTrue(repeatCount >= 0, "repeatCount must not be negative");
+			validateEngineConfig(engineConfig);
+			return new TextTransformOperation(this, withLanguage(expression));
+		}
+	}
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gmbh.dtap.refine.client.util;
+
+import gmbh.dtap.refine.client.RefineException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * Reads records of comma or tab separated values incrementally from a {@link Reader}.
+ * Fields may be enclosed in double quotes to contain separators, line breaks and escaped (doubled) quotes.
+ * <p>
+ * The reader keeps a single char buffer and field builder for its lifetime, so that memory usage
+ * does not depend on the size of the input.
+ */
+public class DelimitedReader implements Closeable {
+
+	private static final int DEFAULT_BUFFER_SIZE = 8192;
+	private static final char QUOTE = '"';
+
+	private final Reader reader;
+	private final char separator;
+	private final char[] buffer;
+	private final StringBuilder field = new StringBuilder();
+	private int position;
+	private int limit;
+	private boolean endOfInput;
+
+	/**
+	 * Constructor with the default buffer size.
+	 *
+	 * @param reader    the reader to read from
+	 * @param separator the field separator, e.g. <code>','</code> or <code>'\t'</code>
+	 */
+	public DelimitedReader(Reader reader, char separator) {
+		this(reader, separator, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param reader     the reader to read from
+	 * @param separator  the field separator, e.g. <code>','</code> or <code>'\t'</code>
+	 * @param bufferSize the size of the char buffer
+	 */
+	public DelimitedReader(Reader reader, char separator, int bufferSize) {
+		notNull(reader, "reader");
+		isTrue(separator != QUOTE && separator != '\r' && separator != '\n', "invalid separator");
+		isTrue(bufferSize > 0, "bufferSize must be positive");
+		this.reader = reader;
+		this.separator = separator;
+		this.buffer = new char[bufferSize];
+	}
+
+	/**
+	 * Reads the next record. A record ends at an unquoted line feed, carriage return or both.
+	 *
+	 * @return the fields of the record, or {@code null} at the end of the input
+	 * @throws IOException     in case the input can not be read
+	 * @throws RefineException in case the input ends within a quoted field
+	 */
+	public List<String> readRecord() throws IOException {
+		if (!fill()) {
+			return null;
+		}
+		List<String> record = new ArrayList<>();
+		field.setLength(0);
+		boolean quoted = false;
+		boolean inQuotes = false;
+		while (true) {
+			if (!fill()) {
+				if (inQuotes) {
+					throw new RefineException("Unexpected end of input within a quoted field");
+				}
+				record.add(field.toString());
+				return record;
+			}
+			if (inQuotes) {
+				int start = position;
+				while (position < limit && buffer[position] != QUOTE) {
+					position++;
+				}
+				field.append(buffer, start, position - start);
+				if (position < limit) {
+					position++;
+					if (peek() == QUOTE) {
+						field.append(QUOTE);
+						position++;
+					} else {
+						inQuotes = false;
+					}
+				}
+				continue;
+			}
+			int start = position;
+			while (position < limit && !isSpecial(buffer[position])) {
+				position++;
+			}
+			field.append(buffer, start, position - start);
+			if (position == limit) {
+				continue;
+			}
+			char c = buffer[position++];
+			if (c == separator) {
+				record.add(field.toString());
+				field.setLength(0);
+				quoted = false;
+			} else if (c == '\n') {
+				record.add(field.toString());
+				return record;
+			} else if (c == '\r') {
+				if (peek() == '\n') {
+					position++;
+				}
+				record.add(field.toString());
+				return record;
+			} else if (field.length() == 0 && !quoted) {
+				quoted = true;
+				inQuotes = true;
+			} else {
+				// a quote within an unquoted field is taken literally
+				field.append(c);
+			}
+		}
+	}
+
+	private boolean isSpecial(char c) {
+		return c == separator || c == '\n' || c == '\r' || c == QUOTE;
+	}
+
+	private int peek() throws IOException {
+		return fill() ? buffer[position] : -1;
+	}
+
+	/**
+	 * Makes sure the buffer contains at least one unread char.
+	 *
+	 * @return {@code false} at the end of the input
+	 */
+	private boolean fill() throws IOException {
+		if (position < limit) {
+			return true;
+		}
+		if (endOfInput) {
+			return false;
+		}
+		int read;
+		do {
+			read = reader.read(buffer, 0, buffer.length);
+		} while (read == 0);
+		if (read < 0) {
+			endOfInput = true;
+			return false;
+		}
+		position = 0;
+		limit = read;
+		return true;
+	}
+
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+}
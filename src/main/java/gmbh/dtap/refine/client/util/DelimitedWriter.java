@@ -0,0 +1,124 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gmbh.dtap.refine.client.util;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * Writes records of comma or tab separated values, the counterpart of {@link DelimitedReader}.
+ * Fields are quoted only if they contain the separator, a quote or a line break.
+ */
+public class DelimitedWriter implements Closeable, Flushable {
+
+	private static final char QUOTE = '"';
+
+	private final Writer writer;
+	private final char separator;
+	private final char[] buffer;
+	private int position;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param writer     the writer to write to
+	 * @param separator  the field separator, e.g. <code>','</code> or <code>'\t'</code>
+	 * @param bufferSize the size of the char buffer
+	 */
+	public DelimitedWriter(Writer writer, char separator, int bufferSize) {
+		notNull(writer, "writer");
+		isTrue(separator != QUOTE && separator != '\r' && separator != '\n', "invalid separator");
+		isTrue(bufferSize > 0, "bufferSize must be positive");
+		this.writer = writer;
+		this.separator = separator;
+		this.buffer = new char[bufferSize];
+	}
+
+	/**
+	 * Writes a record terminated by a line feed.
+	 *
+	 * @param fields the fields, {@code null} fields are written as empty fields
+	 * @throws IOException in case the record can not be written
+	 */
+	public void writeRecord(String[] fields) throws IOException {
+		notNull(fields, "fields");
+		for (int i = 0; i < fields.length; i++) {
+			if (i > 0) {
+				append(separator);
+			}
+			String field = fields[i];
+			if (field == null) {
+				continue;
+			}
+			if (needsQuotes(field)) {
+				append(QUOTE);
+				for (int j = 0; j < field.length(); j++) {
+					char c = field.charAt(j);
+					if (c == QUOTE) {
+						append(QUOTE);
+					}
+					append(c);
+				}
+				append(QUOTE);
+			} else {
+				for (int j = 0; j < field.length(); j++) {
+					append(field.charAt(j));
+				}
+			}
+		}
+		append('\n');
+	}
+
+	private boolean needsQuotes(String field) {
+		for (int i = 0; i < field.length(); i++) {
+			char c = field.charAt(i);
+			if (c == separator || c == QUOTE || c == '\n' || c == '\r') {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void append(char c) throws IOException {
+		if (position == buffer.length) {
+			writer.write(buffer, 0, position);
+			position = 0;
+		}
+		buffer[position++] = c;
+	}
+
+	@Override
+	public void flush() throws IOException {
+		writer.write(buffer, 0, position);
+		position = 0;
+		writer.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			writer.close();
+		}
+	}
+}
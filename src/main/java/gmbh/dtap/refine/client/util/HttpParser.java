@@ -16,10 +16,20 @@
 
 package gmbh.dtap.refine.client.util;
 
+import gmbh.dtap.refine.client.CsrfTokenProvider;
+import gmbh.dtap.refine.client.InvalidCsrfTokenException;
 import gmbh.dtap.refine.client.RefineException;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
+import org.apache.http.entity.BufferedHttpEntity;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+
+import static gmbh.dtap.refine.client.util.JsonParser.JSON_PARSER;
+import static org.apache.http.entity.ContentType.APPLICATION_JSON;
 
 public enum HttpParser {
 
@@ -30,4 +40,32 @@ public enum HttpParser {
 			throw new RefineException("Unexpected response : " + response.getStatusLine());
 		}
 	}
+
+	/**
+	 * Throws an exception if the response is the JSON error document OpenRefine responds with to a rejected csrf token.
+	 * This is meant for commands that do not expect a JSON document, the entity is buffered if it has to be inspected.
+	 *
+	 * @param response the response to inspect
+	 * @throws InvalidCsrfTokenException in case the server rejected the csrf token
+	 * @throws IOException               in case the entity can not be read
+	 */
+	public void assureCsrfTokenAccepted(HttpResponse response) throws IOException {
+		HttpEntity entity = response.getEntity();
+		Header contentType = entity != null ? entity.getContentType() : null;
+		if (contentType == null || !contentType.getValue().startsWith(APPLICATION_JSON.getMimeType())) {
+			return;
+		}
+		BufferedHttpEntity bufferedEntity = new BufferedHttpEntity(entity);
+		response.setEntity(bufferedEntity);
+		final Map<String, String> fields;
+		try (InputStream in = bufferedEntity.getContent()) {
+			fields = JSON_PARSER.parseObject(in, null);
+		} catch (RefineException e) {
+			return;
+		}
+		String message = fields.get("message");
+		if ("error".equals(fields.get("code")) && CsrfTokenProvider.isInvalidTokenMessage(message)) {
+			throw new InvalidCsrfTokenException(message);
+		}
+	}
 }
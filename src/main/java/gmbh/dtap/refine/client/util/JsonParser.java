@@ -16,29 +16,52 @@
 
 package gmbh.dtap.refine.client.util;
 
+import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import gmbh.dtap.refine.client.RefineException;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 public enum JsonParser {
 
 	JSON_PARSER;
 
 	private final ObjectMapper objectMapper = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
-	;
+	private final JsonFactory jsonFactory = objectMapper.getFactory();
 
 	public <T> T read(String json, Class<T> type) throws IOException {
 		T t = objectMapper.readValue(json, type);
 		return type.cast(t);
 	}
 
+	/**
+	 * Binds a JSON document to an object while it is read from the stream.
+	 *
+	 * @param in   the stream of the JSON document, which is not closed
+	 * @param type the type to bind to
+	 * @param <T>  the type to bind to
+	 * @return the bound object
+	 * @throws IOException     in case the stream can not be read
+	 * @throws RefineException in case the document is not valid
+	 */
+	public <T> T read(InputStream in, Class<T> type) throws IOException {
+		try {
+			return type.cast(objectMapper.readValue(in, type));
+		} catch (JsonProcessingException e) {
+			throw new RefineException("Parser error: " + e.getMessage(), e);
+		}
+	}
+
 	public JsonNode parseJson(String json) throws IOException {
 		try {
 			return objectMapper.readTree(json);
@@ -47,6 +70,92 @@ public enum JsonParser {
 		}
 	}
 
+	/**
+	 * Reads a JSON object from the stream token by token, without building a tree or holding the document.
+	 * The scalar fields are returned as text. Arrays and objects are passed to the handler,
+	 * or skipped if there is no handler or the handler does not consume them.
+	 *
+	 * @param in      the stream of the JSON document, which is not closed
+	 * @param handler the handler of array and object fields, may be {@code null}
+	 * @return the scalar fields of the object by name
+	 * @throws IOException     in case the stream can not be read or the handler fails
+	 * @throws RefineException in case the document is not a valid JSON object
+	 */
+	public Map<String, String> parseObject(InputStream in, FieldHandler handler) throws IOException {
+		Map<String, String> fields = new HashMap<>();
+		try (com.fasterxml.jackson.core.JsonParser parser = jsonFactory.createParser(in)) {
+			if (parser.nextToken() != JsonToken.START_OBJECT) {
+				throw new RefineException("Parser error: JSON object expected");
+			}
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				String name = parser.getCurrentName();
+				JsonToken value = parser.nextToken();
+				if (value.isStructStart()) {
+					if (handler != null) {
+						handler.handle(name, parser);
+					}
+					// no-op if the handler consumed the value up to its end token
+					parser.skipChildren();
+				} else {
+					fields.put(name, text(parser));
+				}
+			}
+		} catch (JsonProcessingException e) {
+			throw new RefineException("Parser error: " + e.getMessage(), e);
+		}
+		return fields;
+	}
+
+	/**
+	 * Reads the elements of an array as text directly into the list, the counterpart of {@link #toResults(JsonNode)}.
+	 *
+	 * @param parser the parser positioned at the start of the array
+	 * @param target the list to add the elements to
+	 * @throws IOException     in case the stream can not be read
+	 * @throws RefineException in case the parser is not positioned at an array
+	 */
+	public void readStrings(com.fasterxml.jackson.core.JsonParser parser, List<String> target) throws IOException {
+		if (parser.currentToken() != JsonToken.START_ARRAY) {
+			throw new RefineException("Array expected at '" + parser.getCurrentName() + "'");
+		}
+		JsonToken token;
+		while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+			if (token == null) {
+				throw new RefineException("Parser error: unexpected end of array");
+			}
+			if (token.isStructStart()) {
+				// same as JsonNode.asText() of a container
+				parser.skipChildren();
+				target.add("");
+			} else {
+				target.add(text(parser));
+			}
+		}
+	}
+
+	/**
+	 * Returns a scalar field like {@link JsonNode#asText()}.
+	 */
+	private static String text(com.fasterxml.jackson.core.JsonParser parser) throws IOException {
+		return parser.currentToken() == JsonToken.VALUE_NULL ? "null" : parser.getText();
+	}
+
+	/**
+	 * Returns a field of {@link #parseObject(InputStream, FieldHandler)}, the counterpart of {@link #findExistingPath(JsonNode, String)}.
+	 *
+	 * @param fields the scalar fields
+	 * @param name   the name of the field
+	 * @return the text of the field
+	 * @throws RefineException in case the field is missing
+	 */
+	public String findExistingField(Map<String, String> fields, String name) throws RefineException {
+		String value = fields.get(name);
+		if (value == null) {
+			throw new RefineException("Field '" + name + "' is missing: " + fields);
+		}
+		return value;
+	}
+
 	public List<String> toResults(JsonNode arrayNode) {
 		List<String> resultList = new ArrayList<>();
 		Iterator<JsonNode> iterator = arrayNode.elements();
@@ -64,4 +173,20 @@ public enum JsonParser {
 		}
 		return node;
 	}
+
+	/**
+	 * Handles an array or object field of {@link #parseObject(InputStream, FieldHandler)}.
+	 */
+	@FunctionalInterface
+	public interface FieldHandler {
+
+		/**
+		 * Handles the field.
+		 *
+		 * @param name   the name of the field
+		 * @param parser the parser positioned at the start of the value
+		 * @throws IOException in case the value can not be read or is not expected
+		 */
+		void handle(String name, com.fasterxml.jackson.core.JsonParser parser) throws IOException;
+	}
 }
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gmbh.dtap.refine.client;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Creates the executors of {@link RefineBulk}. This is the variant for Java 21 and later, which runs each task on
+ * a new virtual thread, so that blocking calls do not occupy a platform thread.
+ */
+final class BulkExecutors {
+
+	/**
+	 * Prevents instantiation.
+	 */
+	private BulkExecutors() {
+	}
+
+	/**
+	 * Returns whether the executors run each task on a virtual thread.
+	 *
+	 * @return {@code true} for this variant
+	 */
+	static boolean isVirtual() {
+		return true;
+	}
+
+	/**
+	 * Creates an executor that starts a virtual thread per task. The number of concurrent tasks is limited
+	 * by {@link RefineBulk} instead of the executor.
+	 *
+	 * @param maxConcurrency the maximum number of concurrent tasks, not used by this variant
+	 * @return the executor, which has to be shut down
+	 */
+	static ExecutorService newExecutor(int maxConcurrency) {
+		return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("refine-bulk-", 1).factory());
+	}
+}
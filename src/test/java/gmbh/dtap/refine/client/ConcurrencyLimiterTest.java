@@ -0,0 +1,175 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package gmbh.dtap.refine.client;
+
+import gmbh.dtap.refine.client.command.RefineCommands;
+import gmbh.dtap.refine.client.testsupport.StubRefineServer;
+import org.apache.http.client.methods.RequestBuilder;
+import org.apache.http.util.EntityUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+/**
+ * Tests for {@link ConcurrencyLimiter}.
+ */
+public class ConcurrencyLimiterTest {
+
+	@Rule
+	public ExpectedException thrown = ExpectedException.none();
+
+	@Test
+	public void should_reject_when_queue_is_full() throws Exception {
+		ConcurrencyLimiter limiter = ConcurrencyLimiter.builder().minLimit(1).initialLimit(1).maxQueued(0).build();
+		limiter.acquire();
+		assertThat(limiter.getInFlight()).isEqualTo(1);
+
+		thrown.expect(ConcurrencyLimitExceededException.class);
+		thrown.expectMessage("Concurrency limit of 1 reached");
+		try {
+			limiter.acquire();
+		} finally {
+			assertThat(limiter.getRejectedCount()).isEqualTo(1);
+		}
+	}
+
+	@Test
+	public void should_reject_after_max_wait() throws Exception {
+		ConcurrencyLimiter limiter = ConcurrencyLimiter.builder().minLimit(1).initialLimit(1)
+			.maxWait(Duration.ofMillis(20)).build();
+		limiter.acquire();
+
+		thrown.expect(ConcurrencyLimitExceededException.class);
+		thrown.expectMessage("Waited 20 ms");
+		try {
+			limiter.acquire();
+		} finally {
+			assertThat(limiter.getQueued()).isZero();
+		}
+	}
+
+	@Test
+	public void should_grant_queued_request_on_release() throws Exception {
+		ConcurrencyLimiter limiter = ConcurrencyLimiter.builder().minLimit(1).initialLimit(1).build();
+		limiter.acquire();
+		CompletableFuture<Void> queued = limiter.acquireAsync();
+		assertThat(queued).isNotDone();
+		assertThat(limiter.getQueued()).isEqualTo(1);
+
+		limiter.release();
+
+		assertThat(queued).isCompleted();
+		assertThat(limiter.getInFlight()).isEqualTo(1);
+		assertThat(limiter.getQueued()).isZero();
+	}
+
+	@Test
+	public void should_decrease_on_errors_and_increase_on_success() throws Exception {
+		try (StubRefineServer server = StubRefineServer.builder().errorRate(1).start();
+			 RefineClient client = RefineClients.builder().url(server.getUrl())
+				 .concurrencyLimiter(ConcurrencyLimiter.builder().initialLimit(10).backoffRatio(0.5).build()).build()) {
+			for (int i = 0; i < 3; i++) {
+				try {
+					RefineCommands.getVersion().build().execute(client);
+					fail("expected RefineException");
+				} catch (RefineException e) {
+					// expected
+				}
+			}
+			assertThat(client.getConcurrencyLimiter().getLimit()).isEqualTo(1);
+			assertThat(client.getConcurrencyLimiter().getInFlight()).isZero();
+		}
+
+		try (StubRefineServer server = StubRefineServer.builder().start();
+			 RefineClient client = RefineClients.builder().url(server.getUrl())
+				 .concurrencyLimiter(ConcurrencyLimiter.builder().initialLimit(1).latencyTolerance(1000).build()).build()) {
+			List<CompletableFuture<?>> futures = new ArrayList<>();
+			for (int i = 0; i < 20; i++) {
+				futures.add(RefineCommands.getVersion().build().executeAsync(client));
+			}
+			CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+			assertThat(client.getConcurrencyLimiter().getLimit()).isGreaterThan(1);
+			assertThat(client.getConcurrencyLimiter().getInFlight()).isZero();
+			assertThat(client.getConcurrencyLimiter().getBaselineLatency("get-version")).isGreaterThan(Duration.ZERO);
+		}
+	}
+
+	@Test
+	public void should_keep_baseline_per_command() throws Exception {
+		ConcurrencyLimiter limiter = ConcurrencyLimiter.builder().initialLimit(10).latencyTolerance(2).build();
+		for (int i = 0; i < 20; i++) {
+			limiter.acquire();
+			limiter.release("get-version", TimeUnit.MILLISECONDS.toNanos(1), false);
+			limiter.acquire();
+			limiter.release("export-rows", TimeUnit.MILLISECONDS.toNanos(100), false);
+		}
+		assertThat(limiter.getLimit()).isEqualTo(10);
+		assertThat(limiter.getBaselineLatency("get-version")).isEqualTo(Duration.ofMillis(1));
+		assertThat(limiter.getBaselineLatency("export-rows")).isEqualTo(Duration.ofMillis(100));
+		assertThat(limiter.getBaselineLatency("get-models")).isEqualTo(Duration.ZERO);
+
+		limiter.acquire();
+		limiter.release("get-version", TimeUnit.MILLISECONDS.toNanos(10), false);
+		assertThat(limiter.getLimit()).isEqualTo(9);
+	}
+
+	@Test
+	public void should_not_sample_time_spent_in_handler() throws Exception {
+		try (StubRefineServer server = StubRefineServer.builder().start();
+			 RefineClient client = RefineClients.builder().url(server.getUrl())
+				 .concurrencyLimiter(ConcurrencyLimiter.builder().build()).build()) {
+			client.execute(RequestBuilder.get(client.createUrl("/command/core/get-version").toString()).build(), response -> {
+				EntityUtils.consume(response.getEntity());
+				try {
+					Thread.sleep(200);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return null;
+			});
+			assertThat(client.getConcurrencyLimiter().getBaselineLatency("get-version")).isLessThan(Duration.ofMillis(200));
+		}
+	}
+
+	@Test
+	public void should_fail_async_request_when_rejected() throws Exception {
+		try (StubRefineServer server = StubRefineServer.builder().latency(Duration.ofMillis(200)).start();
+			 RefineClient client = RefineClients.builder().url(server.getUrl())
+				 .concurrencyLimiter(ConcurrencyLimiter.builder().minLimit(1).initialLimit(1).maxQueued(0).build()).build()) {
+			CompletableFuture<?> first = RefineCommands.getVersion().build().executeAsync(client);
+			try {
+				RefineCommands.getVersion().build().executeAsync(client).join();
+				fail("expected CompletionException");
+			} catch (CompletionException e) {
+				assertThat(e.getCause()).isInstanceOf(ConcurrencyLimitExceededException.class);
+			}
+			first.join();
+			assertThat(server.getRequestCount("get-version")).isEqualTo(1);
+		}
+	}
+}
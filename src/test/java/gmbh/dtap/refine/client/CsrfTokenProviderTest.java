@@ -0,0 +1,168 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gmbh.dtap.refine.client;
+
+import org.apache.http.client.ResponseHandler;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+import static gmbh.dtap.refine.client.testsupport.HttpMock.mockHttpResponse;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static org.apache.http.entity.ContentType.APPLICATION_JSON;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit Tests for {@link CsrfTokenProvider}.
+ */
+public class CsrfTokenProviderTest {
+
+	private RefineClient refineClient;
+	private CsrfTokenProvider provider;
+	private int fetched;
+
+	@Before
+	public void setUp() throws IOException {
+		refineClient = mock(RefineClient.class);
+		when(refineClient.createUrl(anyString())).thenReturn(new URL("http://localhost:3333/"));
+		when(refineClient.execute(any(), any())).thenAnswer(invocation -> fetchToken(invocation.getArguments()[1]));
+		when(refineClient.executeAsync(any(), any())).thenAnswer(invocation -> completedFuture(fetchToken(invocation.getArguments()[1])));
+		provider = new CsrfTokenProvider(refineClient);
+	}
+
+	private Object fetchToken(Object responseHandler) throws IOException {
+		fetched++;
+		ResponseHandler<?> handler = (ResponseHandler<?>) responseHandler;
+		return handler.handleResponse(mockHttpResponse(200, APPLICATION_JSON, "{\"token\":\"token-" + fetched + "\"}"));
+	}
+
+	@Test
+	public void should_fetch_token_once() throws IOException {
+		assertThat(provider.getToken()).isEqualTo("token-1");
+		assertThat(provider.getToken()).isEqualTo("token-1");
+		assertThat(fetched).isEqualTo(1);
+	}
+
+	@Test
+	public void should_fetch_new_token_after_invalidation() throws IOException {
+		provider.invalidate(provider.getToken());
+		assertThat(provider.getToken()).isEqualTo("token-2");
+	}
+
+	@Test
+	public void should_keep_token_when_other_token_is_invalidated() throws IOException {
+		provider.getToken();
+		provider.invalidate("token-0");
+		assertThat(provider.getToken()).isEqualTo("token-1");
+	}
+
+	@Test
+	public void should_repeat_call_with_new_token_when_rejected() throws IOException {
+		List<String> usedTokens = new ArrayList<>();
+		RefineResponse response = provider.execute(token -> {
+			usedTokens.add(token);
+			return usedTokens.size() == 1
+				? new TestRefineResponse(ResponseCode.ERROR, CsrfTokenProvider.INVALID_TOKEN_MESSAGE)
+				: new TestRefineResponse(ResponseCode.OK, null);
+		});
+		assertThat(response.getCode()).isEqualTo(ResponseCode.OK);
+		assertThat(usedTokens).containsExactly("token-1", "token-2");
+	}
+
+	@Test
+	public void should_repeat_call_with_new_token_when_exception_is_thrown() throws IOException {
+		List<String> usedTokens = new ArrayList<>();
+		String result = provider.execute(token -> {
+			usedTokens.add(token);
+			if (usedTokens.size() == 1) {
+				throw new InvalidCsrfTokenException(CsrfTokenProvider.INVALID_TOKEN_MESSAGE);
+			}
+			return token;
+		});
+		assertThat(result).isEqualTo("token-2");
+	}
+
+	@Test
+	public void should_not_repeat_call_on_other_errors() throws IOException {
+		List<String> usedTokens = new ArrayList<>();
+		RefineResponse response = provider.execute(token -> {
+			usedTokens.add(token);
+			return new TestRefineResponse(ResponseCode.ERROR, "Something else");
+		});
+		assertThat(response.getMessage()).isEqualTo("Something else");
+		assertThat(usedTokens).containsExactly("token-1");
+	}
+
+	@Test
+	public void should_repeat_async_call_with_new_token_when_rejected() {
+		List<String> usedTokens = new ArrayList<>();
+		RefineResponse response = provider.executeAsync(token -> {
+			usedTokens.add(token);
+			return completedFuture(usedTokens.size() == 1
+				? new TestRefineResponse(ResponseCode.ERROR, CsrfTokenProvider.INVALID_TOKEN_MESSAGE)
+				: new TestRefineResponse(ResponseCode.OK, null));
+		}).join();
+		assertThat(response.getCode()).isEqualTo(ResponseCode.OK);
+		assertThat(usedTokens).containsExactly("token-1", "token-2");
+	}
+
+	@Test
+	public void should_execute_once_with_fresh_token() throws IOException {
+		provider.getToken();
+		List<String> usedTokens = new ArrayList<>();
+
+		try {
+			provider.executeOnce(token -> {
+				usedTokens.add(token);
+				throw new InvalidCsrfTokenException(CsrfTokenProvider.INVALID_TOKEN_MESSAGE);
+			});
+		} catch (InvalidCsrfTokenException e) {
+			// expected, the call is not repeated
+		}
+		assertThat(usedTokens).containsExactly("token-2");
+		assertThat(provider.getToken()).isEqualTo("token-3");
+	}
+
+	@Test
+	public void should_execute_async_once_with_fresh_token() {
+		provider.getTokenAsync().join();
+		List<String> usedTokens = new ArrayList<>();
+
+		RefineResponse response = provider.executeOnceAsync(token -> {
+			usedTokens.add(token);
+			return completedFuture((RefineResponse) new TestRefineResponse(ResponseCode.ERROR, CsrfTokenProvider.INVALID_TOKEN_MESSAGE));
+		}).join();
+		assertThat(response.getCode()).isEqualTo(ResponseCode.ERROR);
+		assertThat(usedTokens).containsExactly("token-2");
+	}
+
+	/**
+	 * Test implementation for abstract RefineResponse.
+	 */
+	private static class TestRefineResponse extends RefineResponse {
+		TestRefineResponse(ResponseCode code, String message) {
+			super(code, message);
+		}
+	}
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gmbh.dtap.refine.client;
+
+import gmbh.dtap.refine.client.command.RefineCommands;
+import gmbh.dtap.refine.client.testsupport.StubRefineServer;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for the Java Flight Recorder events of {@link RefineClient}.
+ */
+public class FlightRecordingTest {
+
+	private static final String REQUEST = "gmbh.dtap.refine.Request";
+	private static final String HANDLER = "gmbh.dtap.refine.ResponseHandler";
+
+	private StubRefineServer server;
+	private RefineClient client;
+
+	@Before
+	public void setUp() throws IOException {
+		server = StubRefineServer.builder().start();
+		client = RefineClients.create(server.getUrl());
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		client.close();
+		server.close();
+	}
+
+	@Test
+	public void should_not_create_events_without_recording() {
+		assertThat(FlightRecording.beginRequest()).isNull();
+		assertThat(FlightRecording.beginHandler()).isNull();
+	}
+
+	@Test
+	public void should_record_request_and_handler() throws IOException {
+		List<RecordedEvent> events = record(Duration.ZERO);
+
+		RecordedEvent request = events.stream().filter(event -> event.getEventType().getName().equals(REQUEST))
+			.filter(event -> "get-version".equals(event.getString("command"))).findFirst().orElseThrow(AssertionError::new);
+		assertThat(request.getInt("statusCode")).isEqualTo(200);
+		assertThat(request.getBoolean("async")).isFalse();
+		assertThat(request.getLong("responseBytes")).isGreaterThan(0);
+		assertThat(request.getLong("timeToFirstByte")).isGreaterThan(0);
+		assertThat(request.getString("failure")).isNull();
+		assertThat(request.getDuration()).isGreaterThan(Duration.ZERO);
+
+		RecordedEvent delete = events.stream().filter(event -> event.getEventType().getName().equals(REQUEST))
+			.filter(event -> "delete-project".equals(event.getString("command"))).findFirst().orElseThrow(AssertionError::new);
+		assertThat(delete.getString("projectId")).isEqualTo("4711");
+		assertThat(delete.getLong("requestBytes")).isGreaterThan(0);
+
+		assertThat(events.stream().filter(event -> event.getEventType().getName().equals(HANDLER))
+			.map(event -> event.getString("command")).collect(Collectors.toList()))
+			.contains("get-version", "get-csrf-token", "delete-project");
+	}
+
+	@Test
+	public void should_apply_threshold() throws IOException {
+		assertThat(record(Duration.ofHours(1))).isEmpty();
+	}
+
+	private List<RecordedEvent> record(Duration threshold) throws IOException {
+		Path file = Files.createTempFile("refine", ".jfr");
+		try (Recording recording = new Recording()) {
+			recording.enable(REQUEST).withThreshold(threshold);
+			recording.enable(HANDLER).withThreshold(threshold);
+			recording.start();
+			RefineCommands.getVersion().build().execute(client);
+			RefineCommands.deleteProject().project("4711").build().execute(client);
+			recording.stop();
+			recording.dump(file);
+			return RecordingFile.readAllEvents(file);
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+}
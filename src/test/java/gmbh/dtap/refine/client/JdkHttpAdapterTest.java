@@ -0,0 +1,148 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gmbh.dtap.refine.client;
+
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.methods.RequestBuilder;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.util.EntityUtils;
+import org.junit.Test;
+
+import javax.net.ssl.SSLSession;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.apache.http.HttpHeaders.ACCEPT;
+import static org.apache.http.entity.ContentType.APPLICATION_FORM_URLENCODED;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit Tests for {@link JdkHttpAdapter}.
+ */
+public class JdkHttpAdapterTest {
+
+	@Test
+	public void should_convert_request_with_buffered_entity() throws IOException {
+		HttpUriRequest request = RequestBuilder.post("http://localhost:3333/command/core/apply-operations")
+			.setHeader(ACCEPT, "application/json")
+			.setHeader("Connection", "close")
+			.setEntity(new StringEntity("project=1", APPLICATION_FORM_URLENCODED))
+			.build();
+
+		HttpRequest jdkRequest = JdkHttpAdapter.toJdkRequest(request, Duration.ofSeconds(1), new JdkHttpAdapter.EntityPipes(Runnable::run));
+		assertThat(jdkRequest.method()).isEqualTo("POST");
+		assertThat(jdkRequest.uri()).isEqualTo(URI.create("http://localhost:3333/command/core/apply-operations"));
+		assertThat(jdkRequest.headers().firstValue(ACCEPT)).contains("application/json");
+		assertThat(jdkRequest.headers().firstValue("Content-Type")).contains(APPLICATION_FORM_URLENCODED.toString());
+		assertThat(jdkRequest.headers().firstValue("Connection")).isEmpty();
+		assertThat(jdkRequest.bodyPublisher().get().contentLength()).isEqualTo(9);
+		assertThat(jdkRequest.timeout()).contains(Duration.ofSeconds(1));
+	}
+
+	@Test
+	public void should_convert_request_with_streaming_entity() throws IOException {
+		HttpUriRequest request = RequestBuilder.post("http://localhost:3333/command/core/create-project-from-upload")
+			.setEntity(new InputStreamEntity(new ByteArrayInputStream(new byte[16])))
+			.build();
+
+		HttpRequest jdkRequest = JdkHttpAdapter.toJdkRequest(request, Duration.ofSeconds(1), new JdkHttpAdapter.EntityPipes(Runnable::run));
+		assertThat(jdkRequest.bodyPublisher().get().contentLength()).isEqualTo(-1);
+	}
+
+	@Test
+	public void should_convert_request_without_entity() throws IOException {
+		HttpUriRequest request = RequestBuilder.get("http://localhost:3333/command/core/get-version").build();
+
+		HttpRequest jdkRequest = JdkHttpAdapter.toJdkRequest(request, Duration.ofSeconds(1), new JdkHttpAdapter.EntityPipes(Runnable::run));
+		assertThat(jdkRequest.method()).isEqualTo("GET");
+		assertThat(jdkRequest.bodyPublisher().get().contentLength()).isEqualTo(0);
+	}
+
+	@Test
+	public void should_convert_response() throws IOException {
+		HttpResponse<byte[]> response = new TestResponse(302, Map.of(
+			"Content-Type", List.of("application/json; charset=UTF-8"),
+			"Location", List.of("http://localhost:3333/project?project=1")),
+			"{\"code\":\"ok\"}".getBytes(StandardCharsets.UTF_8));
+
+		org.apache.http.HttpResponse apacheResponse = JdkHttpAdapter.toApacheResponse(response);
+		assertThat(apacheResponse.getStatusLine().getStatusCode()).isEqualTo(302);
+		assertThat(apacheResponse.getStatusLine().getReasonPhrase()).isEqualTo("Moved Temporarily");
+		assertThat(apacheResponse.getFirstHeader("Location").getValue()).isEqualTo("http://localhost:3333/project?project=1");
+		assertThat(apacheResponse.getEntity().getContentType().getValue()).isEqualTo("application/json; charset=UTF-8");
+		assertThat(EntityUtils.toString(apacheResponse.getEntity())).isEqualTo("{\"code\":\"ok\"}");
+	}
+
+	/**
+	 * Minimal response implementation, the JDK does not provide one.
+	 */
+	private static class TestResponse implements HttpResponse<byte[]> {
+
+		private final int statusCode;
+		private final Map<String, List<String>> headers;
+		private final byte[] body;
+
+		TestResponse(int statusCode, Map<String, List<String>> headers, byte[] body) {
+			this.statusCode = statusCode;
+			this.headers = headers;
+			this.body = body;
+		}
+
+		@Override public int statusCode() {
+			return statusCode;
+		}
+
+		@Override public HttpRequest request() {
+			return null;
+		}
+
+		@Override public Optional<HttpResponse<byte[]>> previousResponse() {
+			return Optional.empty();
+		}
+
+		@Override public HttpHeaders headers() {
+			return HttpHeaders.of(headers, (name, value) -> true);
+		}
+
+		@Override public byte[] body() {
+			return body;
+		}
+
+		@Override public Optional<SSLSession> sslSession() {
+			return Optional.empty();
+		}
+
+		@Override public URI uri() {
+			return URI.create("http://localhost:3333/");
+		}
+
+		@Override public HttpClient.Version version() {
+			return HttpClient.Version.HTTP_1_1;
+		}
+	}
+}
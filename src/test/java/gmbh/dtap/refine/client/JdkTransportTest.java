@@ -0,0 +1,177 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gmbh.dtap.refine.client;
+
+import gmbh.dtap.refine.client.command.GetVersionResponse;
+import gmbh.dtap.refine.client.command.RefineCommands;
+import gmbh.dtap.refine.client.testsupport.StubRefineServer;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.methods.RequestBuilder;
+import org.apache.http.entity.InputStreamEntity;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.http.HttpClient;
+import java.net.http.HttpClient.Redirect;
+import java.net.http.HttpClient.Version;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests for {@link JdkTransport} against a {@link StubRefineServer}.
+ */
+public class JdkTransportTest {
+
+	private StubRefineServer server;
+	private RefineClient client;
+
+	@Before
+	public void setUp() throws IOException {
+		server = StubRefineServer.builder().exportRows(1000).start();
+		client = RefineClients.builder()
+			.url(server.getUrl())
+			.transport(TransportType.JDK_HTTP_2)
+			.build();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		client.close();
+		server.close();
+	}
+
+	@Test
+	public void should_use_http_2() {
+		assertThat(client.getTransport()).isInstanceOf(JdkTransport.class);
+		assertThat(((JdkTransport) client.getTransport()).getVersion()).isEqualTo(Version.HTTP_2);
+		assertThat(client.getConnectionPoolStats()).isNull();
+	}
+
+	@Test
+	public void should_fall_back_to_http_1_1_and_execute() throws IOException {
+		GetVersionResponse response = RefineCommands.getVersion().build().execute(client);
+		assertThat(response.getVersion()).isEqualTo("3.4");
+	}
+
+	@Test
+	public void should_execute_async_concurrently() {
+		List<CompletableFuture<GetVersionResponse>> futures = IntStream.range(0, 10)
+			.mapToObj(i -> RefineCommands.getVersion().build().executeAsync(client))
+			.collect(Collectors.toList());
+
+		assertThat(futures.stream().map(CompletableFuture::join).map(GetVersionResponse::getVersion)).containsOnly("3.4");
+		assertThat(server.getRequestCount("get-version")).isEqualTo(10);
+	}
+
+	@Test
+	public void should_not_follow_redirect() throws IOException {
+		String projectId = RefineCommands.createProject()
+			.name("redirect")
+			.rows(() -> List.<String[]> of(new String[] { "a" }).iterator())
+			.build()
+			.execute(client)
+			.getProjectId();
+		assertThat(server.hasProject(projectId)).isTrue();
+	}
+
+	@Test
+	public void should_open_streaming_response() throws IOException {
+		String token = client.getCsrfTokenProvider().getToken();
+		HttpResponse response = client.open(RequestBuilder.post(client.createUrl("/command/core/export-rows").toString())
+			.addParameter("csrf_token", token)
+			.addParameter("format", "csv")
+			.build());
+		assertThat(response).isInstanceOf(Closeable.class);
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(response.getEntity().getContent(), StandardCharsets.UTF_8))) {
+			assertThat(reader.readLine()).isEqualTo("ID,Street,Zip,City,Country");
+			assertThat(reader.readLine()).startsWith("ROW-0,");
+		} finally {
+			((Closeable) response).close();
+		}
+	}
+
+	@Test
+	public void should_fail_upload_when_writing_entity_fails() {
+		HttpUriRequest request = RequestBuilder.post(client.createUrl("/command/core/create-project-from-upload").toString())
+			.setEntity(new InputStreamEntity(InputStream.nullInputStream()) {
+				@Override
+				public void writeTo(OutputStream out) throws IOException {
+					out.write(new byte[256 * 1024]);
+					throw new IllegalStateException("broken source");
+				}
+			})
+			.build();
+
+		assertThatThrownBy(() -> client.getTransport().execute(request, response -> response.getStatusLine().getStatusCode()))
+			.isInstanceOf(IOException.class);
+	}
+
+	@Test(timeout = 30_000)
+	public void should_release_entity_writer_when_upload_is_reset() throws Exception {
+		HttpClient httpClient = HttpClient.newBuilder().version(Version.HTTP_1_1).followRedirects(Redirect.NEVER).build();
+		try (ServerSocket resetting = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+			 JdkTransport transport = new JdkTransport(httpClient, Duration.ofSeconds(5), 1)) {
+			Thread acceptor = new Thread(() -> {
+				while (!resetting.isClosed()) {
+					try (Socket socket = resetting.accept()) {
+						socket.getInputStream().readNBytes(1024);
+						socket.setSoLinger(true, 0);
+					} catch (IOException e) {
+						// closed by the test
+					}
+				}
+			});
+			acceptor.setDaemon(true);
+			acceptor.start();
+
+			String resetUrl = "http://localhost:" + resetting.getLocalPort() + "/command/core/create-project-from-upload";
+			for (int i = 0; i < 2; i++) {
+				assertThatThrownBy(() -> transport.execute(upload(resetUrl), response -> response.getStatusLine().getStatusCode()))
+					.isInstanceOf(IOException.class);
+			}
+
+			int status = transport.execute(upload(server.getUrl() + "/command/core/get-version"),
+				response -> response.getStatusLine().getStatusCode());
+			assertThat(status).isEqualTo(200);
+		}
+	}
+
+	private static HttpUriRequest upload(String url) {
+		return RequestBuilder.post(url)
+			.setEntity(new InputStreamEntity(new ByteArrayInputStream(new byte[4 * 1024 * 1024])))
+			.build();
+	}
+}
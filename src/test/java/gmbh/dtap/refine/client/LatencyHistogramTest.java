@@ -0,0 +1,92 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gmbh.dtap.refine.client;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit Tests for {@link LatencyHistogram}.
+ */
+public class LatencyHistogramTest {
+
+	@Test
+	public void should_map_values_to_bucket_containing_them() {
+		for (long value : new long[] { 0, 1, 7, 8, 15, 16, 1_000, 123_456_789, Long.MAX_VALUE }) {
+			long upperBound = LatencyHistogram.upperBoundOf(LatencyHistogram.bucketOf(value));
+			assertThat(upperBound).isGreaterThanOrEqualTo(value);
+			assertThat(upperBound - value).isLessThanOrEqualTo(value / 8);
+		}
+	}
+
+	@Test
+	public void should_report_percentiles() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (long millis = 1; millis <= 100; millis++) {
+			histogram.record(millis * 1_000_000);
+		}
+
+		assertThat(histogram.getCount()).isEqualTo(100);
+		assertThat(histogram.getMaxNanos()).isEqualTo(100_000_000);
+		assertThat(histogram.getPercentileNanos(0.5)).isBetween(50_000_000L, 50_000_000L * 9 / 8);
+		assertThat(histogram.getPercentileNanos(0.99)).isBetween(99_000_000L, 100_000_000L);
+		assertThat(histogram.getPercentileNanos(1.0)).isEqualTo(100_000_000);
+	}
+
+	@Test
+	public void should_report_several_percentiles_at_once() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (long millis = 1; millis <= 100; millis++) {
+			histogram.record(millis * 1_000_000);
+		}
+
+		assertThat(histogram.getPercentilesNanos(0.5, 0.99, 1.0)).containsExactly(
+			histogram.getPercentileNanos(0.5), histogram.getPercentileNanos(0.99), 100_000_000L);
+	}
+
+	@Test
+	public void should_forget_latencies_outside_of_window() {
+		AtomicLong clock = new AtomicLong();
+		LatencyHistogram histogram = new LatencyHistogram(TimeUnit.MINUTES.toNanos(1), clock::get);
+		histogram.record(500_000_000);
+		clock.addAndGet(TimeUnit.SECONDS.toNanos(30));
+		histogram.record(1_000_000);
+
+		assertThat(histogram.getMaxNanos()).isEqualTo(500_000_000);
+
+		clock.addAndGet(TimeUnit.SECONDS.toNanos(35));
+
+		assertThat(histogram.getMaxNanos()).isEqualTo(1_000_000);
+		assertThat(histogram.getPercentileNanos(0.99)).isBetween(1_000_000L, 1_000_000L * 9 / 8);
+
+		clock.addAndGet(TimeUnit.MINUTES.toNanos(2));
+
+		assertThat(histogram.getMaxNanos()).isZero();
+		assertThat(histogram.getPercentileNanos(0.99)).isZero();
+		assertThat(histogram.getCount()).isEqualTo(2);
+		assertThat(histogram.getTotalNanos()).isEqualTo(501_000_000);
+	}
+
+	@Test
+	public void should_report_zero_when_empty() {
+		assertThat(new LatencyHistogram().getPercentileNanos(0.99)).isZero();
+	}
+}
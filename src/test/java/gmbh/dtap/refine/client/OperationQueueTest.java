@@ -0,0 +1,181 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package gmbh.dtap.refine.client;
+
+import gmbh.dtap.refine.client.command.ApplyOperationsResponse;
+import gmbh.dtap.refine.client.testsupport.StubRefineServer;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static gmbh.dtap.refine.client.JsonOperation.from;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link OperationQueue} against a {@link StubRefineServer}.
+ */
+public class OperationQueueTest {
+
+	private static final Operation OPERATION = from("{\"op\":\"core/column-removal\",\"columnName\":\"a\"}");
+
+	@Rule
+	public ExpectedException thrown = ExpectedException.none();
+
+	private StubRefineServer server;
+	private RefineClient client;
+	private OperationQueue queue;
+
+	private void start(StubRefineServer.Builder server, OperationQueue.Builder queue) throws IOException {
+		this.server = server.start();
+		this.client = RefineClients.create(this.server.getUrl());
+		this.queue = queue.client(client).build();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		queue.close();
+		client.close();
+		server.close();
+	}
+
+	@Test
+	public void should_send_when_batch_is_full() throws IOException {
+		start(StubRefineServer.builder(), OperationQueue.builder().maxBatchSize(3).maxDelay(Duration.ofHours(1)));
+
+		List<CompletableFuture<ApplyOperationsResponse>> futures = enqueue("1", 3);
+
+		futures.forEach(future -> assertThat(future.join().getCode()).isEqualTo(ResponseCode.OK));
+		assertThat(server.getRequestCount("apply-operations")).isEqualTo(1);
+		assertThat(queue.getPendingCount()).isZero();
+	}
+
+	@Test
+	public void should_send_when_window_elapsed() throws IOException {
+		start(StubRefineServer.builder(), OperationQueue.builder().maxBatchSize(100).maxDelay(Duration.ofMillis(20)));
+
+		List<CompletableFuture<ApplyOperationsResponse>> futures = enqueue("1", 5);
+
+		CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+		assertThat(server.getRequestCount("apply-operations")).isEqualTo(1);
+	}
+
+	@Test
+	public void should_send_on_flush() throws IOException {
+		start(StubRefineServer.builder(), OperationQueue.builder().maxBatchSize(2).maxDelay(Duration.ofHours(1)));
+
+		List<CompletableFuture<ApplyOperationsResponse>> futures = enqueue("1", 5);
+		assertThat(queue.getPendingCount()).isGreaterThanOrEqualTo(1);
+		queue.flush("1").join();
+
+		assertThat(futures).allMatch(future -> future.isDone() && !future.isCompletedExceptionally());
+		assertThat(server.getRequestCount("apply-operations")).isEqualTo(3);
+		assertThat(queue.getProjectCount()).isZero();
+	}
+
+	@Test
+	public void should_apply_batches_of_a_project_serially() throws IOException {
+		start(StubRefineServer.builder().latency(Duration.ofMillis(20)), OperationQueue.builder().maxBatchSize(1));
+
+		enqueue("1", 5);
+		queue.flush().join();
+
+		assertThat(server.getRequestCount("apply-operations")).isEqualTo(5);
+		assertThat(server.getMaxConcurrentRequests()).isEqualTo(1);
+	}
+
+	@Test
+	public void should_apply_projects_in_parallel() throws IOException {
+		start(StubRefineServer.builder().latency(Duration.ofMillis(200)), OperationQueue.builder().maxBatchSize(1));
+		client.getCsrfTokenProvider().getToken();
+
+		enqueue("1", 1);
+		enqueue("2", 1);
+		enqueue("3", 1);
+		queue.flush().join();
+
+		assertThat(server.getRequestCount("apply-operations")).isEqualTo(3);
+		assertThat(server.getMaxConcurrentRequests()).isEqualTo(3);
+	}
+
+	@Test
+	public void should_fail_operations_of_failed_batch() throws IOException {
+		start(StubRefineServer.builder().errorRate(1.0), OperationQueue.builder().maxBatchSize(2));
+
+		List<CompletableFuture<ApplyOperationsResponse>> futures = enqueue("1", 2);
+
+		CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).exceptionally(failure -> null).join();
+		assertThat(futures).allMatch(CompletableFuture::isCompletedExceptionally);
+	}
+
+	@Test
+	public void should_reject_operations_after_close() throws IOException {
+		start(StubRefineServer.builder(), OperationQueue.builder().maxDelay(Duration.ofHours(1)));
+		CompletableFuture<ApplyOperationsResponse> future = queue.enqueue("1", OPERATION);
+
+		queue.close();
+
+		assertThat(future.join().getCode()).isEqualTo(ResponseCode.OK);
+		thrown.expect(IllegalStateException.class);
+		queue.enqueue("1", OPERATION);
+	}
+
+	@Test
+	public void should_complete_operations_enqueued_while_closing() throws Exception {
+		start(StubRefineServer.builder(), OperationQueue.builder().maxBatchSize(1000).maxDelay(Duration.ofHours(1)));
+		List<CompletableFuture<ApplyOperationsResponse>> futures = new CopyOnWriteArrayList<>();
+		List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			String projectId = String.valueOf(i);
+			Thread thread = new Thread(() -> {
+				try {
+					while (true) {
+						futures.add(queue.enqueue(projectId, OPERATION));
+					}
+				} catch (IllegalStateException e) {
+					// closed
+				}
+			});
+			thread.start();
+			threads.add(thread);
+		}
+		Thread.sleep(20);
+
+		queue.close();
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		assertThat(futures).isNotEmpty().allMatch(CompletableFuture::isDone);
+	}
+
+	private List<CompletableFuture<ApplyOperationsResponse>> enqueue(String projectId, int count) {
+		List<CompletableFuture<ApplyOperationsResponse>> futures = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			futures.add(queue.enqueue(projectId, OPERATION));
+		}
+		return futures;
+	}
+}
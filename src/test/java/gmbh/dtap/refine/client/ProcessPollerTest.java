@@ -0,0 +1,123 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package gmbh.dtap.refine.client;
+
+import gmbh.dtap.refine.client.command.ApplyOperationsResponse;
+import gmbh.dtap.refine.client.command.RefineCommands;
+import gmbh.dtap.refine.client.testsupport.StubRefineServer;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static gmbh.dtap.refine.client.JsonOperation.from;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.CoreMatchers.instanceOf;
+
+/**
+ * Tests for {@link RefineClient#awaitCompletion(String)} against a {@link StubRefineServer}.
+ */
+public class ProcessPollerTest {
+
+	@Rule
+	public ExpectedException thrown = ExpectedException.none();
+
+	private StubRefineServer server;
+	private RefineClient client;
+
+	private String start(int processPolls) throws IOException {
+		server = StubRefineServer.builder().processPolls(processPolls).start();
+		client = RefineClients.create(server.getUrl());
+		return RefineCommands.createProject().name("Test").file(new File("src/test/resources/addresses.csv")).build()
+			.execute(client).getProjectId();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		client.close();
+		server.close();
+	}
+
+	@Test
+	public void should_complete_when_processes_are_done() throws IOException {
+		String projectId = start(3);
+		ApplyOperationsResponse response = apply(projectId);
+		assertThat(response.getCode()).isEqualTo(ResponseCode.PENDING);
+
+		client.awaitCompletion(projectId).join();
+
+		assertThat(server.getRequestCount("get-processes")).isEqualTo(4);
+	}
+
+	@Test
+	public void should_share_polls_between_callers() throws IOException {
+		String projectId = start(3);
+		apply(projectId);
+
+		List<CompletableFuture<Void>> futures = new ArrayList<>();
+		for (int i = 0; i < 500; i++) {
+			futures.add(client.awaitCompletion(projectId));
+		}
+		CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+
+		assertThat(server.getRequestCount("get-processes")).isLessThanOrEqualTo(5);
+	}
+
+	@Test
+	public void should_complete_immediately_applied_operations() throws IOException {
+		String projectId = start(0);
+		assertThat(apply(projectId).getCode()).isEqualTo(ResponseCode.OK);
+
+		client.awaitCompletion(projectId).join();
+
+		assertThat(server.getRequestCount("get-processes")).isEqualTo(1);
+	}
+
+	@Test
+	public void should_fail_for_unknown_project() throws IOException {
+		start(0);
+
+		thrown.expect(CompletionException.class);
+		thrown.expectCause(instanceOf(RefineException.class));
+		client.awaitCompletion("1").join();
+	}
+
+	@Test
+	public void should_fail_waiters_on_close() throws Exception {
+		String projectId = start(1_000_000);
+		apply(projectId);
+		CompletableFuture<Void> future = client.awaitCompletion(projectId);
+
+		client.close();
+
+		thrown.expectMessage("closed");
+		future.join();
+	}
+
+	private ApplyOperationsResponse apply(String projectId) throws IOException {
+		return RefineCommands.applyOperations().project(projectId)
+			.operations(from("{\"op\":\"core/column-removal\",\"columnName\":\"ID\"}")).build().execute(client);
+	}
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package gmbh.dtap.refine.client;
+
+import gmbh.dtap.refine.client.command.GetProjectMetadataResponse;
+import gmbh.dtap.refine.client.command.RefineCommands;
+import gmbh.dtap.refine.client.testsupport.StubRefineServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static gmbh.dtap.refine.client.JsonOperation.from;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link ProjectMetadataCache}.
+ */
+public class ProjectMetadataCacheTest {
+
+	private StubRefineServer server;
+	private RefineClient client;
+	private ProjectMetadataCache cache;
+
+	@Before
+	public void setUp() throws IOException {
+		server = StubRefineServer.builder().start();
+		cache = ProjectMetadataCache.builder().maxSize(2).ttl(Duration.ofMinutes(1)).build();
+		client = RefineClients.builder().url(server.getUrl()).projectMetadataCache(cache).build();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		client.close();
+		server.close();
+	}
+
+	@Test
+	public void should_answer_repeated_lookups_from_cache() throws IOException {
+		String projectId = createProject();
+
+		GetProjectMetadataResponse first = getMetadata(projectId);
+		GetProjectMetadataResponse second = getMetadata(projectId);
+		GetProjectMetadataResponse third = RefineCommands.getProjectMetadataCommand().project(projectId).build()
+			.executeAsync(client).join();
+
+		assertThat(second).isSameAs(first);
+		assertThat(third).isSameAs(first);
+		assertThat(server.getRequestCount("get-project-metadata")).isEqualTo(1);
+		assertThat(cache.getHitCount()).isEqualTo(2);
+		assertThat(cache.getMissCount()).isEqualTo(1);
+		assertThat(cache.getHitRatio()).isEqualTo(2.0 / 3);
+	}
+
+	@Test
+	public void should_invalidate_on_apply_operations_and_delete() throws IOException {
+		String projectId = createProject();
+		getMetadata(projectId);
+
+		RefineCommands.applyOperations().project(projectId).operations(from("[]")).build().execute(client);
+		assertThat(cache.size()).isZero();
+		getMetadata(projectId);
+		assertThat(server.getRequestCount("get-project-metadata")).isEqualTo(2);
+
+		RefineCommands.deleteProject().project(projectId).build().execute(client);
+		assertThat(cache.size()).isZero();
+	}
+
+	@Test
+	public void should_cache_response_loaded_during_invalidation_of_other_project() throws IOException {
+		ProjectMetadataCache cache = ProjectMetadataCache.builder().build();
+		GetProjectMetadataResponse response = new GetProjectMetadataResponse(new ProjectMetadata());
+		cache.get("2", () -> {
+			cache.invalidate("1");
+			return response;
+		});
+		assertThat(cache.getIfPresent("2")).isSameAs(response);
+	}
+
+	@Test
+	public void should_not_cache_response_loaded_during_invalidation_of_all() {
+		ProjectMetadataCache cache = ProjectMetadataCache.builder().build();
+		CompletableFuture<GetProjectMetadataResponse> loading = new CompletableFuture<>();
+		CompletableFuture<GetProjectMetadataResponse> future = cache.getAsync("1", () -> loading);
+
+		cache.invalidateAll();
+		loading.complete(new GetProjectMetadataResponse(new ProjectMetadata()));
+
+		assertThat(future).isCompleted();
+		assertThat(cache.size()).isZero();
+	}
+
+	@Test
+	public void should_evict_least_recently_used() throws IOException {
+		String project1 = createProject();
+		String project2 = createProject();
+		String project3 = createProject();
+		getMetadata(project1);
+		getMetadata(project2);
+		getMetadata(project1);
+		getMetadata(project3);
+
+		assertThat(cache.size()).isEqualTo(2);
+		assertThat(cache.getEvictionCount()).isEqualTo(1);
+		assertThat(cache.getIfPresent(project1)).isNotNull();
+		assertThat(cache.getIfPresent(project2)).isNull();
+	}
+
+	@Test
+	public void should_expire_after_ttl() throws Exception {
+		ProjectMetadataCache shortLived = ProjectMetadataCache.builder().ttl(Duration.ofMillis(20)).build();
+		GetProjectMetadataResponse response = new GetProjectMetadataResponse(new ProjectMetadata());
+		shortLived.get("1", () -> response);
+		assertThat(shortLived.getIfPresent("1")).isSameAs(response);
+
+		Thread.sleep(40);
+
+		assertThat(shortLived.getIfPresent("1")).isNull();
+		assertThat(shortLived.size()).isZero();
+	}
+
+	@Test
+	public void should_not_cache_response_loaded_during_invalidation() throws IOException {
+		ProjectMetadataCache cache = ProjectMetadataCache.builder().build();
+		cache.get("1", () -> {
+			cache.invalidate("1");
+			return new GetProjectMetadataResponse(new ProjectMetadata());
+		});
+		assertThat(cache.size()).isZero();
+	}
+
+	private GetProjectMetadataResponse getMetadata(String projectId) throws IOException {
+		return RefineCommands.getProjectMetadataCommand().project(projectId).build().execute(client);
+	}
+
+	private String createProject() throws IOException {
+		return RefineCommands.createProject().name("cache")
+			.rows(() -> List.<String[]> of(new String[] { "a", "b" }).iterator())
+			.build().execute(client).getProjectId();
+	}
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gmbh.dtap.refine.client;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit Tests for {@link RefineBulk}.
+ */
+public class RefineBulkTest {
+
+	@Rule public ExpectedException thrown = ExpectedException.none();
+
+	private static List<Integer> items(int count) {
+		return IntStream.range(0, count).boxed().collect(Collectors.toList());
+	}
+
+	@Test
+	public void should_return_results_in_order() throws InterruptedException {
+		BulkResult<Integer, String> result = RefineBulk.builder().maxConcurrency(8).build()
+			.forEach(items(100), item -> "item-" + item);
+
+		assertThat(result.isSuccessful()).isTrue();
+		assertThat(result.getSuccessCount()).isEqualTo(100);
+		assertThat(result.getResults()).hasSize(100);
+		assertThat(result.getResults().get(42)).isEqualTo("item-42");
+	}
+
+	@Test
+	public void should_aggregate_failures() throws InterruptedException {
+		BulkResult<Integer, Integer> result = RefineBulk.builder().build()
+			.forEach(items(10), item -> {
+				if (item % 3 == 0) {
+					throw new IOException("failed " + item);
+				}
+				return item;
+			});
+
+		assertThat(result.isSuccessful()).isFalse();
+		assertThat(result.getFailureCount()).isEqualTo(4);
+		assertThat(result.getSuccessCount()).isEqualTo(6);
+		assertThat(result.getResults().get(3)).isNull();
+		BulkResult.Failure<Integer> failure = result.getFailures().get(1);
+		assertThat(failure.getIndex()).isEqualTo(3);
+		assertThat(failure.getItem()).isEqualTo(3);
+		assertThat(failure.getCause()).isInstanceOf(IOException.class).hasMessage("failed 3");
+	}
+
+	@Test
+	public void should_limit_concurrency_per_node() throws InterruptedException {
+		Map<Integer, AtomicInteger> running = new ConcurrentHashMap<>();
+		Map<Integer, AtomicInteger> maxRunning = new ConcurrentHashMap<>();
+
+		BulkResult<Integer, Integer> result = RefineBulk.builder().maxConcurrency(16).maxConcurrencyPerNode(2).build()
+			.forEach(items(40), item -> item % 3, item -> {
+				int node = item % 3;
+				int current = running.computeIfAbsent(node, key -> new AtomicInteger()).incrementAndGet();
+				maxRunning.computeIfAbsent(node, key -> new AtomicInteger()).accumulateAndGet(current, Math::max);
+				Thread.sleep(5);
+				running.get(node).decrementAndGet();
+				return item;
+			});
+
+		assertThat(result.isSuccessful()).isTrue();
+		assertThat(maxRunning).hasSize(3);
+		maxRunning.values().forEach(max -> assertThat(max.get()).isBetween(1, 2));
+	}
+
+	@Test
+	public void should_not_hold_back_other_nodes() throws InterruptedException {
+		List<Integer> completed = new CopyOnWriteArrayList<>();
+
+		RefineBulk.builder().maxConcurrency(2).maxConcurrencyPerNode(1).build()
+			.forEach(items(11), item -> item < 10 ? "busy" : "idle", item -> {
+				if (item < 10) {
+					Thread.sleep(10);
+				}
+				completed.add(item);
+				return item;
+			});
+
+		assertThat(completed).hasSize(11);
+		assertThat(completed.get(0)).isEqualTo(10);
+	}
+
+	@Test
+	public void should_limit_total_concurrency() throws InterruptedException {
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger maxRunning = new AtomicInteger();
+
+		RefineBulk.builder().maxConcurrency(4).build()
+			.forEach(items(40), item -> {
+				maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+				Thread.sleep(5);
+				return running.decrementAndGet();
+			});
+
+		assertThat(maxRunning.get()).isBetween(1, 4);
+	}
+
+	@Test
+	public void should_throw_exception_when_concurrency_is_not_positive() {
+		thrown.expect(IllegalArgumentException.class);
+		RefineBulk.builder().maxConcurrencyPerNode(0).build();
+	}
+}
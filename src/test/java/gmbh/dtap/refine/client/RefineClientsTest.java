@@ -0,0 +1,103 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gmbh.dtap.refine.client;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.net.MalformedURLException;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Unit Tests for {@link RefineClients}.
+ */
+public class RefineClientsTest {
+
+	@Rule public ExpectedException thrown = ExpectedException.none();
+
+	@Test
+	public void should_create_client_with_pool() throws Exception {
+		try (RefineClient client = RefineClients.create("http://localhost:3333")) {
+			assertThat(client.getTransport()).isInstanceOf(ApacheTransport.class);
+			ConnectionPoolStats stats = client.getConnectionPoolStats();
+			assertThat(stats).isNotNull();
+			assertThat(stats.getMax()).isEqualTo(20);
+			assertThat(stats.getLeased()).isZero();
+			assertThat(stats.getPending()).isZero();
+			assertThat(stats.getAvailable()).isZero();
+		}
+	}
+
+	@Test
+	public void should_build_client_with_custom_pool() throws Exception {
+		try (RefineClient client = RefineClients.builder()
+			.url("http://localhost:3333")
+			.maxConnectionsTotal(64)
+			.maxConnectionsPerRoute(40)
+			.keepAlive(Duration.ofSeconds(10))
+			.maxIdleTime(Duration.ofSeconds(20))
+			.validateAfterInactivity(Duration.ofSeconds(1))
+			.connectTimeout(Duration.ofSeconds(1))
+			.connectionRequestTimeout(Duration.ofSeconds(1))
+			.socketTimeout(Duration.ofSeconds(30))
+			.build()) {
+			assertThat(client.getConnectionPoolStats().getMax()).isEqualTo(64);
+			assertThat(client.createUrl("/command/core/get-version").toString())
+				.isEqualTo("http://localhost:3333/command/core/get-version");
+		}
+	}
+
+	@Test
+	public void should_build_client_with_jdk_transport() throws Exception {
+		try (RefineClient client = RefineClients.builder()
+			.url("http://localhost:3333")
+			.transport(TransportType.JDK_HTTP_1_1)
+			.build()) {
+			assertThat(client.getTransport()).isInstanceOf(JdkTransport.class);
+			assertThat(client.getConnectionPoolStats()).isNull();
+		}
+	}
+
+	@Test
+	public void should_build_client_with_custom_transport() throws Exception {
+		RefineTransport transport = mock(RefineTransport.class);
+		try (RefineClient client = RefineClients.builder()
+			.url("http://localhost:3333")
+			.transport(transport)
+			.build()) {
+			assertThat(client.getTransport()).isSameAs(transport);
+		}
+		verify(transport).close();
+	}
+
+	@Test
+	public void should_throw_exception_when_url_is_malformed() throws Exception {
+		thrown.expect(MalformedURLException.class);
+		RefineClients.builder().url("localhost:3333").build();
+	}
+
+	@Test
+	public void should_throw_exception_when_pool_size_is_not_positive() throws Exception {
+		thrown.expect(IllegalArgumentException.class);
+		RefineClients.builder().url("http://localhost:3333").maxConnectionsTotal(0).build();
+	}
+}
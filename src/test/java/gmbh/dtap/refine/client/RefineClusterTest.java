@@ -0,0 +1,162 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package gmbh.dtap.refine.client;
+
+import gmbh.dtap.refine.client.command.CreateProjectCommand;
+import gmbh.dtap.refine.client.command.RefineCommands;
+import gmbh.dtap.refine.client.testsupport.StubRefineServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link RefineCluster} against two {@link StubRefineServer} nodes.
+ */
+public class RefineClusterTest {
+
+	@Rule
+	public ExpectedException thrown = ExpectedException.none();
+
+	private StubRefineServer server1;
+	private StubRefineServer server2;
+	private RefineClient client1;
+	private RefineClient client2;
+	private RefineCluster cluster;
+
+	@Before
+	public void setUp() throws IOException {
+		server1 = StubRefineServer.builder().start();
+		server2 = StubRefineServer.builder().start();
+		client1 = RefineClients.create(server1.getUrl());
+		client2 = RefineClients.create(server2.getUrl());
+		cluster = RefineCluster.builder().node(client1).node(client2).healthCheckInterval(Duration.ZERO).build();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		cluster.close();
+		server1.close();
+		server2.close();
+	}
+
+	@Test
+	public void should_balance_projects_and_route_by_project() throws IOException {
+		String[] projectIds = new String[4];
+		for (int i = 0; i < projectIds.length; i++) {
+			projectIds[i] = cluster.createProject(createProject()).getProjectId();
+		}
+
+		assertThat(server1.getRequestCount("create-project-from-upload")).isEqualTo(2);
+		assertThat(server2.getRequestCount("create-project-from-upload")).isEqualTo(2);
+		assertThat(cluster.getProjectCount()).isEqualTo(4);
+		for (String projectId : projectIds) {
+			RefineClient client = cluster.client(projectId);
+			StubRefineServer server = client == client1 ? server1 : server2;
+			assertThat(server.hasProject(projectId)).isTrue();
+			RefineCommands.getProjectMetadataCommand().project(projectId).build().execute(client);
+		}
+	}
+
+	@Test
+	public void should_locate_and_unpin_project() throws IOException {
+		String projectId = createProject().execute(client2).getProjectId();
+		assertThat(cluster.getProjectCount()).isZero();
+
+		assertThat(cluster.client(projectId)).isSameAs(client2);
+		assertThat(cluster.getProjectCount()).isEqualTo(1);
+
+		RefineCommands.deleteProject().project(projectId).build().execute(client2);
+		assertThat(cluster.getProjectCount()).isZero();
+	}
+
+	@Test
+	public void should_locate_project_without_retrying_misses() throws Exception {
+		try (RefineClient retrying1 = RefineClients.builder().url(server1.getUrl()).retryPolicy(RetryPolicy.builder().build()).build();
+			 RefineClient retrying2 = RefineClients.builder().url(server2.getUrl()).retryPolicy(RetryPolicy.builder().build()).build()) {
+			RefineCluster retryingCluster = RefineCluster.builder().node(retrying1).node(retrying2).build();
+			String projectId = createProject().execute(retrying2).getProjectId();
+
+			assertThat(retryingCluster.client(projectId)).isSameAs(retrying2);
+			assertThat(server1.getRequestCount("get-project-metadata")).isEqualTo(1);
+			assertThat(retrying1.getMetrics().snapshot("get-project-metadata").getRetryCount()).isZero();
+		}
+	}
+
+	@Test
+	public void should_fail_to_locate_unknown_project() throws IOException {
+		thrown.expect(RefineException.class);
+		thrown.expectMessage("is not on any healthy node");
+		cluster.client("1234567890");
+	}
+
+	@Test
+	public void should_probe_node_once_past_concurrency_limiter() throws Exception {
+		ConcurrencyLimiter limiter = ConcurrencyLimiter.builder().initialLimit(4).build();
+		try (StubRefineServer failing = StubRefineServer.builder().errorRate(1.0).start();
+			 RefineClient retrying = RefineClients.builder().url(failing.getUrl())
+				 .retryPolicy(RetryPolicy.builder().build()).concurrencyLimiter(limiter).build()) {
+			RefineCluster failingCluster = RefineCluster.builder().node(retrying).node(client1).build();
+
+			assertThat(failingCluster.getHealthyClients()).containsExactly(client1);
+			assertThat(failing.getRequestCount("get-version")).isEqualTo(1);
+			assertThat(limiter.getLimit()).isEqualTo(4);
+			assertThat(limiter.getInFlight()).isZero();
+		}
+	}
+
+	@Test
+	public void should_eject_unhealthy_node() throws IOException {
+		String projectId = cluster.createProject(createProject()).getProjectId();
+		StubRefineServer failed = cluster.client(projectId) == client1 ? server1 : server2;
+		failed.close();
+
+		List<RefineClient> healthy = cluster.getHealthyClients();
+		assertThat(healthy).hasSize(1);
+		for (int i = 0; i < 3; i++) {
+			assertThat(cluster.clientForNewProject()).isSameAs(healthy.get(0));
+		}
+
+		thrown.expect(RefineException.class);
+		thrown.expectMessage("is unhealthy");
+		cluster.client(projectId);
+	}
+
+	@Test
+	public void should_fail_without_healthy_node() throws IOException {
+		server1.close();
+		server2.close();
+
+		thrown.expect(RefineException.class);
+		thrown.expectMessage("No healthy node");
+		cluster.createProject(createProject());
+	}
+
+	private static CreateProjectCommand createProject() {
+		return RefineCommands.createProject().name("cluster")
+			.rows(() -> List.<String[]> of(new String[] { "a", "b" }).iterator())
+			.build();
+	}
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gmbh.dtap.refine.client;
+
+import gmbh.dtap.refine.client.command.RefineCommands;
+import gmbh.dtap.refine.client.testsupport.StubRefineServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link RefineEventListener} against a {@link StubRefineServer}.
+ */
+public class RefineEventListenerTest {
+
+	private StubRefineServer server;
+	private RefineClient client;
+	private RecordingListener listener;
+
+	@Before
+	public void setUp() throws IOException {
+		server = StubRefineServer.builder().start();
+		listener = new RecordingListener();
+		client = RefineClients.builder().url(server.getUrl()).eventListener(listener).build();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		client.close();
+		server.close();
+	}
+
+	@Test
+	public void should_report_phases_of_blocking_request() throws IOException {
+		String projectId = RefineCommands.createProject().name("events")
+			.rows(() -> List.<String[]> of(new String[] { "a", "b" }).iterator())
+			.build().execute(client).getProjectId();
+		listener.clear();
+
+		RefineCommands.deleteProject().project(projectId).build().execute(client);
+
+		assertThat(listener.completed).hasSize(1);
+		RefineEvent event = listener.completed.get(0);
+		assertThat(event.getCommand()).isEqualTo("delete-project");
+		assertThat(event.getProjectId()).isEqualTo(projectId);
+		assertThat(event.isAsync()).isFalse();
+		assertThat(event.isCompleted()).isTrue();
+		assertThat(event.getStatusCode()).isEqualTo(200);
+		assertThat(event.getRequestBytes()).isGreaterThan(0);
+		assertThat(event.getResponseBytes()).isGreaterThan(0);
+		assertThat(event.getDurationNanos()).isGreaterThan(0);
+		assertThat(listener.phases).containsSubsequence(
+			"LEASE", "REQUEST_WRITE", "TIME_TO_FIRST_BYTE", "BODY_READ", "PARSE");
+		for (RefinePhase phase : new RefinePhase[] { RefinePhase.LEASE, RefinePhase.REQUEST_WRITE,
+			RefinePhase.TIME_TO_FIRST_BYTE, RefinePhase.BODY_READ, RefinePhase.PARSE }) {
+			assertThat(event.getPhaseNanos(phase)).isGreaterThanOrEqualTo(0);
+		}
+		assertThat(listener.failures).containsOnly((Throwable) null);
+	}
+
+	@Test
+	public void should_report_connect_of_new_connection() throws IOException {
+		RefineCommands.getVersion().build().execute(client);
+
+		assertThat(listener.phases).contains("CONNECT");
+		assertThat(listener.completed.get(0).getProjectId()).isNull();
+	}
+
+	@Test
+	public void should_report_project_from_query() throws IOException {
+		try {
+			RefineCommands.getProjectMetadataCommand().project("1234").build().execute(client);
+		} catch (IOException e) {
+			// the project does not exist
+		}
+
+		RefineEvent event = listener.completed.get(0);
+		assertThat(event.getProjectId()).isEqualTo("1234");
+		assertThat(event.getStatusCode()).isEqualTo(500);
+		assertThat(listener.failures.get(0)).isInstanceOf(IOException.class);
+	}
+
+	@Test
+	public void should_report_async_request() {
+		RefineCommands.getVersion().build().executeAsync(client).join();
+
+		RefineEvent event = listener.completed.get(0);
+		assertThat(event.isAsync()).isTrue();
+		assertThat(event.getPhaseNanos(RefinePhase.LEASE)).isEqualTo(-1);
+		assertThat(event.getPhaseNanos(RefinePhase.TIME_TO_FIRST_BYTE)).isGreaterThan(0);
+		assertThat(event.getPhaseNanos(RefinePhase.PARSE)).isGreaterThanOrEqualTo(0);
+	}
+
+	@Test
+	public void should_ignore_failing_listener_and_remove_listener() throws IOException {
+		client.addEventListener(new RefineEventListener() {
+
+			@Override
+			public void requestStarted(RefineEvent event) {
+				throw new IllegalStateException("broken listener");
+			}
+		});
+		RefineCommands.getVersion().build().execute(client);
+		assertThat(listener.started).isEqualTo(1);
+
+		client.removeEventListener(listener);
+		RefineCommands.getVersion().build().execute(client);
+		assertThat(listener.started).isEqualTo(1);
+	}
+
+	private static class RecordingListener implements RefineEventListener {
+
+		private int started;
+		private final List<String> phases = new CopyOnWriteArrayList<>();
+		private final List<RefineEvent> completed = new CopyOnWriteArrayList<>();
+		private final List<Throwable> failures = new ArrayList<>();
+
+		@Override
+		public void requestStarted(RefineEvent event) {
+			started++;
+		}
+
+		@Override
+		public void phaseCompleted(RefineEvent event, RefinePhase phase, long durationNanos) {
+			phases.add(phase.name());
+		}
+
+		@Override
+		public synchronized void requestCompleted(RefineEvent event, Throwable failure) {
+			completed.add(event);
+			failures.add(failure);
+		}
+
+		void clear() {
+			started = 0;
+			phases.clear();
+			completed.clear();
+			failures.clear();
+		}
+	}
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gmbh.dtap.refine.client;
+
+import gmbh.dtap.refine.client.command.RefineCommands;
+import gmbh.dtap.refine.client.testsupport.StubRefineServer;
+import org.apache.http.client.methods.RequestBuilder;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link RefineMetrics} against a {@link StubRefineServer}.
+ */
+public class RefineMetricsTest {
+
+	private static final String ENGINE = "{\"facets\":[],\"mode\":\"row-based\"}";
+
+	private StubRefineServer server;
+	private RefineClient client;
+
+	@After
+	public void tearDown() throws Exception {
+		if (client != null) {
+			client.close();
+		}
+		if (server != null) {
+			server.close();
+		}
+	}
+
+	private void start(StubRefineServer.Builder builder) throws IOException {
+		server = builder.start();
+		client = RefineClients.create(server.getUrl());
+	}
+
+	@Test
+	public void should_record_requests_per_command() throws IOException {
+		start(StubRefineServer.builder().exportRows(500).latency(Duration.ofMillis(5)));
+
+		for (int i = 0; i < 3; i++) {
+			RefineCommands.getVersion().build().execute(client);
+		}
+		RefineCommands.getVersion().build().executeAsync(client).join();
+		String projectId = RefineCommands.createProject().name("metrics")
+			.rows(() -> List.<String[]> of(new String[] { "a", "b" }).iterator())
+			.build().execute(client).getProjectId();
+		try (Stream<Row> rows = RefineCommands.exportRows().project(projectId).engine(ENGINE).format("csv").build().stream(client)) {
+			assertThat(rows.count()).isEqualTo(500);
+		}
+
+		assertThat(client.getMetrics().snapshot().keySet())
+			.containsExactly("create-project-from-upload", "export-rows", "get-csrf-token", "get-version");
+
+		CommandMetricsSnapshot version = client.getMetrics().snapshot("get-version");
+		assertThat(version.getRequestCount()).isEqualTo(4);
+		assertThat(version.getLatencyCount()).isEqualTo(4);
+		assertThat(version.getErrorCount()).isZero();
+		assertThat(version.getInFlight()).isZero();
+		assertThat(version.getResponseBytes()).isGreaterThan(0);
+		assertThat(version.getParseCount()).isEqualTo(4);
+		assertThat(version.getLatencyP50()).isGreaterThanOrEqualTo(Duration.ofMillis(4));
+		assertThat(version.getLatencyP99()).isLessThanOrEqualTo(version.getLatencyMax());
+		assertThat(version.getLatencyTotal()).isGreaterThanOrEqualTo(version.getLatencyMax());
+
+		assertThat(client.getMetrics().get("get-version", CommandStatistic.REQUEST_COUNT)).isEqualTo(4);
+		assertThat(client.getMetrics().get("get-version", CommandStatistic.LATENCY_MAX_NANOS))
+			.isEqualTo(version.getLatencyMax().toNanos());
+		assertThat(client.getMetrics().get("unknown", CommandStatistic.REQUEST_COUNT)).isZero();
+
+		CommandMetricsSnapshot upload = client.getMetrics().snapshot("create-project-from-upload");
+		assertThat(upload.getRequestBytes()).isGreaterThan(0);
+
+		CommandMetricsSnapshot export = client.getMetrics().snapshot("export-rows");
+		assertThat(export.getInFlight()).isZero();
+		assertThat(export.getResponseBytes()).isGreaterThan(500 * 30);
+	}
+
+	@Test
+	public void should_record_errors() throws IOException {
+		start(StubRefineServer.builder().errorRate(1.0));
+
+		try {
+			RefineCommands.getVersion().build().execute(client);
+		} catch (IOException e) {
+			// expected
+		}
+
+		CommandMetricsSnapshot version = client.getMetrics().snapshot("get-version");
+		assertThat(version.getRequestCount()).isEqualTo(1);
+		assertThat(version.getErrorCount()).isEqualTo(1);
+		assertThat(version.getInFlight()).isZero();
+	}
+
+	@Test
+	public void should_notify_listener_of_new_commands() throws IOException {
+		start(StubRefineServer.builder());
+		RefineCommands.getVersion().build().execute(client);
+		List<String> commands = new ArrayList<>();
+
+		client.getMetrics().forEachCommand(commands::add);
+		RefineCommands.getVersion().build().execute(client);
+		client.getCsrfTokenProvider().getToken();
+
+		assertThat(commands).containsExactly("get-version", "get-csrf-token");
+	}
+
+	@Test
+	public void should_name_command_by_last_path_segment() {
+		assertThat(Stream.of("http://localhost:3333/command/core/apply-operations?project=1",
+			"http://localhost:3333/command/core/get-version/", "http://localhost:3333")
+			.map(uri -> RefineMetrics.commandOf(RequestBuilder.get(uri).build()))
+			.collect(Collectors.toList()))
+			.containsExactly("apply-operations", "get-version", "");
+	}
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package gmbh.dtap.refine.client;
+
+import gmbh.dtap.refine.client.command.RefineCommands;
+import gmbh.dtap.refine.client.testsupport.StubRefineServer;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.entity.StringEntity;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CompletionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+/**
+ * Tests for {@link RetryPolicy}.
+ */
+public class RetryPolicyTest {
+
+	private static final String URL = "http://localhost:3333/command/core/";
+
+	@Rule
+	public ExpectedException thrown = ExpectedException.none();
+
+	@Test
+	public void should_classify_commands_by_idempotency() {
+		RetryPolicy policy = RetryPolicy.builder().build();
+		assertThat(policy.isRetryable(new HttpGet(URL + "get-version"))).isTrue();
+		assertThat(policy.isRetryable(new HttpGet(URL + "get-project-metadata?project=1"))).isTrue();
+		assertThat(policy.isRetryable(new HttpPost(URL + "apply-operations"))).isFalse();
+		assertThat(policy.isRetryable(new HttpPost(URL + "delete-project"))).isFalse();
+		assertThat(RetryPolicy.none().isRetryable(new HttpGet(URL + "get-version"))).isFalse();
+	}
+
+	@Test
+	public void should_retry_create_project_only_with_repeatable_entity() throws IOException {
+		RetryPolicy policy = RetryPolicy.builder().build();
+		HttpPost repeatable = new HttpPost(URL + "create-project-from-upload");
+		repeatable.setEntity(new StringEntity("a,b"));
+		HttpPost streaming = new HttpPost(URL + "create-project-from-upload");
+		streaming.setEntity(new InputStreamEntity(new ByteArrayInputStream(new byte[0])));
+		assertThat(policy.isRetryable(repeatable)).isTrue();
+		assertThat(policy.isRetryable(streaming)).isFalse();
+	}
+
+	@Test
+	public void should_reject_retry_of_apply_operations() {
+		thrown.expect(IllegalArgumentException.class);
+		thrown.expectMessage("apply-operations");
+		RetryPolicy.builder().retryable("apply-operations").build();
+	}
+
+	@Test
+	public void should_grow_backoff_exponentially_within_bounds() {
+		RetryPolicy policy = RetryPolicy.builder()
+			.initialBackoff(Duration.ofMillis(100)).maxBackoff(Duration.ofMillis(300)).multiplier(2).jitter(0.5)
+			.build();
+		for (int i = 0; i < 100; i++) {
+			assertThat(policy.backoffNanos(2)).isBetween(50_000_000L, 100_000_000L);
+			assertThat(policy.backoffNanos(3)).isBetween(100_000_000L, 200_000_000L);
+			assertThat(policy.backoffNanos(10)).isBetween(150_000_000L, 300_000_000L);
+		}
+	}
+
+	@Test
+	public void should_stop_retries_when_budget_is_used_up() {
+		RetryPolicy.Budget budget = RetryPolicy.builder().budgetTokens(4).budgetTokenRatio(0.5).build().newBudget();
+		assertThat(budget.onFailure()).isTrue();
+		assertThat(budget.onFailure()).isFalse();
+		budget.onSuccess();
+		budget.onSuccess();
+		budget.onSuccess();
+		assertThat(budget.onFailure()).isTrue();
+		assertThat(budget.getTokens()).isEqualTo(2.5);
+	}
+
+	@Test
+	public void should_retry_server_errors_of_idempotent_command() throws Exception {
+		try (StubRefineServer server = StubRefineServer.builder().errorRate(0.5).start();
+			 RefineClient client = client(server, 10, 100)) {
+			for (int i = 0; i < 20; i++) {
+				assertThat(RefineCommands.getVersion().build().execute(client).getVersion()).isEqualTo("3.4");
+			}
+			CommandMetricsSnapshot snapshot = client.getMetrics().snapshot("get-version");
+			assertThat(snapshot.getRetryCount()).isGreaterThan(0);
+			assertThat(server.getRequestCount("get-version")).isEqualTo(20 + snapshot.getRetryCount());
+		}
+	}
+
+	@Test
+	public void should_give_up_after_max_attempts() throws Exception {
+		try (StubRefineServer server = StubRefineServer.builder().errorRate(1).start();
+			 RefineClient client = client(server, 3, 100)) {
+			try {
+				RefineCommands.getVersion().build().execute(client);
+				fail("expected RefineException");
+			} catch (RefineException e) {
+				assertThat(server.getRequestCount("get-version")).isEqualTo(3);
+			}
+			try {
+				RefineCommands.getVersion().build().executeAsync(client).join();
+				fail("expected CompletionException");
+			} catch (CompletionException e) {
+				assertThat(e.getCause()).isInstanceOf(RefineException.class);
+				assertThat(server.getRequestCount("get-version")).isEqualTo(6);
+			}
+		}
+	}
+
+	@Test
+	public void should_not_retry_beyond_budget() throws Exception {
+		try (StubRefineServer server = StubRefineServer.builder().errorRate(1).start();
+			 RefineClient client = client(server, 3, 4)) {
+			for (int i = 0; i < 3; i++) {
+				try {
+					RefineCommands.getVersion().build().execute(client);
+					fail("expected RefineException");
+				} catch (RefineException e) {
+					// expected
+				}
+			}
+			assertThat(server.getRequestCount("get-version")).isEqualTo(4);
+			assertThat(client.getMetrics().snapshot("get-version").getRetryCount()).isEqualTo(1);
+		}
+	}
+
+	private static RefineClient client(StubRefineServer server, int maxAttempts, int budgetTokens) throws IOException {
+		RetryPolicy retryPolicy = RetryPolicy.builder()
+			.maxAttempts(maxAttempts).budgetTokens(budgetTokens)
+			.initialBackoff(Duration.ofMillis(1)).maxBackoff(Duration.ofMillis(5))
+			.build();
+		return RefineClients.builder().url(server.getUrl()).retryPolicy(retryPolicy).build();
+	}
+}
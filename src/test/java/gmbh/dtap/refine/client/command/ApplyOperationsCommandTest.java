@@ -34,6 +34,7 @@ import java.net.URL;
 import java.nio.charset.Charset;
 
 import static gmbh.dtap.refine.client.JsonOperation.from;
+import static java.util.concurrent.CompletableFuture.completedFuture;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
@@ -71,6 +72,16 @@ public class ApplyOperationsCommandTest {
 		verify(refineClient).execute(any(), any());
 	}
 
+	@Test
+	public void should_execute_async() {
+		when(refineClient.executeAsync(any(), any())).thenReturn(completedFuture(ApplyOperationsResponse.ok()));
+
+		ApplyOperationsResponse response = command.executeAsync(refineClient).join();
+		verify(refineClient).createUrl(anyString());
+		verify(refineClient).executeAsync(any(), any());
+		assertThat(response.getCode()).isEqualTo(ResponseCode.OK);
+	}
+
 	@Test
 	public void should_parse_apply_operation_success_response() throws IOException, URISyntaxException {
 		String responseBody = IOUtils.toString(getClass().getResource("/responseBody/code-ok.json").toURI(), UTF_8);
@@ -16,22 +16,43 @@
 
 package gmbh.dtap.refine.client.command;
 
+import gmbh.dtap.refine.client.Compression;
+import gmbh.dtap.refine.client.CsrfTokenProvider;
 import gmbh.dtap.refine.client.RefineClient;
 import gmbh.dtap.refine.client.UploadFormat;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.message.BasicHeader;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.charset.Charset;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPInputStream;
 
+import static gmbh.dtap.refine.client.testsupport.HttpMock.mockHttpResponse;
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.*;
@@ -70,4 +91,115 @@ public class CreateProjectCommandTest {
 		verify(refineClient).createUrl(anyString());
 		verify(refineClient).execute(any(), any());
 	}
+
+	@Test
+	public void should_upload_known_length_from_path() throws IOException {
+		RefineCommands.createProject()
+			.token("test-token")
+			.name("Path")
+			.path(Paths.get("src/test/resources/addresses.csv"))
+			.build()
+			.execute(refineClient);
+
+		HttpEntity entity = captureEntity();
+		assertThat(entity.getContentLength()).isPositive();
+		assertThat(entity.isRepeatable()).isTrue();
+	}
+
+	@Test
+	public void should_upload_stream_chunked() throws IOException {
+		RefineCommands.createProject()
+			.token("test-token")
+			.name("Stream")
+			.inputStream(new ByteArrayInputStream("a,b\n1,2\n".getBytes(UTF_8)), "data.csv")
+			.build()
+			.execute(refineClient);
+
+		HttpEntity entity = captureEntity();
+		assertThat(entity.getContentLength()).isEqualTo(-1);
+		assertThat(entity.isStreaming()).isTrue();
+		assertThat(entity.isRepeatable()).isFalse();
+		assertThat(content(entity)).contains("filename=\"data.csv\"").contains("a,b\n1,2\n");
+	}
+
+	@Test
+	public void should_upload_generated_rows() throws IOException {
+		RefineCommands.createProject()
+			.token("test-token")
+			.name("Rows")
+			.rows(() -> Arrays.asList(new String[]{"name", "note"}, new String[]{"a", "x,\"y\""}).iterator())
+			.build()
+			.execute(refineClient);
+
+		HttpEntity entity = captureEntity();
+		assertThat(entity.getContentLength()).isEqualTo(-1);
+		assertThat(entity.isRepeatable()).isTrue();
+		assertThat(content(entity))
+			.contains(UploadFormat.SEPARATOR_BASED.getValue())
+			.contains("Content-Type: text/csv")
+			.contains("name,note\na,\"x,\"\"y\"\"\"\n");
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void should_upload_gzip_compressed() throws IOException {
+		RefineCommands.createProject()
+			.token("test-token")
+			.name("Compressed")
+			.rows(() -> IntStream.range(0, 1000).mapToObj(i -> new String[]{"row", String.valueOf(i)}).iterator())
+			.compress(Compression.GZIP)
+			.build()
+			.execute(refineClient);
+
+		ArgumentCaptor<HttpUriRequest> request = ArgumentCaptor.forClass(HttpUriRequest.class);
+		ArgumentCaptor<ResponseHandler> handler = ArgumentCaptor.forClass(ResponseHandler.class);
+		verify(refineClient).execute(request.capture(), handler.capture());
+		HttpEntity entity = ((HttpEntityEnclosingRequest) request.getValue()).getEntity();
+		assertThat(entity.getContentLength()).isEqualTo(-1);
+		assertThat(entity.isRepeatable()).isTrue();
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		entity.writeTo(out);
+		byte[] multipart = out.toByteArray();
+		String headers = new String(multipart, ISO_8859_1);
+		assertThat(headers).contains("filename=\"rows.csv.gz\"").contains("Content-Type: application/x-gzip");
+		int start = headers.indexOf("\r\n\r\n", headers.indexOf("rows.csv.gz")) + 4;
+		try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(multipart, start, multipart.length - start))) {
+			assertThat(IOUtils.toString(in, UTF_8)).startsWith("row,0\nrow,1\n").endsWith("row,999\n");
+		}
+
+		HttpResponse httpResponse = mockHttpResponse(302, new BasicHeader("Location", "http://localhost:3333/project?project=1234"));
+		CreateProjectResponse response = (CreateProjectResponse) handler.getValue().handleResponse(httpResponse);
+		assertThat(response.getProjectId()).isEqualTo("1234");
+		assertThat(response.getUncompressedBytes()).isGreaterThan(response.getUploadedBytes());
+		assertThat(response.getCompressionRatio()).isGreaterThan(1.0);
+		assertThat(response.getUploadDuration()).isGreaterThan(Duration.ZERO);
+	}
+
+	@Test
+	public void should_upload_stream_once_with_fresh_token() throws IOException {
+		CsrfTokenProvider provider = mock(CsrfTokenProvider.class);
+		when(refineClient.getCsrfTokenProvider()).thenReturn(provider);
+
+		RefineCommands.createProject()
+			.name("Stream")
+			.inputStream(new ByteArrayInputStream("a,b\n".getBytes(UTF_8)), "data.csv")
+			.build()
+			.execute(refineClient);
+
+		verify(provider).executeOnce(any());
+		verify(provider, never()).execute(any());
+	}
+
+	private HttpEntity captureEntity() throws IOException {
+		ArgumentCaptor<HttpUriRequest> request = ArgumentCaptor.forClass(HttpUriRequest.class);
+		verify(refineClient).execute(request.capture(), any());
+		return ((HttpEntityEnclosingRequest) request.getValue()).getEntity();
+	}
+
+	private static String content(HttpEntity entity) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		entity.writeTo(out);
+		return out.toString("UTF-8");
+	}
 }
@@ -0,0 +1,240 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gmbh.dtap.refine.client.command;
+
+import gmbh.dtap.refine.client.RefineClient;
+import gmbh.dtap.refine.client.RefineException;
+import gmbh.dtap.refine.client.Row;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.HttpResponse;
+import org.apache.http.entity.ContentType;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.channels.Channels;
+import java.nio.channels.IllegalBlockingModeException;
+import java.nio.channels.Pipe;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static gmbh.dtap.refine.client.testsupport.HttpMock.mockHttpResponse;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit Tests for {@link ExportRowsCommand}.
+ */
+public class ExportRowsCommandTest {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	private static final ContentType TEXT_CSV = ContentType.create("text/csv", UTF_8);
+
+	@Rule public ExpectedException thrown = ExpectedException.none();
+	@Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private RefineClient refineClient;
+	private String csv;
+
+	@Before
+	public void setUp() throws MalformedURLException, IOException, URISyntaxException {
+		refineClient = mock(RefineClient.class);
+		when(refineClient.createUrl(anyString())).thenReturn(new URL("http://localhost:3333/"));
+		csv = IOUtils.toString(getClass().getResource("/responseBody/export-rows.csv").toURI(), UTF_8);
+	}
+
+	private ExportRowsCommand.Builder builder() {
+		return RefineCommands.exportRows()
+			.token("test-token")
+			.project("1234567890")
+			.engine("{\"facets\":[],\"mode\":\"row-based\"}")
+			.format("csv");
+	}
+
+	@Test
+	public void should_execute() throws IOException {
+		builder().build().execute(refineClient);
+		verify(refineClient).createUrl(anyString());
+		verify(refineClient).execute(any(), any());
+	}
+
+	@Test
+	public void should_write_to_temporary_file() throws IOException {
+		ExportRowsResponse response = builder().build().handleResponse(mockHttpResponse(200, TEXT_CSV, csv));
+		try {
+			assertThat(response.getPath().getFileName().toString()).startsWith("refine-export-").endsWith(".csv");
+			assertThat(response.getFile()).isEqualTo(response.getPath().toFile());
+			assertThat(new String(Files.readAllBytes(response.getPath()), UTF_8)).isEqualTo(csv);
+			assertThat(response.getBytesReceived()).isEqualTo(csv.getBytes(UTF_8).length);
+			assertThat(response.getBytesWritten()).isEqualTo(response.getBytesReceived());
+		} finally {
+			Files.deleteIfExists(response.getPath());
+		}
+	}
+
+	@Test
+	public void should_write_to_path() throws IOException {
+		Path path = temporaryFolder.getRoot().toPath().resolve("export.csv");
+		ExportRowsResponse response = builder().path(path).bufferSize(16).build().handleResponse(mockHttpResponse(200, TEXT_CSV, csv));
+		assertThat(response.getPath()).isEqualTo(path);
+		assertThat(new String(Files.readAllBytes(path), UTF_8)).isEqualTo(csv);
+		assertThat(response.getBytesWritten()).isEqualTo(csv.getBytes(UTF_8).length);
+	}
+
+	@Test
+	public void should_keep_path_when_export_fails() throws IOException {
+		Path path = temporaryFolder.getRoot().toPath().resolve("export.csv");
+		Files.write(path, "previous".getBytes(UTF_8));
+		HttpResponse httpResponse = mockHttpResponse(200, TEXT_CSV, csv);
+		when(httpResponse.getEntity().getContent()).thenReturn(new SequenceInputStream(
+			new ByteArrayInputStream(csv.getBytes(UTF_8)), new InputStream() {
+				@Override
+				public int read() throws IOException {
+					throw new IOException("connection reset");
+				}
+			}));
+
+		try {
+			builder().path(path).build().handleResponse(httpResponse);
+			fail("expected IOException");
+		} catch (IOException e) {
+			assertThat(new String(Files.readAllBytes(path), UTF_8)).isEqualTo("previous");
+			assertThat(temporaryFolder.getRoot().list()).containsExactly("export.csv");
+		}
+	}
+
+	@Test
+	public void should_write_gzip_to_path() throws IOException {
+		Path path = temporaryFolder.getRoot().toPath().resolve("export.csv.gz");
+		ExportRowsResponse response = builder().path(path).gzip(true).build().handleResponse(mockHttpResponse(200, TEXT_CSV, csv));
+		assertThat(response.getBytesWritten()).isEqualTo(Files.size(path));
+		assertThat(response.getBytesWritten()).isLessThan(response.getBytesReceived());
+		try (InputStream in = new GZIPInputStream(Files.newInputStream(path))) {
+			assertThat(IOUtils.toString(in, UTF_8)).isEqualTo(csv);
+		}
+	}
+
+	@Test
+	public void should_write_to_output_stream() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ExportRowsResponse response = builder().outputStream(out).build().handleResponse(mockHttpResponse(200, TEXT_CSV, csv));
+		assertThat(response.getFile()).isNull();
+		assertThat(out.toString("UTF-8")).isEqualTo(csv);
+		assertThat(response.getBytesWritten()).isEqualTo(out.size());
+		assertThat(response.getThroughput()).isPositive();
+	}
+
+	@Test
+	public void should_write_to_channel() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ExportRowsResponse response = builder().channel(Channels.newChannel(out)).bufferSize(7).build()
+			.handleResponse(mockHttpResponse(200, TEXT_CSV, csv));
+		assertThat(out.toString("UTF-8")).isEqualTo(csv);
+		assertThat(response.getBytesWritten()).isEqualTo(out.size());
+	}
+
+	@Test
+	public void should_reject_non_blocking_channel() throws IOException {
+		Pipe pipe = Pipe.open();
+		try {
+			pipe.sink().configureBlocking(false);
+			thrown.expect(IllegalBlockingModeException.class);
+			builder().channel(pipe.sink()).build().handleResponse(mockHttpResponse(200, TEXT_CSV, csv));
+		} finally {
+			pipe.sink().close();
+			pipe.source().close();
+		}
+	}
+
+	@Test
+	public void should_write_gzip_to_channel() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		builder().channel(Channels.newChannel(out)).gzip(true).build().handleResponse(mockHttpResponse(200, TEXT_CSV, csv));
+		try (InputStream in = new GZIPInputStream(new java.io.ByteArrayInputStream(out.toByteArray()))) {
+			assertThat(IOUtils.toString(in, UTF_8)).isEqualTo(csv);
+		}
+	}
+
+	@Test
+	public void should_iterate_rows() throws IOException {
+		HttpResponse httpResponse = mockHttpResponse(200, TEXT_CSV, csv);
+		when(refineClient.open(any())).thenReturn(httpResponse);
+		try (ExportRowsIterator rows = builder().build().iterate(refineClient)) {
+			assertThat(rows.getColumnNames()).containsExactly("ID   ", "Street                ", "Zip    ", "City          ", "Country");
+			Row first = rows.next();
+			assertThat(first.getIndex()).isEqualTo(0);
+			assertThat(first.getCell(0)).isEqualTo("ROW-1");
+			assertThat(first.getCell(4)).isEqualTo("Mona×o");
+			assertThat(rows.next().getCell(3)).isEqualTo("Virginia Beach");
+			assertThat(rows.hasNext()).isFalse();
+		}
+	}
+
+	@Test
+	public void should_stream_rows() throws IOException {
+		HttpResponse httpResponse = mockHttpResponse(200, TEXT_CSV, csv.replace(',', '\t'));
+		when(refineClient.open(any())).thenReturn(httpResponse);
+		try (Stream<Row> rows = builder().format("tsv").build().stream(refineClient)) {
+			assertThat(rows.map(row -> row.getCell(0))).containsExactly("ROW-1", "ROW-2");
+		}
+	}
+
+	@Test
+	public void should_throw_exception_when_iterated_format_is_not_delimited() throws IOException {
+		thrown.expect(IllegalArgumentException.class);
+		builder().format("xls").build().iterate(refineClient);
+	}
+
+	@Test
+	public void should_throw_exception_when_iterated_response_status_is_500() throws IOException {
+		HttpResponse httpResponse = mockHttpResponse(500);
+		when(refineClient.open(any())).thenReturn(httpResponse);
+
+		thrown.expect(RefineException.class);
+		builder().build().iterate(refineClient);
+	}
+
+	@Test
+	public void should_throw_exception_when_response_status_is_500() throws IOException {
+		HttpResponse httpResponse = mockHttpResponse(500);
+
+		thrown.expect(RefineException.class);
+		builder().build().handleResponse(httpResponse);
+	}
+
+	@Test
+	public void should_throw_exception_when_multiple_sinks_are_set() {
+		thrown.expect(IllegalArgumentException.class);
+		builder().outputStream(new ByteArrayOutputStream()).path(temporaryFolder.getRoot().toPath()).build();
+	}
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gmbh.dtap.refine.client.command;
+
+import gmbh.dtap.refine.client.RefineClient;
+import gmbh.dtap.refine.client.ResponseCode;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.NameValuePair;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.utils.URLEncodedUtils;
+import org.apache.http.entity.ContentType;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static gmbh.dtap.refine.client.testsupport.HttpMock.mockHttpResponse;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit Tests for {@link ExpressionPreviewBatchCommand}.
+ */
+public class ExpressionPreviewBatchCommandTest {
+
+	@Rule public ExpectedException thrown = ExpectedException.none();
+
+	private RefineClient refineClient;
+	private AtomicInteger requests;
+	private AtomicInteger maxInFlight;
+	private AtomicInteger inFlight;
+
+	@Before
+	public void setUp() throws MalformedURLException {
+		refineClient = mock(RefineClient.class);
+		when(refineClient.createUrl(anyString())).thenReturn(new URL("http://localhost:3333/"));
+		requests = new AtomicInteger();
+		maxInFlight = new AtomicInteger();
+		inFlight = new AtomicInteger();
+	}
+
+	/**
+	 * Answers each preview with <code>r</code> followed by the row index, earlier requests complete later.
+	 */
+	@SuppressWarnings("unchecked")
+	private void answerPreviews(String error) {
+		when(refineClient.executeAsync(any(), any())).thenAnswer(invocation -> {
+			HttpUriRequest request = (HttpUriRequest) invocation.getArguments()[0];
+			ResponseHandler<ExpressionPreviewResponse> handler = (ResponseHandler<ExpressionPreviewResponse>) invocation.getArguments()[1];
+			List<NameValuePair> form = URLEncodedUtils.parse(((HttpEntityEnclosingRequest) request).getEntity());
+			String rowIndices = form.stream().filter(pair -> pair.getName().equals("rowIndices")).findFirst().get().getValue();
+			StringJoiner results = new StringJoiner(",", "[", "]");
+			for (String rowIndex : rowIndices.substring(1, rowIndices.length() - 1).split(",")) {
+				results.add("\"r" + rowIndex + "\"");
+			}
+			String json = error != null ? "{\"code\":\"error\",\"message\":\"" + error + "\"}" : "{\"code\":\"ok\",\"results\":" + results + "}";
+			maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+			Executor delayed = CompletableFuture.delayedExecutor(Math.max(1, 20 - 5 * requests.getAndIncrement()), TimeUnit.MILLISECONDS);
+			return CompletableFuture.supplyAsync(() -> {
+				inFlight.decrementAndGet();
+				try {
+					return handler.handleResponse(mockHttpResponse(200, ContentType.APPLICATION_JSON, json));
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}, delayed);
+		});
+	}
+
+	@Test
+	public void should_stream_range_in_row_order() {
+		answerPreviews(null);
+		ExpressionPreviewBatchCommand command = RefineCommands.expressionPreviewBatch()
+			.token("test-token")
+			.project("1234567890")
+			.rows(10, 35)
+			.grel("value")
+			.chunkSize(4)
+			.parallelism(3)
+			.build();
+
+		try (Stream<String> previews = command.stream(refineClient)) {
+			assertThat(previews.collect(Collectors.toList()))
+				.isEqualTo(LongStream.range(10, 35).mapToObj(i -> "r" + i).collect(Collectors.toList()));
+		}
+		assertThat(requests.get()).isEqualTo(7);
+		assertThat(maxInFlight.get()).isLessThanOrEqualTo(3);
+	}
+
+	@Test
+	public void should_stop_sending_chunks_when_stream_is_closed() {
+		answerPreviews(null);
+		ExpressionPreviewBatchCommand command = RefineCommands.expressionPreviewBatch()
+			.token("test-token")
+			.project("1234567890")
+			.rows(0, 100)
+			.grel("value")
+			.chunkSize(4)
+			.parallelism(2)
+			.build();
+
+		try (Stream<String> previews = command.stream(refineClient)) {
+			assertThat(previews.limit(5).collect(Collectors.toList())).containsExactly("r0", "r1", "r2", "r3", "r4");
+		}
+		assertThat(requests.get()).isLessThanOrEqualTo(4);
+	}
+
+	@Test
+	public void should_execute_row_indices() throws IOException {
+		answerPreviews(null);
+		long[] rowIndices = { 7, 3, 99, 42, 5 };
+		ExpressionPreviewBatchCommand command = RefineCommands.expressionPreviewBatch()
+			.token("test-token")
+			.project("1234567890")
+			.rowIndices(rowIndices)
+			.grel("value")
+			.chunkSize(2)
+			.build();
+		rowIndices[2] = 0;
+		ExpressionPreviewBatchResponse response = command.execute(refineClient);
+
+		assertThat(response.getCode()).isEqualTo(ResponseCode.OK);
+		assertThat(response.size()).isEqualTo(5);
+		assertThat(response.getRowIndex(2)).isEqualTo(99);
+		assertThat(response.getExpressionPreview(2)).isEqualTo("r99");
+		assertThat(response.getExpressionPreviews()).containsExactly("r7", "r3", "r99", "r42", "r5");
+	}
+
+	@Test
+	public void should_return_error_response() throws IOException {
+		answerPreviews("Parsing error");
+		ExpressionPreviewBatchResponse response = RefineCommands.expressionPreviewBatch()
+			.token("test-token")
+			.project("1234567890")
+			.rows(0, 10)
+			.grel("value(")
+			.build()
+			.execute(refineClient);
+
+		assertThat(response.getCode()).isEqualTo(ResponseCode.ERROR);
+		assertThat(response.getMessage()).isEqualTo("Parsing error");
+		assertThat(response.size()).isZero();
+	}
+
+	@Test
+	public void should_throw_exception_when_rows_are_missing() {
+		thrown.expect(IllegalArgumentException.class);
+		RefineCommands.expressionPreviewBatch()
+			.project("1234567890")
+			.grel("value")
+			.build();
+	}
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package gmbh.dtap.refine.client.command;
+
+import gmbh.dtap.refine.client.ImportOptionMetadata;
+import gmbh.dtap.refine.client.RefineClient;
+import gmbh.dtap.refine.client.RefineClients;
+import gmbh.dtap.refine.client.RefineException;
+import gmbh.dtap.refine.client.RefineProject;
+import gmbh.dtap.refine.client.testsupport.StubRefineServer;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static gmbh.dtap.refine.client.JsonOperation.from;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit Tests for {@link GetAllProjectMetadataCommand}.
+ */
+public class GetAllProjectMetadataCommandTest {
+
+	@Rule public ExpectedException thrown = ExpectedException.none();
+
+	private RefineClient refineClient;
+
+	@Before
+	public void setUp() throws IOException {
+		refineClient = mock(RefineClient.class);
+		when(refineClient.createUrl(anyString())).thenReturn(new URL("http://localhost:3333/project?project=1234567890"));
+	}
+
+	@Test
+	public void should_parse_all_project_metadata() throws IOException {
+		GetAllProjectMetadataResponse response = RefineCommands.getAllProjectMetadata().build()
+			.handleResponse(response(resource()), refineClient);
+
+		assertThat(response.isDelta()).isFalse();
+		assertThat(response.size()).isEqualTo(2);
+		assertThat(response.getChanged()).hasSize(2);
+		RefineProject project = response.getProject("1234567890");
+		assertThat(project.getId()).isEqualTo("1234567890");
+		assertThat(project.getLocation().getId()).isEqualTo("1234567890");
+		assertThat(project.getUrl()).isEqualTo(new URL("http://localhost:3333/project?project=1234567890"));
+		assertThat(project.getName()).isEqualTo("addresses");
+		assertThat(project.getCreated()).isEqualTo(OffsetDateTime.of(2019, 2, 3, 10, 11, 12, 0, ZoneOffset.UTC));
+		assertThat(project.getModified()).isEqualTo(OffsetDateTime.of(2019, 2, 4, 8, 0, 0, 0, ZoneOffset.UTC));
+		assertThat(project.getCreator()).isEqualTo("dtap");
+		assertThat(project.getDescription()).isEqualTo("Demo addresses");
+		assertThat(project.getRowCount()).isEqualTo(100);
+		assertThat(((RefineProjectMetadata.Custom) project.getCustomMetadata()).getValues()).containsOnlyKeys("owner");
+		List<ImportOptionMetadata> importOptions = project.getImportOptionMetadata();
+		assertThat(importOptions).hasSize(1);
+		assertThat(importOptions.get(0).isStoreBlankRows()).isTrue();
+		assertThat(importOptions.get(0).getHeaderLines()).isEqualTo(1);
+		assertThat(importOptions.get(0).getIgnoreLines()).isEqualTo(-1);
+		assertThat(importOptions.get(0).getSeparator()).isEqualTo(",");
+		assertThat(importOptions.get(0).getFileSource()).isEqualTo("addresses.csv");
+		assertThat(response.getProject("2345678901").getImportOptionMetadata()).isEmpty();
+	}
+
+	@Test
+	public void should_reuse_unchanged_projects_in_delta_mode() throws IOException {
+		GetAllProjectMetadataResponse previous = RefineCommands.getAllProjectMetadata().build()
+			.handleResponse(response(resource()), refineClient);
+		String json = resource()
+			.replace("\"modified\": \"2019-02-04T08:00:00Z\"", "\"modified\": \"2019-02-05T08:00:00Z\"")
+			.replace("\"2345678901\"", "\"3456789012\"");
+
+		GetAllProjectMetadataResponse delta = RefineCommands.getAllProjectMetadata().previous(previous).build()
+			.handleResponse(response(json), refineClient);
+
+		assertThat(delta.isDelta()).isTrue();
+		assertThat(delta.size()).isEqualTo(2);
+		assertThat(delta.getChanged()).extracting(RefineProject::getId).containsExactly("1234567890", "3456789012");
+		assertThat(delta.getRemoved()).containsOnly("2345678901");
+
+		GetAllProjectMetadataResponse unchanged = RefineCommands.getAllProjectMetadata().previous(delta).build()
+			.handleResponse(response(json), refineClient);
+
+		assertThat(unchanged.getChanged()).isEmpty();
+		assertThat(unchanged.getRemoved()).isEmpty();
+		assertThat(unchanged.getProject("1234567890")).isSameAs(delta.getProject("1234567890"));
+	}
+
+	@Test
+	public void should_reject_malformed_projects() throws IOException {
+		thrown.expect(RefineException.class);
+		thrown.expectMessage("Object expected at 'projects'");
+		RefineCommands.getAllProjectMetadata().build().handleResponse(response("{\"projects\":[]}"), refineClient);
+	}
+
+	@Test
+	public void should_list_projects_of_stub_server() throws Exception {
+		try (StubRefineServer server = StubRefineServer.builder().start();
+			 RefineClient client = RefineClients.create(server.getUrl())) {
+			String kept = createProject(client);
+			String modified = createProject(client);
+			String deleted = createProject(client);
+			GetAllProjectMetadataResponse first = RefineCommands.getAllProjectMetadata().build().execute(client);
+			assertThat(first.size()).isEqualTo(3);
+			assertThat(first.getProject(kept).getUrl().toString()).isEqualTo(server.getUrl() + "/project?project=" + kept);
+
+			RefineCommands.applyOperations().project(modified).operations(from("[]")).build().execute(client);
+			RefineCommands.deleteProject().project(deleted).build().execute(client);
+			GetAllProjectMetadataResponse second = RefineCommands.getAllProjectMetadata().previous(first).build()
+				.executeAsync(client).join();
+
+			assertThat(second.getChanged()).extracting(RefineProject::getId).containsExactly(modified);
+			assertThat(second.getRemoved()).containsOnly(deleted);
+			assertThat(second.getProject(kept)).isSameAs(first.getProject(kept));
+		}
+	}
+
+	private static String createProject(RefineClient client) throws IOException {
+		return RefineCommands.createProject().name("inventory")
+			.rows(() -> List.<String[]> of(new String[] { "a", "b" }).iterator())
+			.build().execute(client).getProjectId();
+	}
+
+	private String resource() throws IOException {
+		return IOUtils.toString(getClass().getResource("/responseBody/all-project-metadata.json"), StandardCharsets.UTF_8);
+	}
+
+	private static HttpResponse response(String json) {
+		HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+		response.setEntity(new StringEntity(json, ContentType.APPLICATION_JSON));
+		return response;
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package gmbh.dtap.refine.client.command;
+
+import gmbh.dtap.refine.client.RefineClient;
+import gmbh.dtap.refine.client.RefineException;
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.Charset;
+
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit Tests for {@link GetProcessesCommand}.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class GetProcessesCommandTest {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	@Rule public ExpectedException thrown = ExpectedException.none();
+	@Mock private RefineClient refineClient;
+
+	private GetProcessesCommand command;
+
+	@Before
+	public void setUp() throws MalformedURLException {
+		refineClient = mock(RefineClient.class);
+		when(refineClient.createUrl(anyString())).thenReturn(new URL("http://localhost:3333/"));
+		command = RefineCommands.getProcesses().project("1234567890").build();
+	}
+
+	@Test
+	public void should_execute() throws IOException {
+		command.execute(refineClient);
+		verify(refineClient).createUrl(anyString());
+		verify(refineClient).execute(any(), any());
+	}
+
+	@Test
+	public void should_execute_async() throws IOException {
+		when(refineClient.executeAsync(any(), any())).thenReturn(completedFuture(command.parseGetProcessesResponse("{\"processes\":[]}")));
+
+		GetProcessesResponse response = command.executeAsync(refineClient).join();
+		verify(refineClient).executeAsync(any(), any());
+		assertThat(response.isDrained()).isTrue();
+	}
+
+	@Test
+	public void should_parse_processes() throws IOException, URISyntaxException {
+		String responseBody = IOUtils.toString(getClass().getResource("/responseBody/processes.json").toURI(), UTF_8);
+
+		GetProcessesResponse response = command.parseGetProcessesResponse(responseBody);
+		assertThat(response.isDrained()).isFalse();
+		assertThat(response.getExceptions()).isEmpty();
+		assertThat(response.getProcesses()).hasSize(2);
+		RefineProcess process = response.getProcesses().get(0);
+		assertThat(process.getId()).isEqualTo(1553683498843L);
+		assertThat(process.getDescription()).isEqualTo("Reconcile cells in column City to type Q515");
+		assertThat(process.getStatus()).isEqualTo("running");
+		assertThat(process.getProgress()).isEqualTo(42);
+		assertThat(process.isImmediate()).isFalse();
+		assertThat(response.getProcesses().get(1).getStatus()).isEqualTo("pending");
+	}
+
+	@Test
+	public void should_parse_exceptions() throws IOException {
+		GetProcessesResponse response = command.parseGetProcessesResponse(
+			"{\"processes\":[],\"exceptions\":[{\"message\":\"Connection refused\"}]}");
+
+		assertThat(response.isDrained()).isTrue();
+		assertThat(response.getExceptions()).containsExactly("Connection refused");
+	}
+
+	@Test
+	public void should_fail_on_error_response() throws IOException {
+		thrown.expect(RefineException.class);
+		thrown.expectMessage("Project not found");
+		command.parseGetProcessesResponse("{\"code\":\"error\",\"message\":\"Project not found\"}");
+	}
+
+	@Test
+	public void should_require_project() {
+		thrown.expect(NullPointerException.class);
+		RefineCommands.getProcesses().build();
+	}
+}
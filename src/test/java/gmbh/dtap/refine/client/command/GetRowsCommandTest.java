@@ -0,0 +1,126 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package gmbh.dtap.refine.client.command;
+
+import gmbh.dtap.refine.client.RefineClient;
+import gmbh.dtap.refine.client.RefineException;
+import gmbh.dtap.refine.client.Row;
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.Charset;
+
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit Tests for {@link GetRowsCommand}.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class GetRowsCommandTest {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	@Rule public ExpectedException thrown = ExpectedException.none();
+	@Mock private RefineClient refineClient;
+
+	private GetRowsCommand command;
+
+	@Before
+	public void setUp() throws MalformedURLException {
+		refineClient = mock(RefineClient.class);
+		when(refineClient.createUrl(anyString())).thenReturn(new URL("http://localhost:3333/"));
+		command = RefineCommands.getRows().project("1234567890").start(10).limit(2).build();
+	}
+
+	@Test
+	public void should_execute() throws IOException {
+		command.execute(refineClient);
+		verify(refineClient).createUrl(anyString());
+		verify(refineClient).execute(any(), any());
+	}
+
+	@Test
+	public void should_execute_async() throws IOException, URISyntaxException {
+		when(refineClient.executeAsync(any(), any())).thenReturn(completedFuture(command.parseGetRowsResponse(rows())));
+
+		GetRowsResponse response = command.executeAsync(refineClient).join();
+		verify(refineClient).executeAsync(any(), any());
+		assertThat(response.getRows()).hasSize(2);
+	}
+
+	@Test
+	public void should_parse_rows() throws IOException, URISyntaxException {
+		GetRowsResponse response = command.parseGetRowsResponse(rows());
+
+		assertThat(response.getStart()).isEqualTo(10);
+		assertThat(response.getLimit()).isEqualTo(2);
+		assertThat(response.getFiltered()).isEqualTo(12);
+		assertThat(response.getTotal()).isEqualTo(100);
+		assertThat(response.hasMore()).isFalse();
+		assertThat(response.getRows()).extracting(Row::getIndex).containsExactly(10L, 11L);
+		assertThat(response.getRows().get(0).getCells()).containsExactly("1", "Cavallino", null, "7638");
+		assertThat(response.getRows().get(1).getCells()).containsExactly("2", null, null, "true");
+	}
+
+	@Test
+	public void should_have_more_rows_after_full_page() throws IOException {
+		GetRowsResponse response = command.parseGetRowsResponse("{\"rows\":[{\"cells\":[],\"i\":10},{\"cells\":[],\"i\":11}],"
+			+ "\"filtered\":13,\"total\":13}");
+
+		assertThat(response.hasMore()).isTrue();
+		assertThat(response.getTotal()).isEqualTo(13);
+	}
+
+	@Test
+	public void should_fail_on_error_response() throws IOException {
+		thrown.expect(RefineException.class);
+		thrown.expectMessage("Project not found");
+		command.parseGetRowsResponse("{\"code\":\"error\",\"message\":\"Project not found\"}");
+	}
+
+	@Test
+	public void should_fail_on_unexpected_cell() throws IOException {
+		thrown.expect(RefineException.class);
+		command.parseGetRowsResponse("{\"rows\":[{\"cells\":[\"plain\"],\"i\":0}],\"filtered\":1}");
+	}
+
+	@Test
+	public void should_require_positive_limit() {
+		thrown.expect(IllegalArgumentException.class);
+		thrown.expectMessage("limit");
+		RefineCommands.getRows().project("1234567890").limit(0).build();
+	}
+
+	private String rows() throws IOException, URISyntaxException {
+		return IOUtils.toString(getClass().getResource("/responseBody/rows.json").toURI(), UTF_8);
+	}
+}
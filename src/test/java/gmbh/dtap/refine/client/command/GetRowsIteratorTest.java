@@ -0,0 +1,137 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package gmbh.dtap.refine.client.command;
+
+import gmbh.dtap.refine.client.RefineClient;
+import gmbh.dtap.refine.client.RefineClients;
+import gmbh.dtap.refine.client.Row;
+import gmbh.dtap.refine.client.testsupport.StubRefineServer;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+/**
+ * Tests for {@link GetRowsIterator} against a {@link StubRefineServer}.
+ */
+public class GetRowsIteratorTest {
+
+	private StubRefineServer server;
+	private RefineClient client;
+
+	private void start(StubRefineServer.Builder server) throws IOException {
+		this.server = server.start();
+		this.client = RefineClients.create(this.server.getUrl());
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		client.close();
+		server.close();
+	}
+
+	@Test
+	public void should_iterate_all_pages() throws IOException {
+		start(StubRefineServer.builder().exportRows(25));
+
+		try (Stream<Row> rows = RefineCommands.getRows().project("1").limit(10).prefetch(2).build().stream(client)) {
+			List<Long> indices = rows.map(Row::getIndex).collect(Collectors.toList());
+
+			assertThat(indices).hasSize(25).startsWith(0L, 1L).endsWith(24L);
+		}
+		assertThat(server.getRequestCount("get-rows")).isEqualTo(3);
+	}
+
+	@Test
+	public void should_not_request_pages_behind_the_last_row() throws IOException {
+		start(StubRefineServer.builder().exportRows(100));
+
+		GetRowsIterator iterator = RefineCommands.getRows().project("1").limit(10).prefetch(3).build().iterate(client);
+		int count = 0;
+		while (iterator.hasNext()) {
+			assertThat(iterator.next().getCell(0)).isEqualTo("ROW-" + count++);
+		}
+
+		assertThat(count).isEqualTo(100);
+		assertThat(iterator.getFiltered()).isEqualTo(100);
+		assertThat(server.getRequestCount("get-rows")).isEqualTo(10);
+	}
+
+	@Test
+	public void should_request_one_page_at_a_time_without_prefetch() throws Exception {
+		start(StubRefineServer.builder().exportRows(25));
+
+		try (GetRowsIterator iterator = RefineCommands.getRows().project("1").limit(10).prefetch(0).build().iterate(client)) {
+			for (int i = 0; i < 10; i++) {
+				iterator.next();
+			}
+			Thread.sleep(200);
+			assertThat(server.getRequestCount("get-rows")).isEqualTo(1);
+
+			iterator.next();
+			assertThat(server.getRequestCount("get-rows")).isEqualTo(2);
+		}
+	}
+
+	@Test
+	public void should_start_at_offset() throws IOException {
+		start(StubRefineServer.builder().exportRows(25));
+
+		try (GetRowsIterator iterator = RefineCommands.getRows().project("1").start(20).limit(10).build().iterate(client)) {
+			assertThat(iterator.next().getIndex()).isEqualTo(20);
+		}
+	}
+
+	@Test
+	public void should_fetch_pages_concurrently() throws IOException {
+		start(StubRefineServer.builder().exportRows(40).latency(Duration.ofMillis(100)));
+
+		try (Stream<Row> rows = RefineCommands.getRows().project("1").limit(10).prefetch(3).build().stream(client)) {
+			assertThat(rows.count()).isEqualTo(40);
+		}
+		assertThat(server.getMaxConcurrentRequests()).isGreaterThan(1);
+	}
+
+	@Test
+	public void should_iterate_empty_project() throws IOException {
+		start(StubRefineServer.builder().exportRows(0));
+
+		try (GetRowsIterator iterator = RefineCommands.getRows().project("1").build().iterate(client)) {
+			assertThat(iterator.hasNext()).isFalse();
+			assertThat(iterator.getFiltered()).isZero();
+		}
+	}
+
+	@Test
+	public void should_throw_unchecked_on_failure() throws IOException {
+		start(StubRefineServer.builder().errorRate(1.0));
+
+		GetRowsIterator iterator = RefineCommands.getRows().project("1").build().iterate(client);
+
+		assertThat(catchThrowable(iterator::hasNext)).isInstanceOf(UncheckedIOException.class);
+		assertThat(iterator.hasNext()).isFalse();
+	}
+}
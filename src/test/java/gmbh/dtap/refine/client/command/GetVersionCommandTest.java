@@ -35,6 +35,7 @@ import java.net.URL;
 import java.nio.charset.Charset;
 
 import static gmbh.dtap.refine.client.testsupport.HttpMock.mockHttpResponse;
+import static java.util.concurrent.CompletableFuture.completedFuture;
 import static org.apache.http.entity.ContentType.APPLICATION_JSON;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
@@ -68,6 +69,17 @@ public class GetVersionCommandTest {
 		verify(refineClient).execute(any(), any());
 	}
 
+	@Test
+	public void should_execute_async() throws IOException, URISyntaxException {
+		String responseBody = IOUtils.toString(getClass().getResource("/responseBody/get-version.json").toURI(), UTF_8);
+		when(refineClient.executeAsync(any(), any())).thenReturn(completedFuture(command.parseGetVersionResponse(responseBody)));
+
+		GetVersionResponse response = command.executeAsync(refineClient).join();
+		verify(refineClient).createUrl(anyString());
+		verify(refineClient).executeAsync(any(), any());
+		assertThat(response.getVersion()).isEqualTo("3.0-beta");
+	}
+
 	@Test
 	public void should_parse_get_version_success_response() throws IOException, URISyntaxException {
 		String responseBody = IOUtils.toString(getClass().getResource("/responseBody/get-version.json").toURI(), UTF_8);
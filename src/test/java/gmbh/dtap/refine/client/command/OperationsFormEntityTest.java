@@ -0,0 +1,68 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package gmbh.dtap.refine.client.command;
+
+import gmbh.dtap.refine.client.Operation;
+import gmbh.dtap.refine.client.operation.RefineOperations;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.NameValuePair;
+import org.apache.http.client.utils.URLEncodedUtils;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import static gmbh.dtap.refine.client.JsonOperation.from;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit Tests for {@link OperationsFormEntity}.
+ */
+public class OperationsFormEntityTest {
+
+	@Test
+	public void should_write_form_with_operations_array() throws IOException {
+		Operation fillDown = RefineOperations.fillDown().columnName("name").build();
+		Operation raw = from("{\"op\":\"core/column-removal\",\"columnName\":\"a&b\"}");
+
+		OperationsFormEntity entity = new OperationsFormEntity("1234", new Operation[]{fillDown, raw});
+
+		String form = IOUtils.toString(entity.getContent(), UTF_8);
+		assertThat((long) form.length()).isEqualTo(entity.getContentLength());
+		assertThat(entity.isRepeatable()).isTrue();
+		assertThat(entity.getContentType().getValue()).startsWith(URLEncodedUtils.CONTENT_TYPE);
+		List<NameValuePair> parameters = URLEncodedUtils.parse(form, UTF_8);
+		assertThat(parameters).extracting(NameValuePair::getName).containsExactly("project", "operations");
+		assertThat(parameters.get(0).getValue()).isEqualTo("1234");
+		assertThat(parameters.get(1).getValue()).isEqualTo("[" + fillDown.asJson() + "," + raw.asJson() + "]");
+	}
+
+	@Test
+	public void should_stream_content_as_written() throws IOException {
+		Operation fillDown = RefineOperations.fillDown().columnName("name").build();
+		for (Operation[] operations : new Operation[][] { {}, { fillDown }, { fillDown, fillDown, fillDown } }) {
+			OperationsFormEntity entity = new OperationsFormEntity("1234", operations);
+			ByteArrayOutputStream written = new ByteArrayOutputStream();
+			entity.writeTo(written);
+
+			assertThat(IOUtils.toByteArray(entity.getContent())).isEqualTo(written.toByteArray());
+		}
+	}
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gmbh.dtap.refine.client.micrometer;
+
+import gmbh.dtap.refine.client.ConcurrencyLimiter;
+import gmbh.dtap.refine.client.RefineClient;
+import gmbh.dtap.refine.client.RefineClients;
+import gmbh.dtap.refine.client.command.RefineCommands;
+import gmbh.dtap.refine.client.testsupport.StubRefineServer;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link RefineClientMetrics}.
+ */
+public class RefineClientMetricsTest {
+
+	@Test
+	public void should_register_meters_per_command() throws Exception {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		try (StubRefineServer server = StubRefineServer.builder().start();
+			 RefineClient client = RefineClients.create(server.getUrl())) {
+			new RefineClientMetrics(client, Tags.of("node", "stub")).bindTo(registry);
+
+			RefineCommands.getVersion().build().execute(client);
+			RefineCommands.getVersion().build().execute(client);
+
+			assertThat(registry.get("refine.client.requests").tags("command", "get-version", "node", "stub").functionCounter().count())
+				.isEqualTo(2);
+			assertThat(registry.get("refine.client.errors").tag("command", "get-version").functionCounter().count()).isZero();
+			assertThat(registry.get("refine.client.response.bytes").tag("command", "get-version").functionCounter().count())
+				.isGreaterThan(0);
+			assertThat(registry.get("refine.client.in.flight").tag("command", "get-version").gauge().value()).isZero();
+			FunctionTimer latency = registry.get("refine.client.latency").tag("command", "get-version").functionTimer();
+			assertThat(latency.count()).isEqualTo(2);
+			assertThat(latency.totalTime(TimeUnit.NANOSECONDS)).isGreaterThan(0);
+			assertThat(registry.get("refine.client.latency.max").tag("command", "get-version").timeGauge().value(TimeUnit.NANOSECONDS))
+				.isGreaterThan(0);
+			assertThat(registry.get("refine.client.parse").tag("command", "get-version").functionTimer().count()).isEqualTo(2);
+		}
+	}
+
+	@Test
+	public void should_register_concurrency_limit() throws Exception {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		try (StubRefineServer server = StubRefineServer.builder().start();
+			 RefineClient client = RefineClients.builder().url(server.getUrl())
+				 .concurrencyLimiter(ConcurrencyLimiter.builder().initialLimit(8).build()).build()) {
+			new RefineClientMetrics(client, Tags.of("node", "stub")).bindTo(registry);
+
+			assertThat(registry.get("refine.client.concurrency.limit").tag("node", "stub").gauge().value()).isEqualTo(8);
+			assertThat(registry.get("refine.client.concurrency.in.flight").gauge().value()).isZero();
+			assertThat(registry.get("refine.client.concurrency.queued").gauge().value()).isZero();
+			assertThat(registry.get("refine.client.concurrency.rejected").functionCounter().count()).isZero();
+		}
+	}
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package gmbh.dtap.refine.client.operation;
+
+import org.json.JSONException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.net.URLDecoder;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.skyscreamer.jsonassert.JSONAssert.assertEquals;
+
+/**
+ * Unit Tests for {@link RefineOperations}.
+ */
+public class RefineOperationsTest {
+
+	@Rule public ExpectedException thrown = ExpectedException.none();
+
+	@Test
+	public void should_write_column_split_by_separator() throws JSONException {
+		ColumnSplitOperation operation = RefineOperations.columnSplit().columnName("name").separator(",").maxColumns(2).build();
+
+		assertEquals("{\"op\":\"core/column-split\",\"engineConfig\":{\"facets\":[],\"mode\":\"row-based\"},"
+			+ "\"columnName\":\"name\",\"guessCellType\":true,\"removeOriginalColumn\":true,\"mode\":\"separator\","
+			+ "\"separator\":\",\",\"regex\":false,\"maxColumns\":2,\"description\":\"Split column name by separator\"}",
+			operation.asJson(), true);
+	}
+
+	@Test
+	public void should_write_column_split_by_lengths() throws JSONException {
+		ColumnSplitOperation operation = RefineOperations.columnSplit().columnName("code").fieldLengths(2, 3)
+			.guessCellType(false).removeOriginalColumn(false).build();
+
+		assertEquals("{\"op\":\"core/column-split\",\"engineConfig\":{\"facets\":[],\"mode\":\"row-based\"},"
+			+ "\"columnName\":\"code\",\"guessCellType\":false,\"removeOriginalColumn\":false,\"mode\":\"lengths\","
+			+ "\"fieldLengths\":[2,3],\"description\":\"Split column code by field lengths\"}",
+			operation.asJson(), true);
+	}
+
+	@Test
+	public void should_write_text_transform() throws JSONException {
+		TextTransformOperation operation = RefineOperations.textTransform().columnName("name").expression("value.trim()")
+			.onError(OnError.SET_TO_BLANK).repeat(3).build();
+
+		assertEquals("{\"op\":\"core/text-transform\",\"engineConfig\":{\"facets\":[],\"mode\":\"row-based\"},"
+			+ "\"columnName\":\"name\",\"expression\":\"grel:value.trim()\",\"onError\":\"set-to-blank\","
+			+ "\"repeat\":true,\"repeatCount\":3,"
+			+ "\"description\":\"Text transform on cells in column name using expression grel:value.trim()\"}",
+			operation.asJson(), true);
+		assertThat(operation.getExpression()).isEqualTo("grel:value.trim()");
+	}
+
+	@Test
+	public void should_write_mass_edit() throws JSONException {
+		MassEditOperation operation = RefineOperations.massEdit().columnName("city")
+			.edit("Berlin", "berlin", "BERLIN").editBlanks("unknown").build();
+
+		assertEquals("{\"op\":\"core/mass-edit\",\"engineConfig\":{\"facets\":[],\"mode\":\"row-based\"},"
+			+ "\"columnName\":\"city\",\"expression\":\"value\",\"edits\":["
+			+ "{\"from\":[\"berlin\",\"BERLIN\"],\"fromBlank\":false,\"fromError\":false,\"to\":\"Berlin\"},"
+			+ "{\"from\":[],\"fromBlank\":true,\"fromError\":false,\"to\":\"unknown\"}],"
+			+ "\"description\":\"Mass edit cells in column city\"}",
+			operation.asJson(), true);
+	}
+
+	@Test
+	public void should_write_column_addition() throws JSONException {
+		ColumnAdditionOperation operation = RefineOperations.columnAddition().baseColumnName("name")
+			.newColumnName("length").columnInsertIndex(1).expression("jython:return len(value)").build();
+
+		assertEquals("{\"op\":\"core/column-addition\",\"engineConfig\":{\"facets\":[],\"mode\":\"row-based\"},"
+			+ "\"baseColumnName\":\"name\",\"expression\":\"jython:return len(value)\",\"onError\":\"set-to-blank\","
+			+ "\"newColumnName\":\"length\",\"columnInsertIndex\":1,"
+			+ "\"description\":\"Create column length at index 1 based on column name using expression jython:return len(value)\"}",
+			operation.asJson(), true);
+	}
+
+	@Test
+	public void should_write_column_removal_row_removal_and_fill_down() throws JSONException {
+		String engineConfig = "{\"facets\":[{\"type\":\"text\",\"columnName\":\"name\",\"query\":\"x\"}],\"mode\":\"row-based\"}";
+
+		assertEquals("{\"op\":\"core/column-removal\",\"columnName\":\"name\",\"description\":\"Remove\"}",
+			RefineOperations.columnRemoval().columnName("name").description("Remove").build().asJson(), true);
+		assertEquals("{\"op\":\"core/row-removal\",\"engineConfig\":" + engineConfig + ",\"description\":\"Remove rows\"}",
+			RefineOperations.rowRemoval().engineConfig(engineConfig).build().asJson(), true);
+		assertEquals("{\"op\":\"core/fill-down\",\"engineConfig\":{\"facets\":[],\"mode\":\"row-based\"},"
+				+ "\"columnName\":\"name\",\"description\":\"Fill down cells in column name\"}",
+			RefineOperations.fillDown().columnName("name").build().asJson(), true);
+	}
+
+	@Test
+	public void should_encode_once() {
+		FillDownOperation operation = RefineOperations.fillDown().columnName("name & \"city\"").build();
+
+		assertThat(operation.asEncodedJson()).isSameAs(operation.asEncodedJson());
+		assertThat(URLDecoder.decode(new String(operation.asEncodedJson(), US_ASCII), UTF_8)).isEqualTo(operation.asJson());
+	}
+
+	@Test
+	public void should_be_equal_by_json() {
+		assertThat(RefineOperations.columnRemoval().columnName("name").build())
+			.isEqualTo(RefineOperations.columnRemoval().columnName("name").build())
+			.isNotEqualTo(RefineOperations.columnRemoval().columnName("other").build());
+	}
+
+	@Test
+	public void should_reject_invalid_engine_config() {
+		thrown.expect(IllegalArgumentException.class);
+		thrown.expectMessage("engineConfig");
+		RefineOperations.fillDown().columnName("name").engineConfig("{\"facets\":[]} {}").build();
+	}
+
+	@Test
+	public void should_require_engine_config_for_row_removal() {
+		thrown.expect(NullPointerException.class);
+		RefineOperations.rowRemoval().build();
+	}
+
+	@Test
+	public void should_require_separator_or_field_lengths() {
+		thrown.expect(NullPointerException.class);
+		thrown.expectMessage("separator");
+		RefineOperations.columnSplit().columnName("name").build();
+	}
+}
@@ -0,0 +1,533 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gmbh.dtap.refine.client.testsupport;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.http.NameValuePair;
+import org.apache.http.client.utils.URLEncodedUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * An in-process stand-in for OpenRefine, which answers the endpoints used by the client over a real socket.
+ * Latency, errors and payload sizes are configurable, so that throughput, pooling and tail latency can be
+ * tested without a real OpenRefine.
+ * <p>
+ * The server keeps the IDs and dates of created projects, but not their data. Exports and metadata are generated
+ * from the configured sizes, <code>apply-operations</code> only advances the modification date. It reports a running
+ * process to the configured number of <code>get-processes</code> polls that follow.
+ */
+public class StubRefineServer implements AutoCloseable {
+
+	private static final String INVALID_TOKEN = "{\"code\":\"error\",\"message\":\"Missing or invalid csrf_token parameter\"}";
+	private static final String OK = "{\"code\":\"ok\"}";
+	private static final String PENDING = "{\"code\":\"pending\"}";
+
+	private final Builder config;
+	private final HttpServer server;
+	private final ExecutorService executor;
+	private final Random random;
+	private final Map<String, StubProject> projects = new ConcurrentHashMap<>();
+	/**
+	 * Shared by all instances, so that project IDs are unique across the nodes of a cluster like in OpenRefine.
+	 */
+	private static final AtomicLong NEXT_PROJECT_ID = new AtomicLong(1_000_000_000_000L);
+	private final Map<String, LongAdder> requestCounts = new ConcurrentHashMap<>();
+	private final AtomicInteger concurrentRequests = new AtomicInteger();
+	private final AtomicInteger maxConcurrentRequests = new AtomicInteger();
+	private volatile String csrfToken = "stub-token-0";
+	private final AtomicInteger csrfTokenVersion = new AtomicInteger();
+
+	private StubRefineServer(Builder config) throws IOException {
+		this.config = config;
+		this.random = new Random(config.seed);
+		this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), config.port), 1024);
+		this.executor = Executors.newCachedThreadPool(runnable -> {
+			Thread thread = new Thread(runnable, "stub-refine-server");
+			thread.setDaemon(true);
+			return thread;
+		});
+		server.setExecutor(executor);
+		handle("get-csrf-token", false, (exchange, parameters) -> respondJson(exchange, "{\"token\":\"" + csrfToken + "\"}"));
+		handle("get-version", false, (exchange, parameters) -> respondJson(exchange,
+			"{\"full_name\":\"OpenRefine 3.4 [stub]\",\"full_version\":\"3.4 [stub]\",\"version\":\"3.4\",\"revision\":\"stub\"}"));
+		handle("create-project-from-upload", true, this::createProject);
+		handle("apply-operations", true, (exchange, parameters) -> {
+			StubProject project = projects.get(parameters.get("project"));
+			if (project != null) {
+				project.touch();
+				project.runningPolls.set(config.processPolls);
+			}
+			respondJson(exchange, config.processPolls > 0 ? PENDING : OK);
+		});
+		handle("preview-expression", true, this::previewExpression);
+		handle("export-rows", true, this::exportRows);
+		handle("delete-project", true, (exchange, parameters) -> {
+			projects.remove(parameters.get("project"));
+			respondJson(exchange, OK);
+		});
+		handle("get-project-metadata", false, this::getProjectMetadata);
+		handle("get-all-project-metadata", false, this::getAllProjectMetadata);
+		handle("get-processes", false, this::getProcesses);
+		handle("get-rows", false, this::getRows);
+		server.start();
+	}
+
+	/**
+	 * Returns a new builder.
+	 *
+	 * @return the builder
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * Returns the URL of the server.
+	 *
+	 * @return the URL, e.g. <code>http://127.0.0.1:40123</code>
+	 */
+	public String getUrl() {
+		return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+	}
+
+	/**
+	 * Replaces the csrf token, so that tokens cached by clients are rejected.
+	 */
+	public void rotateCsrfToken() {
+		csrfToken = "stub-token-" + csrfTokenVersion.incrementAndGet();
+	}
+
+	/**
+	 * Returns the number of requests received for a command.
+	 *
+	 * @param command the command, e.g. <code>get-version</code>
+	 * @return the number of requests
+	 */
+	public long getRequestCount(String command) {
+		LongAdder count = requestCounts.get(command);
+		return count != null ? count.sum() : 0;
+	}
+
+	/**
+	 * Returns the number of requests received for all commands.
+	 *
+	 * @return the number of requests
+	 */
+	public long getRequestCount() {
+		return requestCounts.values().stream().mapToLong(LongAdder::sum).sum();
+	}
+
+	/**
+	 * Returns the highest number of requests that were handled at the same time.
+	 *
+	 * @return the maximum number of concurrent requests
+	 */
+	public int getMaxConcurrentRequests() {
+		return maxConcurrentRequests.get();
+	}
+
+	/**
+	 * Returns whether a project exists, i.e. was created and not deleted.
+	 *
+	 * @param projectId the project ID
+	 * @return {@code true} if the project exists
+	 */
+	public boolean hasProject(String projectId) {
+		return projects.containsKey(projectId);
+	}
+
+	private void handle(String command, boolean requiresCsrfToken, Endpoint endpoint) {
+		server.createContext("/command/core/" + command, exchange -> {
+			requestCounts.computeIfAbsent(command, key -> new LongAdder()).increment();
+			maxConcurrentRequests.accumulateAndGet(concurrentRequests.incrementAndGet(), Math::max);
+			try {
+				delay();
+				if (config.errorRate > 0 && random.nextDouble() < config.errorRate) {
+					drain(exchange);
+					respond(exchange, config.errorStatus, "text/html; charset=UTF-8", "<html><body>Stub error</body></html>");
+					return;
+				}
+				Map<String, String> parameters = parameters(exchange);
+				if (requiresCsrfToken && !csrfToken.equals(parameters.get("csrf_token"))) {
+					respondJson(exchange, INVALID_TOKEN);
+					return;
+				}
+				endpoint.handle(exchange, parameters);
+			} catch (IOException | RuntimeException e) {
+				respond(exchange, 500, "text/plain; charset=UTF-8", String.valueOf(e));
+			} finally {
+				concurrentRequests.decrementAndGet();
+				exchange.close();
+			}
+		});
+	}
+
+	private void delay() {
+		long millis = config.latency.toMillis();
+		if (!config.jitter.isZero()) {
+			millis += (long) (random.nextDouble() * config.jitter.toMillis());
+		}
+		if (millis > 0) {
+			try {
+				Thread.sleep(millis);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Merges the query parameters with the parameters of a URL encoded form, other bodies are skipped.
+	 */
+	private static Map<String, String> parameters(HttpExchange exchange) throws IOException {
+		Map<String, String> parameters = new HashMap<>();
+		String query = exchange.getRequestURI().getRawQuery();
+		if (query != null) {
+			for (NameValuePair pair : URLEncodedUtils.parse(query, StandardCharsets.UTF_8)) {
+				parameters.put(pair.getName(), pair.getValue());
+			}
+		}
+		String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+		if (contentType != null && contentType.startsWith("application/x-www-form-urlencoded")) {
+			String form = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+			for (NameValuePair pair : URLEncodedUtils.parse(form, StandardCharsets.UTF_8)) {
+				parameters.put(pair.getName(), pair.getValue());
+			}
+		} else {
+			drain(exchange);
+		}
+		return parameters;
+	}
+
+	private void createProject(HttpExchange exchange, Map<String, String> parameters) throws IOException {
+		String projectId = String.valueOf(NEXT_PROJECT_ID.incrementAndGet());
+		projects.put(projectId, new StubProject());
+		exchange.getResponseHeaders().set("Location", getUrl() + "/project?project=" + projectId);
+		exchange.sendResponseHeaders(302, -1);
+	}
+
+	private void previewExpression(HttpExchange exchange, Map<String, String> parameters) throws IOException {
+		String rowIndices = parameters.getOrDefault("rowIndices", "[]");
+		StringBuilder json = new StringBuilder("{\"code\":\"ok\",\"results\":[");
+		String indices = rowIndices.substring(1, rowIndices.length() - 1).trim();
+		if (!indices.isEmpty()) {
+			String separator = "";
+			for (String rowIndex : indices.split(",")) {
+				json.append(separator).append('"').append(value("value-" + rowIndex.trim(), config.previewValueLength)).append('"');
+				separator = ",";
+			}
+		}
+		respondJson(exchange, json.append("]}").toString());
+	}
+
+	private void exportRows(HttpExchange exchange, Map<String, String> parameters) throws IOException {
+		String separator = "tsv".equals(parameters.get("format")) ? "\t" : ",";
+		exchange.getResponseHeaders().set("Content-Type", "text/csv; charset=UTF-8");
+		exchange.sendResponseHeaders(200, 0);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(String.join(separator, "ID", "Street", "Zip", "City", "Country").concat("\n").getBytes(StandardCharsets.UTF_8));
+			String city = value("Cavallino", config.exportCellLength);
+			for (int row = 0; row < config.exportRows; row++) {
+				String line = String.join(separator, "ROW-" + row, "7442 At Rd.", "7638 BW", city, "Monaco") + "\n";
+				out.write(line.getBytes(StandardCharsets.UTF_8));
+			}
+		}
+	}
+
+	private void getRows(HttpExchange exchange, Map<String, String> parameters) throws IOException {
+		int start = Integer.parseInt(parameters.getOrDefault("start", "0"));
+		int limit = Integer.parseInt(parameters.getOrDefault("limit", "50"));
+		StringBuilder json = new StringBuilder("{\"mode\":\"row-based\",\"rows\":[");
+		String city = value("Cavallino", config.exportCellLength);
+		for (int row = start; row < Math.min(config.exportRows, start + limit); row++) {
+			json.append(row > start ? "," : "").append("{\"flagged\":false,\"starred\":false,\"cells\":[{\"v\":\"ROW-")
+				.append(row).append("\"},{\"v\":\"7442 At Rd.\"},null,{\"v\":\"").append(city)
+				.append("\"},{\"v\":\"Monaco\"}],\"i\":").append(row).append('}');
+		}
+		json.append("],\"filtered\":").append(config.exportRows).append(",\"totalCount\":").append(config.exportRows)
+			.append(",\"start\":").append(start).append(",\"limit\":").append(limit).append(",\"pool\":{\"recons\":{}}}");
+		respondJson(exchange, json.toString());
+	}
+
+	private void getProjectMetadata(HttpExchange exchange, Map<String, String> parameters) throws IOException {
+		String projectId = parameters.get("project");
+		StubProject project = projects.get(projectId);
+		if (project == null) {
+			respond(exchange, 500, "application/json; charset=UTF-8", "{\"code\":\"error\",\"message\":\"Project not found\"}");
+			return;
+		}
+		respondJson(exchange, metadata(projectId, project));
+	}
+
+	private void getAllProjectMetadata(HttpExchange exchange, Map<String, String> parameters) throws IOException {
+		StringBuilder json = new StringBuilder("{\"projects\":{");
+		String separator = "";
+		for (Map.Entry<String, StubProject> project : projects.entrySet()) {
+			json.append(separator).append('"').append(project.getKey()).append("\":").append(metadata(project.getKey(), project.getValue()));
+			separator = ",";
+		}
+		respondJson(exchange, json.append("},\"customMetadataColumns\":\"[]\"}").toString());
+	}
+
+	private void getProcesses(HttpExchange exchange, Map<String, String> parameters) throws IOException {
+		StubProject project = projects.get(parameters.get("project"));
+		if (project == null) {
+			respond(exchange, 500, "application/json; charset=UTF-8", "{\"code\":\"error\",\"message\":\"Project not found\"}");
+			return;
+		}
+		int running = project.runningPolls.getAndUpdate(polls -> Math.max(0, polls - 1));
+		if (running == 0) {
+			respondJson(exchange, "{\"processes\":[]}");
+			return;
+		}
+		int progress = 100 - 100 * running / (config.processPolls + 1);
+		respondJson(exchange, "{\"processes\":[{\"id\":1,\"description\":\"Stub operation\",\"immediate\":false"
+			+ ",\"status\":\"running\",\"progress\":" + progress + "}]}");
+	}
+
+	private String metadata(String projectId, StubProject project) {
+		return "{\"name\":\"Stub project " + projectId + "\",\"tags\":[],\"created\":\"" + project.created
+			+ "\",\"modified\":\"" + project.modified + "\",\"creator\":\"stub\",\"contributors\":\"\",\"subject\":\"\""
+			+ ",\"description\":\"\",\"rowCount\":" + config.exportRows + ",\"customMetadata\":{\"owner\":\"stub\"}"
+			+ ",\"importOptionMetadata\":[{\"storeBlankRows\":true,\"includeFileSources\":false,\"skipDataLines\":0"
+			+ ",\"guessCellValueTypes\":false,\"headerLines\":1,\"ignoreLines\":-1,\"processQuotes\":true"
+			+ ",\"fileSource\":\"stub.csv\",\"projectName\":\"Stub project " + projectId + "\",\"separator\":\",\""
+			+ ",\"storeBlankCellsAsNulls\":true}]}";
+	}
+
+	/**
+	 * The dates of a project, apply-operations changes the modification date and starts a process.
+	 */
+	private static final class StubProject {
+
+		private final AtomicInteger runningPolls = new AtomicInteger();
+		private final Instant created = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+		private volatile Instant modified = created;
+
+		synchronized void touch() {
+			Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+			modified = now.isAfter(modified) ? now : modified.plusMillis(1);
+		}
+	}
+
+	/**
+	 * Pads a value to the given length.
+	 */
+	private static String value(String value, int length) {
+		StringBuilder padded = new StringBuilder(value);
+		while (padded.length() < length) {
+			padded.append('x');
+		}
+		return padded.toString();
+	}
+
+	private static void drain(HttpExchange exchange) throws IOException {
+		exchange.getRequestBody().transferTo(OutputStream.nullOutputStream());
+	}
+
+	private static void respondJson(HttpExchange exchange, String json) throws IOException {
+		respond(exchange, 200, "application/json; charset=UTF-8", json);
+	}
+
+	private static void respond(HttpExchange exchange, int status, String contentType, String content) throws IOException {
+		byte[] body = content.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", contentType);
+		exchange.sendResponseHeaders(status, body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Handles a command after latency, error injection and csrf token validation.
+	 */
+	@FunctionalInterface
+	private interface Endpoint {
+
+		void handle(HttpExchange exchange, Map<String, String> parameters) throws IOException;
+	}
+
+	/**
+	 * The builder for {@link StubRefineServer}.
+	 */
+	public static class Builder {
+
+		private int port;
+		private Duration latency = Duration.ZERO;
+		private Duration jitter = Duration.ZERO;
+		private double errorRate;
+		private int errorStatus = 500;
+		private long seed = 42;
+		private int exportRows = 100;
+		private int exportCellLength;
+		private int previewValueLength;
+		private int processPolls;
+
+		/**
+		 * Sets the port to listen on.
+		 *
+		 * @param port the port, defaults to a free port
+		 * @return the builder for fluent usage
+		 */
+		public Builder port(int port) {
+			this.port = port;
+			return this;
+		}
+
+		/**
+		 * Sets the fixed latency added to every request.
+		 *
+		 * @param latency the latency, defaults to none
+		 * @return the builder for fluent usage
+		 */
+		public Builder latency(Duration latency) {
+			this.latency = latency;
+			return this;
+		}
+
+		/**
+		 * Sets the maximum random latency added to every request on top of {@link #latency(Duration)}.
+		 *
+		 * @param jitter the maximum random latency, defaults to none
+		 * @return the builder for fluent usage
+		 */
+		public Builder jitter(Duration jitter) {
+			this.jitter = jitter;
+			return this;
+		}
+
+		/**
+		 * Sets the share of requests that fail with {@link #errorStatus(int)} and an HTML body, like OpenRefine does.
+		 *
+		 * @param errorRate the error rate between <code>0.0</code> and <code>1.0</code>, defaults to none
+		 * @return the builder for fluent usage
+		 */
+		public Builder errorRate(double errorRate) {
+			this.errorRate = errorRate;
+			return this;
+		}
+
+		/**
+		 * Sets the status of injected errors.
+		 *
+		 * @param errorStatus the HTTP status, defaults to 500
+		 * @return the builder for fluent usage
+		 */
+		public Builder errorStatus(int errorStatus) {
+			this.errorStatus = errorStatus;
+			return this;
+		}
+
+		/**
+		 * Sets the seed of the random latency and errors, so that runs are repeatable.
+		 *
+		 * @param seed the seed, defaults to 42
+		 * @return the builder for fluent usage
+		 */
+		public Builder seed(long seed) {
+			this.seed = seed;
+			return this;
+		}
+
+		/**
+		 * Sets the number of rows of an export and of the project metadata.
+		 *
+		 * @param exportRows the number of rows without the header, defaults to 100
+		 * @return the builder for fluent usage
+		 */
+		public Builder exportRows(int exportRows) {
+			this.exportRows = exportRows;
+			return this;
+		}
+
+		/**
+		 * Sets the minimum length of a cell of an export, to control the payload size.
+		 *
+		 * @param exportCellLength the minimum cell length, defaults to the natural length
+		 * @return the builder for fluent usage
+		 */
+		public Builder exportCellLength(int exportCellLength) {
+			this.exportCellLength = exportCellLength;
+			return this;
+		}
+
+		/**
+		 * Sets the minimum length of an expression preview value, to control the payload size.
+		 *
+		 * @param previewValueLength the minimum value length, defaults to the natural length
+		 * @return the builder for fluent usage
+		 */
+		public Builder previewValueLength(int previewValueLength) {
+			this.previewValueLength = previewValueLength;
+			return this;
+		}
+
+		/**
+		 * Sets for how many <code>get-processes</code> polls the operations of <code>apply-operations</code> run.
+		 *
+		 * @param processPolls the number of polls that report a running process, defaults to none, so that operations
+		 *                     are applied immediately
+		 * @return the builder for fluent usage
+		 */
+		public Builder processPolls(int processPolls) {
+			this.processPolls = processPolls;
+			return this;
+		}
+
+		/**
+		 * Starts the server on the loopback interface.
+		 *
+		 * @return the started server
+		 * @throws IOException in case the server can not be started
+		 */
+		public StubRefineServer start() throws IOException {
+			notNull(latency, "latency");
+			notNull(jitter, "jitter");
+			isTrue(errorRate >= 0 && errorRate <= 1, "errorRate must be between 0 and 1");
+			isTrue(exportRows >= 0, "exportRows must not be negative");
+			isTrue(processPolls >= 0, "processPolls must not be negative");
+			return new StubRefineServer(this);
+		}
+	}
+}
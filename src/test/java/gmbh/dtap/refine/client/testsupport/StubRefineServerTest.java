@@ -0,0 +1,159 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gmbh.dtap.refine.client.testsupport;
+
+import gmbh.dtap.refine.client.RefineClient;
+import gmbh.dtap.refine.client.RefineClients;
+import gmbh.dtap.refine.client.ResponseCode;
+import gmbh.dtap.refine.client.Row;
+import gmbh.dtap.refine.client.command.ApplyOperationsResponse;
+import gmbh.dtap.refine.client.command.CreateProjectResponse;
+import gmbh.dtap.refine.client.command.ExpressionPreviewBatchResponse;
+import gmbh.dtap.refine.client.command.GetProjectMetadataResponse;
+import gmbh.dtap.refine.client.command.RefineCommands;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static gmbh.dtap.refine.client.JsonOperation.from;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link StubRefineServer} with real commands over a socket.
+ */
+public class StubRefineServerTest {
+
+	private static final String ENGINE = "{\"facets\":[],\"mode\":\"row-based\"}";
+
+	@Rule public ExpectedException thrown = ExpectedException.none();
+
+	private StubRefineServer server;
+	private RefineClient client;
+
+	@After
+	public void tearDown() throws Exception {
+		if (client != null) {
+			client.close();
+		}
+		if (server != null) {
+			server.close();
+		}
+	}
+
+	private void start(StubRefineServer.Builder builder) throws IOException {
+		server = builder.start();
+		client = RefineClients.create(server.getUrl());
+	}
+
+	@Test
+	public void should_run_project_lifecycle() throws IOException {
+		start(StubRefineServer.builder().exportRows(3));
+
+		CreateProjectResponse created = RefineCommands.createProject()
+			.name("lifecycle")
+			.rows(() -> Arrays.asList(new String[] { "a", "b" }, new String[] { "1", "2" }).iterator())
+			.build()
+			.execute(client);
+		String projectId = created.getProjectId();
+		assertThat(server.hasProject(projectId)).isTrue();
+
+		ApplyOperationsResponse applied = RefineCommands.applyOperations()
+			.project(projectId)
+			.operations(from("[]"))
+			.build()
+			.execute(client);
+		assertThat(applied.getCode()).isEqualTo(ResponseCode.OK);
+
+		GetProjectMetadataResponse metadata = RefineCommands.getProjectMetadataCommand()
+			.project(projectId)
+			.build()
+			.execute(client);
+		assertThat(metadata.getProjectMetadata().getRowCount()).isEqualTo(3);
+
+		try (Stream<Row> rows = RefineCommands.exportRows().project(projectId).engine(ENGINE).format("tsv").build().stream(client)) {
+			assertThat(rows.map(row -> row.getCell(0)).collect(Collectors.toList())).containsExactly("ROW-0", "ROW-1", "ROW-2");
+		}
+
+		ExpressionPreviewBatchResponse preview = RefineCommands.expressionPreviewBatch()
+			.project(projectId)
+			.cellIndex(0)
+			.rows(0, 5)
+			.expression("value")
+			.build()
+			.execute(client);
+		assertThat(preview.getExpressionPreviews()).containsExactly("value-0", "value-1", "value-2", "value-3", "value-4");
+
+		RefineCommands.deleteProject().project(projectId).build().execute(client);
+		assertThat(server.hasProject(projectId)).isFalse();
+		assertThat(server.getRequestCount("get-csrf-token")).isEqualTo(1);
+	}
+
+	@Test
+	public void should_reject_rotated_token_once() throws IOException {
+		start(StubRefineServer.builder());
+		String projectId = RefineCommands.createProject().name("rotation").rows(() -> List.<String[]> of().iterator()).build()
+			.execute(client).getProjectId();
+
+		server.rotateCsrfToken();
+		RefineCommands.deleteProject().project(projectId).build().execute(client);
+
+		assertThat(server.hasProject(projectId)).isFalse();
+		assertThat(server.getRequestCount("get-csrf-token")).isEqualTo(2);
+		assertThat(server.getRequestCount("delete-project")).isEqualTo(2);
+	}
+
+	@Test
+	public void should_add_latency() throws IOException {
+		start(StubRefineServer.builder().latency(Duration.ofMillis(50)));
+
+		long start = System.nanoTime();
+		RefineCommands.getVersion().build().execute(client);
+
+		assertThat(Duration.ofNanos(System.nanoTime() - start)).isGreaterThanOrEqualTo(Duration.ofMillis(50));
+	}
+
+	@Test
+	public void should_inject_errors() throws IOException {
+		start(StubRefineServer.builder().errorRate(1.0).errorStatus(503));
+
+		thrown.expect(IOException.class);
+		RefineCommands.getVersion().build().execute(client);
+	}
+
+	@Test
+	public void should_handle_concurrent_requests() throws IOException {
+		start(StubRefineServer.builder().latency(Duration.ofMillis(20)));
+
+		List<CompletableFuture<?>> futures = IntStream.range(0, 8)
+			.mapToObj(i -> RefineCommands.getVersion().build().executeAsync(client))
+			.collect(Collectors.toList());
+		CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+
+		assertThat(server.getRequestCount()).isEqualTo(8);
+		assertThat(server.getMaxConcurrentRequests()).isGreaterThan(1);
+	}
+}
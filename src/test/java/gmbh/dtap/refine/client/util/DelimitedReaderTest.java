@@ -0,0 +1,130 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gmbh.dtap.refine.client.util;
+
+import gmbh.dtap.refine.client.RefineException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit Tests for {@link DelimitedReader}.
+ */
+public class DelimitedReaderTest {
+
+	@Rule
+	public ExpectedException thrown = ExpectedException.none();
+
+	@Test
+	public void should_read_csv_records() throws IOException {
+		DelimitedReader reader = new DelimitedReader(new StringReader("a,b,c\n1,,3\n"), ',');
+		assertThat(reader.readRecord()).isEqualTo(asList("a", "b", "c"));
+		assertThat(reader.readRecord()).isEqualTo(asList("1", "", "3"));
+		assertThat(reader.readRecord()).isNull();
+	}
+
+	@Test
+	public void should_read_tsv_records_with_crlf() throws IOException {
+		DelimitedReader reader = new DelimitedReader(new StringReader("a\tb,c\r\n1\t2"), '\t');
+		assertThat(reader.readRecord()).isEqualTo(asList("a", "b,c"));
+		assertThat(reader.readRecord()).isEqualTo(asList("1", "2"));
+		assertThat(reader.readRecord()).isNull();
+	}
+
+	@Test
+	public void should_read_quoted_fields() throws IOException {
+		DelimitedReader reader = new DelimitedReader(new StringReader("\"a,b\",\"say \"\"hi\"\"\",\"line\nbreak\",x\"y\n"), ',');
+		assertThat(reader.readRecord()).isEqualTo(asList("a,b", "say \"hi\"", "line\nbreak", "x\"y"));
+		assertThat(reader.readRecord()).isNull();
+	}
+
+	@Test
+	public void should_read_across_buffer_boundaries() throws IOException {
+		DelimitedReader reader = new DelimitedReader(new StringReader("\"a\"\"b\",cd\r\nef,\"g\r\nh\"\r\n"), ',', 1);
+		assertThat(reader.readRecord()).isEqualTo(asList("a\"b", "cd"));
+		assertThat(reader.readRecord()).isEqualTo(asList("ef", "g\r\nh"));
+		assertThat(reader.readRecord()).isNull();
+	}
+
+	@Test
+	public void should_read_trailing_empty_field() throws IOException {
+		DelimitedReader reader = new DelimitedReader(new StringReader("a,"), ',');
+		assertThat(reader.readRecord()).isEqualTo(asList("a", ""));
+		assertThat(reader.readRecord()).isNull();
+	}
+
+	@Test
+	public void should_read_large_input_incrementally() throws IOException {
+		int rows = 200_000;
+		DelimitedReader reader = new DelimitedReader(new RowGenerator(rows), ',', 256);
+		int count = 0;
+		for (List<String> record; (record = reader.readRecord()) != null; count++) {
+			assertThat(record).containsExactly(String.valueOf(count), "value");
+		}
+		assertThat(count).isEqualTo(rows);
+	}
+
+	@Test
+	public void should_throw_exception_when_quote_is_not_closed() throws IOException {
+		DelimitedReader reader = new DelimitedReader(new StringReader("\"a,b"), ',');
+
+		thrown.expect(RefineException.class);
+		reader.readRecord();
+	}
+
+	/**
+	 * Generates rows on demand, so that the input is never held in memory as a whole.
+	 */
+	private static class RowGenerator extends Reader {
+
+		private final int rows;
+		private int row;
+		private String pending = "";
+		private int offset;
+
+		RowGenerator(int rows) {
+			this.rows = rows;
+		}
+
+		@Override
+		public int read(char[] buffer, int off, int len) {
+			if (offset == pending.length()) {
+				if (row == rows) {
+					return -1;
+				}
+				pending = row++ + ",value\n";
+				offset = 0;
+			}
+			int count = Math.min(len, pending.length() - offset);
+			pending.getChars(offset, offset + count, buffer, off);
+			offset += count;
+			return count;
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
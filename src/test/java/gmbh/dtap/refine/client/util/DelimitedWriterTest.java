@@ -0,0 +1,53 @@
+/*
+ * Copyright 2019 DTAP GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package gmbh.dtap.refine.client.util;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit Tests for {@link DelimitedWriter}.
+ */
+public class DelimitedWriterTest {
+
+	@Test
+	public void should_write_records() throws IOException {
+		StringWriter out = new StringWriter();
+		try (DelimitedWriter writer = new DelimitedWriter(out, ',', 4)) {
+			writer.writeRecord(new String[]{"a", null, "c"});
+			writer.writeRecord(new String[]{"x,y", "say \"hi\"", "line\nbreak"});
+		}
+		assertThat(out.toString()).isEqualTo("a,,c\n\"x,y\",\"say \"\"hi\"\"\",\"line\nbreak\"\n");
+	}
+
+	@Test
+	public void should_write_what_the_reader_reads() throws IOException {
+		String[] record = {"\t", "\"", "\r\n", ",", ""};
+		StringWriter out = new StringWriter();
+		try (DelimitedWriter writer = new DelimitedWriter(out, '\t', 16)) {
+			writer.writeRecord(record);
+		}
+		DelimitedReader reader = new DelimitedReader(new StringReader(out.toString()), '\t');
+		assertThat(reader.readRecord()).isEqualTo(Arrays.asList(record));
+	}
+}
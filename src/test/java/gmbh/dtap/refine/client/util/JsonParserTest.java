@@ -16,15 +16,23 @@
 
 package gmbh.dtap.refine.client.util;
 
+import com.sun.management.ThreadMXBean;
 import gmbh.dtap.refine.client.RefineException;
 import org.apache.commons.io.IOUtils;
+import org.junit.Assume;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
 import java.net.URISyntaxException;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 import static gmbh.dtap.refine.client.util.JsonParser.JSON_PARSER;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -56,4 +64,70 @@ public class JsonParserTest {
 		thrown.expect(RefineException.class);
 		JSON_PARSER.parseJson(plainText);
 	}
+
+	@Test
+	public void should_stream_scalar_fields_and_arrays() throws IOException {
+		List<String> results = new ArrayList<>();
+		Map<String, String> fields = JSON_PARSER.parseObject(stream("{\"code\":\"ok\",\"skipped\":{\"a\":[1]},\"count\":2,"
+			+ "\"results\":[\"a\",3,null,{\"b\":1}],\"message\":null}"), (name, parser) -> {
+			if ("results".equals(name)) {
+				JSON_PARSER.readStrings(parser, results);
+			}
+		});
+		assertThat(fields).containsOnlyKeys("code", "count", "message");
+		assertThat(fields.get("count")).isEqualTo("2");
+		assertThat(results).containsExactly("a", "3", "null", "");
+	}
+
+	@Test
+	public void should_throw_exception_when_streamed_document_is_not_an_object() throws IOException {
+		thrown.expect(RefineException.class);
+		JSON_PARSER.parseObject(stream("[1, 2]"), null);
+	}
+
+	@Test
+	public void should_throw_exception_when_streamed_document_is_not_parsable() throws IOException {
+		thrown.expect(RefineException.class);
+		JSON_PARSER.parseObject(stream("{\"code\": ok"), null);
+	}
+
+	/**
+	 * Compares the allocations of streaming the results of a large expression preview
+	 * with reading the body into a string and parsing it into a tree.
+	 */
+	@Test
+	public void should_allocate_less_when_streaming() throws IOException {
+		StringBuilder json = new StringBuilder("{\"code\":\"ok\",\"results\":[");
+		for (int i = 0; i < 100_000; i++) {
+			json.append(i > 0 ? "," : "").append("\"value-").append(i).append('"');
+		}
+		byte[] body = json.append("]}").toString().getBytes(UTF_8);
+
+		java.lang.management.ThreadMXBean platformBean = ManagementFactory.getThreadMXBean();
+		Assume.assumeTrue(platformBean instanceof ThreadMXBean);
+		ThreadMXBean threadMXBean = (ThreadMXBean) platformBean;
+		Assume.assumeTrue(threadMXBean.isThreadAllocatedMemorySupported());
+		threadMXBean.setThreadAllocatedMemoryEnabled(true);
+
+		long tree = 0;
+		long streaming = 0;
+		for (int run = 0; run < 3; run++) {
+			// the first run warms up both paths
+			long start = threadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+			String string = IOUtils.toString(new ByteArrayInputStream(body), UTF_8);
+			List<String> treeResults = JSON_PARSER.toResults(JSON_PARSER.parseJson(string).path("results"));
+			long middle = threadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+			List<String> streamedResults = new ArrayList<>();
+			JSON_PARSER.parseObject(new ByteArrayInputStream(body), (name, parser) -> JSON_PARSER.readStrings(parser, streamedResults));
+			long end = threadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+			assertThat(streamedResults).isEqualTo(treeResults);
+			tree = middle - start;
+			streaming = end - middle;
+		}
+		assertThat(streaming).as("bytes allocated by streaming, tree allocated %d", tree).isLessThan(tree * 2 / 3);
+	}
+
+	private static InputStream stream(String json) {
+		return new ByteArrayInputStream(json.getBytes(UTF_8));
+	}
 }